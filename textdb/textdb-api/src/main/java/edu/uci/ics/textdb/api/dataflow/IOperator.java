@@ -3,6 +3,7 @@ package edu.uci.ics.textdb.api.dataflow;
 import edu.uci.ics.textdb.api.exception.TextDBException;
 import edu.uci.ics.textdb.api.schema.Schema;
 import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.api.tuple.TupleBatch;
 
 /**
  * Created by chenli on 3/25/16.
@@ -16,6 +17,29 @@ public interface IOperator {
 
     Tuple getNextTuple() throws TextDBException;
 
+    /**
+     * Gets the next batch of at most maxTuples tuples, returns null if there are no more tuples.
+     * A returned batch is never empty.
+     * 
+     * The returned batch may be reused by the operator, it's only valid until the next call to getNextBatch().
+     * A consumer should get the tuples of an operator either by getNextTuple() or by getNextBatch(), not both.
+     * 
+     * The default implementation calls getNextTuple() repeatedly,
+     *   operators can override it to produce a batch without a call for each tuple.
+     * 
+     * @param maxTuples
+     * @return a non-empty batch of tuples, or null if there are no more tuples
+     * @throws TextDBException
+     */
+    default TupleBatch getNextBatch(int maxTuples) throws TextDBException {
+        TupleBatch batch = new TupleBatch(maxTuples);
+        Tuple tuple;
+        while (batch.size() < maxTuples && (tuple = getNextTuple()) != null) {
+            batch.add(tuple);
+        }
+        return batch.isEmpty() ? null : batch;
+    }
+
     void close() throws TextDBException;
 
     Schema getOutputSchema();
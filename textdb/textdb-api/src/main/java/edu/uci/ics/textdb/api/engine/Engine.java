@@ -1,6 +1,15 @@
 package edu.uci.ics.textdb.api.engine;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.uci.ics.textdb.api.dataflow.IConnector;
+import edu.uci.ics.textdb.api.dataflow.IOperator;
 import edu.uci.ics.textdb.api.dataflow.ISink;
+import edu.uci.ics.textdb.api.exception.TextDBException;
+import edu.uci.ics.textdb.api.tuple.TupleBatch;
 
 /**
  * Created by chenli on 5/11/16.
@@ -30,5 +39,120 @@ public class Engine {
         root.close();
     }
 
+    /**
+     * Evaluates the plan in the pipelined mode with the default queue capacity and batch size.
+     * 
+     * @see #evaluatePipelined(Plan, int, int)
+     */
+    public void evaluatePipelined(Plan plan) throws Exception {
+        evaluatePipelined(plan, PipelineBuffer.DEFAULT_QUEUE_CAPACITY, TupleBatch.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Evaluates the plan in the pipelined mode: a PipelineBuffer is inserted between each operator
+     *   and its input operator, so that every operator runs on its own thread,
+     *   and the operators pass batches of tuples to each other through bounded queues.
+     * 
+     * An input operator is found by a pair of methods "getXXXInputOperator()" and "setXXXInputOperator(IOperator)",
+     *   for example "getInputOperator()" of a single input operator, or "getInnerInputOperator()" of a join.
+     * An operator with an internal input operator (whose setter doesn't change the input) is not decoupled.
+     * 
+     * A connector (returned by a getter of its output operators, such as "getOwnerConnector()")
+     *   is one decoupling point: a single PipelineBuffer is inserted above the input operator of the connector.
+     *   The output operators of the connector are read by different threads, so the connector must be thread-safe.
+     * 
+     * If any operator throws an exception, all the threads are stopped, and the first exception is thrown.
+     * The original links between the operators are restored after the evaluation.
+     * 
+     * @param plan
+     * @param queueCapacity, the capacity of each queue, in number of batches
+     * @param batchSize, the maximum number of tuples in a batch
+     * @throws Exception
+     */
+    public void evaluatePipelined(Plan plan, int queueCapacity, int batchSize) throws Exception {
+        ISink root = plan.getRoot();
+        PipelineContext context = new PipelineContext();
+        List<Runnable> linkRestorers = new ArrayList<>();
+        try {
+            insertPipelineBuffers(root, context, queueCapacity, batchSize, linkRestorers);
+            try {
+                root.open();
+                root.processTuples();
+            } catch (Exception e) {
+                // stop all the threads before closing the operators
+                context.cancel();
+                try {
+                    root.close();
+                } catch (Exception closeException) {
+                    e.addSuppressed(closeException);
+                }
+                throw e;
+            }
+            root.close();
+        } finally {
+            for (Runnable linkRestorer : linkRestorers) {
+                linkRestorer.run();
+            }
+        }
+    }
+
+    /*
+     * Inserts a PipelineBuffer above each input operator of the operator (or connector), and then recursively above
+     *   the input operators of the input operators.
+     * If the operator is an output operator of a connector, the buffers are inserted into the connector,
+     *   the connector is only decoupled once, since the buffer above its input operator is found by the other outputs.
+     * 
+     * A function to restore each replaced link is added to linkRestorers.
+     */
+    private void insertPipelineBuffers(Object operator, PipelineContext context, int queueCapacity, int batchSize,
+            List<Runnable> linkRestorers) throws TextDBException {
+        for (Method getter : operator.getClass().getMethods()) {
+            String getterName = getter.getName();
+            if (getter.getParameterCount() == 0 && IConnector.class.isAssignableFrom(getter.getReturnType())) {
+                try {
+                    IConnector connector = (IConnector) getter.invoke(operator);
+                    if (connector != null) {
+                        insertPipelineBuffers(connector, context, queueCapacity, batchSize, linkRestorers);
+                    }
+                } catch (IllegalAccessException | InvocationTargetException e) {
+                    throw new TextDBException(e.getMessage(), e);
+                }
+                continue;
+            }
+            if (getter.getParameterCount() != 0 || !IOperator.class.isAssignableFrom(getter.getReturnType())
+                    || !getterName.startsWith("get") || !getterName.endsWith("InputOperator")) {
+                continue;
+            }
+            try {
+                Method setter = operator.getClass().getMethod("set" + getterName.substring(3), IOperator.class);
+                IOperator inputOperator = (IOperator) getter.invoke(operator);
+                if (inputOperator == null || inputOperator instanceof PipelineBuffer) {
+                    continue;
+                }
+
+                PipelineBuffer pipelineBuffer = new PipelineBuffer(inputOperator, context, queueCapacity, batchSize);
+                setter.invoke(operator, pipelineBuffer);
+                // the setter of a source operator with an internal input operator doesn't change the input
+                if (getter.invoke(operator) != pipelineBuffer) {
+                    continue;
+                }
+                linkRestorers.add(() -> {
+                    try {
+                        setter.invoke(operator, inputOperator);
+                    } catch (IllegalAccessException | InvocationTargetException e) {
+                        throw new RuntimeException(e.getMessage(), e);
+                    }
+                });
+
+                insertPipelineBuffers(inputOperator, context, queueCapacity, batchSize, linkRestorers);
+            } catch (NoSuchMethodException e) {
+                // not an input operator without the setter
+                continue;
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new TextDBException(e.getMessage(), e);
+            }
+        }
+    }
+
     ;
 }
@@ -0,0 +1,237 @@
+package edu.uci.ics.textdb.api.engine;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.uci.ics.textdb.api.constants.ErrorMessages;
+import edu.uci.ics.textdb.api.dataflow.IOperator;
+import edu.uci.ics.textdb.api.exception.DataFlowException;
+import edu.uci.ics.textdb.api.exception.TextDBException;
+import edu.uci.ics.textdb.api.schema.Schema;
+import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.api.tuple.TupleBatch;
+
+/**
+ * PipelineBuffer is a decoupling point between an operator and its input operator,
+ *   it's inserted into a plan by Engine.evaluatePipelined().
+ *
+ * When it's opened, it opens the input operator, and starts a producer thread which pulls batches of tuples
+ *   from the input operator and puts them into a bounded queue. The consumer (the operator above the buffer)
+ *   takes the tuples from the queue on its own thread, so the two parts of the plan run in parallel.
+ * If the queue is full, the producer waits until the consumer takes a batch (backpressure).
+ *
+ * An exception in the producer thread is recorded in the PipelineContext and thrown by the consumer.
+ * The producer thread stops when the buffer is closed or the pipeline is cancelled.
+ * The threads are never interrupted, because interrupting a thread reading a Lucene index
+ *   could close the file channels shared by the other readers.
+ *
+ */
+public class PipelineBuffer implements IOperator {
+
+    // the capacity of the queue, in number of batches
+    public static final int DEFAULT_QUEUE_CAPACITY = 4;
+
+    // how often the waiting threads check if the pipeline is cancelled
+    private static final long POLL_INTERVAL_MILLIS = 50;
+
+    // marks the end of the input in the queue
+    private static final TupleBatch END_OF_INPUT = new TupleBatch(1);
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private final IOperator inputOperator;
+    private final PipelineContext context;
+    private final int queueCapacity;
+    private final int batchSize;
+
+    private BlockingQueue<TupleBatch> queue;
+    private Thread producerThread;
+    private volatile boolean isClosing;
+    private boolean inputFinished;
+
+    // the batch that is being consumed
+    private TupleBatch currentBatch;
+    private int currentBatchCursor;
+    // reused by getNextBatch()
+    private TupleBatch outputBatch;
+
+    private int cursor = CLOSED;
+
+    PipelineBuffer(IOperator inputOperator, PipelineContext context, int queueCapacity, int batchSize) {
+        this.inputOperator = inputOperator;
+        this.context = context;
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void open() throws TextDBException {
+        if (cursor != CLOSED) {
+            return;
+        }
+        inputOperator.open();
+
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        isClosing = false;
+        inputFinished = false;
+        currentBatch = null;
+        currentBatchCursor = 0;
+
+        producerThread = new Thread(this::produce, "textdb-pipeline-" + threadCount.incrementAndGet());
+        // a pipeline that is not closed doesn't keep the JVM alive
+        producerThread.setDaemon(true);
+        producerThread.start();
+
+        cursor = OPENED;
+    }
+
+    /*
+     * Pulls the batches from the input operator and puts them into the queue, runs in the producer thread.
+     */
+    private void produce() {
+        try {
+            TupleBatch batch;
+            while (!isStopped() && (batch = inputOperator.getNextBatch(batchSize)) != null) {
+                // the batch may be reused by the input operator, so the tuples are copied to a new batch
+                TupleBatch queuedBatch = new TupleBatch(batch.size());
+                for (Tuple tuple : batch) {
+                    queuedBatch.add(tuple);
+                }
+                if (!putIntoQueue(queuedBatch)) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            context.fail(e);
+        }
+        putIntoQueue(END_OF_INPUT);
+    }
+
+    private boolean isStopped() {
+        return isClosing || context.isCancelled();
+    }
+
+    /*
+     * Waits until the batch is put into the queue, returns false if the pipeline is stopped while waiting.
+     */
+    private boolean putIntoQueue(TupleBatch batch) {
+        try {
+            while (!queue.offer(batch, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (isStopped()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /*
+     * Takes the next batch from the queue, returns null if the input is finished.
+     */
+    private TupleBatch takeNextBatch() throws TextDBException {
+        while (!inputFinished) {
+            checkPipelineState();
+            TupleBatch batch;
+            try {
+                batch = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DataFlowException(e.getMessage(), e);
+            }
+            if (batch == END_OF_INPUT) {
+                inputFinished = true;
+            } else if (batch != null) {
+                return batch;
+            }
+        }
+        // the producer may have failed before the end of the input
+        checkPipelineState();
+        return null;
+    }
+
+    private void checkPipelineState() throws DataFlowException {
+        Exception failure = context.getFailure();
+        if (failure != null) {
+            throw new DataFlowException(failure.getMessage(), failure);
+        }
+        if (context.isCancelled()) {
+            throw new DataFlowException("the pipeline is cancelled");
+        }
+    }
+
+    @Override
+    public Tuple getNextTuple() throws TextDBException {
+        if (cursor == CLOSED) {
+            throw new DataFlowException(ErrorMessages.OPERATOR_NOT_OPENED);
+        }
+        if (currentBatch == null || currentBatchCursor >= currentBatch.size()) {
+            currentBatch = takeNextBatch();
+            currentBatchCursor = 0;
+            if (currentBatch == null) {
+                return null;
+            }
+        }
+        cursor++;
+        return currentBatch.get(currentBatchCursor++);
+    }
+
+    @Override
+    public TupleBatch getNextBatch(int maxTuples) throws TextDBException {
+        if (cursor == CLOSED) {
+            throw new DataFlowException(ErrorMessages.OPERATOR_NOT_OPENED);
+        }
+        if (outputBatch == null) {
+            outputBatch = new TupleBatch(maxTuples);
+        }
+        outputBatch.clear();
+        while (outputBatch.size() < maxTuples) {
+            if (currentBatch == null || currentBatchCursor >= currentBatch.size()) {
+                currentBatch = takeNextBatch();
+                currentBatchCursor = 0;
+                if (currentBatch == null) {
+                    break;
+                }
+            }
+            outputBatch.add(currentBatch.get(currentBatchCursor++));
+        }
+        cursor += outputBatch.size();
+        return outputBatch.isEmpty() ? null : outputBatch;
+    }
+
+    @Override
+    public void close() throws TextDBException {
+        if (cursor == CLOSED) {
+            return;
+        }
+        // stop the producer and wait for it before closing the input operator it's reading
+        isClosing = true;
+        try {
+            producerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataFlowException(e.getMessage(), e);
+        }
+        producerThread = null;
+        queue = null;
+        currentBatch = null;
+        outputBatch = null;
+        cursor = CLOSED;
+
+        inputOperator.close();
+    }
+
+    @Override
+    public Schema getOutputSchema() {
+        return inputOperator.getOutputSchema();
+    }
+
+    public IOperator getInputOperator() {
+        return inputOperator;
+    }
+
+}
@@ -0,0 +1,40 @@
+package edu.uci.ics.textdb.api.engine;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * PipelineContext is shared by all the PipelineBuffers of a plan evaluated in the pipelined mode.
+ *
+ * It keeps the first exception thrown by any thread of the pipeline, and a cancelled flag,
+ *   so that all the threads stop when one of them fails or the evaluation is cancelled.
+ *
+ */
+class PipelineContext {
+
+    private volatile boolean cancelled = false;
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+    /**
+     * Records the exception (if it's the first one) and cancels the pipeline.
+     */
+    public void fail(Exception e) {
+        failure.compareAndSet(null, e);
+        cancelled = true;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns the first exception thrown in the pipeline, null if there's no failure.
+     */
+    public Exception getFailure() {
+        return failure.get();
+    }
+
+}
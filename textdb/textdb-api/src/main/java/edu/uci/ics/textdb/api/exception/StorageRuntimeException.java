@@ -0,0 +1,15 @@
+package edu.uci.ics.textdb.api.exception;
+
+/*
+ * Thrown to indicate that an exception occurs when reading data in a method that can't throw a StorageException,
+ *   for example when the value of a lazily loaded field is loaded.
+ */
+public class StorageRuntimeException extends RuntimeException {
+
+    private static final long serialVersionUID = 2215846017382054718L;
+
+    public StorageRuntimeException(StorageException storageException) {
+        super(storageException.getMessage(), storageException);
+    }
+
+}
@@ -1,22 +1,56 @@
 package edu.uci.ics.textdb.api.field;
 
+import java.util.function.Supplier;
+
 /**
  * Created by chenli on 3/31/16. A field that is indexed and tokenized, without
  * term vectors. For example this would be used on a 'body' field, that contains
  * the bulk of a document's text.
+ * 
+ * The value of a TextField can be loaded lazily: a TextField created with a value loader 
+ * only loads its value when getValue() is called for the first time, so that a large text 
+ * which is not read by any operator is never loaded.
  */
 public class TextField implements IField {
 
-    private final String value;
+    private String value;
+    // null if the value is already loaded, the value must be written before the loader is cleared
+    private volatile Supplier<String> valueLoader;
 
     public TextField(String value) {
         this.value = value;
     }
 
+    /**
+     * Creates a TextField whose value is loaded by the valueLoader when it's read for the first time.
+     * 
+     * @param valueLoader, called at most once
+     */
+    public TextField(Supplier<String> valueLoader) {
+        this.valueLoader = valueLoader;
+    }
+
     public String getValue() {
+        if (valueLoader != null) {
+            loadValue();
+        }
         return value;
     }
 
+    private synchronized void loadValue() {
+        if (valueLoader != null) {
+            value = valueLoader.get();
+            valueLoader = null;
+        }
+    }
+
+    /**
+     * Returns true if the value is loaded, a TextField created with a value is always loaded.
+     */
+    public boolean isValueLoaded() {
+        return valueLoader == null;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o)
@@ -25,19 +59,22 @@ public class TextField implements IField {
             return false;
 
         TextField that = (TextField) o;
+        String value = getValue();
+        String thatValue = that.getValue();
 
-        return value != null ? value.equals(that.value) : that.value == null;
+        return value != null ? value.equals(thatValue) : thatValue == null;
 
     }
 
     @Override
     public int hashCode() {
+        String value = getValue();
         return value != null ? value.hashCode() : 0;
     }
 
     @Override
     public String toString() {
-        return "TextField [value=" + value + "]";
+        return "TextField [value=" + getValue() + "]";
     }
 
 }
@@ -0,0 +1,86 @@
+package edu.uci.ics.textdb.api.tuple;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * TupleBatch is a list of tuples passed between operators by IOperator.getNextBatch().
+ *
+ * An operator can reuse the same TupleBatch object for all the batches it returns,
+ *   so a batch is only valid until the next call to getNextBatch() of the operator that returned it.
+ * The tuples themselves are not reused, a consumer can keep the tuples after the batch is gone.
+ *
+ */
+public class TupleBatch implements Iterable<Tuple> {
+
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    private Tuple[] tuples;
+    private int size = 0;
+
+    public TupleBatch() {
+        this(DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates an empty batch. The capacity is only the initial capacity, the batch grows if more tuples are added.
+     *
+     * @param capacity
+     */
+    public TupleBatch(int capacity) {
+        this.tuples = new Tuple[Math.max(1, Math.min(capacity, DEFAULT_BATCH_SIZE))];
+    }
+
+    public void add(Tuple tuple) {
+        if (size == tuples.length) {
+            tuples = Arrays.copyOf(tuples, tuples.length * 2);
+        }
+        tuples[size++] = tuple;
+    }
+
+    public Tuple get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+        return tuples[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all the tuples from the batch, so that the batch can be reused.
+     */
+    public void clear() {
+        // don't hold the references to the old tuples
+        Arrays.fill(tuples, 0, size, null);
+        size = 0;
+    }
+
+    @Override
+    public Iterator<Tuple> iterator() {
+        return new Iterator<Tuple>() {
+            private int cursor = 0;
+
+            @Override
+            public boolean hasNext() {
+                return cursor < size;
+            }
+
+            @Override
+            public Tuple next() {
+                if (cursor >= size) {
+                    throw new NoSuchElementException();
+                }
+                return tuples[cursor++];
+            }
+        };
+    }
+
+}
@@ -0,0 +1,163 @@
+package edu.uci.ics.textdb.api.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.uci.ics.textdb.api.constants.SchemaConstants;
+import edu.uci.ics.textdb.api.dataflow.IOperator;
+import edu.uci.ics.textdb.api.dataflow.ISink;
+import edu.uci.ics.textdb.api.exception.DataFlowException;
+import edu.uci.ics.textdb.api.exception.TextDBException;
+import edu.uci.ics.textdb.api.field.IntegerField;
+import edu.uci.ics.textdb.api.field.ListField;
+import edu.uci.ics.textdb.api.schema.Attribute;
+import edu.uci.ics.textdb.api.schema.AttributeType;
+import edu.uci.ics.textdb.api.schema.Schema;
+import edu.uci.ics.textdb.api.span.Span;
+import edu.uci.ics.textdb.api.tuple.Tuple;
+
+/**
+ * Operators producing and consuming tuples of numbers, used by the tests of the engine and the connectors.
+ *
+ * The tuples have a number and an empty span list (NUMBER_SCHEMA),
+ *   the operators record the names of the threads calling getNextTuple().
+ */
+public class TestOperators {
+
+    public static final Schema NUMBER_SCHEMA = new Schema(
+            new Attribute("number", AttributeType.INTEGER), SchemaConstants.SPAN_LIST_ATTRIBUTE);
+
+    private static Tuple newNumberTuple(int number) {
+        return new Tuple(NUMBER_SCHEMA, new IntegerField(number), new ListField<Span>(new ArrayList<>()));
+    }
+
+    /*
+     * A source producing the numbers from 0 to count - 1, it fails at failAt if failAt >= 0.
+     */
+    public static class NumberSource implements IOperator {
+        private final int count;
+        private final int failAt;
+        private final Set<String> threadNames;
+        private int next = 0;
+        private boolean isOpen = false;
+
+        public NumberSource(int count) {
+            this(count, -1, ConcurrentHashMap.newKeySet());
+        }
+
+        public NumberSource(int count, int failAt, Set<String> threadNames) {
+            this.count = count;
+            this.failAt = failAt;
+            this.threadNames = threadNames;
+        }
+
+        public void open() {
+            next = 0;
+            isOpen = true;
+        }
+
+        public Tuple getNextTuple() throws TextDBException {
+            threadNames.add(Thread.currentThread().getName());
+            if (next == failAt) {
+                throw new DataFlowException("failure at " + failAt);
+            }
+            return next < count ? newNumberTuple(next++) : null;
+        }
+
+        public void close() {
+            isOpen = false;
+        }
+
+        public boolean isOpen() {
+            return isOpen;
+        }
+
+        public Schema getOutputSchema() {
+            return NUMBER_SCHEMA;
+        }
+    }
+
+    /*
+     * An operator adding one to the numbers of its input.
+     */
+    public static class AddOneOperator implements IOperator {
+        private final Set<String> threadNames;
+        private IOperator inputOperator;
+
+        public AddOneOperator(Set<String> threadNames) {
+            this.threadNames = threadNames;
+        }
+
+        public void open() throws TextDBException {
+            inputOperator.open();
+        }
+
+        public Tuple getNextTuple() throws TextDBException {
+            threadNames.add(Thread.currentThread().getName());
+            Tuple tuple = inputOperator.getNextTuple();
+            if (tuple == null) {
+                return null;
+            }
+            return newNumberTuple((int) tuple.getField(0).getValue() + 1);
+        }
+
+        public void close() throws TextDBException {
+            inputOperator.close();
+        }
+
+        public Schema getOutputSchema() {
+            return NUMBER_SCHEMA;
+        }
+
+        public IOperator getInputOperator() {
+            return inputOperator;
+        }
+
+        public void setInputOperator(IOperator inputOperator) {
+            this.inputOperator = inputOperator;
+        }
+    }
+
+    /*
+     * A sink collecting all the tuples of its input.
+     */
+    public static class CollectingSink implements ISink {
+        private final List<Tuple> results = Collections.synchronizedList(new ArrayList<>());
+        private IOperator inputOperator;
+
+        public void open() throws TextDBException {
+            inputOperator.open();
+        }
+
+        public void processTuples() throws TextDBException {
+            Tuple tuple;
+            while ((tuple = inputOperator.getNextTuple()) != null) {
+                results.add(tuple);
+            }
+        }
+
+        public void close() throws TextDBException {
+            inputOperator.close();
+        }
+
+        public List<Tuple> getResults() {
+            return results;
+        }
+
+        public Schema getOutputSchema() {
+            return NUMBER_SCHEMA;
+        }
+
+        public IOperator getInputOperator() {
+            return inputOperator;
+        }
+
+        public void setInputOperator(IOperator inputOperator) {
+            this.inputOperator = inputOperator;
+        }
+    }
+
+}
@@ -1,5 +1,8 @@
 package edu.uci.ics.textdb.api.engine;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 import junit.framework.Assert;
 
 import org.junit.Before;
@@ -7,6 +10,10 @@ import org.junit.Test;
 import org.mockito.Mockito;
 
 import edu.uci.ics.textdb.api.dataflow.ISink;
+import edu.uci.ics.textdb.api.exception.DataFlowException;
+import edu.uci.ics.textdb.api.utils.TestOperators.AddOneOperator;
+import edu.uci.ics.textdb.api.utils.TestOperators.CollectingSink;
+import edu.uci.ics.textdb.api.utils.TestOperators.NumberSource;
 
 public class EngineTest {
 
@@ -40,4 +47,46 @@ public class EngineTest {
         Engine engine2 = Engine.getEngine();
         Assert.assertSame(engine2, engine);
     }
+
+    @Test
+    public void testEvaluatePipelined() throws Exception {
+        Set<String> threadNames = ConcurrentHashMap.newKeySet();
+        NumberSource source = new NumberSource(10000, -1, threadNames);
+        AddOneOperator addOne = new AddOneOperator(threadNames);
+        addOne.setInputOperator(source);
+        CollectingSink sink = new CollectingSink();
+        sink.setInputOperator(addOne);
+
+        engine.evaluatePipelined(new Plan(sink), 2, 100);
+
+        Assert.assertEquals(10000, sink.getResults().size());
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertEquals(i + 1, (int) sink.getResults().get(i).getField(0).getValue());
+        }
+        // the source and the operator run on two threads other than the caller thread
+        Assert.assertEquals(2, threadNames.size());
+        Assert.assertFalse(threadNames.contains(Thread.currentThread().getName()));
+        // the original links are restored
+        Assert.assertSame(addOne, sink.getInputOperator());
+        Assert.assertSame(source, addOne.getInputOperator());
+        Assert.assertFalse(source.isOpen());
+    }
+
+    @Test
+    public void testEvaluatePipelinedFailure() throws Exception {
+        NumberSource source = new NumberSource(10000, 5000, ConcurrentHashMap.newKeySet());
+        AddOneOperator addOne = new AddOneOperator(ConcurrentHashMap.newKeySet());
+        addOne.setInputOperator(source);
+        CollectingSink sink = new CollectingSink();
+        sink.setInputOperator(addOne);
+
+        try {
+            engine.evaluatePipelined(new Plan(sink), 1, 10);
+            Assert.fail("the exception of the source should be thrown");
+        } catch (DataFlowException e) {
+            Assert.assertEquals("failure at 5000", e.getMessage());
+        }
+        Assert.assertTrue(sink.getResults().size() <= 5000);
+        Assert.assertFalse(source.isOpen());
+    }
 }
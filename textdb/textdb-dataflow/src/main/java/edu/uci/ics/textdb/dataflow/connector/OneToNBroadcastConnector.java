@@ -13,6 +13,8 @@ import edu.uci.ics.textdb.api.tuple.Tuple;
  * The tuples from the input operator will be broadcast to every output operator.
  * 
  * It is required that all output operators need to be opened prior to calling getNextTuple().
+ * The output operators can be read by different threads (see Engine.evaluatePipelined()),
+ *   so the methods accessing the cached tuples and the cursors are synchronized on the connector.
  * @author Zuozhi Wang (zuozhiw)
  *
  */
@@ -91,7 +93,7 @@ public class OneToNBroadcastConnector implements IConnector {
      * Tuples from input operators are cached in an in-memory list.
      * A new tuple will be fetched from input operator whenever a cursor exceeds the list size.
      */
-    private Tuple getNextTuple(int outputOperatorIndex) throws TextDBException {
+    private synchronized Tuple getNextTuple(int outputOperatorIndex) throws TextDBException {
         int currentPosition = outputCursorList.get(outputOperatorIndex);
         
         if (currentPosition + 1 < inputTupleList.size()) {
@@ -115,7 +117,7 @@ public class OneToNBroadcastConnector implements IConnector {
         }
     }
     
-    private void openInputOperator(int outputOperatorIndex) throws TextDBException {
+    private synchronized void openInputOperator(int outputOperatorIndex) throws TextDBException {
         outputStatusList.set(outputOperatorIndex, OPENED);
         if (! inputOperatorOpened) {
             inputOperator.open();
@@ -123,7 +125,7 @@ public class OneToNBroadcastConnector implements IConnector {
         }
     }
     
-    private void closeInputOperator(int outputOperatorIndex) throws TextDBException {
+    private synchronized void closeInputOperator(int outputOperatorIndex) throws TextDBException {
         outputStatusList.set(outputOperatorIndex, CLOSED);
         boolean isAllClosed = isAllOutputOperatorClosed();
         if (isAllClosed) {
@@ -11,6 +11,7 @@ import edu.uci.ics.textdb.api.tuple.Tuple;
 import edu.uci.ics.textdb.dataflow.common.DictionaryPredicate;
 import edu.uci.ics.textdb.dataflow.common.KeywordPredicate;
 import edu.uci.ics.textdb.dataflow.keywordmatch.KeywordMatcher;
+import edu.uci.ics.textdb.storage.PayloadCache;
 
 public class DictionaryMatcher implements IOperator {
 
@@ -21,6 +22,11 @@ public class DictionaryMatcher implements IOperator {
     private KeywordPredicate keywordPredicate;
     private KeywordMatcher keywordMatcher;
 
+    // the payload cache of the plan, null if the payload is generated for each tuple
+    private PayloadCache payloadCache;
+    // the analyzer string of the analyzer of the predicate, which the payloads are cached by
+    private String luceneAnalyzerString;
+
     private Schema outputSchema;
 
     String currentDictionaryEntry;
@@ -60,6 +66,7 @@ public class DictionaryMatcher implements IOperator {
                     predicate.getAnalyzer(), predicate.getKeywordMatchingType());
 
             keywordMatcher = new KeywordMatcher(keywordPredicate);
+            keywordMatcher.setPayloadCache(payloadCache, luceneAnalyzerString);
             
             cacheOperator = new DictionaryTupleCacheOperator();
             cacheOperator.setInputOperator(inputOperator);
@@ -109,6 +116,7 @@ public class DictionaryMatcher implements IOperator {
                     predicate.getAttributeNames(),
                     predicate.getAnalyzer(), predicate.getKeywordMatchingType());
             keywordMatcher = new KeywordMatcher(keywordPredicate);
+            keywordMatcher.setPayloadCache(payloadCache, luceneAnalyzerString);
             keywordMatcher.setInputOperator(cacheOperator);
 
             keywordMatcher.open();
@@ -300,4 +308,25 @@ public class DictionaryMatcher implements IOperator {
         return this.predicate;
     }
 
+    /**
+     * Sets the payload cache shared by the operators of the plan,
+     *   which is also used by the KeywordMatcher of each dictionary entry,
+     *   so that an input tuple is only tokenized once for all the entries.
+     * 
+     * @param payloadCache
+     * @param luceneAnalyzerString, the analyzer string of the analyzer of the predicate (see LuceneAnalyzerConstants)
+     */
+    public void setPayloadCache(PayloadCache payloadCache, String luceneAnalyzerString) {
+        this.payloadCache = payloadCache;
+        this.luceneAnalyzerString = luceneAnalyzerString;
+    }
+
+    public PayloadCache getPayloadCache() {
+        return payloadCache;
+    }
+
+    public String getPayloadCacheAnalyzerString() {
+        return luceneAnalyzerString;
+    }
+
 }
@@ -17,6 +17,7 @@ import edu.uci.ics.textdb.api.utils.Utils;
 import edu.uci.ics.textdb.dataflow.common.AbstractSingleInputOperator;
 import edu.uci.ics.textdb.dataflow.common.FuzzyTokenPredicate;
 import edu.uci.ics.textdb.dataflow.utils.DataflowUtils;
+import edu.uci.ics.textdb.storage.PayloadCache;
 
 /**
  *  @author Zuozhi Wang (zuozhiw)
@@ -32,6 +33,11 @@ public class FuzzyTokenMatcher extends AbstractSingleInputOperator {
     private ArrayList<String> queryTokens;
     
     private Schema inputSchema;
+
+    // the payload cache of the plan, null if the payload is generated for each tuple
+    private PayloadCache payloadCache;
+    // the analyzer string of the analyzer of the predicate, which the payloads are cached by
+    private String luceneAnalyzerString;
     
     public FuzzyTokenMatcher(FuzzyTokenPredicate predicate) {
         this.predicate = predicate;
@@ -62,7 +68,9 @@ public class FuzzyTokenMatcher extends AbstractSingleInputOperator {
             // Therefore, PAYLOAD needs to be checked and added first
             if (!inputSchema.containsField(SchemaConstants.PAYLOAD)) {
                 inputTuple = DataflowUtils.getSpanTuple(inputTuple.getFields(),
-                        DataflowUtils.generatePayloadFromTuple(inputTuple, predicate.getLuceneAnalyzer()), outputSchema);
+                        DataflowUtils.generatePayloadFromTuple(inputTuple, predicate.getLuceneAnalyzer(), 
+                            payloadCache, luceneAnalyzerString),
+                        outputSchema);
             }
             if (!inputSchema.containsField(SchemaConstants.SPAN_LIST)) {
                 inputTuple = DataflowUtils.getSpanTuple(inputTuple.getFields(), new ArrayList<Span>(), outputSchema);
@@ -140,4 +148,24 @@ public class FuzzyTokenMatcher extends AbstractSingleInputOperator {
         return this.predicate;
     }
 
+    /**
+     * Sets the payload cache shared by the operators of the plan,
+     *   which is used to get the payload if the input tuples don't have it.
+     * 
+     * @param payloadCache
+     * @param luceneAnalyzerString, the analyzer string of the analyzer of the predicate (see LuceneAnalyzerConstants)
+     */
+    public void setPayloadCache(PayloadCache payloadCache, String luceneAnalyzerString) {
+        this.payloadCache = payloadCache;
+        this.luceneAnalyzerString = luceneAnalyzerString;
+    }
+
+    public PayloadCache getPayloadCache() {
+        return payloadCache;
+    }
+
+    public String getPayloadCacheAnalyzerString() {
+        return luceneAnalyzerString;
+    }
+
 }
@@ -22,6 +22,7 @@ import edu.uci.ics.textdb.api.utils.Utils;
 import edu.uci.ics.textdb.dataflow.common.AbstractSingleInputOperator;
 import edu.uci.ics.textdb.dataflow.common.KeywordPredicate;
 import edu.uci.ics.textdb.dataflow.utils.DataflowUtils;
+import edu.uci.ics.textdb.storage.PayloadCache;
 
 public class KeywordMatcher extends AbstractSingleInputOperator {
 
@@ -29,6 +30,11 @@ public class KeywordMatcher extends AbstractSingleInputOperator {
 
     private Schema inputSchema;
 
+    // the payload cache of the plan, null if the payload is generated for each tuple
+    private PayloadCache payloadCache;
+    // the analyzer string of the analyzer of the predicate, which the payloads are cached by
+    private String luceneAnalyzerString;
+
     public KeywordMatcher(KeywordPredicate predicate) {
         this.predicate = predicate;
     }
@@ -69,7 +75,9 @@ public class KeywordMatcher extends AbstractSingleInputOperator {
         // Therefore, PAYLOAD needs to be checked and added first
         if (!inputSchema.containsField(SchemaConstants.PAYLOAD)) {
             inputTuple = DataflowUtils.getSpanTuple(inputTuple.getFields(),
-                    DataflowUtils.generatePayloadFromTuple(inputTuple, predicate.getLuceneAnalyzer()), outputSchema);
+                    DataflowUtils.generatePayloadFromTuple(inputTuple, predicate.getLuceneAnalyzer(), 
+                            payloadCache, luceneAnalyzerString),
+                    outputSchema);
         }
         if (!inputSchema.containsField(SchemaConstants.SPAN_LIST)) {
             inputTuple = DataflowUtils.getSpanTuple(inputTuple.getFields(), new ArrayList<Span>(), outputSchema);
@@ -304,4 +312,24 @@ public class KeywordMatcher extends AbstractSingleInputOperator {
         return this.predicate;
     }
 
+    /**
+     * Sets the payload cache shared by the operators of the plan,
+     *   which is used to get the payload if the input tuples don't have it.
+     * 
+     * @param payloadCache
+     * @param luceneAnalyzerString, the analyzer string of the analyzer of the predicate (see LuceneAnalyzerConstants)
+     */
+    public void setPayloadCache(PayloadCache payloadCache, String luceneAnalyzerString) {
+        this.payloadCache = payloadCache;
+        this.luceneAnalyzerString = luceneAnalyzerString;
+    }
+
+    public PayloadCache getPayloadCache() {
+        return payloadCache;
+    }
+
+    public String getPayloadCacheAnalyzerString() {
+        return luceneAnalyzerString;
+    }
+
 }
@@ -2,7 +2,6 @@ package edu.uci.ics.textdb.dataflow.nlpextrator;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Properties;
 
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
@@ -41,8 +40,8 @@ public class NlpExtractor extends AbstractSingleInputOperator {
 
     private Schema inputSchema;
     
-    private static StanfordCoreNLP posPipeline = null;
-    private static StanfordCoreNLP nerPipeline = null;
+    // the pipeline shared through NlpPipelineRegistry
+    private StanfordCoreNLP pipeline = null;
 
     /**
      * @param NlpPredicate
@@ -63,6 +62,13 @@ public class NlpExtractor extends AbstractSingleInputOperator {
         if (!inputSchema.containsField(SchemaConstants.SPAN_LIST)) {
             outputSchema = Utils.addAttributeToSchema(outputSchema, SchemaConstants.SPAN_LIST_ATTRIBUTE);
         }
+        
+        // Setup Stanford NLP pipeline based on nlpTypeIndicator
+        if (predicate.getNlpTypeIndicator().equals("POS")) {
+            pipeline = NlpPipelineRegistry.getNlpPipelineRegistry().getPipeline(NlpPipelineRegistry.POS_ANNOTATORS);
+        } else {
+            pipeline = NlpPipelineRegistry.getNlpPipelineRegistry().getPipeline(NlpPipelineRegistry.NER_ANNOTATORS);
+        }
     }
     
     @Override
@@ -155,23 +161,7 @@ public class NlpExtractor extends AbstractSingleInputOperator {
     private List<Span> extractNlpSpans(IField iField, String attributeName) {
         List<Span> spanList = new ArrayList<>();
         String text = (String) iField.getValue();
-        Properties props = new Properties();
 
-        // Setup Stanford NLP pipeline based on nlpTypeIndicator
-        StanfordCoreNLP pipeline = null;
-        if (predicate.getNlpTypeIndicator().equals("POS")) {
-            props.setProperty("annotators", "tokenize, ssplit, pos");
-            if (posPipeline == null) {
-                posPipeline = new StanfordCoreNLP(props);
-            }
-            pipeline = posPipeline;
-        } else {
-            props.setProperty("annotators", "tokenize, ssplit, pos, lemma, " + "ner");
-            if (nerPipeline == null) {
-                nerPipeline = new StanfordCoreNLP(props);
-            }
-            pipeline = nerPipeline;
-        }
         Annotation documentAnnotation = new Annotation(text);
         pipeline.annotate(documentAnnotation);
         List<CoreMap> sentences = documentAnnotation.get(CoreAnnotations.SentencesAnnotation.class);
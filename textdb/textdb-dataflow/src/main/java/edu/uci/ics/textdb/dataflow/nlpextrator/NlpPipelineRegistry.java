@@ -0,0 +1,140 @@
+package edu.uci.ics.textdb.dataflow.nlpextrator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import edu.uci.ics.textdb.api.exception.DataFlowException;
+
+/**
+ * NlpPipelineRegistry keeps one Stanford CoreNLP pipeline for each set of annotators used by NlpExtractor,
+ *   so that the models are loaded once in the process, for example when the web server starts,
+ *   instead of by the first query using them.
+ *
+ * The annotators of CoreNLP are thread-safe, so a pipeline is shared by all the NlpExtractors.
+ * A pipeline is loaded once even if several operators ask for it at the same time.
+ *
+ */
+public class NlpPipelineRegistry {
+
+    public static final String POS_ANNOTATORS = "tokenize, ssplit, pos";
+    public static final String NER_ANNOTATORS = "tokenize, ssplit, pos, lemma, ner";
+
+    private static volatile NlpPipelineRegistry singletonNlpPipelineRegistry = null;
+
+    // key: normalized annotators, for example "tokenize, ssplit, pos"
+    private final ConcurrentHashMap<String, PipelineEntry> pipelineMap = new ConcurrentHashMap<>();
+
+    private final AtomicInteger loadedPipelineCount = new AtomicInteger();
+    private final AtomicLong loadTimeNanos = new AtomicLong();
+
+    private NlpPipelineRegistry() {
+    }
+
+    public static NlpPipelineRegistry getNlpPipelineRegistry() {
+        if (singletonNlpPipelineRegistry == null) {
+            synchronized (NlpPipelineRegistry.class) {
+                if (singletonNlpPipelineRegistry == null) {
+                    singletonNlpPipelineRegistry = new NlpPipelineRegistry();
+                }
+            }
+        }
+        return singletonNlpPipelineRegistry;
+    }
+
+    /**
+     * Gets the pipeline of a set of annotators, loading it if it's not loaded yet.
+     *
+     * @param annotators, a comma separated list of annotators, for example "tokenize, ssplit, pos"
+     * @return
+     * @throws DataFlowException, if the pipeline can't be loaded
+     */
+    public StanfordCoreNLP getPipeline(String annotators) throws DataFlowException {
+        return pipelineMap.computeIfAbsent(normalizeAnnotators(annotators), PipelineEntry::new).getPipeline();
+    }
+
+    /**
+     * Loads the pipelines of the sets of annotators, so that the first queries don't pay for loading the models.
+     *
+     * @param annotatorSets
+     * @throws DataFlowException, if a pipeline can't be loaded
+     */
+    public void warmUp(String... annotatorSets) throws DataFlowException {
+        for (String annotators : annotatorSets) {
+            getPipeline(annotators);
+        }
+    }
+
+    /**
+     * @return the normalized annotators of the loaded pipelines
+     */
+    public List<String> getLoadedAnnotators() {
+        List<String> loadedAnnotators = new ArrayList<>();
+        for (PipelineEntry entry : pipelineMap.values()) {
+            if (entry.pipeline != null) {
+                loadedAnnotators.add(entry.annotators);
+            }
+        }
+        Collections.sort(loadedAnnotators);
+        return loadedAnnotators;
+    }
+
+    public int getLoadedPipelineCount() {
+        return loadedPipelineCount.get();
+    }
+
+    public long getTotalLoadTimeMillis() {
+        return loadTimeNanos.get() / 1_000_000;
+    }
+
+    /*
+     * Normalizes the annotators, so that "tokenize,ssplit, pos" and "tokenize, ssplit, pos" share the same pipeline.
+     */
+    private static String normalizeAnnotators(String annotators) {
+        List<String> annotatorList = new ArrayList<>();
+        for (String annotator : annotators.split(",")) {
+            if (! annotator.trim().isEmpty()) {
+                annotatorList.add(annotator.trim());
+            }
+        }
+        return String.join(", ", annotatorList);
+    }
+
+    private class PipelineEntry {
+
+        private final String annotators;
+        private volatile StanfordCoreNLP pipeline;
+
+        private PipelineEntry(String annotators) {
+            this.annotators = annotators;
+        }
+
+        private StanfordCoreNLP getPipeline() throws DataFlowException {
+            if (pipeline == null) {
+                synchronized (this) {
+                    if (pipeline == null) {
+                        long startTime = System.nanoTime();
+                        Properties props = new Properties();
+                        props.setProperty("annotators", annotators);
+                        try {
+                            pipeline = new StanfordCoreNLP(props);
+                        } catch (RuntimeException e) {
+                            throw new DataFlowException(
+                                    "failed to load the NLP pipeline " + annotators + ": " + e.getMessage(), e);
+                        }
+                        loadTimeNanos.addAndGet(System.nanoTime() - startTime);
+                        loadedPipelineCount.incrementAndGet();
+                    }
+                }
+            }
+            return pipeline;
+        }
+
+    }
+
+}
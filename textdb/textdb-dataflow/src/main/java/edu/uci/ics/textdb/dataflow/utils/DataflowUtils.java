@@ -17,6 +17,7 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 import edu.uci.ics.textdb.api.constants.SchemaConstants;
+import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.field.DateField;
 import edu.uci.ics.textdb.api.field.DoubleField;
 import edu.uci.ics.textdb.api.field.IDField;
@@ -30,6 +31,7 @@ import edu.uci.ics.textdb.api.schema.AttributeType;
 import edu.uci.ics.textdb.api.schema.Schema;
 import edu.uci.ics.textdb.api.span.Span;
 import edu.uci.ics.textdb.api.tuple.*;
+import edu.uci.ics.textdb.storage.PayloadCache;
 
 public class DataflowUtils {
     
@@ -261,6 +263,25 @@ public class DataflowUtils {
         return tuplePayload;
     }
 
+    /**
+     * Generates the payload of the TEXT fields of a tuple, or gets it from the payload cache of the plan.
+     * 
+     * @param tuple
+     * @param luceneAnalyzer
+     * @param payloadCache, the payload cache shared by the operators of the plan, 
+     *   null if the payload is always generated
+     * @param luceneAnalyzerString, the analyzer string of luceneAnalyzer, which the payload is cached by
+     * @return the payload
+     * @throws DataFlowException, if the analyzer string is invalid
+     */
+    public static List<Span> generatePayloadFromTuple(Tuple tuple, Analyzer luceneAnalyzer, 
+            PayloadCache payloadCache, String luceneAnalyzerString) throws DataFlowException {
+        if (payloadCache == null) {
+            return generatePayloadFromTuple(tuple, luceneAnalyzer);
+        }
+        return payloadCache.getPayload(tuple, luceneAnalyzerString);
+    }
+
     public static List<Span> generatePayload(String attributeName, String fieldValue, Analyzer luceneAnalyzer) {
         List<Span> payload = new ArrayList<>();
         
@@ -2,8 +2,10 @@ package edu.uci.ics.textdb.plangen;
 
 import java.io.Serializable;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 
 import edu.uci.ics.textdb.api.dataflow.IOperator;
@@ -11,7 +13,12 @@ import edu.uci.ics.textdb.api.dataflow.ISink;
 import edu.uci.ics.textdb.api.engine.Plan;
 import edu.uci.ics.textdb.api.exception.PlanGenException;
 import edu.uci.ics.textdb.dataflow.connector.OneToNBroadcastConnector;
+import edu.uci.ics.textdb.dataflow.dictionarymatcher.DictionaryMatcher;
+import edu.uci.ics.textdb.dataflow.fuzzytokenmatcher.FuzzyTokenMatcher;
 import edu.uci.ics.textdb.dataflow.join.Join;
+import edu.uci.ics.textdb.dataflow.keywordmatch.KeywordMatcher;
+import edu.uci.ics.textdb.storage.PayloadCache;
+import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
 
 /**
  * A graph of operators representing a query plan.
@@ -103,12 +110,58 @@ public class LogicalPlan implements Serializable {
         HashMap<String, IOperator> operatorObjectMap = buildOperators();
         validateOperatorGraph();
         connectOperators(operatorObjectMap);
+        sharePayloadCache(operatorObjectMap);
         ISink sink = findSinkOperator(operatorObjectMap);
         
         Plan queryPlan = new Plan(sink);
         return queryPlan;
     }
     
+    /**
+     * Shares one PayloadCache between the operators of the plan that generate the payload of their input tuples
+     *   (keyword, fuzzy token, and dictionary matchers), so that the payload of a tuple is generated 
+     *   at most once in the plan for each analyzer, even if it's dropped (for example by a Join or a Projection) 
+     *   before the next matcher.
+     * 
+     * The payloads are cached by the analyzer string of the analyzer the operator builders build the matchers with,
+     *   so the cache is keyed by the configuration of the analyzer, not by its class.
+     * 
+     * The cache is created for this plan only, and only if a tuple could be tokenized more than once:
+     *   if there are at least two such operators, or a dictionary matcher, which matches each entry separately.
+     * 
+     * @param operatorObjectMap
+     * @return the cache of the plan, null if the cache is not needed
+     */
+    static PayloadCache sharePayloadCache(Map<String, IOperator> operatorObjectMap) {
+        List<IOperator> payloadOperators = new ArrayList<>();
+        boolean hasDictionaryMatcher = false;
+        for (IOperator operator : operatorObjectMap.values()) {
+            if (operator instanceof KeywordMatcher || operator instanceof FuzzyTokenMatcher) {
+                payloadOperators.add(operator);
+            } else if (operator instanceof DictionaryMatcher) {
+                payloadOperators.add(operator);
+                hasDictionaryMatcher = true;
+            }
+        }
+        if (payloadOperators.size() < 2 && !hasDictionaryMatcher) {
+            return null;
+        }
+        
+        // the analyzer of KeywordMatcherBuilder, FuzzyTokenMatcherBuilder, and DictionaryMatcherBuilder
+        String luceneAnalyzerString = LuceneAnalyzerConstants.standardAnalyzerString();
+        PayloadCache payloadCache = new PayloadCache();
+        for (IOperator operator : payloadOperators) {
+            if (operator instanceof KeywordMatcher) {
+                ((KeywordMatcher) operator).setPayloadCache(payloadCache, luceneAnalyzerString);
+            } else if (operator instanceof FuzzyTokenMatcher) {
+                ((FuzzyTokenMatcher) operator).setPayloadCache(payloadCache, luceneAnalyzerString);
+            } else {
+                ((DictionaryMatcher) operator).setPayloadCache(payloadCache, luceneAnalyzerString);
+            }
+        }
+        return payloadCache;
+    }
+    
     /*
      * Build the operator objects from operator properties.
      */
@@ -28,7 +28,13 @@ import edu.uci.ics.textdb.api.tuple.Tuple;
 import edu.uci.ics.textdb.api.utils.TestUtils;
 import edu.uci.ics.textdb.api.utils.Utils;
 import edu.uci.ics.textdb.dataflow.common.Dictionary;
+import edu.uci.ics.textdb.dataflow.common.DictionaryPredicate;
+import edu.uci.ics.textdb.dataflow.projection.ProjectionOperator;
+import edu.uci.ics.textdb.dataflow.projection.ProjectionPredicate;
+import edu.uci.ics.textdb.dataflow.source.ScanBasedSourceOperator;
 import edu.uci.ics.textdb.dataflow.utils.DataflowUtils;
+import edu.uci.ics.textdb.storage.PayloadCache;
+import edu.uci.ics.textdb.storage.RelationManager;
 
 /**
  * @author rajeshyarlagadda
@@ -1075,4 +1081,49 @@ public class DictionaryMatcherTest {
         Assert.assertTrue(TestUtils.containsAll(expectedList, resultList));
     }
     
-}
\ No newline at end of file
+
+    /*
+     * Tests that with a payload cache, the KeywordMatchers of all the dictionary entries
+     *   tokenize each input tuple only once, and the results are the same.
+     * The input tuples are projected so that they don't have the payload of the table.
+     */
+    @Test
+    public void testPayloadCacheUsingProjection() throws Exception {
+        Dictionary dictionary = new Dictionary(Arrays.asList("tall", "lin", "angry", "short"));
+        List<String> attributeNames = Arrays.asList(TestConstants.DESCRIPTION);
+
+        List<Tuple> expectedResults = getProjectedScanResults(dictionary, attributeNames, null);
+        PayloadCache payloadCache = new PayloadCache();
+        List<Tuple> returnedResults = getProjectedScanResults(dictionary, attributeNames, payloadCache);
+
+        Assert.assertFalse(expectedResults.isEmpty());
+        Assert.assertTrue(TestUtils.equals(expectedResults, returnedResults));
+        // each input tuple is tokenized once, the other entries get the cached payload
+        Assert.assertEquals(TestConstants.getSamplePeopleTuples().size(), payloadCache.getMissCount());
+        Assert.assertTrue(payloadCache.getHitCount() > 0);
+    }
+
+    private static List<Tuple> getProjectedScanResults(Dictionary dictionary, List<String> attributeNames,
+            PayloadCache payloadCache) throws Exception {
+        ProjectionOperator projection = new ProjectionOperator(
+                new ProjectionPredicate(Arrays.asList(SchemaConstants._ID, TestConstants.DESCRIPTION)));
+        projection.setInputOperator(new ScanBasedSourceOperator(PEOPLE_TABLE));
+
+        DictionaryMatcher dictionaryMatcher = new DictionaryMatcher(new DictionaryPredicate(dictionary, attributeNames,
+                RelationManager.getRelationManager().getTableAnalyzer(PEOPLE_TABLE), KeywordMatchingType.CONJUNCTION_INDEXBASED));
+        dictionaryMatcher.setPayloadCache(payloadCache,
+                RelationManager.getRelationManager().getTableAnalyzerString(PEOPLE_TABLE));
+        dictionaryMatcher.setInputOperator(projection);
+
+        List<Tuple> results = new ArrayList<>();
+        Tuple tuple;
+        dictionaryMatcher.open();
+        while ((tuple = dictionaryMatcher.getNextTuple()) != null) {
+            results.add(tuple);
+        }
+        dictionaryMatcher.close();
+        dictionary.resetCursor();
+        return results;
+    }
+
+}
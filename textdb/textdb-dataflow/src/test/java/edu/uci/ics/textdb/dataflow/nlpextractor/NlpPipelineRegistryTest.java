@@ -0,0 +1,38 @@
+package edu.uci.ics.textdb.dataflow.nlpextractor;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import edu.stanford.nlp.util.CoreMap;
+import edu.uci.ics.textdb.dataflow.nlpextrator.NlpPipelineRegistry;
+
+public class NlpPipelineRegistryTest {
+
+    /*
+     * Tests that the annotators are normalized, and a pipeline is only loaded once.
+     */
+    @Test
+    public void testPipelineLoadedOnce() throws Exception {
+        NlpPipelineRegistry registry = NlpPipelineRegistry.getNlpPipelineRegistry();
+        int loadedPipelineCount = registry.getLoadedPipelineCount();
+
+        registry.warmUp("tokenize, ssplit");
+        Assert.assertEquals(loadedPipelineCount + 1, registry.getLoadedPipelineCount());
+        Assert.assertTrue(registry.getLoadedAnnotators().contains("tokenize, ssplit"));
+
+        StanfordCoreNLP pipeline = registry.getPipeline("tokenize,ssplit");
+        Assert.assertSame(pipeline, registry.getPipeline("tokenize, ssplit"));
+        Assert.assertEquals(loadedPipelineCount + 1, registry.getLoadedPipelineCount());
+
+        Annotation annotation = new Annotation("TextDB is a system. It runs queries.");
+        pipeline.annotate(annotation);
+        List<CoreMap> sentences = annotation.get(CoreAnnotations.SentencesAnnotation.class);
+        Assert.assertEquals(2, sentences.size());
+    }
+
+}
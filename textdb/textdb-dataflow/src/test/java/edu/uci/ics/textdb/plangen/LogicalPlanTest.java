@@ -20,6 +20,7 @@ import edu.uci.ics.textdb.dataflow.connector.OneToNBroadcastConnector;
 import edu.uci.ics.textdb.dataflow.connector.OneToNBroadcastConnector.ConnectorOutputOperator;
 import edu.uci.ics.textdb.dataflow.fuzzytokenmatcher.FuzzyTokenMatcher;
 import edu.uci.ics.textdb.dataflow.join.Join;
+import edu.uci.ics.textdb.dataflow.keywordmatch.KeywordMatcher;
 import edu.uci.ics.textdb.dataflow.keywordmatch.KeywordMatcherSourceOperator;
 import edu.uci.ics.textdb.dataflow.nlpextrator.NlpExtractor;
 import edu.uci.ics.textdb.dataflow.regexmatch.RegexMatcher;
@@ -32,6 +33,7 @@ import edu.uci.ics.textdb.plangen.operatorbuilder.KeywordMatcherBuilder;
 import edu.uci.ics.textdb.plangen.operatorbuilder.NlpExtractorBuilder;
 import edu.uci.ics.textdb.plangen.operatorbuilder.OperatorBuilderUtils;
 import edu.uci.ics.textdb.plangen.operatorbuilder.RegexMatcherBuilder;
+import edu.uci.ics.textdb.storage.PayloadCache;
 import edu.uci.ics.textdb.storage.RelationManager;
 import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
 import junit.framework.Assert;
@@ -318,6 +320,44 @@ public class LogicalPlanTest {
 
         IOperator keywordSource = connector1.getInputOperator();
         Assert.assertTrue(keywordSource instanceof KeywordMatcherSourceOperator);
+
+        // the FuzzyTokenMatcher is the only operator generating the payload, so it doesn't need a payload cache
+        Assert.assertNull(((FuzzyTokenMatcher) join2Input2).getPayloadCache());
+    }
+
+    /*
+     * Tests that the matchers generating the payload share one PayloadCache,
+     *   which caches the payloads by the analyzer string of the matchers.
+     * 
+     * KeywordSource --> KeywordMatcher --> FuzzyTokenMatcher --> TupleStreamSink
+     * 
+     */
+    @Test
+    public void testSharePayloadCache() throws Exception {
+        HashMap<String, String> keywordMatcherProperties = new HashMap<>();
+        keywordMatcherProperties.put(KeywordMatcherBuilder.KEYWORD, "irvine");
+        keywordMatcherProperties.put(KeywordMatcherBuilder.MATCHING_TYPE, "CONJUNCTION_INDEXBASED");
+        keywordMatcherProperties.put(OperatorBuilderUtils.ATTRIBUTE_NAMES, "content");
+        keywordMatcherProperties.put(OperatorBuilderUtils.ATTRIBUTE_TYPES, "text");
+
+        LogicalPlan logicalPlan = new LogicalPlan();
+        logicalPlan.addOperator("source", "KeywordSource", keywordSourceProperties);
+        logicalPlan.addOperator("keyword", "KeywordMatcher", keywordMatcherProperties);
+        logicalPlan.addOperator("fuzzytoken", "FuzzyTokenMatcher", fuzzyTokenMatcherProperties);
+        logicalPlan.addOperator("sink", "TupleStreamSink", new HashMap<String, String>());
+        logicalPlan.addLink("source", "keyword");
+        logicalPlan.addLink("keyword", "fuzzytoken");
+        logicalPlan.addLink("fuzzytoken", "sink");
+
+        Plan queryPlan = logicalPlan.buildQueryPlan();
+
+        FuzzyTokenMatcher fuzzyTokenMatcher = (FuzzyTokenMatcher) ((TupleStreamSink) queryPlan.getRoot()).getInputOperator();
+        KeywordMatcher keywordMatcher = (KeywordMatcher) fuzzyTokenMatcher.getInputOperator();
+        PayloadCache payloadCache = keywordMatcher.getPayloadCache();
+        Assert.assertNotNull(payloadCache);
+        Assert.assertSame(payloadCache, fuzzyTokenMatcher.getPayloadCache());
+        Assert.assertEquals(LuceneAnalyzerConstants.standardAnalyzerString(), keywordMatcher.getPayloadCacheAnalyzerString());
+        Assert.assertEquals(LuceneAnalyzerConstants.standardAnalyzerString(), fuzzyTokenMatcher.getPayloadCacheAnalyzerString());
     }
 
 
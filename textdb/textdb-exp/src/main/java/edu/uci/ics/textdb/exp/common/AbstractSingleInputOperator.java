@@ -6,6 +6,7 @@ import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.exception.TextDBException;
 import edu.uci.ics.textdb.api.schema.Schema;
 import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.api.tuple.TupleBatch;
 
 /**
  * AbstractSingleInputOperator is an abstract class that can be used by many operators.
@@ -18,6 +19,12 @@ import edu.uci.ics.textdb.api.tuple.Tuple;
  *          It returns the next available matching tuple, null if there's no more match.
  * cleanUp(). It is called in close(). 
  *          Its purpose is to deallocates resources.
+ * 
+ * An operator that computes each result from one input tuple (processOneInputTuple()) can also
+ *   override getNextBatch() with computeNextMatchingBatch(), which pulls the input tuples batch by batch.
+ * The input batches are not larger than the number of results still needed by limit and offset,
+ *   more input tuples are pulled only if some of them don't match, so an operator with a small limit 
+ *   doesn't read (and verify) a whole batch of input tuples.
 
  * @author Zuozhi Wang (zuozhiw)
  *
@@ -33,6 +40,11 @@ public abstract class AbstractSingleInputOperator implements IOperator {
     protected int limit = Integer.MAX_VALUE;
     protected int offset = 0;
     
+    // used by the batched execution path
+    private TupleBatch inputBatch;
+    private int inputBatchCursor;
+    private TupleBatch outputBatch;
+    
     @Override
     public void open() throws TextDBException {
         if (cursor != CLOSED) {
@@ -63,7 +75,7 @@ public abstract class AbstractSingleInputOperator implements IOperator {
         if (cursor == CLOSED) {
             throw new DataFlowException(ErrorMessages.OPERATOR_NOT_OPENED);
         }
-        if (resultCursor >= limit + offset - 1){
+        if (getRemainingResultCount() <= 0) {
             return null;
         }
         try {
@@ -93,6 +105,73 @@ public abstract class AbstractSingleInputOperator implements IOperator {
     protected abstract Tuple computeNextMatchingTuple() throws TextDBException;
 
     public abstract Tuple processOneInputTuple(Tuple inputTuple) throws TextDBException;
+    
+    /**
+     * Computes the next batch of matching tuples: gets the input tuples batch by batch from the input operator,
+     *   and calls processOneInputTuple() on each of them, limit and offset are applied the same as getNextTuple().
+     * 
+     * An operator can call it in getNextBatch() if processOneInputTuple() is all computeNextMatchingTuple() does.
+     * 
+     * @param maxTuples
+     * @return a non-empty batch of matching tuples (reused in the next call), null if there's no more matching tuple.
+     * @throws TextDBException
+     */
+    protected TupleBatch computeNextMatchingBatch(int maxTuples) throws TextDBException {
+        return computeNextBatch(maxTuples, true);
+    }
+    
+    /**
+     * Gets the next batch from the input operator and applies limit and offset to it,
+     *   for an operator whose input operator already computes the matching tuples.
+     * 
+     * @param maxTuples
+     * @return a non-empty batch of matching tuples (reused in the next call), null if there's no more matching tuple.
+     * @throws TextDBException
+     */
+    protected TupleBatch forwardNextBatch(int maxTuples) throws TextDBException {
+        return computeNextBatch(maxTuples, false);
+    }
+    
+    private TupleBatch computeNextBatch(int maxTuples, boolean processInputTuples) throws TextDBException {
+        if (cursor == CLOSED) {
+            throw new DataFlowException(ErrorMessages.OPERATOR_NOT_OPENED);
+        }
+        if (outputBatch == null) {
+            outputBatch = new TupleBatch(maxTuples);
+        }
+        outputBatch.clear();
+        try {
+            while (outputBatch.size() < maxTuples && getRemainingResultCount() > 0) {
+                if (inputBatch == null || inputBatchCursor >= inputBatch.size()) {
+                    // only pulls the input tuples that can still produce a result
+                    inputBatch = inputOperator.getNextBatch((int) Math.min(maxTuples, getRemainingResultCount()));
+                    inputBatchCursor = 0;
+                    if (inputBatch == null) {
+                        break;
+                    }
+                }
+                Tuple inputTuple = inputBatch.get(inputBatchCursor++);
+                Tuple resultTuple = processInputTuples ? processOneInputTuple(inputTuple) : inputTuple;
+                if (resultTuple == null) {
+                    continue;
+                }
+                resultCursor++;
+                if (resultCursor >= offset) {
+                    outputBatch.add(resultTuple);
+                }
+            }
+        } catch (Exception e) {
+            throw new DataFlowException(e.getMessage(), e);
+        }
+        return outputBatch.isEmpty() ? null : outputBatch;
+    }
+
+    /*
+     * Gets the number of the results (including the ones skipped by the offset) still needed by limit and offset.
+     */
+    protected long getRemainingResultCount() {
+        return (long) limit + offset - 1 - resultCursor;
+    }
 
     @Override
     public void close() throws TextDBException {
@@ -104,6 +183,8 @@ public abstract class AbstractSingleInputOperator implements IOperator {
                 inputOperator.close();
             }
             cleanUp();
+            inputBatch = null;
+            outputBatch = null;
         } catch (Exception e) {
             throw new DataFlowException(e.getMessage(), e);
         }
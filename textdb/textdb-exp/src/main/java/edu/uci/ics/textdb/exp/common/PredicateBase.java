@@ -20,6 +20,8 @@ import edu.uci.ics.textdb.exp.nlp.entity.NlpEntityPredicate;
 import edu.uci.ics.textdb.exp.nlp.sentiment.NlpSentimentPredicate;
 import edu.uci.ics.textdb.exp.projection.ProjectionPredicate;
 import edu.uci.ics.textdb.exp.regexmatcher.RegexPredicate;
+import edu.uci.ics.textdb.exp.regexmatcher.RegexSetPredicate;
+import edu.uci.ics.textdb.exp.regexmatcher.RegexSetSourcePredicate;
 import edu.uci.ics.textdb.exp.regexmatcher.RegexSourcePredicate;
 import edu.uci.ics.textdb.exp.regexsplit.RegexSplitPredicate;
 import edu.uci.ics.textdb.exp.sampler.SamplerPredicate;
@@ -52,6 +54,8 @@ import edu.uci.ics.textdb.exp.source.scan.ScanSourcePredicate;
         @Type(value = KeywordSourcePredicate.class, name = "KeywordSource"), 
         @Type(value = RegexPredicate.class, name = "RegexMatcher"), 
         @Type(value = RegexSourcePredicate.class, name = "RegexSource"), 
+        @Type(value = RegexSetPredicate.class, name = "RegexSetMatcher"), 
+        @Type(value = RegexSetSourcePredicate.class, name = "RegexSetSource"), 
         
         @Type(value = JoinDistancePredicate.class, name = "JoinDistance"),
         @Type(value = SimilarityJoinPredicate.class, name = "SimilarityJoin"),
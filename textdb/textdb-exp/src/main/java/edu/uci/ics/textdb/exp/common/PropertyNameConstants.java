@@ -35,12 +35,18 @@ public class PropertyNameConstants {
     public static final String REGEX_IGNORE_CASE = "regexIgnoreCase";
     public static final String REGEX_USE_INDEX = "regexUseIndex";
     
+    // related to regex set matcher
+    public static final String REGEXES = "regexes";
+    public static final String REGEX_MATCH_ALL = "regexMatchAll";
+    
     // related to fuzzy token matcher
     public static final String FUZZY_TOKEN_QUERY = "query";
     public static final String FUZZY_TOKEN_THRESHOLD_RATIO = "thresholdRatio";
     
     // related to nlp extractor
     public static final String NLP_ENTITY_TYPE = "nlpEntityType";
+    public static final String NLP_PARALLELISM = "parallelism";
+    public static final String NLP_USE_ANNOTATION_CACHE = "useAnnotationCache";
     
     // related to regex splitter
     public static final String SPLIT_ATTRIBUTE = "splitAttribute";
@@ -0,0 +1,404 @@
+package edu.uci.ics.textdb.exp.connector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import edu.uci.ics.textdb.api.constants.ErrorMessages;
+import edu.uci.ics.textdb.api.dataflow.IOperator;
+import edu.uci.ics.textdb.api.exception.DataFlowException;
+import edu.uci.ics.textdb.api.exception.TextDBException;
+import edu.uci.ics.textdb.api.schema.Schema;
+import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.api.tuple.TupleBatch;
+
+/**
+ * ExchangeOperator runs multiple partition plans in parallel, and merges their results into one output.
+ *
+ * A partition plan is usually a source operator reading one partition of a table (see DataReader.setPartition()),
+ *   followed by a chain of single input operators, for example:
+ *
+ *   ExchangeOperator exchange = ExchangeOperator.createPartitionedPlan(32, (partitionIndex, partitionCount) -> {
+ *       ScanBasedSourceOperator scanSource = new ScanBasedSourceOperator(new ScanSourcePredicate(tableName));
+ *       scanSource.setPartition(partitionIndex, partitionCount);
+ *       RegexMatcher regexMatcher = new RegexMatcher(regexPredicate);
+ *       regexMatcher.setInputOperator(scanSource);
+ *       return regexMatcher;
+ *   });
+ *
+ * The partition plans are opened and closed by the thread calling open() and close(),
+ *   and each partition plan is consumed by one worker thread.
+ * The workers put the results into bounded queues, a worker waits if its queue is full,
+ *   so the memory usage doesn't depend on the speed of the consumer.
+ *
+ * The degree of parallelism (number of worker threads) can be smaller than the number of partitions,
+ *   using more partitions than threads balances the work if some partitions are slower than the others.
+ *
+ * By default, the results are returned in the order they are produced by the workers.
+ * If the merge is order preserving, the results of partition 0 are returned first, then partition 1, etc.,
+ *   for a partitioned table, this is the same order as reading the table with one DataReader.
+ *
+ * All partition plans must have the same output schema. Limit and offset should be applied after the exchange.
+ *
+ */
+public class ExchangeOperator implements IOperator {
+
+    /**
+     * Builds the operator plan of one partition.
+     */
+    @FunctionalInterface
+    public static interface PartitionPlanBuilder {
+        IOperator buildPartitionPlan(int partitionIndex, int partitionCount) throws TextDBException;
+    }
+
+    // the capacity of a queue, in number of batches
+    public static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+    // how often the waiting threads check if the exchange is closed or a worker failed
+    private static final long POLL_INTERVAL_MILLIS = 50;
+
+    // marks the end of a partition in the queue
+    private static final TupleBatch END_OF_PARTITION = new TupleBatch(1);
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private final List<IOperator> partitionPlans;
+
+    private int degreeOfParallelism = Runtime.getRuntime().availableProcessors();
+    private boolean orderPreserving = false;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private int batchSize = TupleBatch.DEFAULT_BATCH_SIZE;
+
+    private Schema outputSchema;
+    private int cursor = CLOSED;
+
+    private ExecutorService workerPool;
+    // one queue shared by all workers, or one queue for each partition if the merge is order preserving
+    private List<BlockingQueue<TupleBatch>> resultQueues;
+    private int finishedPartitionCount;
+    private volatile boolean isClosing;
+    private final AtomicReference<Exception> workerException = new AtomicReference<>();
+
+    // the batch that is being consumed
+    private TupleBatch currentBatch;
+    private int currentBatchCursor;
+    // reused by getNextBatch()
+    private TupleBatch outputBatch;
+
+    public ExchangeOperator(List<IOperator> partitionPlans) {
+        this.partitionPlans = new ArrayList<>(partitionPlans);
+    }
+
+    /**
+     * Creates an ExchangeOperator with partitionCount partition plans built by the builder.
+     *
+     * @param partitionCount
+     * @param builder
+     * @return
+     * @throws TextDBException
+     */
+    public static ExchangeOperator createPartitionedPlan(int partitionCount, PartitionPlanBuilder builder)
+            throws TextDBException {
+        if (partitionCount < 1) {
+            throw new DataFlowException("partition count must be at least 1, got " + partitionCount);
+        }
+        List<IOperator> partitionPlans = new ArrayList<>();
+        for (int i = 0; i < partitionCount; i++) {
+            partitionPlans.add(builder.buildPartitionPlan(i, partitionCount));
+        }
+        return new ExchangeOperator(partitionPlans);
+    }
+
+    @Override
+    public void open() throws TextDBException {
+        if (cursor != CLOSED) {
+            return;
+        }
+        if (partitionPlans.isEmpty()) {
+            throw new DataFlowException(ErrorMessages.INPUT_OPERATOR_NOT_SPECIFIED);
+        }
+
+        // open all the partitions together, so that they read the same snapshot of the index
+        for (int i = 0; i < partitionPlans.size(); i++) {
+            try {
+                partitionPlans.get(i).open();
+            } catch (TextDBException e) {
+                closePartitionPlans(i);
+                throw e;
+            }
+        }
+        outputSchema = partitionPlans.get(0).getOutputSchema();
+        for (IOperator partitionPlan : partitionPlans) {
+            if (!outputSchema.equals(partitionPlan.getOutputSchema())) {
+                closePartitionPlans(partitionPlans.size());
+                throw new DataFlowException("all partition plans of an exchange must have the same output schema");
+            }
+        }
+
+        int queueCount = orderPreserving ? partitionPlans.size() : 1;
+        resultQueues = new ArrayList<>();
+        for (int i = 0; i < queueCount; i++) {
+            resultQueues.add(new ArrayBlockingQueue<>(queueCapacity));
+        }
+        finishedPartitionCount = 0;
+        isClosing = false;
+        workerException.set(null);
+        currentBatch = null;
+        currentBatchCursor = 0;
+
+        // the partitions are submitted in order, so an earlier partition is never waiting for a thread
+        //   while a later partition is blocked on its full queue
+        workerPool = Executors.newFixedThreadPool(
+                Math.min(degreeOfParallelism, partitionPlans.size()), new ExchangeThreadFactory());
+        for (int i = 0; i < partitionPlans.size(); i++) {
+            int partitionIndex = i;
+            workerPool.execute(() -> runPartition(partitionIndex));
+        }
+
+        cursor = OPENED;
+    }
+
+    /*
+     * Consumes one partition plan and puts its results into the queue, runs in a worker thread.
+     *
+     * The worker threads are never interrupted, because interrupting a thread reading
+     *   a Lucene index could close the file channels shared by the other readers.
+     */
+    private void runPartition(int partitionIndex) {
+        BlockingQueue<TupleBatch> resultQueue = resultQueues.get(orderPreserving ? partitionIndex : 0);
+        IOperator partitionPlan = partitionPlans.get(partitionIndex);
+        try {
+            TupleBatch batch;
+            while (!isClosing && (batch = partitionPlan.getNextBatch(batchSize)) != null) {
+                // the batch is reused by the partition plan, so the tuples are copied to a new batch
+                TupleBatch resultBatch = new TupleBatch(batch.size());
+                for (Tuple tuple : batch) {
+                    resultBatch.add(tuple);
+                }
+                if (!putIntoQueue(resultQueue, resultBatch)) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            workerException.compareAndSet(null, e);
+        }
+        putIntoQueue(resultQueue, END_OF_PARTITION);
+    }
+
+    /*
+     * Waits until the batch is put into the queue, returns false if the exchange is closed while waiting.
+     */
+    private boolean putIntoQueue(BlockingQueue<TupleBatch> resultQueue, TupleBatch batch) {
+        try {
+            while (!resultQueue.offer(batch, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (isClosing) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /*
+     * Takes the next batch of results from the queues, returns null if all the partitions are finished.
+     */
+    private TupleBatch takeNextBatch() throws TextDBException {
+        while (finishedPartitionCount < partitionPlans.size()) {
+            // with an order preserving merge, the partitions are finished in order
+            BlockingQueue<TupleBatch> resultQueue = resultQueues.get(orderPreserving ? finishedPartitionCount : 0);
+            TupleBatch batch;
+            try {
+                batch = resultQueue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DataFlowException(e.getMessage(), e);
+            }
+            checkWorkerException();
+            if (batch == END_OF_PARTITION) {
+                finishedPartitionCount++;
+            } else if (batch != null) {
+                return batch;
+            }
+        }
+        return null;
+    }
+
+    private void checkWorkerException() throws DataFlowException {
+        Exception e = workerException.get();
+        if (e != null) {
+            throw new DataFlowException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Tuple getNextTuple() throws TextDBException {
+        if (cursor == CLOSED) {
+            throw new DataFlowException(ErrorMessages.OPERATOR_NOT_OPENED);
+        }
+        if (currentBatch == null || currentBatchCursor >= currentBatch.size()) {
+            currentBatch = takeNextBatch();
+            currentBatchCursor = 0;
+            if (currentBatch == null) {
+                return null;
+            }
+        }
+        cursor++;
+        return currentBatch.get(currentBatchCursor++);
+    }
+
+    @Override
+    public TupleBatch getNextBatch(int maxTuples) throws TextDBException {
+        if (cursor == CLOSED) {
+            throw new DataFlowException(ErrorMessages.OPERATOR_NOT_OPENED);
+        }
+        if (outputBatch == null) {
+            outputBatch = new TupleBatch(maxTuples);
+        }
+        outputBatch.clear();
+        while (outputBatch.size() < maxTuples) {
+            if (currentBatch == null || currentBatchCursor >= currentBatch.size()) {
+                currentBatch = takeNextBatch();
+                currentBatchCursor = 0;
+                if (currentBatch == null) {
+                    break;
+                }
+            }
+            outputBatch.add(currentBatch.get(currentBatchCursor++));
+        }
+        cursor += outputBatch.size();
+        return outputBatch.isEmpty() ? null : outputBatch;
+    }
+
+    @Override
+    public void close() throws TextDBException {
+        if (cursor == CLOSED) {
+            return;
+        }
+        // stop the workers and wait for them before closing the partition plans they are reading
+        isClosing = true;
+        workerPool.shutdown();
+        try {
+            while (!workerPool.awaitTermination(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                // the workers check isClosing between two batches
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataFlowException(e.getMessage(), e);
+        }
+        workerPool = null;
+        resultQueues = null;
+        currentBatch = null;
+        outputBatch = null;
+        cursor = CLOSED;
+
+        closePartitionPlans(partitionPlans.size());
+    }
+
+    /*
+     * Closes the first planCount partition plans, and throws the first exception after all of them are closed.
+     */
+    private void closePartitionPlans(int planCount) throws TextDBException {
+        TextDBException closeException = null;
+        for (int i = 0; i < planCount; i++) {
+            try {
+                partitionPlans.get(i).close();
+            } catch (TextDBException e) {
+                if (closeException == null) {
+                    closeException = e;
+                }
+            }
+        }
+        if (closeException != null) {
+            throw closeException;
+        }
+    }
+
+    @Override
+    public Schema getOutputSchema() {
+        return outputSchema;
+    }
+
+    public List<IOperator> getPartitionPlans() {
+        return partitionPlans;
+    }
+
+    public int getDegreeOfParallelism() {
+        return degreeOfParallelism;
+    }
+
+    /**
+     * Sets the number of worker threads, the default is the number of available processors.
+     */
+    public void setDegreeOfParallelism(int degreeOfParallelism) {
+        if (degreeOfParallelism < 1) {
+            throw new IllegalArgumentException("degree of parallelism must be at least 1");
+        }
+        this.degreeOfParallelism = degreeOfParallelism;
+    }
+
+    public boolean isOrderPreserving() {
+        return orderPreserving;
+    }
+
+    /**
+     * Sets if the results are returned in the order of the partitions.
+     * It must be set before the operator is opened.
+     */
+    public void setOrderPreserving(boolean orderPreserving) {
+        if (cursor != CLOSED) {
+            throw new RuntimeException("the merge order can't be changed after the operator is opened");
+        }
+        this.orderPreserving = orderPreserving;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Sets the capacity (in number of batches) of each result queue.
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queue capacity must be at least 1");
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the maximum number of tuples a worker gets from its partition plan at a time.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch size must be at least 1");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /*
+     * Worker threads are daemon threads, so that an exchange that is not closed doesn't keep the JVM alive.
+     */
+    private static class ExchangeThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "textdb-exchange-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
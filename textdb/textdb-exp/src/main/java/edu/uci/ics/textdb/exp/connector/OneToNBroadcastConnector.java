@@ -1,18 +1,40 @@
 package edu.uci.ics.textdb.exp.connector;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 
+import edu.uci.ics.textdb.api.constants.SchemaConstants;
 import edu.uci.ics.textdb.api.dataflow.IConnector;
 import edu.uci.ics.textdb.api.dataflow.IOperator;
+import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.exception.TextDBException;
+import edu.uci.ics.textdb.api.field.IField;
+import edu.uci.ics.textdb.api.field.ListField;
 import edu.uci.ics.textdb.api.schema.Schema;
+import edu.uci.ics.textdb.api.span.Span;
 import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.exp.utils.TupleSpillFile;
 
 /**
  * OneToNBroadcastConnector connects one input operator with multiple output operators.
  * The tuples from the input operator will be broadcast to every output operator.
  * 
  * It is required that all output operators need to be opened prior to calling getNextTuple().
+ *
+ * The tuples from the input operator are cached in a buffer until all the output operators have read them,
+ *   so the buffer only holds the tuples between the slowest and the fastest output operator.
+ * If an output operator lags too far behind (more than bufferCapacity tuples in the buffer),
+ *   the oldest half of the buffer is spilled to a temporary file, and the lagging output operator
+ *   reads the tuples back from the file.
+ *
+ * Downstream operators append their results to the span list of a tuple,
+ *   so every output operator gets its own copy of the span list,
+ *   except the last output operator reading a tuple, which gets the cached tuple itself.
+ *
+ * The output operators can be read by different threads (see Engine.evaluatePipelined()),
+ *   so the methods accessing the buffer and the cursors are synchronized on the connector.
+ *
  * @author Zuozhi Wang (zuozhiw)
  *
  */
@@ -22,40 +44,66 @@ public class OneToNBroadcastConnector implements IConnector {
     private static final int OPENED = 0;
     private static final int CLOSED = -1;
     
+    public static final int DEFAULT_BUFFER_CAPACITY = 10000;
+
     private int outputOperatorNumber;
     
     // A list of all output operators
     private ArrayList<IOperator> outputOperatorList;
-    // A list to maintain cursors of all operators
-    private ArrayList<Integer> outputCursorList;
+    // position of the last tuple read by each output operator, -1 if it hasn't read any tuple
+    private long[] outputCursors;
     // A list to maintain operators' status (pre-open, opened or closed)
     private ArrayList<Integer> outputStatusList;
     private boolean inputOperatorOpened;
     
     private IOperator inputOperator;
-    // an in-memory list to cache tuples from input tuple, see getNextTuple() for more details
-    private ArrayList<Tuple> inputTupleList;
+
+    // the maximum number of tuples kept in memory before spilling to disk
+    private int bufferCapacity = DEFAULT_BUFFER_CAPACITY;
+    // an in-memory buffer of the input tuples, see getNextTuple() for more details
+    //   the tuples before bufferHead are released
+    private ArrayList<Tuple> tupleBuffer;
+    private int bufferHead;
+    // position of the tuple at bufferHead
+    private long bufferStartPosition;
+    // number of tuples read from the input operator
+    private long inputPosition;
     // indicates if the input operator's tuples are all consumed
     boolean inputAllConsumed = false;
+
+    // the tuples spilled to disk, ordered by their positions, all of them are before bufferStartPosition
+    private ArrayList<SpillSegment> spillSegments;
+    // the spill file each output operator is reading, null if it's not reading a spill file
+    private SpillSegmentReader[] outputSpillReaders;
     
     /**
      * Constructs a OneToNBroadcastConnector with n output operators.
      * @param outputOperatorNumber, the number of output operators this connector has
      */
     public OneToNBroadcastConnector(int outputOperatorNumber) {        
-        this.inputTupleList = new ArrayList<>();
         inputOperatorOpened = false;
         this.outputOperatorNumber = outputOperatorNumber;
+        initializeBuffer();
         initializeOutputOperators();
     }
+
+    private void initializeBuffer() {
+        this.tupleBuffer = new ArrayList<>();
+        this.bufferHead = 0;
+        this.bufferStartPosition = 0;
+        this.inputPosition = 0;
+        this.inputAllConsumed = false;
+        this.spillSegments = new ArrayList<>();
+    }
     
     private void initializeOutputOperators() {
         this.outputOperatorList = new ArrayList<>();
-        this.outputCursorList = new ArrayList<>();
+        this.outputCursors = new long[outputOperatorNumber];
         this.outputStatusList = new ArrayList<>();
+        this.outputSpillReaders = new SpillSegmentReader[outputOperatorNumber];
         
         for (int i = 0; i < this.outputOperatorNumber; i++) {
-            outputCursorList.add(-1);
+            outputCursors[i] = -1;
             outputStatusList.add(PRE_OPEN);
             outputOperatorList.add(new ConnectorOutputOperator(this, i));
         }
@@ -88,34 +136,175 @@ public class OneToNBroadcastConnector implements IConnector {
     /*
      * This returns the nextTuple of the operator corresponding to the index.
      * A cursor will be maintained for each operator. 
-     * Tuples from input operators are cached in an in-memory list.
-     * A new tuple will be fetched from input operator whenever a cursor exceeds the list size.
+     * Tuples from input operators are cached in an in-memory buffer (or spilled to disk).
+     * A new tuple will be fetched from input operator whenever a cursor exceeds the buffer.
+     * The tuples that are read by all the output operators are released.
      */
-    private Tuple getNextTuple(int outputOperatorIndex) throws TextDBException {
-        int currentPosition = outputCursorList.get(outputOperatorIndex);
+    private synchronized Tuple getNextTuple(int outputOperatorIndex) throws TextDBException {
+        long nextPosition = outputCursors[outputOperatorIndex] + 1;
         
-        if (currentPosition + 1 < inputTupleList.size()) {
-            int nextPosition = currentPosition + 1;
-            outputCursorList.set(outputOperatorIndex, nextPosition);
-            return inputTupleList.get(nextPosition);
-        } else {
-            if (inputAllConsumed) {
-                return null;
-            }
-            Tuple nextInputTuple = inputOperator.getNextTuple();
-            if (nextInputTuple == null) {
-                inputAllConsumed = true;
-                return null;
+        try {
+            Tuple nextTuple;
+            boolean isCachedTuple = true;
+            if (nextPosition < bufferStartPosition) {
+                // the tuples read from a spill file are new objects
+                nextTuple = readSpilledTuple(outputOperatorIndex, nextPosition);
+                isCachedTuple = false;
+            } else if (nextPosition < inputPosition) {
+                nextTuple = tupleBuffer.get(bufferHead + (int) (nextPosition - bufferStartPosition));
             } else {
-                inputTupleList.add(nextInputTuple);
-                int nextPosition = currentPosition + 1;
-                outputCursorList.set(outputOperatorIndex, nextPosition);
-                return nextInputTuple;
+                if (inputAllConsumed) {
+                    return null;
+                }
+                nextTuple = inputOperator.getNextTuple();
+                if (nextTuple == null) {
+                    inputAllConsumed = true;
+                    return null;
+                }
+                tupleBuffer.add(nextTuple);
+                inputPosition++;
+            }
+            outputCursors[outputOperatorIndex] = nextPosition;
+
+            if (isCachedTuple && isNeededByOtherOutputs(outputOperatorIndex, nextPosition)) {
+                nextTuple = copySpanList(nextTuple);
+            }
+            releaseConsumedTuples();
+            if (tupleBuffer.size() - bufferHead > bufferCapacity) {
+                spillOldestTuples();
+            }
+            return nextTuple;
+        } catch (IOException e) {
+            throw new DataFlowException(e.getMessage(), e);
+        }
+    }
+
+    /*
+     * Returns true if an output operator (other than the given one) which is not closed
+     *   hasn't read the tuple at the position yet.
+     */
+    private boolean isNeededByOtherOutputs(int outputOperatorIndex, long position) {
+        for (int i = 0; i < outputOperatorNumber; i++) {
+            if (i != outputOperatorIndex && outputStatusList.get(i) != CLOSED && outputCursors[i] < position) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Returns the position of the first tuple that is still needed by an output operator which is not closed.
+     */
+    private long getFirstNeededPosition() {
+        long firstNeededPosition = Long.MAX_VALUE;
+        for (int i = 0; i < outputOperatorNumber; i++) {
+            if (outputStatusList.get(i) != CLOSED) {
+                firstNeededPosition = Math.min(firstNeededPosition, outputCursors[i] + 1);
             }
         }
+        return firstNeededPosition;
+    }
+
+    /*
+     * Releases the tuples in memory and the spill files which are read by all the output operators.
+     */
+    private void releaseConsumedTuples() throws IOException {
+        long firstNeededPosition = getFirstNeededPosition();
+
+        while (!spillSegments.isEmpty() && spillSegments.get(0).endPosition <= firstNeededPosition) {
+            spillSegments.remove(0).spillFile.delete();
+        }
+
+        while (bufferStartPosition < firstNeededPosition && bufferHead < tupleBuffer.size()) {
+            tupleBuffer.set(bufferHead, null);
+            bufferHead++;
+            bufferStartPosition++;
+        }
+        compactBuffer();
+    }
+
+    /*
+     * Removes the released slots at the beginning of the buffer when they take more than half of the buffer.
+     */
+    private void compactBuffer() {
+        if (bufferHead > 0 && bufferHead >= tupleBuffer.size() / 2) {
+            tupleBuffer.subList(0, bufferHead).clear();
+            bufferHead = 0;
+        }
+    }
+
+    /*
+     * Writes the oldest half of the tuples in memory to a new spill file.
+     */
+    private void spillOldestTuples() throws IOException {
+        int spillCount = (tupleBuffer.size() - bufferHead) / 2;
+        if (spillCount == 0) {
+            return;
+        }
+        TupleSpillFile spillFile = new TupleSpillFile(inputOperator.getOutputSchema());
+        for (int i = 0; i < spillCount; i++) {
+            spillFile.writeTuple(tupleBuffer.get(bufferHead));
+            tupleBuffer.set(bufferHead, null);
+            bufferHead++;
+        }
+        spillFile.finishWriting();
+        spillSegments.add(new SpillSegment(spillFile, bufferStartPosition, bufferStartPosition + spillCount));
+        bufferStartPosition += spillCount;
+        compactBuffer();
+    }
+
+    /*
+     * Reads the tuple at the position from the spill files.
+     */
+    private Tuple readSpilledTuple(int outputOperatorIndex, long position) throws IOException, DataFlowException {
+        SpillSegmentReader spillReader = outputSpillReaders[outputOperatorIndex];
+        if (spillReader == null || position < spillReader.segment.startPosition
+                || position >= spillReader.segment.endPosition || position < spillReader.nextPosition) {
+            if (spillReader != null) {
+                spillReader.reader.close();
+            }
+            spillReader = new SpillSegmentReader(findSpillSegment(position));
+            outputSpillReaders[outputOperatorIndex] = spillReader;
+        }
+        // skip the tuples before the position, it happens when the tuples are spilled after the output read them
+        Tuple tuple = null;
+        while (spillReader.nextPosition <= position) {
+            tuple = spillReader.reader.readTuple();
+            spillReader.nextPosition++;
+        }
+        if (spillReader.nextPosition >= spillReader.segment.endPosition) {
+            spillReader.reader.close();
+            outputSpillReaders[outputOperatorIndex] = null;
+        }
+        return tuple;
+    }
+
+    private SpillSegment findSpillSegment(long position) throws DataFlowException {
+        for (SpillSegment segment : spillSegments) {
+            if (position >= segment.startPosition && position < segment.endPosition) {
+                return segment;
+            }
+        }
+        throw new DataFlowException("tuple " + position + " is released from the connector");
+    }
+
+    /*
+     * Returns a tuple with a copy of the span list, so that the operators appending spans to it
+     *   don't change the span list seen by the other output operators.
+     */
+    private static Tuple copySpanList(Tuple tuple) {
+        Schema schema = tuple.getSchema();
+        if (!schema.containsField(SchemaConstants.SPAN_LIST)) {
+            return tuple;
+        }
+        List<IField> fields = new ArrayList<>(tuple.getFields());
+        int spanListIndex = schema.getIndex(SchemaConstants.SPAN_LIST);
+        ListField<Span> spanListField = tuple.getField(spanListIndex);
+        fields.set(spanListIndex, new ListField<Span>(new ArrayList<>(spanListField.getValue())));
+        return new Tuple(schema, fields);
     }
     
-    private void openInputOperator(int outputOperatorIndex) throws TextDBException {
+    private synchronized void openInputOperator(int outputOperatorIndex) throws TextDBException {
         outputStatusList.set(outputOperatorIndex, OPENED);
         if (! inputOperatorOpened) {
             inputOperator.open();
@@ -123,12 +312,30 @@ public class OneToNBroadcastConnector implements IConnector {
         }
     }
     
-    private void closeInputOperator(int outputOperatorIndex) throws TextDBException {
+    private synchronized void closeInputOperator(int outputOperatorIndex) throws TextDBException {
         outputStatusList.set(outputOperatorIndex, CLOSED);
-        boolean isAllClosed = isAllOutputOperatorClosed();
-        if (isAllClosed) {
-            inputOperator.close();
-            inputOperatorOpened = false;
+        try {
+            if (outputSpillReaders[outputOperatorIndex] != null) {
+                outputSpillReaders[outputOperatorIndex].reader.close();
+                outputSpillReaders[outputOperatorIndex] = null;
+            }
+            boolean isAllClosed = isAllOutputOperatorClosed();
+            if (isAllClosed) {
+                inputOperator.close();
+                inputOperatorOpened = false;
+                for (SpillSegment segment : spillSegments) {
+                    segment.spillFile.delete();
+                }
+                spillSegments.clear();
+                tupleBuffer.clear();
+                bufferHead = 0;
+                bufferStartPosition = inputPosition;
+            } else {
+                // the tuples only needed by the closed output operator can be released
+                releaseConsumedTuples();
+            }
+        } catch (IOException e) {
+            throw new DataFlowException(e.getMessage(), e);
         }
     }
     
@@ -144,10 +351,69 @@ public class OneToNBroadcastConnector implements IConnector {
         return this.inputOperator;
     }
 
+    /**
+     * Sets the maximum number of tuples kept in memory, the older tuples are spilled to disk.
+     * @param bufferCapacity
+     */
+    public synchronized void setBufferCapacity(int bufferCapacity) {
+        if (bufferCapacity < 1) {
+            throw new IllegalArgumentException("buffer capacity must be at least 1");
+        }
+        this.bufferCapacity = bufferCapacity;
+    }
+
+    public synchronized int getBufferCapacity() {
+        return this.bufferCapacity;
+    }
+
+    /**
+     * Gets the number of tuples currently kept in memory.
+     */
+    public synchronized int getBufferedTupleCount() {
+        return tupleBuffer.size() - bufferHead;
+    }
+
+    /**
+     * Gets the number of tuples currently spilled to disk.
+     */
+    public synchronized long getSpilledTupleCount() {
+        return spillSegments.stream().mapToLong(segment -> segment.endPosition - segment.startPosition).sum();
+    }
+
     private boolean isAllOutputOperatorClosed() {
         return outputStatusList.stream().reduce(CLOSED, (a, b) -> (a == b ? CLOSED : OPENED)) == -1;
     }
     
+    /*
+     * The tuples from startPosition (inclusive) to endPosition (exclusive) spilled to a file.
+     */
+    private static class SpillSegment {
+        private final TupleSpillFile spillFile;
+        private final long startPosition;
+        private final long endPosition;
+
+        private SpillSegment(TupleSpillFile spillFile, long startPosition, long endPosition) {
+            this.spillFile = spillFile;
+            this.startPosition = startPosition;
+            this.endPosition = endPosition;
+        }
+    }
+
+    /*
+     * A reader of a spill file used by one output operator.
+     */
+    private static class SpillSegmentReader {
+        private final SpillSegment segment;
+        private final TupleSpillFile.Reader reader;
+        // the position of the next tuple the reader reads
+        private long nextPosition;
+
+        private SpillSegmentReader(SpillSegment segment) throws IOException {
+            this.segment = segment;
+            this.reader = segment.spillFile.newReader();
+            this.nextPosition = segment.startPosition;
+        }
+    }
     
     public class ConnectorOutputOperator implements IOperator {
         
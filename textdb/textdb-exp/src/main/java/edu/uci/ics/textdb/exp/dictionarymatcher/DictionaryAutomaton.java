@@ -0,0 +1,219 @@
+package edu.uci.ics.textdb.exp.dictionarymatcher;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * DictionaryAutomaton is an Aho-Corasick automaton built from a list of dictionary entries.
+ *
+ * It finds all the occurrences of all the entries in a text in a single pass over the text,
+ *   the time is linear to the length of the text plus the number of occurrences,
+ *   no matter how many entries are in the dictionary.
+ *
+ * Matching is case insensitive: each character is converted to lower case (one character at a time,
+ *   so that the offsets in the lower case text are the same as the offsets in the original text).
+ * The entries are treated as literal strings.
+ *
+ * The automaton is immutable after it's built, so it can be shared by multiple threads.
+ *
+ */
+public class DictionaryAutomaton {
+
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+
+    /**
+     * The callback to receive the occurrences of the entries.
+     */
+    @FunctionalInterface
+    public static interface MatchHandler {
+        /**
+         * @param entryIndex, the index of the entry in the list of entries used to build the automaton
+         * @param start, start offset (inclusive) of the occurrence in the text
+         * @param end, end offset (exclusive) of the occurrence in the text
+         */
+        void onMatch(int entryIndex, int start, int end);
+    }
+
+    // the goto function: (state, character) -> next state, stored in an open-addressing hash table
+    private long[] transitionKeys;
+    private int[] transitionValues;
+
+    // the trie structure, used to traverse the children of a state when building the failure function
+    private int[] firstChild;
+    private int[] nextSibling;
+    private char[] incomingChar;
+
+    // the failure function
+    private int[] failure;
+    // the nearest state in the failure chain (excluding the state itself) which is the end of some entry
+    private int[] outputLink;
+    // the first entry ending at a state, entries ending at the same state are linked by nextEntry
+    private int[] firstEntry;
+    private final int[] nextEntry;
+
+    private final int[] entryLength;
+    private int stateCount = 1;
+
+    /**
+     * Builds the automaton from a list of entries. Empty entries are ignored.
+     *
+     * @param entries
+     */
+    public DictionaryAutomaton(List<String> entries) {
+        int capacity = 1;
+        for (String entry : entries) {
+            capacity += entry.length();
+        }
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        incomingChar = new char[capacity];
+        firstEntry = new int[capacity];
+        Arrays.fill(firstChild, NONE);
+        Arrays.fill(firstEntry, NONE);
+
+        int tableSize = Integer.highestOneBit(Math.max(capacity, 8) * 2) * 2;
+        transitionKeys = new long[tableSize];
+        transitionValues = new int[tableSize];
+        Arrays.fill(transitionKeys, NONE);
+
+        nextEntry = new int[entries.size()];
+        entryLength = new int[entries.size()];
+
+        for (int i = 0; i < entries.size(); i++) {
+            String entry = entries.get(i);
+            entryLength[i] = entry.length();
+            nextEntry[i] = NONE;
+            if (entry.isEmpty()) {
+                continue;
+            }
+            int state = ROOT;
+            for (int pos = 0; pos < entry.length(); pos++) {
+                char c = Character.toLowerCase(entry.charAt(pos));
+                int next = getTransition(state, c);
+                if (next == NONE) {
+                    next = stateCount++;
+                    incomingChar[next] = c;
+                    nextSibling[next] = firstChild[state];
+                    firstChild[state] = next;
+                    putTransition(state, c, next);
+                }
+                state = next;
+            }
+            nextEntry[i] = firstEntry[state];
+            firstEntry[state] = i;
+        }
+
+        buildFailureFunction();
+
+        // the trie structure is not needed for matching
+        firstChild = null;
+        nextSibling = null;
+        incomingChar = null;
+    }
+
+    /*
+     * Builds the failure function and the output links with a breadth-first traversal of the trie.
+     */
+    private void buildFailureFunction() {
+        failure = new int[stateCount];
+        outputLink = new int[stateCount];
+        failure[ROOT] = ROOT;
+        outputLink[ROOT] = NONE;
+
+        int[] queue = new int[stateCount];
+        int head = 0;
+        int tail = 0;
+        for (int child = firstChild[ROOT]; child != NONE; child = nextSibling[child]) {
+            failure[child] = ROOT;
+            outputLink[child] = NONE;
+            queue[tail++] = child;
+        }
+
+        while (head < tail) {
+            int state = queue[head++];
+            for (int child = firstChild[state]; child != NONE; child = nextSibling[child]) {
+                char c = incomingChar[child];
+                int fallback = failure[state];
+                while (fallback != ROOT && getTransition(fallback, c) == NONE) {
+                    fallback = failure[fallback];
+                }
+                int childFailure = getTransition(fallback, c);
+                if (childFailure == NONE) {
+                    childFailure = ROOT;
+                }
+                failure[child] = childFailure;
+                outputLink[child] = firstEntry[childFailure] != NONE ? childFailure : outputLink[childFailure];
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    /**
+     * Finds all the occurrences (including the overlapping ones) of all the entries in the text.
+     * The occurrences are reported in the order of their end offsets.
+     *
+     * @param text
+     * @param handler
+     */
+    public void match(String text, MatchHandler handler) {
+        int state = ROOT;
+        for (int pos = 0; pos < text.length(); pos++) {
+            char c = Character.toLowerCase(text.charAt(pos));
+            int next;
+            while ((next = getTransition(state, c)) == NONE && state != ROOT) {
+                state = failure[state];
+            }
+            state = next == NONE ? ROOT : next;
+
+            int outputState = firstEntry[state] != NONE ? state : outputLink[state];
+            while (outputState != NONE) {
+                for (int entry = firstEntry[outputState]; entry != NONE; entry = nextEntry[entry]) {
+                    handler.onMatch(entry, pos + 1 - entryLength[entry], pos + 1);
+                }
+                outputState = outputLink[outputState];
+            }
+        }
+    }
+
+    /**
+     * Returns the number of states in the automaton.
+     */
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    private int getTransition(int state, char c) {
+        long key = transitionKey(state, c);
+        int mask = transitionKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (transitionKeys[slot] != NONE) {
+            if (transitionKeys[slot] == key) {
+                return transitionValues[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NONE;
+    }
+
+    private void putTransition(int state, char c, int nextState) {
+        long key = transitionKey(state, c);
+        int mask = transitionKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (transitionKeys[slot] != NONE) {
+            slot = (slot + 1) & mask;
+        }
+        transitionKeys[slot] = key;
+        transitionValues[slot] = nextState;
+    }
+
+    private static long transitionKey(int state, char c) {
+        return ((long) state << 16) | c;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+}
@@ -1,28 +1,48 @@
 package edu.uci.ics.textdb.exp.dictionarymatcher;
 
 import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
 
 import edu.uci.ics.textdb.api.constants.ErrorMessages;
+import edu.uci.ics.textdb.api.constants.SchemaConstants;
 import edu.uci.ics.textdb.api.dataflow.IOperator;
 import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.exception.TextDBException;
 import edu.uci.ics.textdb.api.schema.Schema;
+import edu.uci.ics.textdb.api.span.Span;
 import edu.uci.ics.textdb.api.tuple.Tuple;
-import edu.uci.ics.textdb.exp.keywordmatcher.KeywordPredicate;
-import edu.uci.ics.textdb.exp.keywordmatcher.KeywordMatcher;
-
+import edu.uci.ics.textdb.api.utils.Utils;
+import edu.uci.ics.textdb.exp.keywordmatcher.KeywordMatchingType;
+import edu.uci.ics.textdb.exp.utils.DataflowUtils;
+import edu.uci.ics.textdb.storage.PayloadCache;
+
+/**
+ * DictionaryMatcher matches all the entries of a dictionary against the input tuples.
+ * 
+ * The dictionary is compiled once into a DictionaryMatchingEngine when the operator is opened,
+ *   and each input tuple is matched against all the entries in a single pass.
+ *   
+ * The results are the same as running a KeywordMatcher for each entry:
+ *   if an input tuple matches N entries, N result tuples are returned,
+ *   each of them contains the spans of one entry.
+ *
+ */
 public class DictionaryMatcher implements IOperator {
 
     private DictionaryPredicate predicate;
 
     private IOperator inputOperator;
-    private DictionaryTupleCacheOperator cacheOperator;
-    private KeywordPredicate keywordPredicate;
-    private KeywordMatcher keywordMatcher;
+    private DictionaryMatchingEngine matchingEngine;
 
-    private Schema outputSchema;
+    // the payload cache of the plan, null if the payload is generated for each tuple
+    private PayloadCache payloadCache;
 
-    String currentDictionaryEntry;
+    private Schema inputSchema;
+    private Schema outputSchema;
+    
+    // the result tuples of the current input tuple that are not returned yet
+    private LinkedList<Tuple> pendingResultTuples = new LinkedList<>();
 
     private int resultCursor;
     private int limit;
@@ -38,6 +58,14 @@ public class DictionaryMatcher implements IOperator {
         this.offset = 0;
     }
 
+    /*
+     * Constructs a DictionaryMatcher with a matching engine that is already built from the predicate.
+     */
+    DictionaryMatcher(DictionaryPredicate predicate, DictionaryMatchingEngine matchingEngine) {
+        this(predicate);
+        this.matchingEngine = matchingEngine;
+    }
+
     @Override
     public void open() throws DataFlowException {
         if (cursor != CLOSED) {
@@ -47,27 +75,28 @@ public class DictionaryMatcher implements IOperator {
             if (inputOperator == null) {
                 throw new DataFlowException(ErrorMessages.INPUT_OPERATOR_NOT_SPECIFIED);
             }
-
-            predicate.getDictionary().resetCursor();
-            currentDictionaryEntry = predicate.getDictionary().getNextEntry();
-            if (currentDictionaryEntry == null) {
+            if (predicate.getDictionary().getDictionaryEntries().isEmpty()) {
                 throw new DataFlowException("Dictionary is empty");
             }
-
-            keywordPredicate = new KeywordPredicate(currentDictionaryEntry,
-                    predicate.getAttributeNames(),
-                    predicate.getAnalyzerString(), predicate.getKeywordMatchingType());
-
-            keywordMatcher = new KeywordMatcher(keywordPredicate);
             
-            cacheOperator = new DictionaryTupleCacheOperator();
-            cacheOperator.setInputOperator(inputOperator);
-            
-            keywordMatcher.setInputOperator(cacheOperator);
+            if (matchingEngine == null) {
+                matchingEngine = new DictionaryMatchingEngine(predicate.getDictionary(), 
+                        predicate.getKeywordMatchingType(), predicate.getAnalyzerString());
+            }
 
-            cacheOperator.openAll();
-            keywordMatcher.open();
-            outputSchema = keywordMatcher.getOutputSchema();
+            inputOperator.open();
+            inputSchema = inputOperator.getOutputSchema();
+            
+            // substring matching doesn't need the payload,
+            // conjunction and phrase matching need to generate the payload if it's not in the input
+            outputSchema = inputSchema;
+            if (predicate.getKeywordMatchingType() != KeywordMatchingType.SUBSTRING_SCANBASED
+                    && !inputSchema.containsField(SchemaConstants.PAYLOAD)) {
+                outputSchema = Utils.addAttributeToSchema(outputSchema, SchemaConstants.PAYLOAD_ATTRIBUTE);
+            }
+            if (!inputSchema.containsField(SchemaConstants.SPAN_LIST)) {
+                outputSchema = Utils.addAttributeToSchema(outputSchema, SchemaConstants.SPAN_LIST_ATTRIBUTE);
+            }
 
         } catch (Exception e) {
             throw new DataFlowException(e.getMessage(), e);
@@ -84,187 +113,63 @@ public class DictionaryMatcher implements IOperator {
             return null;
         }
 
-        Tuple sourceTuple;
         while (true) {
-            // If there's result from current keywordMatcher, return it.
-            if ((sourceTuple = keywordMatcher.getNextTuple()) != null) {
-                resultCursor++;
-                if (resultCursor >= offset) {
-                    return sourceTuple;
+            // get the results of the next input tuple if all the results of the current one are returned
+            while (pendingResultTuples.isEmpty()) {
+                Tuple inputTuple = inputOperator.getNextTuple();
+                if (inputTuple == null) {
+                    return null;
                 }
-                continue;
+                pendingResultTuples.addAll(processOneInputTuple(inputTuple));
             }
-            // If all results from current keywordMatcher are consumed,
-            // advance to next dictionary entry, and
-            // return null if reach the end of dictionary.
-            if ((currentDictionaryEntry = predicate.getDictionary().getNextEntry()) == null) {
-                return null;
+            Tuple resultTuple = pendingResultTuples.poll();
+            resultCursor++;
+            if (resultCursor >= offset) {
+                return resultTuple;
             }
-
-            // Update the KeywordMatcher with the new dictionary entry.
-            keywordMatcher.close();
-            
-            keywordPredicate = new KeywordPredicate(currentDictionaryEntry,
-                    predicate.getAttributeNames(),
-                    predicate.getAnalyzerString(), predicate.getKeywordMatchingType());
-            keywordMatcher = new KeywordMatcher(keywordPredicate);
-            keywordMatcher.setInputOperator(cacheOperator);
-
-            keywordMatcher.open();
         }
     }
-
-    @Override
-    public void close() throws DataFlowException {
-        if (cursor == CLOSED) {
-            return;
-        }
-        try {
-            if (keywordMatcher != null) {
-                keywordMatcher.close();
-            }
-            if (cacheOperator != null) {
-                cacheOperator.closeAll();
-            }
-        } catch (Exception e) {
-            throw new DataFlowException(e.getMessage(), e);
-        }
-        cursor = CLOSED;
-    }
-    
     
     /**
-     * The purpose of this operator is to "cache" the tuples from input operator
-     *   in an in-memory list.
+     * Matches the dictionary against one input tuple,
+     *   returns one result tuple for each matching entry (in the order of the entries in the dictionary).
      * 
-     * The DictionaryMatcher uses a new KeywordMatcher for each entry in the dictionary,
-     *   each keyword matcher would have to get all the tuples from the input operators again and again.
-     * 
-     * This operator caches the tuples in the list, so that the tuples don't have to be produced 
-     *   from the input operator again and again for multiple keyword mathchers.
-     *   
-     * This operators relies on a few assumptions in the implementation of DictionaryMatcher:
-     *   - At any time, only ONE operator (KeywordMatcher) is connected to this cache operator.
-     *   - Multiple operators (KeywordMatchers) are connected to this operator sequentially.
-     *   
-     * @author Zuozhi Wang
-     *
+     * @param inputTuple
+     * @return
+     * @throws TextDBException
      */
-    private class DictionaryTupleCacheOperator implements IOperator {
-        
-        private IOperator inputOperator;
-        private Schema outputSchema;
-        
-        private ArrayList<Tuple> inputTupleList = new ArrayList<>();
-        
-        private boolean isOpen = false;
-        private boolean inputAllConsumed = false;
-        private int cachedTupleCursor = 0;
-        
-        /*
-         * openAll() is the actual "open" function for this cache operator.
-         * It will open this operator and its input operator.
-         * 
-         * It's the caller's responsibility to make sure openAll() is called before everything.
-         */
-        public void openAll() throws TextDBException {
-            if (isOpen) {
-                return;
-            }
-            if (inputOperator == null) {
-                throw new DataFlowException(ErrorMessages.INPUT_OPERATOR_NOT_SPECIFIED);
-            }
-            inputOperator.open();
-            outputSchema = inputOperator.getOutputSchema();
-            isOpen = true;
+    public List<Tuple> processOneInputTuple(Tuple inputTuple) throws TextDBException {
+        // PAYLOAD needs to be added before SPAN_LIST, as in the output schema
+        if (outputSchema.containsField(SchemaConstants.PAYLOAD) && !inputSchema.containsField(SchemaConstants.PAYLOAD)) {
+            inputTuple = DataflowUtils.getSpanTuple(inputTuple.getFields(),
+                    DataflowUtils.generatePayloadFromTuple(inputTuple, predicate.getAnalyzerString(), payloadCache), 
+                    Utils.addAttributeToSchema(inputSchema, SchemaConstants.PAYLOAD_ATTRIBUTE));
         }
-
-        /*
-         * When the child operator (KeywordMatcher) calls "open()", we don't want to open the input operator again,
-         * so open() is served as an indicator that a new operator (KeywordMatcher) is connected to this operator.
-         */
-        @Override
-        public void open() throws TextDBException {
-            if (! isOpen) {
-                throw new DataFlowException(ErrorMessages.OPERATOR_NOT_OPENED);
-            }
-            // reset the cursor
-            cachedTupleCursor = 0;
-        }
-
-        @Override
-        public Tuple getNextTuple() throws TextDBException {
-            if (! isOpen) {
-                throw new DataFlowException(ErrorMessages.OPERATOR_NOT_OPENED);
-            }
-            // if cursor's next value exceeds the cache's size
-            if (cachedTupleCursor + 1 >= inputTupleList.size()) {
-                // if the input operator has been fully consumed, return null
-                if (inputAllConsumed) {
-                    return null;
-                // else, get the next tuple from input operator, 
-                // add it to tuple list, and advance cursor
-                } else {
-                    Tuple tuple = inputOperator.getNextTuple();
-                    if (tuple == null) {
-                        inputAllConsumed = true;
-                    } else {
-                        inputTupleList.add(tuple);
-                        cachedTupleCursor++;
-                    }
-                    return tuple;
-                }
-            // if we can get the tuple from the cache, retrieve it and advance cursor
-            } else {
-                Tuple tuple = inputTupleList.get(cachedTupleCursor);
-                cachedTupleCursor++;
-                return tuple;
-            }
+        if (!inputSchema.containsField(SchemaConstants.SPAN_LIST)) {
+            inputTuple = DataflowUtils.getSpanTuple(inputTuple.getFields(), new ArrayList<Span>(), outputSchema);
         }
         
-        /*
-         * closeAll() is the actual "close" function for this cache operator.
-         * It will close this operator and its input operator, and clear the cache
-         * 
-         * It's the caller's responsibility to make sure closeAll() is called after everything.
-         */
-        public void closeAll() throws TextDBException {
-            if (! isOpen) {
-                return;
-            }
-            inputAllConsumed = true;
-            isOpen = false;
-            cachedTupleCursor = 0;
-            inputTupleList = new ArrayList<>();
-            inputOperator.close();
+        List<Tuple> resultTuples = new ArrayList<>();
+        for (List<Span> entrySpans : matchingEngine.computeMatchingSpans(
+                inputTuple, predicate.getAttributeNames()).values()) {
+            resultTuples.add(DictionaryMatchingEngine.appendSpans(inputTuple, entrySpans));
         }
+        return resultTuples;
+    }
 
-        /*
-         * When the child operator (KeywordMatcher) calls "close()", we don't want to close the input operator immediately,
-         * because there might be some tuples that are still not fetched from input operator.
-         * 
-         */
-        @Override
-        public void close() throws TextDBException {
-            if (! isOpen) {
-                throw new DataFlowException(ErrorMessages.OPERATOR_NOT_OPENED);
-            }
-            // reset the cursor
-            cachedTupleCursor = 0;
-        }
-        
-        @Override
-        public Schema getOutputSchema() {
-            return this.outputSchema;
+    @Override
+    public void close() throws DataFlowException {
+        if (cursor == CLOSED) {
+            return;
         }
-        
-        public void setInputOperator(IOperator inputOperator) {
-            this.inputOperator = inputOperator;
+        try {
+            inputOperator.close();
+        } catch (Exception e) {
+            throw new DataFlowException(e.getMessage(), e);
         }
-        
+        pendingResultTuples.clear();
+        cursor = CLOSED;
     }
-    
-    
 
     @Override
     public Schema getOutputSchema() {
@@ -299,4 +204,16 @@ public class DictionaryMatcher implements IOperator {
         return this.predicate;
     }
 
+    /**
+     * Sets the payload cache shared by the operators of the plan,
+     *   which is used to get the payload if the input tuples don't have it.
+     */
+    public void setPayloadCache(PayloadCache payloadCache) {
+        this.payloadCache = payloadCache;
+    }
+
+    public PayloadCache getPayloadCache() {
+        return payloadCache;
+    }
+
 }
@@ -1,27 +1,22 @@
-
 package edu.uci.ics.textdb.exp.dictionarymatcher;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-import edu.uci.ics.textdb.api.constants.SchemaConstants;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queries.TermsQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+
 import edu.uci.ics.textdb.api.dataflow.ISourceOperator;
 import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.exception.TextDBException;
-import edu.uci.ics.textdb.api.field.ListField;
 import edu.uci.ics.textdb.api.schema.AttributeType;
 import edu.uci.ics.textdb.api.schema.Schema;
-import edu.uci.ics.textdb.api.span.Span;
 import edu.uci.ics.textdb.api.tuple.Tuple;
-import edu.uci.ics.textdb.api.utils.Utils;
-import edu.uci.ics.textdb.exp.keywordmatcher.KeywordSourcePredicate;
-import edu.uci.ics.textdb.exp.source.scan.ScanBasedSourceOperator;
-import edu.uci.ics.textdb.exp.source.scan.ScanSourcePredicate;
-import edu.uci.ics.textdb.exp.keywordmatcher.KeywordMatcherSourceOperator;
 import edu.uci.ics.textdb.exp.keywordmatcher.KeywordMatchingType;
-import edu.uci.ics.textdb.exp.utils.DataflowUtils;
+import edu.uci.ics.textdb.storage.DataReader;
+import edu.uci.ics.textdb.storage.RelationManager;
 
 /**
  * @author Sudeep (inkudo)
@@ -30,16 +25,11 @@ import edu.uci.ics.textdb.exp.utils.DataflowUtils;
  */
 public class DictionaryMatcherSourceOperator implements ISourceOperator {
 
-    private ISourceOperator indexSource;
-    
-    private KeywordMatcherSourceOperator keywordSource;
+    private DictionaryMatcher dictionaryMatcher;
 
     private Schema inputSchema;
     private Schema outputSchema;
 
-    private Tuple sourceTuple;
-    private String currentDictionaryEntry;
-
     private final DictionarySourcePredicate predicate;
 
     private int resultCursor;
@@ -66,46 +56,76 @@ public class DictionaryMatcherSourceOperator implements ISourceOperator {
     @Override
     public void open() throws DataFlowException {
         try {
-            currentDictionaryEntry = predicate.getDictionary().getNextEntry();
-            if (currentDictionaryEntry == null) {
+            if (predicate.getDictionary().getDictionaryEntries().isEmpty()) {
                 throw new DataFlowException("Dictionary is empty");
             }
 
+            DictionaryMatchingEngine matchingEngine = new DictionaryMatchingEngine(predicate.getDictionary(),
+                    predicate.getKeywordMatchingType(), predicate.getAnalyzerString());
+            
+            // Substring matching scans the whole table.
+            // For other keyword matching types (conjunction and phrase), the whole dictionary is 
+            // turned into one query, which returns each candidate document only once.
+            Query luceneQuery;
             if (predicate.getKeywordMatchingType() == KeywordMatchingType.SUBSTRING_SCANBASED) {
-                // For Substring matching, create a scan source operator.
-                indexSource = new ScanBasedSourceOperator(new ScanSourcePredicate(predicate.getTableName()));
-                indexSource.open();
-
-                // Substring matching's output schema needs to contains span
-                // list.
-                inputSchema = indexSource.getOutputSchema();
-                outputSchema = inputSchema;
-                if (!inputSchema.containsField(SchemaConstants.SPAN_LIST)) {
-                    outputSchema = Utils.addAttributeToSchema(outputSchema, SchemaConstants.SPAN_LIST_ATTRIBUTE);
-                }
-
+                luceneQuery = new MatchAllDocsQuery();
             } else {
-                // For other keyword matching types (conjunction and phrase),
-                // create keyword matcher based on index.
-
-                keywordSource = new KeywordMatcherSourceOperator(new KeywordSourcePredicate(
-                        currentDictionaryEntry,
-                        predicate.getAttributeNames(),
-                        predicate.getAnalyzerString(),
-                        predicate.getKeywordMatchingType(),
-                        predicate.getTableName()));
-                keywordSource.open();
-
-                // Other keyword matching types uses a KeywordMatcher, so the
-                // output schema is the same as keywordMatcher's schema
-                inputSchema = keywordSource.getOutputSchema();
-                outputSchema = keywordSource.getOutputSchema();
+                luceneQuery = buildDictionaryQuery(matchingEngine);
             }
+            
+            DataReader dataReader = RelationManager.getRelationManager().getTableDataReader(
+                    predicate.getTableName(), luceneQuery);
+            dataReader.setPayloadAdded(
+                    predicate.getKeywordMatchingType() != KeywordMatchingType.SUBSTRING_SCANBASED);
+            
+            // The candidate documents are verified against all the entries in one pass.
+            dictionaryMatcher = new DictionaryMatcher(predicate, matchingEngine);
+            dictionaryMatcher.setInputOperator(dataReader);
+            dictionaryMatcher.open();
+
+            inputSchema = dictionaryMatcher.getOutputSchema();
+            outputSchema = dictionaryMatcher.getOutputSchema();
 
         } catch (Exception e) {
             throw new DataFlowException(e.getMessage(), e);
         }
     }
+    
+    /*
+     * Builds one query that matches all the documents which could match any dictionary entry:
+     *   a STRING attribute has to be equal to an entry,
+     *   a TEXT attribute has to contain the first token of an entry.
+     *   
+     * TermsQuery is used instead of a BooleanQuery, so that the number of terms 
+     *   is not limited by the maximum clause count of BooleanQuery.
+     */
+    private Query buildDictionaryQuery(DictionaryMatchingEngine matchingEngine) throws TextDBException {
+        Schema tableSchema = RelationManager.getRelationManager().getTableSchema(predicate.getTableName());
+        List<Term> terms = new ArrayList<>();
+        
+        for (String attributeName : predicate.getAttributeNames()) {
+            AttributeType attributeType = tableSchema.getAttribute(attributeName).getAttributeType();
+
+            // types other than TEXT and STRING: throw Exception for now
+            if (attributeType != AttributeType.STRING && attributeType != AttributeType.TEXT) {
+                throw new DataFlowException(
+                        "DictionaryPredicate: Fields other than STRING and TEXT are not supported yet");
+            }
+
+            if (attributeType == AttributeType.STRING) {
+                for (int i = 0; i < matchingEngine.getEntryCount(); i++) {
+                    terms.add(new Term(attributeName, matchingEngine.getEntry(i)));
+                }
+            }
+            if (attributeType == AttributeType.TEXT) {
+                for (String token : matchingEngine.getEntryAnchorTokens()) {
+                    terms.add(new Term(attributeName, token));
+                }
+            }
+        }
+        
+        return new TermsQuery(terms);
+    }
 
     /**
      * @about Gets the next matched tuple. <br>
@@ -115,14 +135,14 @@ public class DictionaryMatcherSourceOperator implements ISourceOperator {
      *        dictionary predicate. <br>
      * 
      *        DictionaryOperatorType.SCAN: <br>
-     *        Scan the tuples using ScanSourceOperator. <br>
-     *        For each tuple, loop through the dictionary and find results. <br>
-     *        We assume the dictionary is smaller than the data at the source
-     *        operator, we treat the data source as the outer relation to reduce
-     *        the number of disk IOs. <br>
+     *        Scan all the tuples in the table. <br>
      * 
      *        DictionaryOperatorType.KEYWORD_BASIC, KEYWORD_PHRASE: <br>
-     *        Use KeywordMatcher to find results. <br>
+     *        Only read the tuples containing some token of the entries, 
+     *        using one query for the whole dictionary. <br>
+     * 
+     *        For each tuple, find the occurrences of all the entries in one pass, 
+     *        using a DictionaryMatcher. <br>
      * 
      *        KEYWORD_BASIC corresponds to KeywordOperatorType.BASIC, which
      *        performs keyword search on the document. The input query is
@@ -139,64 +159,14 @@ public class DictionaryMatcherSourceOperator implements ISourceOperator {
         if (resultCursor >= limit + offset - 1) {
             return null;
         }
-        if (predicate.getKeywordMatchingType() == KeywordMatchingType.PHRASE_INDEXBASED
-                || predicate.getKeywordMatchingType() == KeywordMatchingType.CONJUNCTION_INDEXBASED) {
-            // For each dictionary entry,
-            // get all result from KeywordMatcher.
-
-            while (true) {
-                // If there's result from current keywordMatcher, return it.
-                if ((sourceTuple = keywordSource.getNextTuple()) != null) {
-                    resultCursor++;
-                    if (resultCursor >= offset) {
-                        return sourceTuple;
-                    }
-                    continue;
-                }
-                // If all results from current keywordMatcher are consumed,
-                // advance to next dictionary entry, and
-                // return null if reach the end of dictionary.
-                if ((currentDictionaryEntry = predicate.getDictionary().getNextEntry()) == null) {
-                    return null;
-                }
-
-                // Construct a new KeywordMatcher with the new dictionary entry.
-                KeywordMatchingType keywordMatchingType;
-                if (predicate.getKeywordMatchingType() == KeywordMatchingType.PHRASE_INDEXBASED) {
-                    keywordMatchingType = KeywordMatchingType.PHRASE_INDEXBASED;
-                } else {
-                    keywordMatchingType = KeywordMatchingType.CONJUNCTION_INDEXBASED;
-                }
-
-                keywordSource.close();
-
-                KeywordSourcePredicate keywordSourcePredicate = new KeywordSourcePredicate(currentDictionaryEntry,
-                        predicate.getAttributeNames(),
-                        predicate.getAnalyzerString(), keywordMatchingType,
-                        predicate.getTableName());
-
-                keywordSource = new KeywordMatcherSourceOperator(keywordSourcePredicate);
-                keywordSource.open();
+        Tuple resultTuple;
+        while ((resultTuple = dictionaryMatcher.getNextTuple()) != null) {
+            resultCursor++;
+            if (resultCursor >= offset) {
+                break;
             }
         }
-        // Substring matching (based on scan)
-        else {
-            Tuple sourceTuple;
-            Tuple resultTuple = null;
-            while ((sourceTuple = indexSource.getNextTuple()) != null) {
-                if (!inputSchema.containsField(SchemaConstants.SPAN_LIST)) {
-                    sourceTuple = DataflowUtils.getSpanTuple(sourceTuple.getFields(), new ArrayList<Span>(), outputSchema);
-                }
-                resultTuple = computeMatchingResult(currentDictionaryEntry, sourceTuple);
-                if (resultTuple != null) {
-                    resultCursor++;
-                }
-                if (resultTuple != null && resultCursor >= offset) {
-                    break;
-                }
-            }
-            return resultTuple;
-        }
+        return resultTuple;
     }
 
     public void setLimit(int limit) {
@@ -215,78 +185,14 @@ public class DictionaryMatcherSourceOperator implements ISourceOperator {
         return this.offset;
     }
 
-    /*
-     * Advance the cursor of dictionary. if reach the end of the dictionary,
-     * advance the cursor of tuples and reset dictionary
-     */
-    private void advanceDictionaryCursor() throws TextDBException {
-        if ((currentDictionaryEntry = predicate.getDictionary().getNextEntry()) != null) {
-            return;
-        }
-        predicate.getDictionary().resetCursor();
-        currentDictionaryEntry = predicate.getDictionary().getNextEntry();
-    }
-
-    /*
-     * Match the key against the Tuple. if there's no match, returns the
-     * original Tuple object, if there's a match, return a new Tuple
-     * with span list added
-     */
-    private Tuple computeMatchingResult(String key, Tuple sourceTuple) throws TextDBException {
-
-        List<String> attributeNames = predicate.getAttributeNames();
-        List<Span> matchingResults = new ArrayList<>();
-
-        for (String attributeName : attributeNames) {
-            String fieldValue = sourceTuple.getField(attributeName).getValue().toString();
-            AttributeType attributeType = inputSchema.getAttribute(attributeName).getAttributeType();
-
-            // if attribute type is not TEXT, then key needs to match the
-            // fieldValue exactly
-            if (attributeType != AttributeType.TEXT) {
-                if (fieldValue.equals(key)) {
-                    matchingResults.add(new Span(attributeName, 0, fieldValue.length(), key, fieldValue));
-                }
-            }
-            // if attribute type is TEXT, then key can match a substring of
-            // fieldValue
-            else {
-                String regex = key.toLowerCase();
-                Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
-                Matcher matcher = pattern.matcher(fieldValue.toLowerCase());
-                while (matcher.find()) {
-                    int start = matcher.start();
-                    int end = matcher.end();
-
-                    matchingResults.add(new Span(attributeName, start, end, key, fieldValue.substring(start, end)));
-                }
-            }
-        }
-
-        advanceDictionaryCursor();
-
-        if (matchingResults.size() == 0) {
-            return null;
-        }
-
-        ListField<Span> spanListField = sourceTuple.getField(SchemaConstants.SPAN_LIST);
-        List<Span> spanList = spanListField.getValue();
-        spanList.addAll(matchingResults);
-
-        return sourceTuple;
-    }
-
     /**
      * @about Closes the operator
      */
     @Override
     public void close() throws DataFlowException {
         try {
-            if (keywordSource != null) {
-                keywordSource.close();
-            }
-            if (indexSource != null) {
-                indexSource.close();
+            if (dictionaryMatcher != null) {
+                dictionaryMatcher.close();
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -0,0 +1,361 @@
+package edu.uci.ics.textdb.exp.dictionarymatcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.lucene.analysis.Analyzer;
+
+import edu.uci.ics.textdb.api.constants.SchemaConstants;
+import edu.uci.ics.textdb.api.exception.DataFlowException;
+import edu.uci.ics.textdb.api.field.IField;
+import edu.uci.ics.textdb.api.field.ListField;
+import edu.uci.ics.textdb.api.schema.AttributeType;
+import edu.uci.ics.textdb.api.schema.Schema;
+import edu.uci.ics.textdb.api.span.Span;
+import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.exp.keywordmatcher.KeywordMatchingType;
+import edu.uci.ics.textdb.exp.utils.DataflowUtils;
+import edu.uci.ics.textdb.storage.utils.AnalyzerRegistry;
+
+/**
+ * DictionaryMatchingEngine matches all the entries of a dictionary against a tuple at once.
+ * It's built once from the dictionary, and gives the same results as running
+ *   a KeywordMatcher for each entry of the dictionary.
+ *
+ * For STRING fields, an entry needs to match the field value exactly (for all matching types).
+ *
+ * For TEXT fields:
+ *   SUBSTRING_SCANBASED: the entries are compiled into an Aho-Corasick automaton (DictionaryAutomaton),
+ *     which finds the occurrences of all the entries in one pass over the field value.
+ *   CONJUNCTION_INDEXBASED: each entry is tokenized, and an inverted index from a token to the entries is built.
+ *     The entries that have all their tokens in the field's payload match the field.
+ *   PHRASE_INDEXBASED: each entry is tokenized (with token positions), and an index from the first token
+ *     to the entries is built. For each token in the field's payload, only the entries starting with
+ *     this token are verified against the following tokens in the payload.
+ *
+ * CONJUNCTION_INDEXBASED and PHRASE_INDEXBASED need the payload field in the tuple.
+ *
+ */
+public class DictionaryMatchingEngine {
+
+    private final List<String> entries;
+    private final KeywordMatchingType matchingType;
+
+    // entry value -> entry index, for the exact matching on STRING fields
+    private final Map<String, Integer> entryIndexMap = new HashMap<>();
+
+    // SUBSTRING_SCANBASED
+    private DictionaryAutomaton automaton;
+
+    // CONJUNCTION_INDEXBASED and PHRASE_INDEXBASED
+    // the analyzed tokens of each entry, in the order of their positions
+    private List<String[]> entryTokens;
+    // positions of the tokens of each entry, relative to the first token
+    private List<int[]> entryTokenPositions;
+    // the distinct tokens of each entry
+    private List<Set<String>> entryTokenSets;
+    // CONJUNCTION_INDEXBASED: token -> indexes of the entries containing the token
+    // PHRASE_INDEXBASED: token -> indexes of the entries starting with the token
+    private Map<String, List<Integer>> tokenEntryIndex;
+
+    /**
+     * Builds the matching engine for the entries of a dictionary.
+     *
+     * @param dictionary
+     * @param matchingType
+     * @param luceneAnalyzerString, the analyzer used to tokenize the entries for conjunction and phrase matching
+     * @throws DataFlowException
+     */
+    public DictionaryMatchingEngine(Dictionary dictionary, KeywordMatchingType matchingType,
+            String luceneAnalyzerString) throws DataFlowException {
+        this.entries = new ArrayList<>(dictionary.getDictionaryEntries());
+        this.matchingType = matchingType;
+
+        for (int i = 0; i < entries.size(); i++) {
+            entryIndexMap.put(entries.get(i), i);
+        }
+
+        if (matchingType == KeywordMatchingType.SUBSTRING_SCANBASED) {
+            this.automaton = new DictionaryAutomaton(entries);
+        } else {
+            buildTokenIndex(AnalyzerRegistry.getAnalyzer(luceneAnalyzerString));
+        }
+    }
+
+    private void buildTokenIndex(Analyzer luceneAnalyzer) {
+        entryTokens = new ArrayList<>();
+        entryTokenPositions = new ArrayList<>();
+        entryTokenSets = new ArrayList<>();
+        tokenEntryIndex = new HashMap<>();
+
+        for (int i = 0; i < entries.size(); i++) {
+            // the payload of an entry contains its tokens and their positions
+            List<Span> entryPayload = DataflowUtils.generatePayload("", entries.get(i), luceneAnalyzer);
+            Collections.sort(entryPayload, (span1, span2) -> span1.getTokenOffset() - span2.getTokenOffset());
+
+            String[] tokens = new String[entryPayload.size()];
+            int[] positions = new int[entryPayload.size()];
+            for (int k = 0; k < entryPayload.size(); k++) {
+                tokens[k] = entryPayload.get(k).getKey();
+                positions[k] = entryPayload.get(k).getTokenOffset() - entryPayload.get(0).getTokenOffset();
+            }
+            Set<String> tokenSet = new LinkedHashSet<>();
+            Collections.addAll(tokenSet, tokens);
+
+            entryTokens.add(tokens);
+            entryTokenPositions.add(positions);
+            entryTokenSets.add(tokenSet);
+
+            // an entry without any token (for example, it only has stop words) can't match any TEXT field
+            if (tokens.length == 0) {
+                continue;
+            }
+            if (matchingType == KeywordMatchingType.CONJUNCTION_INDEXBASED) {
+                for (String token : tokenSet) {
+                    tokenEntryIndex.computeIfAbsent(token, key -> new ArrayList<>()).add(i);
+                }
+            } else {
+                tokenEntryIndex.computeIfAbsent(tokens[0], key -> new ArrayList<>()).add(i);
+            }
+        }
+    }
+
+    /**
+     * Gets the entry with the given index.
+     */
+    public String getEntry(int entryIndex) {
+        return entries.get(entryIndex);
+    }
+
+    /**
+     * Gets the number of entries in the dictionary.
+     */
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * Gets one token of each entry that must appear in any field matching the entry
+     *   (the first token of the entry), the entries without any token are skipped.
+     * A document containing none of these tokens can't match any entry in its TEXT fields.
+     * It's only available for CONJUNCTION_INDEXBASED and PHRASE_INDEXBASED.
+     */
+    public Set<String> getEntryAnchorTokens() {
+        Set<String> anchorTokens = new HashSet<>();
+        for (String[] tokens : entryTokens) {
+            if (tokens.length > 0) {
+                anchorTokens.add(tokens[0]);
+            }
+        }
+        return anchorTokens;
+    }
+
+    /**
+     * Matches all the entries against the attributes of a tuple.
+     *
+     * @param tuple
+     * @param attributeNames, the attributes to match
+     * @return a map from the index of a matching entry to the spans of this entry, ordered by the entry index
+     * @throws DataFlowException
+     */
+    public TreeMap<Integer, List<Span>> computeMatchingSpans(Tuple tuple, List<String> attributeNames)
+            throws DataFlowException {
+        TreeMap<Integer, List<Span>> matchingSpans = new TreeMap<>();
+        Schema schema = tuple.getSchema();
+
+        List<Span> payload = null;
+        if (matchingType != KeywordMatchingType.SUBSTRING_SCANBASED) {
+            ListField<Span> payloadField = tuple.getField(SchemaConstants.PAYLOAD);
+            payload = payloadField.getValue();
+        }
+
+        for (String attributeName : attributeNames) {
+            AttributeType attributeType = schema.getAttribute(attributeName).getAttributeType();
+            String fieldValue = tuple.getField(attributeName).getValue().toString();
+
+            // types other than TEXT and STRING: throw Exception for now
+            if (attributeType != AttributeType.STRING && attributeType != AttributeType.TEXT) {
+                throw new DataFlowException("DictionaryMatcher: Fields other than STRING and TEXT are not supported yet");
+            }
+
+            // for STRING type, the entry should match the fieldValue completely
+            if (attributeType == AttributeType.STRING) {
+                Integer entryIndex = entryIndexMap.get(fieldValue);
+                if (entryIndex != null) {
+                    addSpan(matchingSpans, entryIndex,
+                            new Span(attributeName, 0, fieldValue.length(), entries.get(entryIndex), fieldValue));
+                }
+                continue;
+            }
+
+            if (matchingType == KeywordMatchingType.SUBSTRING_SCANBASED) {
+                computeSubstringMatchingSpans(attributeName, fieldValue, matchingSpans);
+            } else {
+                List<Span> fieldPayload = new ArrayList<>();
+                for (Span span : payload) {
+                    if (span.getAttributeName().equals(attributeName)) {
+                        fieldPayload.add(span);
+                    }
+                }
+                if (matchingType == KeywordMatchingType.CONJUNCTION_INDEXBASED) {
+                    computeConjunctionMatchingSpans(fieldPayload, matchingSpans);
+                } else {
+                    computePhraseMatchingSpans(attributeName, fieldValue, fieldPayload, matchingSpans);
+                }
+            }
+        }
+
+        return matchingSpans;
+    }
+
+    /*
+     * Finds the occurrences of all the entries in the field value.
+     * The occurrences of the same entry don't overlap, an occurrence is skipped
+     *   if it overlaps with the previous occurrence of the same entry.
+     */
+    private void computeSubstringMatchingSpans(String attributeName, String fieldValue,
+            TreeMap<Integer, List<Span>> matchingSpans) {
+        // entry index -> end offset of the previous occurrence of this entry
+        Map<Integer, Integer> previousEnds = new HashMap<>();
+        automaton.match(fieldValue, (entryIndex, start, end) -> {
+            Integer previousEnd = previousEnds.get(entryIndex);
+            if (previousEnd != null && start < previousEnd) {
+                return;
+            }
+            previousEnds.put(entryIndex, end);
+            addSpan(matchingSpans, entryIndex,
+                    new Span(attributeName, start, end, entries.get(entryIndex), fieldValue.substring(start, end)));
+        });
+    }
+
+    /*
+     * An entry matches if all of its tokens are in the field,
+     *   the spans of the entry are all the spans of the field with its tokens.
+     */
+    private void computeConjunctionMatchingSpans(List<Span> fieldPayload, TreeMap<Integer, List<Span>> matchingSpans) {
+        Set<String> fieldTokens = new HashSet<>();
+        for (Span span : fieldPayload) {
+            fieldTokens.add(span.getKey());
+        }
+
+        // count the number of distinct tokens of each entry that are in the field
+        Map<Integer, Integer> tokenCounts = new HashMap<>();
+        for (String token : fieldTokens) {
+            List<Integer> entryIndexes = tokenEntryIndex.get(token);
+            if (entryIndexes == null) {
+                continue;
+            }
+            for (Integer entryIndex : entryIndexes) {
+                tokenCounts.merge(entryIndex, 1, Integer::sum);
+            }
+        }
+
+        for (Map.Entry<Integer, Integer> tokenCount : tokenCounts.entrySet()) {
+            int entryIndex = tokenCount.getKey();
+            Set<String> entryTokenSet = entryTokenSets.get(entryIndex);
+            if (tokenCount.getValue() != entryTokenSet.size()) {
+                continue;
+            }
+            for (Span span : fieldPayload) {
+                if (entryTokenSet.contains(span.getKey())) {
+                    addSpan(matchingSpans, entryIndex, span);
+                }
+            }
+        }
+    }
+
+    /*
+     * An entry matches if its tokens are in the field with the same relative positions.
+     * The occurrences of the same entry don't overlap.
+     */
+    private void computePhraseMatchingSpans(String attributeName, String fieldValue, List<Span> fieldPayload,
+            TreeMap<Integer, List<Span>> matchingSpans) {
+        // token position -> spans at this position
+        Map<Integer, List<Span>> positionMap = new HashMap<>();
+        for (Span span : fieldPayload) {
+            positionMap.computeIfAbsent(span.getTokenOffset(), key -> new ArrayList<>()).add(span);
+        }
+
+        List<Span> sortedFieldPayload = new ArrayList<>(fieldPayload);
+        Collections.sort(sortedFieldPayload, (span1, span2) -> span1.getTokenOffset() - span2.getTokenOffset());
+
+        // entry index -> the first position where the next occurrence of the entry can start
+        Map<Integer, Integer> nextStartPositions = new HashMap<>();
+
+        for (Span firstSpan : sortedFieldPayload) {
+            List<Integer> entryIndexes = tokenEntryIndex.get(firstSpan.getKey());
+            if (entryIndexes == null) {
+                continue;
+            }
+            int firstPosition = firstSpan.getTokenOffset();
+            for (Integer entryIndex : entryIndexes) {
+                Integer nextStartPosition = nextStartPositions.get(entryIndex);
+                if (nextStartPosition != null && firstPosition < nextStartPosition) {
+                    continue;
+                }
+                String[] tokens = entryTokens.get(entryIndex);
+                int[] positions = entryTokenPositions.get(entryIndex);
+
+                Span lastSpan = firstSpan;
+                for (int k = 1; k < tokens.length && lastSpan != null; k++) {
+                    lastSpan = findSpan(positionMap, firstPosition + positions[k], tokens[k]);
+                }
+                if (lastSpan == null) {
+                    continue;
+                }
+
+                int start = firstSpan.getStart();
+                int end = lastSpan.getEnd();
+                addSpan(matchingSpans, entryIndex,
+                        new Span(attributeName, start, end, entries.get(entryIndex), fieldValue.substring(start, end)));
+                nextStartPositions.put(entryIndex, firstPosition + positions[positions.length - 1] + 1);
+            }
+        }
+    }
+
+    private static Span findSpan(Map<Integer, List<Span>> positionMap, int position, String token) {
+        List<Span> spans = positionMap.get(position);
+        if (spans == null) {
+            return null;
+        }
+        for (Span span : spans) {
+            if (span.getKey().equals(token)) {
+                return span;
+            }
+        }
+        return null;
+    }
+
+    private static void addSpan(TreeMap<Integer, List<Span>> matchingSpans, int entryIndex, Span span) {
+        matchingSpans.computeIfAbsent(entryIndex, key -> new ArrayList<>()).add(span);
+    }
+
+    /**
+     * Creates a copy of the tuple with the spans appended to its span list.
+     * The span list of the original tuple is not changed.
+     *
+     * @param tuple, a tuple with the span list field
+     * @param spans
+     * @return
+     */
+    public static Tuple appendSpans(Tuple tuple, List<Span> spans) {
+        Schema schema = tuple.getSchema();
+        List<IField> fields = tuple.getFields();
+        int spanListIndex = schema.getIndex(SchemaConstants.SPAN_LIST);
+
+        ListField<Span> spanListField = tuple.getField(SchemaConstants.SPAN_LIST);
+        List<Span> spanList = new ArrayList<>(spanListField.getValue());
+        spanList.addAll(spans);
+        fields.set(spanListIndex, new ListField<Span>(spanList));
+
+        return new Tuple(schema, fields.stream().toArray(IField[]::new));
+    }
+
+}
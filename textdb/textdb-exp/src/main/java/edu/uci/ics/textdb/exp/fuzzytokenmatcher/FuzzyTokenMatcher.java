@@ -16,6 +16,8 @@ import edu.uci.ics.textdb.api.tuple.Tuple;
 import edu.uci.ics.textdb.api.utils.Utils;
 import edu.uci.ics.textdb.exp.common.AbstractSingleInputOperator;
 import edu.uci.ics.textdb.exp.utils.DataflowUtils;
+import edu.uci.ics.textdb.storage.CompactPayload;
+import edu.uci.ics.textdb.storage.PayloadCache;
 
 /**
  *  @author Zuozhi Wang (zuozhiw)
@@ -29,6 +31,9 @@ public class FuzzyTokenMatcher extends AbstractSingleInputOperator {
     private final FuzzyTokenPredicate predicate;
     
     private Schema inputSchema;
+
+    // the payload cache of the plan, null if the payload is generated for each tuple
+    private PayloadCache payloadCache;
     
     public FuzzyTokenMatcher(FuzzyTokenPredicate predicate) {
         this.predicate = predicate;
@@ -57,7 +62,8 @@ public class FuzzyTokenMatcher extends AbstractSingleInputOperator {
             // Therefore, PAYLOAD needs to be checked and added first
             if (!inputSchema.containsField(SchemaConstants.PAYLOAD)) {
                 inputTuple = DataflowUtils.getSpanTuple(inputTuple.getFields(),
-                        DataflowUtils.generatePayloadFromTuple(inputTuple, predicate.getLuceneAnalyzerStr()), outputSchema);
+                        DataflowUtils.generatePayloadFromTuple(inputTuple, predicate.getLuceneAnalyzerStr(), payloadCache),
+                        outputSchema);
             }
             if (!inputSchema.containsField(SchemaConstants.SPAN_LIST)) {
                 inputTuple = DataflowUtils.getSpanTuple(inputTuple.getFields(), new ArrayList<Span>(), outputSchema);
@@ -117,6 +123,16 @@ public class FuzzyTokenMatcher extends AbstractSingleInputOperator {
     
     private List<Span> filterRelevantSpans(List<Span> spanList) {
         List<Span> relevantSpans = new ArrayList<>();
+        // a precomputed payload can check the terms without creating the spans of the irrelevant tokens
+        if (spanList instanceof CompactPayload) {
+            CompactPayload payload = (CompactPayload) spanList;
+            for (int i = 0; i < payload.size(); i++) {
+                if (predicate.getQueryTokens().contains(payload.getKey(i))) {
+                    relevantSpans.add(payload.get(i));
+                }
+            }
+            return relevantSpans;
+        }
         Iterator<Span> iterator = spanList.iterator();
         while (iterator.hasNext()) {
             Span span = iterator.next();
@@ -135,4 +151,16 @@ public class FuzzyTokenMatcher extends AbstractSingleInputOperator {
         return this.predicate;
     }
 
+    /**
+     * Sets the payload cache shared by the operators of the plan,
+     *   which is used to get the payload if the input tuples don't have it.
+     */
+    public void setPayloadCache(PayloadCache payloadCache) {
+        this.payloadCache = payloadCache;
+    }
+
+    public PayloadCache getPayloadCache() {
+        return payloadCache;
+    }
+
 }
@@ -10,11 +10,12 @@ import edu.uci.ics.textdb.api.dataflow.ISourceOperator;
 import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.exception.StorageException;
 import edu.uci.ics.textdb.api.exception.TextDBException;
+import edu.uci.ics.textdb.api.field.IDField;
 import edu.uci.ics.textdb.api.tuple.Tuple;
 import edu.uci.ics.textdb.exp.common.AbstractSingleInputOperator;
 import edu.uci.ics.textdb.storage.DataReader;
 import edu.uci.ics.textdb.storage.RelationManager;
-import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
+import edu.uci.ics.textdb.storage.utils.AnalyzerRegistry;
 
 public class FuzzyTokenMatcherSourceOperator extends AbstractSingleInputOperator implements ISourceOperator {
     
@@ -58,6 +59,28 @@ public class FuzzyTokenMatcherSourceOperator extends AbstractSingleInputOperator
     @Override
     protected void cleanUp() throws TextDBException {        
     }
+
+    /**
+     * Reads only one partition of the table, see {@link DataReader#setPartition(int, int)}.
+     */
+    public void setPartition(int partitionIndex, int partitionCount) throws DataFlowException {
+        try {
+            this.dataReader.setPartition(partitionIndex, partitionCount);
+        } catch (StorageException e) {
+            throw new DataFlowException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Starts reading after a tuple of a previous read, see {@link DataReader#setSearchAfter(IDField)}.
+     */
+    public void setSearchAfter(IDField idField) throws DataFlowException {
+        try {
+            this.dataReader.setSearchAfter(idField);
+        } catch (StorageException e) {
+            throw new DataFlowException(e.getMessage(), e);
+        }
+    }
     
     public static Query createLuceneQueryObject(FuzzyTokenPredicate predicate) throws DataFlowException {
         try {
@@ -72,7 +95,7 @@ public class FuzzyTokenMatcherSourceOperator extends AbstractSingleInputOperator
             builder.setMinimumNumberShouldMatch(predicate.getThreshold());
             MultiFieldQueryParser qp = new MultiFieldQueryParser(
                     predicate.getAttributeNames().stream().toArray(String[]::new),
-                    LuceneAnalyzerConstants.getLuceneAnalyzer(predicate.getLuceneAnalyzerStr()));
+                    AnalyzerRegistry.getAnalyzer(predicate.getLuceneAnalyzerStr()));
             for (String s : predicate.getQueryTokens()) {
                 builder.add(qp.parse(s), Occur.SHOULD);
             }
@@ -0,0 +1,25 @@
+package edu.uci.ics.textdb.exp.join;
+
+import java.util.List;
+
+import edu.uci.ics.textdb.api.tuple.Tuple;
+
+/**
+ * IJoinCandidateIndex is an index on the inner tuples of a Join,
+ *   which finds the inner tuples that could be joined with an outer tuple,
+ *   so that the JoinPredicate doesn't need to be checked on every pair of inner and outer tuples.
+ * 
+ * The candidates must include all the inner tuples that the JoinPredicate could join with the outer tuple
+ *   (unless the predicate is configured to use an approximate index).
+ */
+public interface IJoinCandidateIndex {
+    
+    void addInnerTuple(Tuple innerTuple);
+    
+    /**
+     * Gets the inner tuples that could be joined with the outer tuple,
+     *   in the order they were added to the index.
+     */
+    List<Tuple> getCandidateInnerTuples(Tuple outerTuple);
+
+}
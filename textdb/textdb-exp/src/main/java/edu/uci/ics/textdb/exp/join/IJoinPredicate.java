@@ -1,5 +1,7 @@
 package edu.uci.ics.textdb.exp.join;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import edu.uci.ics.textdb.api.dataflow.IPredicate;
 import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.schema.Schema;
@@ -21,4 +23,29 @@ public interface IJoinPredicate extends IPredicate {
 	String getInnerAttributeName();
 	
 	String getOuterAttributeName();
+	
+	/**
+	 * Gets the name of the attribute whose values must be equal in the inner tuple and the outer tuple
+	 *   for joinTuples() to return a result, or null if the predicate doesn't have such an attribute.
+	 * 
+	 * If it's not null, the Join operator uses a hash join on this attribute 
+	 *   instead of calling joinTuples() on every pair of inner and outer tuples.
+	 * By default the predicate doesn't have an equi-join attribute.
+	 */
+	@JsonIgnore
+	default String getEquiJoinAttributeName() {
+		return null;
+	}
+	
+	/**
+	 * Creates an index on the inner tuples that finds the candidate inner tuples for an outer tuple,
+	 *   or returns null if the predicate doesn't support it.
+	 * 
+	 * If the predicate doesn't have an equi-join attribute but has a candidate index,
+	 *   the Join operator only calls joinTuples() on the candidates.
+	 * By default the predicate doesn't have a candidate index.
+	 */
+	default IJoinCandidateIndex createCandidateIndex() {
+		return null;
+	}
 }
\ No newline at end of file
@@ -1,14 +1,20 @@
 package edu.uci.ics.textdb.exp.join;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 
 import edu.uci.ics.textdb.api.constants.ErrorMessages;
 import edu.uci.ics.textdb.api.dataflow.IOperator;
 import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.exception.TextDBException;
+import edu.uci.ics.textdb.api.field.IField;
 import edu.uci.ics.textdb.api.schema.Schema;
 import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.exp.utils.TupleSpillFile;
 
 
 /**
@@ -36,6 +42,17 @@ import edu.uci.ics.textdb.api.tuple.Tuple;
  * join attribute, the tuple is discarded. If the attribute is not join attribute,
  * then one of the values will be chosen to become the output value.
  * 
+ * If the JoinPredicate requires the values of an attribute (such as _ID) to be equal,
+ * Join performs a hash join: the inner tuples are put into a hash table keyed on this attribute,
+ * and each outer tuple is only joined with the inner tuples with the same value.
+ * Otherwise, if the JoinPredicate provides a candidate index (such as the q-gram index of similarity join),
+ * each outer tuple is only joined with the candidate inner tuples found by the index.
+ * Otherwise each outer tuple is joined with every inner tuple.
+ * 
+ * If the number of inner tuples exceeds maxInMemoryInnerTuples, the hash join spills
+ * both inputs to temporary files, partitioned by the hash of the join value,
+ * and then joins the partitions one by one, so that only one inner partition is in memory at a time.
+ * 
  * @author Sripad Kowshik Subramanyam (sripadks)
  * @author Zuozhi Wang
  *
@@ -51,6 +68,27 @@ public class Join implements IOperator {
     private Integer innerTupleListCursor = 0;
     private Tuple currentOuterTuple;
     private Schema outputSchema;
+    
+    // the number of tuples from the inner operator
+    private int innerTupleCount = 0;
+    
+    // the name of the attribute for hash join, null if it's a nested loop join
+    private String equiJoinAttributeName;
+    // join value -> inner tuples with this value
+    private HashMap<Object, List<Tuple>> innerHashTable = null;
+    // the index to find the candidate inner tuples, null if it's not used
+    private IJoinCandidateIndex innerCandidateIndex = null;
+    // the inner tuples to be joined with the current outer tuple
+    private List<Tuple> currentInnerTuples = Collections.emptyList();
+    
+    private int maxInMemoryInnerTuples = Integer.MAX_VALUE;
+    private int spillPartitionCount = DEFAULT_SPILL_PARTITION_COUNT;
+    // the partitions of the inner and outer tuples on the disk, null if the hash join is in memory
+    private List<TupleSpillFile> innerSpillPartitions = null;
+    private List<TupleSpillFile> outerSpillPartitions = null;
+    private int currentSpillPartition = -1;
+    
+    public static final int DEFAULT_SPILL_PARTITION_COUNT = 16;
 
     private int cursor = CLOSED;
     
@@ -106,24 +144,19 @@ public class Join implements IOperator {
             throw new DataFlowException(ErrorMessages.OPERATOR_NOT_OPENED);
         }
     	
-        // load all tuples from inner operator into memory in the first time
-    	if (innerTupleList == null) {
-    	    innerTupleList = new ArrayList<>();
-    	    Tuple tuple;
-            while ((tuple = innerOperator.getNextTuple()) != null) {
-                innerTupleList.add(tuple);
+        // load all tuples from inner operator in the first time
+        try {
+            if (innerTupleList == null) {
+                loadInnerTuples();
             }
-    	}
-    	
-    	// load the first outer tuple
-    	currentOuterTuple = outerOperator.getNextTuple();
-    	
-    	// return null if either
-    	//   inner tuple list is empty, or
-    	//   all outer tuples have been consumed
-    	if (innerTupleList.isEmpty() || currentOuterTuple == null) {
-    	    return null;
-    	}
+        } catch (Exception e) {
+            throw new DataFlowException(e.getMessage(), e);
+        }
+        
+        // return null if inner operator doesn't have any tuple
+        if (innerTupleCount == 0) {
+            return null;
+        }
 
         if (resultCursor >= limit + offset - 1 || limit == 0){
             return null;
@@ -147,6 +180,134 @@ public class Join implements IOperator {
         }
     }
 
+    /*
+     * Loads the inner tuples into a list (nested loop join), a candidate index, or a hash table (hash join).
+     * For hash join, the inner and outer tuples are partitioned to the disk 
+     *   if there are more than maxInMemoryInnerTuples inner tuples.
+     */
+    private void loadInnerTuples() throws TextDBException, IOException {
+        innerTupleList = new ArrayList<>();
+        equiJoinAttributeName = joinPredicate.getEquiJoinAttributeName();
+        
+        Tuple tuple;
+        if (equiJoinAttributeName == null) {
+            innerCandidateIndex = joinPredicate.createCandidateIndex();
+            while ((tuple = innerOperator.getNextTuple()) != null) {
+                if (innerCandidateIndex != null) {
+                    innerCandidateIndex.addInnerTuple(tuple);
+                } else {
+                    innerTupleList.add(tuple);
+                }
+                innerTupleCount++;
+            }
+            return;
+        }
+        
+        innerHashTable = new HashMap<>();
+        while ((tuple = innerOperator.getNextTuple()) != null) {
+            innerTupleCount++;
+            if (innerSpillPartitions != null) {
+                spillTuple(innerSpillPartitions, tuple);
+                continue;
+            }
+            addToInnerHashTable(tuple);
+            if (innerTupleCount > maxInMemoryInnerTuples) {
+                // move the tuples in the hash table to the disk
+                innerSpillPartitions = createSpillPartitions(innerOperator.getOutputSchema());
+                for (List<Tuple> innerTuples : innerHashTable.values()) {
+                    for (Tuple innerTuple : innerTuples) {
+                        spillTuple(innerSpillPartitions, innerTuple);
+                    }
+                }
+                innerHashTable.clear();
+            }
+        }
+        
+        if (innerSpillPartitions != null) {
+            outerSpillPartitions = createSpillPartitions(outerOperator.getOutputSchema());
+            while ((tuple = outerOperator.getNextTuple()) != null) {
+                spillTuple(outerSpillPartitions, tuple);
+            }
+        }
+    }
+    
+    private void addToInnerHashTable(Tuple innerTuple) {
+        Object joinValue = getJoinValue(innerTuple);
+        if (joinValue != null) {
+            innerHashTable.computeIfAbsent(joinValue, key -> new ArrayList<>()).add(innerTuple);
+        }
+    }
+    
+    private Object getJoinValue(Tuple tuple) {
+        IField field = tuple.getField(equiJoinAttributeName);
+        return field == null ? null : field.getValue();
+    }
+    
+    private List<TupleSpillFile> createSpillPartitions(Schema schema) throws IOException {
+        List<TupleSpillFile> partitions = new ArrayList<>();
+        for (int i = 0; i < spillPartitionCount; i++) {
+            partitions.add(new TupleSpillFile(schema));
+        }
+        return partitions;
+    }
+    
+    private void spillTuple(List<TupleSpillFile> partitions, Tuple tuple) throws IOException {
+        Object joinValue = getJoinValue(tuple);
+        // a tuple without the join value can't be joined
+        if (joinValue == null) {
+            return;
+        }
+        partitions.get(Math.floorMod(joinValue.hashCode(), partitions.size())).writeTuple(tuple);
+    }
+    
+    /*
+     * Gets the next outer tuple, either from the outer operator, 
+     *   or from the current outer partition on the disk.
+     * When an outer partition is finished, the next inner partition is loaded into the hash table.
+     */
+    private Tuple getNextOuterTuple() throws TextDBException, IOException {
+        if (outerSpillPartitions == null) {
+            return outerOperator.getNextTuple();
+        }
+        while (true) {
+            if (currentSpillPartition >= 0) {
+                Tuple outerTuple = outerSpillPartitions.get(currentSpillPartition).readTuple();
+                if (outerTuple != null) {
+                    return outerTuple;
+                }
+                innerSpillPartitions.get(currentSpillPartition).delete();
+                outerSpillPartitions.get(currentSpillPartition).delete();
+            }
+            currentSpillPartition++;
+            if (currentSpillPartition >= spillPartitionCount) {
+                return null;
+            }
+            
+            innerHashTable.clear();
+            TupleSpillFile innerPartition = innerSpillPartitions.get(currentSpillPartition);
+            innerPartition.startReading();
+            Tuple innerTuple;
+            while ((innerTuple = innerPartition.readTuple()) != null) {
+                addToInnerHashTable(innerTuple);
+            }
+            outerSpillPartitions.get(currentSpillPartition).startReading();
+        }
+    }
+    
+    private List<Tuple> getInnerTuplesToJoin(Tuple outerTuple) {
+        if (innerCandidateIndex != null) {
+            return innerCandidateIndex.getCandidateInnerTuples(outerTuple);
+        }
+        if (equiJoinAttributeName == null) {
+            return innerTupleList;
+        }
+        Object joinValue = getJoinValue(outerTuple);
+        if (joinValue == null) {
+            return Collections.emptyList();
+        }
+        return innerHashTable.getOrDefault(joinValue, Collections.emptyList());
+    }
+    
     /*
      * Called from getNextTuple() method in order to obtain the next tuple 
      * that satisfies the predicate. 
@@ -154,31 +315,42 @@ public class Join implements IOperator {
      * It returns null if there's no more tuples.
      */
     private Tuple computeNextMatchingTuple() throws Exception {
-        if (innerTupleList.isEmpty()) {
-            return null;
-        }
-        
         Tuple nextTuple = null;
         while (nextTuple == null) {
-            // if reach the end of inner tuple list
-            if (innerTupleListCursor >= innerTupleList.size()) {
+            // if reach the end of the inner tuples to be joined with the current outer tuple
+            if (innerTupleListCursor >= currentInnerTuples.size()) {
                 // get next outer tuple
-                currentOuterTuple = outerOperator.getNextTuple();
+                currentOuterTuple = getNextOuterTuple();
                 if (currentOuterTuple == null) {
                     return null;
                 }
                 // reset cursor if outerTuple is not null
+                currentInnerTuples = getInnerTuplesToJoin(currentOuterTuple);
                 innerTupleListCursor = 0;
+                continue;
             }
             // compute next tuple
             nextTuple = joinPredicate.joinTuples(
-                    innerTupleList.get(innerTupleListCursor), currentOuterTuple, outputSchema);
+                    currentInnerTuples.get(innerTupleListCursor), currentOuterTuple, outputSchema);
             // increment cursor
             innerTupleListCursor++;
         }
         
     	return nextTuple;
     }
+    
+    private void deleteSpillPartitions() throws IOException {
+        for (List<TupleSpillFile> partitions : Arrays.asList(innerSpillPartitions, outerSpillPartitions)) {
+            if (partitions != null) {
+                for (TupleSpillFile partition : partitions) {
+                    partition.delete();
+                }
+            }
+        }
+        innerSpillPartitions = null;
+        outerSpillPartitions = null;
+        currentSpillPartition = -1;
+    }
 
     @Override
     public void close() throws TextDBException {
@@ -189,12 +361,17 @@ public class Join implements IOperator {
         try {
             innerOperator.close();
             outerOperator.close();
+            deleteSpillPartitions();
         } catch (Exception e) {
             throw new DataFlowException(e.getMessage(), e);
         }
         
         // Set the inner tuple list back to null on close.
         innerTupleList = null;
+        innerTupleCount = 0;
+        innerHashTable = null;
+        innerCandidateIndex = null;
+        currentInnerTuples = Collections.emptyList();
         innerTupleListCursor = 0;
         cursor = CLOSED;
     }
@@ -238,6 +415,29 @@ public class Join implements IOperator {
         return offset;
     }
     
+    /**
+     * Sets the maximum number of inner tuples kept in memory by the hash join.
+     * If there are more inner tuples, both inputs are partitioned to temporary files.
+     * It has no effect if the predicate doesn't support hash join.
+     * 
+     * @param maxInMemoryInnerTuples
+     */
+    public void setMaxInMemoryInnerTuples(int maxInMemoryInnerTuples) {
+        this.maxInMemoryInnerTuples = maxInMemoryInnerTuples;
+    }
+    
+    public int getMaxInMemoryInnerTuples() {
+        return maxInMemoryInnerTuples;
+    }
+    
+    public void setSpillPartitionCount(int spillPartitionCount) {
+        this.spillPartitionCount = spillPartitionCount;
+    }
+    
+    public int getSpillPartitionCount() {
+        return spillPartitionCount;
+    }
+    
     public IJoinPredicate getPredicate() {
         return this.joinPredicate;
     }
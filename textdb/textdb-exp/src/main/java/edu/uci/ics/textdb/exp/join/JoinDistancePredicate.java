@@ -1,11 +1,12 @@
 package edu.uci.ics.textdb.exp.join;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import edu.uci.ics.textdb.api.constants.SchemaConstants;
@@ -133,6 +134,15 @@ public class JoinDistancePredicate extends PredicateBase implements IJoinPredica
         return this.threshold;
     }
     
+    /**
+     * Only the tuples with the same _ID are joined.
+     */
+    @JsonIgnore
+    @Override
+    public String getEquiJoinAttributeName() {
+        return SchemaConstants._ID;
+    }
+    
     @Override
     public Schema generateOutputSchema(Schema innerOperatorSchema, Schema outerOperatorSchema) throws DataFlowException {
         return generateIntersectionSchema(innerOperatorSchema, outerOperatorSchema);
@@ -225,39 +235,24 @@ public class JoinDistancePredicate extends PredicateBase implements IJoinPredica
 	        outerSpanList = spanFieldOfOuterTuple.getValue();
 	    }
 	
-	    Iterator<Span> outerSpanIter = outerSpanList.iterator();
-	
-	    // TODO Currently we are using two loops to go over two span lists.
-	    // We can optimize it by sorting the spans based on the start position
-	    // and then doing a "sort merge" of the two lists.
-	    // (Also probably weed out the spans with fields that don't agree with
-	    // the ones specified in the JoinPredicate during "sort merge"?)
-	    while (outerSpanIter.hasNext()) {
-	        Span outerSpan = outerSpanIter.next();
-	        // Check if the field matches the filed over which we want to join.
-	        // If not return null.
-	        if (!outerSpan.getAttributeName().equals(this.joinAttributeName)) {
-	            continue;
-	        }
-	        Iterator<Span> innerSpanIter = innerSpanList.iterator();
-	        while (innerSpanIter.hasNext()) {
-	            Span innerSpan = innerSpanIter.next();
-	            if (!innerSpan.getAttributeName().equals(this.joinAttributeName)) {
-	                continue;
-	            }
-	            Integer threshold = this.getThreshold();
-	            if (Math.abs(outerSpan.getStart() - innerSpan.getStart()) <= threshold
-	                    && Math.abs(outerSpan.getEnd() - innerSpan.getEnd()) <= threshold) {
-	                Integer newSpanStartIndex = Math.min(innerSpan.getStart(), outerSpan.getStart());
-	                Integer newSpanEndIndex = Math.max(innerSpan.getEnd(), outerSpan.getEnd());
-	                String attributeName = this.joinAttributeName;
-	                String fieldValue = (String) innerTuple.getField(attributeName).getValue();
-	                String newFieldValue = fieldValue.substring(newSpanStartIndex, newSpanEndIndex);
-	                String spanKey = outerSpan.getKey() + "_" + innerSpan.getKey();
-	                Span newSpan = new Span(attributeName, newSpanStartIndex, newSpanEndIndex, spanKey, newFieldValue);
-	                newJoinSpanList.add(newSpan);
-	            }
-	        }
+	    // Only the spans of the join attribute are joined.
+	    List<Span> outerJoinSpans = outerSpanList.stream()
+	            .filter(span -> span.getAttributeName().equals(this.joinAttributeName))
+	            .collect(Collectors.toList());
+	    List<Span> innerJoinSpans = innerSpanList.stream()
+	            .filter(span -> span.getAttributeName().equals(this.joinAttributeName))
+	            .collect(Collectors.toList());
+	    
+	    String fieldValue = (String) innerTuple.getField(this.joinAttributeName).getValue();
+	    for (long matchingPair : computeMatchingSpanPairs(outerJoinSpans, innerJoinSpans, this.getThreshold())) {
+	        Span outerSpan = outerJoinSpans.get((int) (matchingPair >>> 32));
+	        Span innerSpan = innerJoinSpans.get((int) matchingPair);
+	        Integer newSpanStartIndex = Math.min(innerSpan.getStart(), outerSpan.getStart());
+	        Integer newSpanEndIndex = Math.max(innerSpan.getEnd(), outerSpan.getEnd());
+	        String newFieldValue = fieldValue.substring(newSpanStartIndex, newSpanEndIndex);
+	        String spanKey = outerSpan.getKey() + "_" + innerSpan.getKey();
+	        Span newSpan = new Span(this.joinAttributeName, newSpanStartIndex, newSpanEndIndex, spanKey, newFieldValue);
+	        newJoinSpanList.add(newSpan);
 	    }
 	
 	    if (newJoinSpanList.isEmpty()) {
@@ -278,6 +273,63 @@ public class JoinDistancePredicate extends PredicateBase implements IJoinPredica
 	    return new Tuple(outputSchema, outputFields.stream().toArray(IField[]::new));
 	}
 
+	/**
+	 * Finds all the pairs of an outer span and an inner span whose starts differ by at most threshold,
+	 *   and whose ends differ by at most threshold.
+	 * 
+	 * Both span lists are sorted by the start offset, and a window over the inner spans slides along 
+	 *   the outer spans: for an outer span starting at s, only the inner spans starting in [s - threshold, s + threshold]
+	 *   are checked. It takes O((n + m) log(n + m) + number of checked pairs) time instead of O(n * m).
+	 * 
+	 * @return the pairs, each pair is encoded as (outer span index << 32 | inner span index),
+	 *   sorted by the outer span index and then the inner span index, in the same order as a nested loop.
+	 */
+	private static long[] computeMatchingSpanPairs(List<Span> outerSpans, List<Span> innerSpans, int threshold) {
+	    Integer[] outerOrder = sortByStart(outerSpans);
+	    Integer[] innerOrder = sortByStart(innerSpans);
+	    
+	    long[] matchingPairs = new long[16];
+	    int matchingPairCount = 0;
+	    
+	    int windowStart = 0;
+	    for (int outerIndex : outerOrder) {
+	        Span outerSpan = outerSpans.get(outerIndex);
+	        // the inner spans before the window start too early for this outer span and all the following ones
+	        while (windowStart < innerOrder.length 
+	                && innerSpans.get(innerOrder[windowStart]).getStart() < outerSpan.getStart() - threshold) {
+	            windowStart++;
+	        }
+	        for (int i = windowStart; i < innerOrder.length; i++) {
+	            Span innerSpan = innerSpans.get(innerOrder[i]);
+	            if (innerSpan.getStart() > outerSpan.getStart() + threshold) {
+	                break;
+	            }
+	            if (Math.abs(outerSpan.getEnd() - innerSpan.getEnd()) <= threshold) {
+	                if (matchingPairCount == matchingPairs.length) {
+	                    matchingPairs = Arrays.copyOf(matchingPairs, matchingPairCount * 2);
+	                }
+	                matchingPairs[matchingPairCount++] = ((long) outerIndex << 32) | innerOrder[i];
+	            }
+	        }
+	    }
+	    
+	    matchingPairs = Arrays.copyOf(matchingPairs, matchingPairCount);
+	    Arrays.sort(matchingPairs);
+	    return matchingPairs;
+	}
+	
+	/*
+	 * Returns the indexes of the spans, sorted by the start offsets of the spans.
+	 */
+	private static Integer[] sortByStart(List<Span> spans) {
+	    Integer[] order = new Integer[spans.size()];
+	    for (int i = 0; i < order.length; i++) {
+	        order[i] = i;
+	    }
+	    Arrays.sort(order, (i1, i2) -> Integer.compare(spans.get(i1).getStart(), spans.get(i2).getStart()));
+	    return order;
+	}
+
 	/**
 	 * Used to compare the value's of a field from the inner and outer tuples'.
 	 * 
@@ -0,0 +1,112 @@
+package edu.uci.ics.textdb.exp.join;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * LevenshteinCandidateIndex finds the candidates for the normalized Levenshtein similarity
+ *   (1 - edit distance / length of the longer string) with a length filter and a q-gram count filter.
+ * 
+ * If the similarity of two strings r and s is at least threshold, then
+ *   the edit distance k is at most (1 - threshold) * max(|r|, |s|), and
+ *   length filter: min(|r|, |s|) >= threshold * max(|r|, |s|),
+ *   count filter: r and s share at least max(|r|, |s|) - q + 1 - k * q q-grams,
+ *   because each edit operation destroys at most q q-grams.
+ * 
+ * The filters never drop a similar pair. When the count filter's bound is not positive
+ *   (short strings or a low threshold), all the values of the right lengths are candidates.
+ *
+ */
+class LevenshteinCandidateIndex extends SpanValueCandidateIndex {
+    
+    public static final int Q = 2;
+    
+    // tolerance for the floating point error of the similarity function
+    private static final double EPSILON = 1e-9;
+    
+    private final double threshold;
+    
+    // q-gram -> (value id, number of occurrences of the q-gram in the value)
+    private final HashMap<String, List<int[]>> qGramIndex = new HashMap<>();
+    // length -> ids of the values with this length
+    private final TreeMap<Integer, List<Integer>> lengthIndex = new TreeMap<>();
+    private final List<Integer> valueLengths = new ArrayList<>();
+
+    public LevenshteinCandidateIndex(String innerAttributeName, String outerAttributeName, double threshold) {
+        super(innerAttributeName, outerAttributeName);
+        this.threshold = threshold;
+    }
+
+    @Override
+    protected void indexValue(int valueId, String value) {
+        valueLengths.add(value.length());
+        lengthIndex.computeIfAbsent(value.length(), key -> new ArrayList<>()).add(valueId);
+        for (Map.Entry<String, Integer> qGramCount : countQGrams(value).entrySet()) {
+            qGramIndex.computeIfAbsent(qGramCount.getKey(), key -> new ArrayList<>())
+                    .add(new int[] { valueId, qGramCount.getValue() });
+        }
+    }
+
+    @Override
+    protected void collectCandidateValues(String value, BitSet candidateValueIds) {
+        int length = value.length();
+        int minLength = (int) Math.ceil(threshold * length - EPSILON);
+        int maxLength = threshold <= EPSILON ? Integer.MAX_VALUE : (int) Math.floor(length / threshold + EPSILON);
+        
+        // the lengths which need the count filter, and their minimum number of common q-grams
+        Map<Integer, Integer> minCommonQGrams = new HashMap<>();
+        for (Map.Entry<Integer, List<Integer>> lengthEntry : lengthIndex.subMap(minLength, true, maxLength, true).entrySet()) {
+            int minCommon = getMinCommonQGrams(Math.max(length, lengthEntry.getKey()));
+            if (minCommon <= 0) {
+                for (int valueId : lengthEntry.getValue()) {
+                    candidateValueIds.set(valueId);
+                }
+            } else {
+                minCommonQGrams.put(lengthEntry.getKey(), minCommon);
+            }
+        }
+        if (minCommonQGrams.isEmpty()) {
+            return;
+        }
+        
+        // count the common q-grams with each indexed value
+        HashMap<Integer, Integer> commonQGramCounts = new HashMap<>();
+        for (Map.Entry<String, Integer> qGramCount : countQGrams(value).entrySet()) {
+            List<int[]> postings = qGramIndex.get(qGramCount.getKey());
+            if (postings == null) {
+                continue;
+            }
+            for (int[] posting : postings) {
+                commonQGramCounts.merge(posting[0], Math.min(posting[1], qGramCount.getValue()), Integer::sum);
+            }
+        }
+        for (Map.Entry<Integer, Integer> commonQGramCount : commonQGramCounts.entrySet()) {
+            Integer minCommon = minCommonQGrams.get(valueLengths.get(commonQGramCount.getKey()));
+            if (minCommon != null && commonQGramCount.getValue() >= minCommon) {
+                candidateValueIds.set(commonQGramCount.getKey());
+            }
+        }
+    }
+    
+    /*
+     * Gets the minimum number of common q-grams of two similar strings, 
+     *   the length of the longer one is maxLength.
+     */
+    private int getMinCommonQGrams(int maxLength) {
+        int maxEditDistance = (int) Math.floor((1 - threshold) * maxLength + EPSILON);
+        return maxLength - Q + 1 - maxEditDistance * Q;
+    }
+    
+    private static Map<String, Integer> countQGrams(String value) {
+        Map<String, Integer> qGramCounts = new HashMap<>();
+        for (String qGram : getQGrams(value, Q)) {
+            qGramCounts.merge(qGram, 1, Integer::sum);
+        }
+        return qGramCounts;
+    }
+
+}
@@ -0,0 +1,135 @@
+package edu.uci.ics.textdb.exp.join;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * MinHashCandidateIndex finds the candidates for the Jaccard similarity of the q-gram sets 
+ *   with MinHash locality sensitive hashing (LSH).
+ * 
+ * The MinHash signature of a value has (bandCount * rowsPerBand) min-hashes of its q-gram set,
+ *   the signature is divided into bandCount bands, and two values are candidates 
+ *   if all the min-hashes in at least one band are the same.
+ * Two values with Jaccard similarity J become candidates with probability 1 - (1 - J^rowsPerBand)^bandCount.
+ * 
+ * Unlike LevenshteinCandidateIndex, the index is approximate: a similar pair could be missed.
+ *
+ */
+class MinHashCandidateIndex extends SpanValueCandidateIndex {
+    
+    public static final int Q = 2;
+    
+    private static final long SEED = 20170401L;
+    
+    private final int bandCount;
+    private final int rowsPerBand;
+    private final long[] hashSeeds;
+    
+    // band -> (hash of the band of a signature -> ids of the values)
+    private final List<HashMap<Long, List<Integer>>> bandBuckets = new ArrayList<>();
+
+    public MinHashCandidateIndex(String innerAttributeName, String outerAttributeName, 
+            int bandCount, int rowsPerBand) {
+        super(innerAttributeName, outerAttributeName);
+        this.bandCount = bandCount;
+        this.rowsPerBand = rowsPerBand;
+        
+        Random random = new Random(SEED);
+        this.hashSeeds = new long[bandCount * rowsPerBand];
+        for (int i = 0; i < hashSeeds.length; i++) {
+            hashSeeds[i] = random.nextLong();
+        }
+        for (int band = 0; band < bandCount; band++) {
+            bandBuckets.add(new HashMap<>());
+        }
+    }
+
+    @Override
+    protected void indexValue(int valueId, String value) {
+        long[] signature = computeSignature(value);
+        for (int band = 0; band < bandCount; band++) {
+            bandBuckets.get(band).computeIfAbsent(hashBand(signature, band), key -> new ArrayList<>()).add(valueId);
+        }
+    }
+
+    @Override
+    protected void collectCandidateValues(String value, BitSet candidateValueIds) {
+        long[] signature = computeSignature(value);
+        for (int band = 0; band < bandCount; band++) {
+            List<Integer> bucket = bandBuckets.get(band).get(hashBand(signature, band));
+            if (bucket != null) {
+                for (int valueId : bucket) {
+                    candidateValueIds.set(valueId);
+                }
+            }
+        }
+    }
+    
+    private long[] computeSignature(String value) {
+        long[] signature = new long[hashSeeds.length];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        for (String qGram : getQGramSet(value)) {
+            long qGramHash = qGram.hashCode();
+            for (int i = 0; i < hashSeeds.length; i++) {
+                long hash = mix(qGramHash ^ hashSeeds[i]);
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+    
+    private long hashBand(long[] signature, int band) {
+        long hash = band;
+        for (int row = 0; row < rowsPerBand; row++) {
+            hash = hash * 31 + signature[band * rowsPerBand + row];
+        }
+        return hash;
+    }
+    
+    /*
+     * The finalizer of the 64-bit MurmurHash3.
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+    
+    /*
+     * The set of the q-grams of the value, 
+     *   a value shorter than q is its own q-gram.
+     */
+    private static Set<String> getQGramSet(String value) {
+        if (value.length() < Q) {
+            return new HashSet<>(Arrays.asList(value));
+        }
+        return new HashSet<>(getQGrams(value, Q));
+    }
+    
+    /**
+     * The Jaccard similarity of the q-gram sets of two strings.
+     */
+    static double jaccardSimilarity(String str1, String str2) {
+        Set<String> qGramSet1 = getQGramSet(str1);
+        Set<String> qGramSet2 = getQGramSet(str2);
+        int intersectionSize = 0;
+        for (String qGram : qGramSet1) {
+            if (qGramSet2.contains(qGram)) {
+                intersectionSize++;
+            }
+        }
+        return (double) intersectionSize / (qGramSet1.size() + qGramSet2.size() - intersectionSize);
+    }
+
+}
@@ -34,6 +34,13 @@ import info.debatty.java.stringsimilarity.NormalizedLevenshtein;
  * Currently the similarity is measured by normalized Levenshtein distance,
  *   which is the Levenshtein distance divided by the length of the longest string
  *
+ * Instead of comparing every pair of inner and outer span values, the Join operator
+ *   uses a LevenshteinCandidateIndex (length and q-gram count filters) on the inner span values,
+ *   and the similarity is only computed for the candidate pairs.
+ * Alternatively, setJaccardMinHashLsh() changes the similarity to the Jaccard similarity of the q-gram sets,
+ *   and the candidates are found by MinHash LSH (which may miss some similar pairs).
+ * If a custom similarity function is set, every pair is compared.
+ *
  * Example of a same-table, different-tuple join, similarity threshold > 0.8
  *
  * table_schema,   inner_tuple,             outer_tuple
@@ -65,6 +72,11 @@ public class SimilarityJoinPredicate extends PredicateBase implements IJoinPredi
     String outerJoinAttrName;
     
     private SimilarityFunc similarityFunc;
+    // the filters of LevenshteinCandidateIndex are only valid for the default similarity function
+    private boolean isDefaultSimilarityFunc;
+    // MinHash LSH parameters, 0 if MinHash LSH is not used
+    private int lshBandCount = 0;
+    private int lshRowsPerBand = 0;
     
     @FunctionalInterface
     public static interface SimilarityFunc {
@@ -96,6 +108,7 @@ public class SimilarityJoinPredicate extends PredicateBase implements IJoinPredi
         // initialize default similarity function to NormalizedLevenshtein
         // which is Levenshtein distance / length of longest string
         this.similarityFunc = ((str1, str2) -> (1.0 - new NormalizedLevenshtein().distance(str1, str2)));
+        this.isDefaultSimilarityFunc = true;
     }
     
     @JsonProperty(value = PropertyNameConstants.INNER_ATTRIBUTE_NAME)
@@ -114,6 +127,17 @@ public class SimilarityJoinPredicate extends PredicateBase implements IJoinPredi
     public Double getThreshold() {
         return this.similarityThreshold;
     }
+    
+    @Override
+    public IJoinCandidateIndex createCandidateIndex() {
+        if (lshBandCount > 0) {
+            return new MinHashCandidateIndex(innerJoinAttrName, outerJoinAttrName, lshBandCount, lshRowsPerBand);
+        }
+        if (isDefaultSimilarityFunc) {
+            return new LevenshteinCandidateIndex(innerJoinAttrName, outerJoinAttrName, similarityThreshold);
+        }
+        return null;
+    }
 
     
     @Override
@@ -247,9 +271,36 @@ public class SimilarityJoinPredicate extends PredicateBase implements IJoinPredi
                 span.getStart(), span.getEnd(), span.getKey(), span.getValue(), span.getTokenOffset());
     }
     
+    /**
+     * Sets a custom similarity function, every pair of inner and outer span values will be compared.
+     */
     @JsonIgnore
     public void setSimilarityFunction(SimilarityFunc similarityFunc) {
         this.similarityFunc = similarityFunc;
+        this.isDefaultSimilarityFunc = false;
+        this.lshBandCount = 0;
+        this.lshRowsPerBand = 0;
+    }
+    
+    /**
+     * Uses the Jaccard similarity of the q-gram sets of the span values,
+     *   and finds the candidate pairs with MinHash LSH.
+     * 
+     * Two values with Jaccard similarity J become candidates with probability 1 - (1 - J^rowsPerBand)^bandCount,
+     *   more bands find more similar pairs, more rows per band produce fewer dissimilar candidates.
+     * 
+     * @param bandCount
+     * @param rowsPerBand
+     */
+    @JsonIgnore
+    public void setJaccardMinHashLsh(int bandCount, int rowsPerBand) {
+        if (bandCount <= 0 || rowsPerBand <= 0) {
+            throw new IllegalArgumentException("bandCount and rowsPerBand must be positive");
+        }
+        this.similarityFunc = MinHashCandidateIndex::jaccardSimilarity;
+        this.isDefaultSimilarityFunc = false;
+        this.lshBandCount = bandCount;
+        this.lshRowsPerBand = rowsPerBand;
     }
 
 }
@@ -0,0 +1,130 @@
+package edu.uci.ics.textdb.exp.join;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import edu.uci.ics.textdb.api.constants.SchemaConstants;
+import edu.uci.ics.textdb.api.field.ListField;
+import edu.uci.ics.textdb.api.span.Span;
+import edu.uci.ics.textdb.api.tuple.Tuple;
+
+/**
+ * SpanValueCandidateIndex is the base of the candidate indexes for SimilarityJoinPredicate.
+ * 
+ * It indexes the distinct values of the inner tuples' spans of the join attribute.
+ * An inner tuple is a candidate for an outer tuple if one of its span values
+ *   is a candidate for one of the outer tuple's span values.
+ * 
+ * The subclasses decide which indexed values are candidates for a value.
+ *
+ */
+abstract class SpanValueCandidateIndex implements IJoinCandidateIndex {
+    
+    private final String innerAttributeName;
+    private final String outerAttributeName;
+    
+    private final List<Tuple> innerTuples = new ArrayList<>();
+    // distinct span value -> value id
+    private final HashMap<String, Integer> valueIds = new HashMap<>();
+    // value id -> indexes of the inner tuples with this span value
+    private final List<List<Integer>> valueTupleIndexes = new ArrayList<>();
+    
+    protected SpanValueCandidateIndex(String innerAttributeName, String outerAttributeName) {
+        this.innerAttributeName = innerAttributeName;
+        this.outerAttributeName = outerAttributeName;
+    }
+
+    @Override
+    public void addInnerTuple(Tuple innerTuple) {
+        int tupleIndex = innerTuples.size();
+        innerTuples.add(innerTuple);
+        
+        for (String value : getSpanValues(innerTuple, innerAttributeName)) {
+            Integer valueId = valueIds.get(value);
+            if (valueId == null) {
+                valueId = valueIds.size();
+                valueIds.put(value, valueId);
+                valueTupleIndexes.add(new ArrayList<>());
+                indexValue(valueId, value);
+            }
+            valueTupleIndexes.get(valueId).add(tupleIndex);
+        }
+    }
+
+    @Override
+    public List<Tuple> getCandidateInnerTuples(Tuple outerTuple) {
+        BitSet candidateValueIds = new BitSet();
+        for (String value : getSpanValues(outerTuple, outerAttributeName)) {
+            collectCandidateValues(value, candidateValueIds);
+        }
+        if (candidateValueIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        
+        BitSet candidateTupleIndexes = new BitSet();
+        for (int valueId = candidateValueIds.nextSetBit(0); valueId >= 0; 
+                valueId = candidateValueIds.nextSetBit(valueId + 1)) {
+            for (int tupleIndex : valueTupleIndexes.get(valueId)) {
+                candidateTupleIndexes.set(tupleIndex);
+            }
+        }
+        
+        List<Tuple> candidateTuples = new ArrayList<>(candidateTupleIndexes.cardinality());
+        for (int tupleIndex = candidateTupleIndexes.nextSetBit(0); tupleIndex >= 0; 
+                tupleIndex = candidateTupleIndexes.nextSetBit(tupleIndex + 1)) {
+            candidateTuples.add(innerTuples.get(tupleIndex));
+        }
+        return candidateTuples;
+    }
+    
+    /**
+     * Adds a distinct span value of the inner tuples to the index.
+     * 
+     * @param valueId, the ids are 0, 1, 2, ... in the order the values are added
+     * @param value
+     */
+    protected abstract void indexValue(int valueId, String value);
+    
+    /**
+     * Sets the ids of the indexed values which could be similar to the value.
+     * 
+     * @param value
+     * @param candidateValueIds
+     */
+    protected abstract void collectCandidateValues(String value, BitSet candidateValueIds);
+    
+    /*
+     * Gets the distinct values of the spans of the attribute in the tuple.
+     */
+    private static Set<String> getSpanValues(Tuple tuple, String attributeName) {
+        Set<String> spanValues = new LinkedHashSet<>();
+        ListField<Span> spanListField = tuple.getField(SchemaConstants.SPAN_LIST);
+        if (spanListField == null) {
+            return spanValues;
+        }
+        for (Span span : spanListField.getValue()) {
+            if (span.getAttributeName().equals(attributeName) && span.getValue() != null) {
+                spanValues.add(span.getValue());
+            }
+        }
+        return spanValues;
+    }
+    
+    /**
+     * Gets the q-grams (the substrings of length q) of the value, 
+     *   there are (length - q + 1) q-grams, including the duplicate ones.
+     */
+    static List<String> getQGrams(String value, int q) {
+        List<String> qGrams = new ArrayList<>();
+        for (int i = 0; i + q <= value.length(); i++) {
+            qGrams.add(value.substring(i, i + q));
+        }
+        return qGrams;
+    }
+
+}
@@ -6,8 +6,6 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import edu.uci.ics.textdb.api.constants.SchemaConstants;
@@ -18,9 +16,13 @@ import edu.uci.ics.textdb.api.schema.AttributeType;
 import edu.uci.ics.textdb.api.schema.Schema;
 import edu.uci.ics.textdb.api.span.Span;
 import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.api.tuple.TupleBatch;
 import edu.uci.ics.textdb.api.utils.Utils;
 import edu.uci.ics.textdb.exp.common.AbstractSingleInputOperator;
 import edu.uci.ics.textdb.exp.utils.DataflowUtils;
+import edu.uci.ics.textdb.exp.utils.LiteralSubstringSearcher;
+import edu.uci.ics.textdb.storage.CompactPayload;
+import edu.uci.ics.textdb.storage.PayloadCache;
 
 public class KeywordMatcher extends AbstractSingleInputOperator {
 
@@ -31,6 +33,12 @@ public class KeywordMatcher extends AbstractSingleInputOperator {
     private final ArrayList<String> queryTokenList;
     private final HashSet<String> queryTokenSet;
     private final ArrayList<String> queryTokensWithStopwords;
+    
+    // compiled once in setUp() for substring matching
+    private LiteralSubstringSearcher substringSearcher;
+
+    // the payload cache of the plan, null if the payload is generated for each tuple
+    private PayloadCache payloadCache;
 
     public KeywordMatcher(KeywordPredicate predicate) {
         this.predicate = predicate;
@@ -54,6 +62,9 @@ public class KeywordMatcher extends AbstractSingleInputOperator {
         if (!inputSchema.containsField(SchemaConstants.SPAN_LIST)) {
             outputSchema = Utils.addAttributeToSchema(outputSchema, SchemaConstants.SPAN_LIST_ATTRIBUTE);
         }
+        if (predicate.getMatchingType() == KeywordMatchingType.SUBSTRING_SCANBASED) {
+            substringSearcher = new LiteralSubstringSearcher(predicate.getQuery());
+        }
     }
 
     @Override
@@ -71,6 +82,11 @@ public class KeywordMatcher extends AbstractSingleInputOperator {
         return resultTuple;
     }
 
+    @Override
+    public TupleBatch getNextBatch(int maxTuples) throws TextDBException {
+        return computeNextMatchingBatch(maxTuples);
+    }
+
     @Override
     public Tuple processOneInputTuple(Tuple inputTuple) throws TextDBException {
         Tuple resultTuple = null;
@@ -80,7 +96,8 @@ public class KeywordMatcher extends AbstractSingleInputOperator {
         // Therefore, PAYLOAD needs to be checked and added first
         if (!inputSchema.containsField(SchemaConstants.PAYLOAD)) {
             inputTuple = DataflowUtils.getSpanTuple(inputTuple.getFields(),
-                    DataflowUtils.generatePayloadFromTuple(inputTuple, predicate.getLuceneAnalyzerString()), outputSchema);
+                    DataflowUtils.generatePayloadFromTuple(inputTuple, predicate.getLuceneAnalyzerString(), payloadCache),
+                    outputSchema);
         }
         if (!inputSchema.containsField(SchemaConstants.SPAN_LIST)) {
             inputTuple = DataflowUtils.getSpanTuple(inputTuple.getFields(), new ArrayList<Span>(), outputSchema);
@@ -267,15 +284,13 @@ public class KeywordMatcher extends AbstractSingleInputOperator {
                 }
             }
 
-            if (attributeType == AttributeType.TEXT) {
-                String regex = predicate.getQuery().toLowerCase();
-                Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
-                Matcher matcher = pattern.matcher(fieldValue.toLowerCase());
-                while (matcher.find()) {
-                    int start = matcher.start();
-                    int end = matcher.end();
-
+            // for TEXT type, find all the (non-overlapping) occurrences of the query, ignoring the case
+            if (attributeType == AttributeType.TEXT && substringSearcher.length() > 0) {
+                int start = 0;
+                while ((start = substringSearcher.indexOf(fieldValue, start)) >= 0) {
+                    int end = start + substringSearcher.length();
                     matchingResults.add(new Span(attributeName, start, end, predicate.getQuery(), fieldValue.substring(start, end)));
+                    start = end;
                 }
             }
 
@@ -299,6 +314,16 @@ public class KeywordMatcher extends AbstractSingleInputOperator {
 
     private List<Span> filterRelevantSpans(List<Span> spanList) {
         List<Span> relevantSpans = new ArrayList<>();
+        // a precomputed payload can check the terms without creating the spans of the irrelevant tokens
+        if (spanList instanceof CompactPayload) {
+            CompactPayload payload = (CompactPayload) spanList;
+            for (int i = 0; i < payload.size(); i++) {
+                if (queryTokenSet.contains(payload.getKey(i))) {
+                    relevantSpans.add(payload.get(i));
+                }
+            }
+            return relevantSpans;
+        }
         Iterator<Span> iterator = spanList.iterator();
         while (iterator.hasNext()) {
             Span span = iterator.next();
@@ -313,4 +338,16 @@ public class KeywordMatcher extends AbstractSingleInputOperator {
         return this.predicate;
     }
 
+    /**
+     * Sets the payload cache shared by the operators of the plan,
+     *   which is used to get the payload if the input tuples don't have it.
+     */
+    public void setPayloadCache(PayloadCache payloadCache) {
+        this.payloadCache = payloadCache;
+    }
+
+    public PayloadCache getPayloadCache() {
+        return payloadCache;
+    }
+
 }
@@ -3,6 +3,7 @@ package edu.uci.ics.textdb.exp.keywordmatcher;
 import java.util.ArrayList;
 import java.util.HashSet;
 
+import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.ParseException;
@@ -18,13 +19,16 @@ import edu.uci.ics.textdb.api.dataflow.ISourceOperator;
 import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.exception.StorageException;
 import edu.uci.ics.textdb.api.exception.TextDBException;
+import edu.uci.ics.textdb.api.field.IDField;
 import edu.uci.ics.textdb.api.schema.AttributeType;
 import edu.uci.ics.textdb.api.schema.Schema;
 import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.api.tuple.TupleBatch;
 import edu.uci.ics.textdb.exp.common.AbstractSingleInputOperator;
 import edu.uci.ics.textdb.exp.utils.DataflowUtils;
 import edu.uci.ics.textdb.storage.DataReader;
 import edu.uci.ics.textdb.storage.RelationManager;
+import edu.uci.ics.textdb.storage.utils.MultiAnalyzer;
 
 /**
  * KeywordMatcherSourceOperator is a source operator with a keyword query.
@@ -41,6 +45,7 @@ public class KeywordMatcherSourceOperator extends AbstractSingleInputOperator im
     private final KeywordMatcher keywordMatcher;
     
     private final Schema inputSchema;
+    private final Analyzer tableAnalyzer;
     
     private final ArrayList<String> queryTokenList;
     private final HashSet<String> queryTokenSet;
@@ -61,12 +66,17 @@ public class KeywordMatcherSourceOperator extends AbstractSingleInputOperator im
                 
         // input schema must be specified before creating query
         this.inputSchema = RelationManager.getRelationManager().getTableDataStore(predicate.getTableName()).getSchema();
+        this.tableAnalyzer = RelationManager.getRelationManager().getTableAnalyzer(predicate.getTableName());
         
         // generate dataReader
         Query luceneQuery = createLuceneQueryObject();
 
         this.dataReader = RelationManager.getRelationManager().getTableDataReader(predicate.getTableName(), luceneQuery);
-        this.dataReader.setPayloadAdded(true);
+        // the payload of the table is built by the analyzer of the attributes' fields,
+        // if the query targets the sub-fields of another analyzer, KeywordMatcher builds the payload itself
+        this.dataReader.setPayloadAdded(predicate.getAttributeNames().stream()
+                .filter(attributeName -> inputSchema.getAttribute(attributeName).getAttributeType() == AttributeType.TEXT)
+                .allMatch(attributeName -> getIndexFieldName(attributeName).equals(attributeName)));
         
         // generate KeywordMatcher
         KeywordPredicate keywordPredicate = new KeywordPredicate(
@@ -93,6 +103,11 @@ public class KeywordMatcherSourceOperator extends AbstractSingleInputOperator im
         return this.keywordMatcher.getNextTuple();
     }
 
+    @Override
+    public TupleBatch getNextBatch(int maxTuples) throws TextDBException {
+        return forwardNextBatch(maxTuples);
+    }
+
     @Override
     public Tuple processOneInputTuple(Tuple inputTuple) throws TextDBException {
         return this.keywordMatcher.processOneInputTuple(inputTuple);
@@ -110,6 +125,28 @@ public class KeywordMatcherSourceOperator extends AbstractSingleInputOperator im
     public void setInputOperator(IOperator inputOperator) {
     }
 
+    /**
+     * Reads only one partition of the table, see {@link DataReader#setPartition(int, int)}.
+     */
+    public void setPartition(int partitionIndex, int partitionCount) throws DataFlowException {
+        try {
+            this.dataReader.setPartition(partitionIndex, partitionCount);
+        } catch (StorageException e) {
+            throw new DataFlowException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Starts reading after a tuple of a previous read, see {@link DataReader#setSearchAfter(IDField)}.
+     */
+    public void setSearchAfter(IDField idField) throws DataFlowException {
+        try {
+            this.dataReader.setSearchAfter(idField);
+        } catch (StorageException e) {
+            throw new DataFlowException(e.getMessage(), e);
+        }
+    }
+
     public KeywordPredicate getPredicate() {
         return this.predicate;
     }
@@ -157,8 +194,9 @@ public class KeywordMatcherSourceOperator extends AbstractSingleInputOperator im
             }
             if (attributeType == AttributeType.TEXT) {
                 BooleanQuery.Builder fieldQueryBuilder = new BooleanQuery.Builder();
+                String indexFieldName = getIndexFieldName(attributeName);
                 for (String token : queryTokenSet) {
-                    Query termQuery = new TermQuery(new Term(attributeName, token.toLowerCase()));
+                    Query termQuery = new TermQuery(new Term(indexFieldName, token.toLowerCase()));
                     fieldQueryBuilder.add(termQuery, BooleanClause.Occur.MUST);
                 }
                 booleanQueryBuilder.add(fieldQueryBuilder.build(), BooleanClause.Occur.SHOULD);
@@ -186,15 +224,16 @@ public class KeywordMatcherSourceOperator extends AbstractSingleInputOperator im
                 booleanQueryBuilder.add(termQuery, BooleanClause.Occur.SHOULD);
             }
             if (attributeType == AttributeType.TEXT) {
+                String indexFieldName = getIndexFieldName(attributeName);
                 if (queryTokenList.size() == 1) {
-                    Query termQuery = new TermQuery(new Term(attributeName, predicate.getQuery().toLowerCase()));
+                    Query termQuery = new TermQuery(new Term(indexFieldName, predicate.getQuery().toLowerCase()));
                     booleanQueryBuilder.add(termQuery, BooleanClause.Occur.SHOULD);
                 } else {
                     PhraseQuery.Builder phraseQueryBuilder = new PhraseQuery.Builder();
                     for (int i = 0; i < queryTokensWithStopwords.size(); i++) {
                         if (!StandardAnalyzer.STOP_WORDS_SET
                                 .contains(queryTokensWithStopwords.get(i))) {
-                            phraseQueryBuilder.add(new Term(attributeName,
+                            phraseQueryBuilder.add(new Term(indexFieldName,
                                     queryTokensWithStopwords.get(i).toLowerCase()), i);
                         }
                     }
@@ -208,6 +247,21 @@ public class KeywordMatcherSourceOperator extends AbstractSingleInputOperator im
         return booleanQueryBuilder.build();
     }
 
+    /*
+     * Gets the field in which a TEXT attribute is indexed by the analyzer of the predicate,
+     *   which is a sub-field if the table has a MultiAnalyzer indexing the attribute with another analyzer first.
+     */
+    private String getIndexFieldName(String attributeName) {
+        if (this.tableAnalyzer instanceof MultiAnalyzer) {
+            String indexFieldName = ((MultiAnalyzer) this.tableAnalyzer).getIndexFieldName(
+                    attributeName, predicate.getLuceneAnalyzerString());
+            if (indexFieldName != null) {
+                return indexFieldName;
+            }
+        }
+        return attributeName;
+    }
+
     private Query buildScanQuery() throws DataFlowException {
         for (String attributeName : this.predicate.getAttributeNames()) {
             AttributeType attributeType = this.inputSchema.getAttribute(attributeName).getAttributeType();
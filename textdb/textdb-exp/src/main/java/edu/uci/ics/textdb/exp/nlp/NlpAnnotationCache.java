@@ -0,0 +1,291 @@
+package edu.uci.ics.textdb.exp.nlp;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+
+import edu.uci.ics.textdb.api.constants.DataConstants;
+import edu.uci.ics.textdb.api.exception.StorageException;
+import edu.uci.ics.textdb.api.exception.TextDBException;
+import edu.uci.ics.textdb.api.field.IField;
+import edu.uci.ics.textdb.api.field.StringField;
+import edu.uci.ics.textdb.api.schema.Attribute;
+import edu.uci.ics.textdb.api.schema.AttributeType;
+import edu.uci.ics.textdb.api.schema.Schema;
+import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.storage.DataReader;
+import edu.uci.ics.textdb.storage.DataWriter;
+import edu.uci.ics.textdb.storage.RelationManager;
+import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
+
+/**
+ * NlpAnnotationCache keeps the results of the NLP annotations,
+ *   so that running the same NLP operators over the same texts again doesn't run CoreNLP again.
+ *
+ * An annotation is keyed by the SHA-256 hash of the annotated text, the annotator config,
+ *   and ENCODING_VERSION, which must be changed when the encoding of the cached values changes.
+ *   The annotator config identifies the pipeline which annotated the text
+ *   (see NlpPipelineRegistry.getPipelineConfig(), which includes the CoreNLP version),
+ *   so the annotations of another version of the models are not returned.
+ *   The values are strings encoded by the operators. The key and the value are STRING attributes,
+ *   so they are not tokenized and have no term vectors, and the key is looked up by a TermQuery.
+ *   A value can't be longer than the maximum length of a Lucene term (MAX_VALUE_LENGTH bytes),
+ *   a longer value is only kept in the memory.
+ *
+ * The cache has two tiers: an in-memory LRU map, and a side table (TABLE_NAME) on the disk,
+ *   which survives the restarts. The table is only used by the NLP operators
+ *   whose predicates enable the annotation cache, and it's removed by clear(). New annotations are buffered and written to the table in one batch
+ *   when the cache is flushed (the NLP operators flush it when they are closed),
+ *   or when the buffer is full.
+ *   The rows of the written keys are deleted before the new rows are inserted, so a key has at most one row
+ *   even if it's missed and annotated by several operators at the same time.
+ *   The table is bounded by MAX_TABLE_SIZE rows: when a flush would exceed it, the table is cleared first,
+ *   so the oldest annotations are removed, and the recent ones are kept in the memory.
+ *
+ * The cache also keeps some metrics: number of memory hits, disk hits and misses.
+ *
+ */
+public class NlpAnnotationCache {
+
+    public static final String TABLE_NAME = "nlp_annotation_cache";
+    public static final String INDEX_DIR = DataConstants.INDEX_DIR + "/" + TABLE_NAME;
+
+    public static final String ENCODING_VERSION = "v1";
+
+    public static final String KEY = "key";
+    public static final String VALUE = "value";
+    public static final Attribute KEY_ATTR = new Attribute(KEY, AttributeType.STRING);
+    public static final Attribute VALUE_ATTR = new Attribute(VALUE, AttributeType.STRING);
+    public static final Schema SCHEMA_ANNOTATION_CACHE = new Schema(KEY_ATTR, VALUE_ATTR);
+
+    public static final int MEMORY_CACHE_SIZE = 10000;
+    public static final int MAX_PENDING_WRITES = 1000;
+    public static final int MAX_TABLE_SIZE = 100000;
+    public static final int MAX_VALUE_LENGTH = IndexWriter.MAX_TERM_LENGTH;
+
+    private static NlpAnnotationCache instance = null;
+
+    private final RelationManager relationManager;
+    private final String tableName;
+    private final int maxTableSize;
+
+    // the annotations recently used, by their keys, in the access order
+    private final LinkedHashMap<String, String> memoryCache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MEMORY_CACHE_SIZE;
+        }
+    };
+    // the annotations not written to the table yet
+    private LinkedHashMap<String, String> pendingWrites = new LinkedHashMap<>();
+
+    private final AtomicLong memoryHitCount = new AtomicLong();
+    private final AtomicLong diskHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    private NlpAnnotationCache() throws StorageException {
+        this(TABLE_NAME, INDEX_DIR, MAX_TABLE_SIZE);
+    }
+
+    /*
+     * Creates a cache on another table, only used in the tests.
+     */
+    NlpAnnotationCache(String tableName, String indexDirectory, int maxTableSize) throws StorageException {
+        this.relationManager = RelationManager.getRelationManager();
+        this.tableName = tableName;
+        this.maxTableSize = maxTableSize;
+        // the values of the tables created by the older versions are TEXT attributes
+        if (relationManager.checkTableExistence(tableName) && relationManager.getTableSchema(tableName)
+                .getAttribute(VALUE).getAttributeType() != AttributeType.STRING) {
+            relationManager.deleteTable(tableName);
+        }
+        if (!relationManager.checkTableExistence(tableName)) {
+            relationManager.createTable(tableName, indexDirectory, SCHEMA_ANNOTATION_CACHE,
+                    LuceneAnalyzerConstants.standardAnalyzerString());
+        }
+    }
+
+    public synchronized static NlpAnnotationCache getInstance() throws StorageException {
+        if (instance == null) {
+            instance = new NlpAnnotationCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Gets the cached annotation of a text.
+     *
+     * @param annotatorConfig, the config of the annotation, for example the pipeline config of the operator
+     * @param text, the annotated text
+     * @return the cached value, null if the text is not annotated with the config yet
+     * @throws TextDBException
+     */
+    public String get(String annotatorConfig, String text) throws TextDBException {
+        String key = getKey(annotatorConfig, text);
+        synchronized (this) {
+            String value = memoryCache.get(key);
+            if (value == null) {
+                value = pendingWrites.get(key);
+            }
+            if (value != null) {
+                memoryHitCount.incrementAndGet();
+                return value;
+            }
+        }
+
+        String value = readValue(key);
+        if (value == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        diskHitCount.incrementAndGet();
+        synchronized (this) {
+            memoryCache.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Adds the annotation of a text to the cache.
+     *
+     * @param annotatorConfig, the config of the annotation
+     * @param text, the annotated text
+     * @param value, the encoded annotation
+     * @throws TextDBException
+     */
+    public void put(String annotatorConfig, String text, String value) throws TextDBException {
+        String key = getKey(annotatorConfig, text);
+        boolean bufferFull;
+        synchronized (this) {
+            memoryCache.put(key, value);
+            pendingWrites.put(key, value);
+            bufferFull = pendingWrites.size() >= MAX_PENDING_WRITES;
+        }
+        if (bufferFull) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the pending annotations to the table.
+     *
+     * @throws TextDBException
+     */
+    public void flush() throws TextDBException {
+        LinkedHashMap<String, String> writes;
+        synchronized (this) {
+            if (pendingWrites.isEmpty()) {
+                return;
+            }
+            writes = pendingWrites;
+            pendingWrites = new LinkedHashMap<>();
+        }
+        List<Query> keyQueries = new ArrayList<>();
+        for (String key : writes.keySet()) {
+            keyQueries.add(new TermQuery(new Term(KEY, key)));
+        }
+        // only one DataWriter can write to the table at a time
+        synchronized (NlpAnnotationCache.class) {
+            DataWriter dataWriter = relationManager.getTableDataWriter(tableName);
+            dataWriter.open();
+            try {
+                dataWriter.deleteTuple(keyQueries.toArray(new Query[keyQueries.size()]));
+                if (dataWriter.getNumDocuments() + writes.size() > maxTableSize) {
+                    dataWriter.clearData();
+                }
+                for (Map.Entry<String, String> write : writes.entrySet()) {
+                    if (write.getValue().getBytes(StandardCharsets.UTF_8).length > MAX_VALUE_LENGTH) {
+                        continue;
+                    }
+                    dataWriter.insertTuple(new Tuple(SCHEMA_ANNOTATION_CACHE,
+                            new StringField(write.getKey()), new StringField(write.getValue())));
+                }
+            } finally {
+                dataWriter.close();
+            }
+        }
+    }
+
+    /**
+     * Removes all the annotations, in the memory and on the disk.
+     *
+     * @throws TextDBException
+     */
+    public void clear() throws TextDBException {
+        synchronized (this) {
+            memoryCache.clear();
+            pendingWrites.clear();
+        }
+        synchronized (NlpAnnotationCache.class) {
+            DataWriter dataWriter = relationManager.getTableDataWriter(tableName);
+            dataWriter.open();
+            dataWriter.clearData();
+            dataWriter.close();
+        }
+    }
+
+    /*
+     * Removes the annotations in the memory (after writing the pending ones), only used in the tests of the disk tier.
+     */
+    void clearMemoryCache() throws TextDBException {
+        flush();
+        synchronized (this) {
+            memoryCache.clear();
+        }
+    }
+
+    public long getMemoryHitCount() {
+        return memoryHitCount.get();
+    }
+
+    public long getDiskHitCount() {
+        return diskHitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    private String readValue(String key) throws TextDBException {
+        DataReader dataReader = relationManager.getTableDataReader(tableName, new TermQuery(new Term(KEY, key)));
+        dataReader.open();
+        try {
+            Tuple tuple;
+            while ((tuple = dataReader.getNextTuple()) != null) {
+                if (tuple.<IField>getField(KEY).getValue().toString().equals(key)) {
+                    return tuple.<IField>getField(VALUE).getValue().toString();
+                }
+            }
+            return null;
+        } finally {
+            dataReader.close();
+        }
+    }
+
+    private static String getKey(String annotatorConfig, String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder key = new StringBuilder(ENCODING_VERSION).append('|').append(annotatorConfig).append('|');
+            for (byte b : digest.digest(text.getBytes(StandardCharsets.UTF_8))) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,319 @@
+package edu.uci.ics.textdb.exp.nlp;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import edu.uci.ics.textdb.api.exception.DataFlowException;
+
+/**
+ * NlpPipelineRegistry keeps one Stanford CoreNLP pipeline for each set of annotators,
+ *   so that the NLP operators of all the plans share the loaded models
+ *   instead of loading them from the disk every time an operator is opened.
+ *
+ * A pipeline is loaded the first time it's checked out, or when the registry is warmed up,
+ *   for example before a service running the exp NLP operators accepts its first query.
+ *
+ * The annotators of CoreNLP are thread-safe, so a pipeline is shared by all the threads,
+ *   but the number of concurrent checkouts of a pipeline is bounded (maxCheckouts),
+ *   so that concurrent queries can't overload the machine. A checkout waits until
+ *   a pipeline is returned, or fails after the checkout timeout.
+ *
+ * The registry also keeps some metrics: number of loaded pipelines, their load time,
+ *   an estimate of the heap memory used by their models, number of checkouts and the time spent waiting for them.
+ *
+ */
+public class NlpPipelineRegistry {
+
+    public static final String POS_ANNOTATORS = "tokenize, ssplit, pos";
+    public static final String NER_ANNOTATORS = "tokenize, ssplit, pos, lemma, ner";
+    public static final String SENTIMENT_ANNOTATORS = "tokenize, ssplit, parse, sentiment";
+
+    // the version of CoreNLP and its models, read from the manifest of the CoreNLP jar
+    public static final String CORENLP_VERSION = getCoreNlpVersion();
+
+    public static final int DEFAULT_MAX_CHECKOUTS = Runtime.getRuntime().availableProcessors();
+    public static final long DEFAULT_CHECKOUT_TIMEOUT_SECONDS = 300;
+
+    private static volatile NlpPipelineRegistry singletonNlpPipelineRegistry = null;
+
+    // key: normalized annotators, for example "tokenize, ssplit, pos"
+    private final ConcurrentHashMap<String, PipelineEntry> pipelineMap = new ConcurrentHashMap<>();
+
+    private volatile int maxCheckouts = DEFAULT_MAX_CHECKOUTS;
+    private volatile long checkoutTimeoutSeconds = DEFAULT_CHECKOUT_TIMEOUT_SECONDS;
+
+    private final AtomicInteger loadedPipelineCount = new AtomicInteger();
+    private final AtomicLong loadTimeNanos = new AtomicLong();
+    private final AtomicLong modelMemoryBytes = new AtomicLong();
+    private final AtomicLong checkoutCount = new AtomicLong();
+    private final AtomicLong checkoutWaitTimeNanos = new AtomicLong();
+    private final AtomicInteger activeCheckoutCount = new AtomicInteger();
+
+    private NlpPipelineRegistry() {
+    }
+
+    public static NlpPipelineRegistry getNlpPipelineRegistry() {
+        if (singletonNlpPipelineRegistry == null) {
+            synchronized (NlpPipelineRegistry.class) {
+                if (singletonNlpPipelineRegistry == null) {
+                    singletonNlpPipelineRegistry = new NlpPipelineRegistry();
+                }
+            }
+        }
+        return singletonNlpPipelineRegistry;
+    }
+
+    /**
+     * Checks out the pipeline of a set of annotators, loading it if it's not loaded yet.
+     * The pipeline must be returned by closing the PooledPipeline.
+     *
+     * @param annotators, a comma separated list of annotators, for example "tokenize, ssplit, pos"
+     * @return
+     * @throws DataFlowException, if the pipeline can't be loaded, or the checkout times out
+     */
+    public PooledPipeline checkout(String annotators) throws DataFlowException {
+        PipelineEntry entry = pipelineMap.computeIfAbsent(normalizeAnnotators(annotators), PipelineEntry::new);
+        StanfordCoreNLP pipeline = entry.getPipeline();
+
+        long startTime = System.nanoTime();
+        try {
+            if (! entry.checkouts.tryAcquire(checkoutTimeoutSeconds, TimeUnit.SECONDS)) {
+                throw new DataFlowException(String.format(
+                        "timeout checking out the NLP pipeline %s, %d checkouts are in use", entry.annotators, entry.maxCheckouts));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataFlowException(e.getMessage(), e);
+        } finally {
+            checkoutWaitTimeNanos.addAndGet(System.nanoTime() - startTime);
+        }
+        checkoutCount.incrementAndGet();
+        activeCheckoutCount.incrementAndGet();
+        return new PooledPipeline(entry, pipeline);
+    }
+
+    /**
+     * Loads the pipelines of the sets of annotators, so that the first queries don't pay for loading the models.
+     *
+     * @param annotatorSets
+     * @throws DataFlowException, if a pipeline can't be loaded
+     */
+    public void warmUp(String... annotatorSets) throws DataFlowException {
+        for (String annotators : annotatorSets) {
+            pipelineMap.computeIfAbsent(normalizeAnnotators(annotators), PipelineEntry::new).getPipeline();
+        }
+    }
+
+    /**
+     * Removes the pipeline of a set of annotators, so that its models can be garbage collected
+     *   once the pipeline is returned by the operators still using it.
+     *
+     * @param annotators
+     */
+    public void unload(String annotators) {
+        PipelineEntry entry = pipelineMap.remove(normalizeAnnotators(annotators));
+        if (entry == null) {
+            return;
+        }
+        // waits for a load in progress, so that the metrics stay consistent
+        synchronized (entry) {
+            if (entry.isLoaded()) {
+                loadedPipelineCount.decrementAndGet();
+                modelMemoryBytes.addAndGet(-entry.memoryBytes);
+            }
+        }
+    }
+
+    /**
+     * @return the normalized annotators of the loaded pipelines
+     */
+    public List<String> getLoadedAnnotators() {
+        List<String> loadedAnnotators = new ArrayList<>();
+        for (PipelineEntry entry : pipelineMap.values()) {
+            if (entry.isLoaded()) {
+                loadedAnnotators.add(entry.annotators);
+            }
+        }
+        Collections.sort(loadedAnnotators);
+        return loadedAnnotators;
+    }
+
+    /**
+     * Gets the config of the pipeline of a set of annotators, which identifies the annotations it produces,
+     *   for example "corenlp-3.6.0:tokenize, ssplit, pos". It's used in the keys of NlpAnnotationCache.
+     *
+     * @param annotators
+     * @return the CoreNLP version and the normalized annotators
+     */
+    public static String getPipelineConfig(String annotators) {
+        return "corenlp-" + CORENLP_VERSION + ":" + normalizeAnnotators(annotators);
+    }
+
+    /**
+     * Sets the maximum number of concurrent checkouts of each pipeline,
+     *   it only applies to the pipelines loaded afterwards.
+     *
+     * @param maxCheckouts
+     */
+    public void setMaxCheckouts(int maxCheckouts) {
+        if (maxCheckouts < 1) {
+            throw new IllegalArgumentException("max checkouts must be at least 1, got " + maxCheckouts);
+        }
+        this.maxCheckouts = maxCheckouts;
+    }
+
+    public int getMaxCheckouts() {
+        return maxCheckouts;
+    }
+
+    public void setCheckoutTimeoutSeconds(long checkoutTimeoutSeconds) {
+        this.checkoutTimeoutSeconds = checkoutTimeoutSeconds;
+    }
+
+    public long getCheckoutTimeoutSeconds() {
+        return checkoutTimeoutSeconds;
+    }
+
+    public int getLoadedPipelineCount() {
+        return loadedPipelineCount.get();
+    }
+
+    public long getTotalLoadTimeMillis() {
+        return loadTimeNanos.get() / 1_000_000;
+    }
+
+    /**
+     * Gets an estimate of the heap memory used by the models of the loaded pipelines,
+     *   measured as the growth of the used heap while loading them.
+     */
+    public long getEstimatedModelMemoryBytes() {
+        return modelMemoryBytes.get();
+    }
+
+    public long getCheckoutCount() {
+        return checkoutCount.get();
+    }
+
+    public long getTotalCheckoutWaitTimeMillis() {
+        return checkoutWaitTimeNanos.get() / 1_000_000;
+    }
+
+    public int getActiveCheckoutCount() {
+        return activeCheckoutCount.get();
+    }
+
+    /*
+     * Normalizes the annotators, so that "tokenize,ssplit, pos" and "tokenize, ssplit, pos" share the same pipeline.
+     */
+    private static String normalizeAnnotators(String annotators) {
+        List<String> annotatorList = new ArrayList<>();
+        for (String annotator : annotators.split(",")) {
+            if (! annotator.trim().isEmpty()) {
+                annotatorList.add(annotator.trim());
+            }
+        }
+        return String.join(", ", annotatorList);
+    }
+
+    private static String getCoreNlpVersion() {
+        String version = StanfordCoreNLP.class.getPackage().getImplementationVersion();
+        return version == null ? "unknown" : version;
+    }
+
+    private class PipelineEntry {
+
+        private final String annotators;
+        private final int maxCheckouts;
+        private final Semaphore checkouts;
+
+        private volatile StanfordCoreNLP pipeline;
+        private long memoryBytes;
+
+        private PipelineEntry(String annotators) {
+            this.annotators = annotators;
+            this.maxCheckouts = NlpPipelineRegistry.this.maxCheckouts;
+            this.checkouts = new Semaphore(this.maxCheckouts, true);
+        }
+
+        private boolean isLoaded() {
+            return pipeline != null;
+        }
+
+        private StanfordCoreNLP getPipeline() throws DataFlowException {
+            if (pipeline == null) {
+                synchronized (this) {
+                    if (pipeline == null) {
+                        load();
+                    }
+                }
+            }
+            return pipeline;
+        }
+
+        private void load() throws DataFlowException {
+            long usedMemoryBefore = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            long startTime = System.nanoTime();
+            Properties props = new Properties();
+            props.setProperty("annotators", annotators);
+            try {
+                pipeline = new StanfordCoreNLP(props);
+            } catch (RuntimeException e) {
+                throw new DataFlowException("failed to load the NLP pipeline " + annotators + ": " + e.getMessage(), e);
+            }
+            loadTimeNanos.addAndGet(System.nanoTime() - startTime);
+            memoryBytes = Math.max(0, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() - usedMemoryBefore);
+            modelMemoryBytes.addAndGet(memoryBytes);
+            loadedPipelineCount.incrementAndGet();
+        }
+
+    }
+
+    /**
+     * PooledPipeline is a pipeline checked out from the registry,
+     *   it must be closed to return the pipeline.
+     */
+    public final class PooledPipeline implements AutoCloseable {
+
+        private final PipelineEntry entry;
+        private final StanfordCoreNLP pipeline;
+        private boolean closed = false;
+
+        private PooledPipeline(PipelineEntry entry, StanfordCoreNLP pipeline) {
+            this.entry = entry;
+            this.pipeline = pipeline;
+        }
+
+        public void annotate(Annotation annotation) throws DataFlowException {
+            if (closed) {
+                throw new DataFlowException("the NLP pipeline " + entry.annotators + " is already returned");
+            }
+            pipeline.annotate(annotation);
+        }
+
+        public String getAnnotators() {
+            return entry.annotators;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            activeCheckoutCount.decrementAndGet();
+            entry.checkouts.release();
+        }
+
+    }
+
+}
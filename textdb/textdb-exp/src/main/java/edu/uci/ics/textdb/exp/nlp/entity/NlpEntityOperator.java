@@ -1,15 +1,28 @@
 package edu.uci.ics.textdb.exp.nlp.entity;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
-import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.pipeline.Annotation;
-import edu.stanford.nlp.pipeline.StanfordCoreNLP;
 import edu.stanford.nlp.util.CoreMap;
 import edu.uci.ics.textdb.api.constants.SchemaConstants;
+import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.exception.TextDBException;
 import edu.uci.ics.textdb.api.field.IField;
 import edu.uci.ics.textdb.api.field.ListField;
@@ -17,6 +30,9 @@ import edu.uci.ics.textdb.api.schema.Schema;
 import edu.uci.ics.textdb.api.span.Span;
 import edu.uci.ics.textdb.api.tuple.Tuple;
 import edu.uci.ics.textdb.api.utils.Utils;
+import edu.uci.ics.textdb.exp.nlp.NlpAnnotationCache;
+import edu.uci.ics.textdb.exp.nlp.NlpPipelineRegistry;
+import edu.uci.ics.textdb.exp.nlp.NlpPipelineRegistry.PooledPipeline;
 import edu.uci.ics.textdb.exp.common.AbstractSingleInputOperator;
 import edu.uci.ics.textdb.exp.utils.DataflowUtils;
 
@@ -33,15 +49,47 @@ import edu.uci.ics.textdb.exp.utils.DataflowUtils;
  *        headquarters are in Mountain View."] Appends a list of spans as a
  *        field for the returned tuple: ["sentence1,0,6,Google, Organization",
  *        "sentence2,24,37,Mountain View, Location"]
+ *        <p>
+ *        If the parallelism of the predicate is greater than 1, the tuples are
+ *        annotated by a pool of worker threads sharing the pipeline of
+ *        NlpPipelineRegistry (the annotators of CoreNLP are thread-safe). The operator reads ahead a
+ *        bounded window of input tuples, which are annotated concurrently, and
+ *        returns the results in the input order. A new input tuple is read
+ *        only when the oldest one in the window is returned, so the window
+ *        also bounds the memory usage when the consumer is slow.
+ *        <p>
+ *        If the annotation cache is used, the tokens of a text are looked up in
+ *        NlpAnnotationCache before annotating it, so running the operator again
+ *        over the same texts doesn't run CoreNLP again.
+ *        <p>
+ *        The time spent reading the input, annotating (summed over the
+ *        workers) and waiting for the annotations is measured, see
+ *        getInputTimeMillis(), getAnnotationTimeMillis() and
+ *        getWaitTimeMillis().
  */
 public class NlpEntityOperator extends AbstractSingleInputOperator {
 
+    // the default size of the window, in number of tuples per worker thread
+    public static final int DEFAULT_WINDOW_SIZE_PER_THREAD = 4;
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
     private NlpEntityPredicate predicate;
 
     private Schema inputSchema;
-    
-    private static StanfordCoreNLP posPipeline = null;
-    private static StanfordCoreNLP nerPipeline = null;
+
+    private int windowSize;
+    private ExecutorService annotationPool;
+    // the tuples being annotated, in the input order
+    private final Deque<Future<Tuple>> annotationWindow = new ArrayDeque<>();
+    private boolean inputExhausted;
+
+    private final AtomicLong inputTimeNanos = new AtomicLong();
+    private final AtomicLong annotationTimeNanos = new AtomicLong();
+    private final AtomicLong waitTimeNanos = new AtomicLong();
+    private final AtomicLong annotatedTupleCount = new AtomicLong();
 
     /**
      * @param NlpEntityPredicate
@@ -53,26 +101,47 @@ public class NlpEntityOperator extends AbstractSingleInputOperator {
      */
     public NlpEntityOperator(NlpEntityPredicate predicate) {
         this.predicate = predicate;
+        this.windowSize = predicate.getParallelism() * DEFAULT_WINDOW_SIZE_PER_THREAD;
     }
 
     @Override
     protected void setUp() throws TextDBException {
+        if (predicate.getParallelism() < 1) {
+            throw new DataFlowException("parallelism must be at least 1, got " + predicate.getParallelism());
+        }
+        if (windowSize < 1) {
+            throw new DataFlowException("window size must be at least 1, got " + windowSize);
+        }
         inputSchema = inputOperator.getOutputSchema();
         outputSchema = inputSchema;
         if (!inputSchema.containsField(SchemaConstants.SPAN_LIST)) {
             outputSchema = Utils.addAttributeToSchema(outputSchema, SchemaConstants.SPAN_LIST_ATTRIBUTE);
         }
+
+        inputTimeNanos.set(0);
+        annotationTimeNanos.set(0);
+        waitTimeNanos.set(0);
+        annotatedTupleCount.set(0);
+        inputExhausted = false;
+        if (predicate.getParallelism() > 1) {
+            annotationPool = Executors.newFixedThreadPool(predicate.getParallelism(), runnable -> {
+                Thread thread = new Thread(runnable, "textdb-nlp-entity-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
     }
     
     @Override
     protected Tuple computeNextMatchingTuple() throws TextDBException {
+        if (annotationPool != null) {
+            return computeNextAnnotatedTuple();
+        }
+
         Tuple inputTuple = null;
         Tuple resultTuple = null;
         
-        while ((inputTuple = inputOperator.getNextTuple()) != null) {
-            if (!inputSchema.containsField(SchemaConstants.SPAN_LIST)) {
-                inputTuple = DataflowUtils.getSpanTuple(inputTuple.getFields(), new ArrayList<Span>(), outputSchema);
-            }            
+        while ((inputTuple = getNextInputTuple()) != null) {
             resultTuple = processOneInputTuple(inputTuple);
             if (resultTuple != null) {
                 break;
@@ -82,13 +151,73 @@ public class NlpEntityOperator extends AbstractSingleInputOperator {
         return resultTuple;
     }
 
+    /*
+     * Computes the next matching tuple in the parallel mode.
+     */
+    private Tuple computeNextAnnotatedTuple() throws TextDBException {
+        while (true) {
+            // a tuple is never read ahead if the results still needed by the limit are already in the window
+            long targetWindowSize = Math.max(1, Math.min(windowSize, getRemainingResultCount()));
+            while (!inputExhausted && annotationWindow.size() < targetWindowSize) {
+                Tuple inputTuple = getNextInputTuple();
+                if (inputTuple == null) {
+                    inputExhausted = true;
+                    break;
+                }
+                annotationWindow.add(annotationPool.submit(() -> processOneInputTuple(inputTuple)));
+            }
+
+            Future<Tuple> oldestAnnotation = annotationWindow.poll();
+            if (oldestAnnotation == null) {
+                return null;
+            }
+            Tuple resultTuple = waitForAnnotation(oldestAnnotation);
+            if (resultTuple != null) {
+                return resultTuple;
+            }
+        }
+    }
+
+    private Tuple waitForAnnotation(Future<Tuple> annotation) throws TextDBException {
+        long startTime = System.nanoTime();
+        try {
+            return annotation.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataFlowException(e.getMessage(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TextDBException) {
+                throw (TextDBException) e.getCause();
+            }
+            throw new DataFlowException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            waitTimeNanos.addAndGet(System.nanoTime() - startTime);
+        }
+    }
+
+    /*
+     * Reads the next input tuple, and adds the span list to it if the input schema doesn't have it.
+     */
+    private Tuple getNextInputTuple() throws TextDBException {
+        long startTime = System.nanoTime();
+        Tuple inputTuple = inputOperator.getNextTuple();
+        inputTimeNanos.addAndGet(System.nanoTime() - startTime);
+        if (inputTuple != null && !inputSchema.containsField(SchemaConstants.SPAN_LIST)) {
+            inputTuple = DataflowUtils.getSpanTuple(inputTuple.getFields(), new ArrayList<Span>(), outputSchema);
+        }
+        return inputTuple;
+    }
+
     @Override
     public Tuple processOneInputTuple(Tuple inputTuple) throws TextDBException {
+        long startTime = System.nanoTime();
         List<Span> matchingResults = new ArrayList<>();
         for (String attributeName : predicate.getAttributeNames()) {
             IField field = inputTuple.getField(attributeName);
             matchingResults.addAll(extractNlpSpans(field, attributeName));
         }
+        annotationTimeNanos.addAndGet(System.nanoTime() - startTime);
+        annotatedTupleCount.incrementAndGet();
 
         if (matchingResults.isEmpty()) {
             return null;
@@ -151,28 +280,55 @@ public class NlpEntityOperator extends AbstractSingleInputOperator {
      *           to the returned list. In this case, token "Microsoft" would be
      *           span: ["Sentence1", 0, 9, Organization, "Microsoft"]
      */
-    private List<Span> extractNlpSpans(IField iField, String attributeName) {
+    private List<Span> extractNlpSpans(IField iField, String attributeName) throws TextDBException {
         List<Span> spanList = new ArrayList<>();
         String text = (String) iField.getValue();
-        Properties props = new Properties();
-
-        // Setup Stanford NLP pipeline based on nlpTypeIndicator
-        StanfordCoreNLP pipeline = null;
-        if (getNlpTypeIndicator(predicate.getNlpEntityType()).equals("POS")) {
-            props.setProperty("annotators", "tokenize, ssplit, pos");
-            if (posPipeline == null) {
-                posPipeline = new StanfordCoreNLP(props);
+
+        for (Span tokenSpan : annotateTokens(text, attributeName)) {
+            if (predicate.getNlpEntityType().equals(NlpEntityType.NE_ALL)
+                    || predicate.getNlpEntityType().toString().equals(tokenSpan.getKey())) {
+                Span span = tokenSpan;
+                if (spanList.size() >= 1 && (getNlpTypeIndicator(predicate.getNlpEntityType()).equals("NE_ALL"))) {
+                    Span previousSpan = spanList.get(spanList.size() - 1);
+                    if (previousSpan.getAttributeName().equals(span.getAttributeName())
+                            && (span.getStart() - previousSpan.getEnd() <= 1)
+                            && previousSpan.getKey().equals(span.getKey())) {
+                        Span newSpan = mergeTwoSpans(previousSpan, span);
+                        span = newSpan;
+                        spanList.remove(spanList.size() - 1);
+                    }
+                }
+                spanList.add(span);
             }
-            pipeline = posPipeline;
-        } else {
-            props.setProperty("annotators", "tokenize, ssplit, pos, lemma, " + "ner");
-            if (nerPipeline == null) {
-                nerPipeline = new StanfordCoreNLP(props);
+        }
+        return spanList;
+    }
+
+    /*
+     * Annotates the text, and returns a span for each token having one of the NlpEntityTypes,
+     *   the key of a span is the NlpEntityType of the token and the value is the token itself.
+     * 
+     * The annotation of the text doesn't depend on the NlpEntityType of the predicate (only on the pipeline),
+     *   so if the annotation cache is used, the cached tokens are shared by all the NlpEntityTypes of a pipeline.
+     */
+    private List<Span> annotateTokens(String text, String attributeName) throws TextDBException {
+        // Check out the shared Stanford NLP pipeline based on nlpTypeIndicator
+        boolean isPos = getNlpTypeIndicator(predicate.getNlpEntityType()).equals("POS");
+        String annotators = isPos ? NlpPipelineRegistry.POS_ANNOTATORS : NlpPipelineRegistry.NER_ANNOTATORS;
+        String cacheConfig = NlpEntityOperator.class.getSimpleName() + ":" + NlpPipelineRegistry.getPipelineConfig(annotators);
+
+        if (predicate.isUseAnnotationCache()) {
+            String cachedTokens = NlpAnnotationCache.getInstance().get(cacheConfig, text);
+            if (cachedTokens != null) {
+                return decodeTokens(cachedTokens, attributeName);
             }
-            pipeline = nerPipeline;
         }
+
+        List<Span> tokenList = new ArrayList<>();
         Annotation documentAnnotation = new Annotation(text);
-        pipeline.annotate(documentAnnotation);
+        try (PooledPipeline pipeline = NlpPipelineRegistry.getNlpPipelineRegistry().checkout(annotators)) {
+            pipeline.annotate(documentAnnotation);
+        }
         List<CoreMap> sentences = documentAnnotation.get(CoreAnnotations.SentencesAnnotation.class);
         for (CoreMap sentence : sentences) {
             for (CoreLabel token : sentence.get(CoreAnnotations.TokensAnnotation.class)) {
@@ -180,7 +336,7 @@ public class NlpEntityOperator extends AbstractSingleInputOperator {
                 String stanfordNlpConstant;
 
                 // Extract annotations based on nlpTypeIndicator
-                if (getNlpTypeIndicator(predicate.getNlpEntityType()).equals("POS")) {
+                if (isPos) {
                     stanfordNlpConstant = token.get(CoreAnnotations.PartOfSpeechAnnotation.class);
                 } else {
                     stanfordNlpConstant = token.get(CoreAnnotations.NamedEntityTagAnnotation.class);
@@ -190,27 +346,45 @@ public class NlpEntityOperator extends AbstractSingleInputOperator {
                 if (nlpEntityType == null) {
                     continue;
                 }
-                if (predicate.getNlpEntityType().equals(NlpEntityType.NE_ALL) || predicate.getNlpEntityType().equals(nlpEntityType)) {
-                    int start = token.get(CoreAnnotations.CharacterOffsetBeginAnnotation.class);
-                    int end = token.get(CoreAnnotations.CharacterOffsetEndAnnotation.class);
-                    String word = token.get(CoreAnnotations.TextAnnotation.class);
-
-                    Span span = new Span(attributeName, start, end, nlpEntityType.toString(), word);
-                    if (spanList.size() >= 1 && (getNlpTypeIndicator(predicate.getNlpEntityType()).equals("NE_ALL"))) {
-                        Span previousSpan = spanList.get(spanList.size() - 1);
-                        if (previousSpan.getAttributeName().equals(span.getAttributeName())
-                                && (span.getStart() - previousSpan.getEnd() <= 1)
-                                && previousSpan.getKey().equals(span.getKey())) {
-                            Span newSpan = mergeTwoSpans(previousSpan, span);
-                            span = newSpan;
-                            spanList.remove(spanList.size() - 1);
-                        }
-                    }
-                    spanList.add(span);
-                }
+                int start = token.get(CoreAnnotations.CharacterOffsetBeginAnnotation.class);
+                int end = token.get(CoreAnnotations.CharacterOffsetEndAnnotation.class);
+                String word = token.get(CoreAnnotations.TextAnnotation.class);
+                tokenList.add(new Span(attributeName, start, end, nlpEntityType.toString(), word));
             }
         }
-        return spanList;
+
+        if (predicate.isUseAnnotationCache()) {
+            NlpAnnotationCache.getInstance().put(cacheConfig, text, encodeTokens(tokenList));
+        }
+        return tokenList;
+    }
+
+    /*
+     * Encodes the token spans as a JSON array of [start, end, key, value] arrays.
+     */
+    private static String encodeTokens(List<Span> tokenList) throws DataFlowException {
+        List<List<Object>> encodedTokens = new ArrayList<>();
+        for (Span token : tokenList) {
+            encodedTokens.add(Arrays.asList(token.getStart(), token.getEnd(), token.getKey(), token.getValue()));
+        }
+        try {
+            return objectMapper.writeValueAsString(encodedTokens);
+        } catch (IOException e) {
+            throw new DataFlowException(e.getMessage(), e);
+        }
+    }
+
+    private static List<Span> decodeTokens(String encodedTokens, String attributeName) throws DataFlowException {
+        List<Span> tokenList = new ArrayList<>();
+        try {
+            for (JsonNode token : objectMapper.readTree(encodedTokens)) {
+                tokenList.add(new Span(attributeName, token.get(0).asInt(), token.get(1).asInt(),
+                        token.get(2).asText(), token.get(3).asText()));
+            }
+        } catch (IOException e) {
+            throw new DataFlowException(e.getMessage(), e);
+        }
+        return tokenList;
     }
 
     /**
@@ -321,10 +495,72 @@ public class NlpEntityOperator extends AbstractSingleInputOperator {
 
     @Override
     protected void cleanUp() throws TextDBException {
+        if (annotationPool != null) {
+            // the running annotations are not interrupted, because interrupting a thread reading a Lucene index
+            //   could close the file channels shared by the other readers, they are drained instead
+            for (Future<Tuple> annotation : annotationWindow) {
+                annotation.cancel(false);
+            }
+            annotationWindow.clear();
+            ExecutorService pool = annotationPool;
+            annotationPool = null;
+            pool.shutdown();
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DataFlowException(e.getMessage(), e);
+            }
+        }
+        if (predicate.isUseAnnotationCache()) {
+            NlpAnnotationCache.getInstance().flush();
+        }
     }
 
     public NlpEntityPredicate getPredicate() {
         return this.predicate;
     }
 
+    /**
+     * Sets the maximum number of input tuples read ahead and annotated concurrently in the parallel mode,
+     *   the default is DEFAULT_WINDOW_SIZE_PER_THREAD times the parallelism.
+     * 
+     * @param windowSize
+     */
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    public int getWindowSize() {
+        return this.windowSize;
+    }
+
+    /**
+     * Gets the time spent reading the input tuples since the operator is opened.
+     */
+    public long getInputTimeMillis() {
+        return inputTimeNanos.get() / 1_000_000;
+    }
+
+    /**
+     * Gets the time spent annotating the tuples since the operator is opened, summed over all the worker threads.
+     */
+    public long getAnnotationTimeMillis() {
+        return annotationTimeNanos.get() / 1_000_000;
+    }
+
+    /**
+     * Gets the time the consumer spent waiting for the annotations since the operator is opened (parallel mode only).
+     */
+    public long getWaitTimeMillis() {
+        return waitTimeNanos.get() / 1_000_000;
+    }
+
+    /**
+     * Gets the number of tuples annotated since the operator is opened.
+     */
+    public long getAnnotatedTupleCount() {
+        return annotatedTupleCount.get();
+    }
+
 }
@@ -13,15 +13,48 @@ public class NlpEntityPredicate extends PredicateBase {
     
     private NlpEntityType nlpEntityType;
     private List<String> attributeNames;
+    private Integer parallelism;
+    private Boolean useAnnotationCache;
 
+    /*
+     * This constructor is for internal use. It's not a JSON entry point.
+     */
+    public NlpEntityPredicate(
+            NlpEntityType nlpEntityType, 
+            List<String> attributeNames) {
+        this(nlpEntityType, attributeNames, null, null);
+    }
+
+    /**
+     * NlpEntityPredicate is used to create a NlpEntityOperator.
+     * 
+     * @param nlpEntityType, the type of the named entities or the part of speech to extract
+     * @param attributeNames, a list of attribute names to extract the entities from
+     * @param parallelism, optional, the number of threads annotating the tuples in parallel, default 1
+     * @param useAnnotationCache, optional, look up and store the annotations in NlpAnnotationCache, default false
+     */
     @JsonCreator
     public NlpEntityPredicate(
             @JsonProperty(value = PropertyNameConstants.NLP_ENTITY_TYPE, required = true)
             NlpEntityType nlpEntityType, 
             @JsonProperty(value = PropertyNameConstants.ATTRIBUTE_NAMES, required = true)
-            List<String> attributeNames) {
+            List<String> attributeNames,
+            @JsonProperty(value = PropertyNameConstants.NLP_PARALLELISM, required = false)
+            Integer parallelism,
+            @JsonProperty(value = PropertyNameConstants.NLP_USE_ANNOTATION_CACHE, required = false)
+            Boolean useAnnotationCache) {
         this.nlpEntityType = nlpEntityType;
         this.attributeNames = attributeNames;
+        if (parallelism == null) {
+            this.parallelism = 1;
+        } else {
+            this.parallelism = parallelism;
+        }
+        if (useAnnotationCache == null) {
+            this.useAnnotationCache = false;
+        } else {
+            this.useAnnotationCache = useAnnotationCache;
+        }
     }
 
     @JsonProperty(PropertyNameConstants.NLP_ENTITY_TYPE)
@@ -34,4 +67,14 @@ public class NlpEntityPredicate extends PredicateBase {
         return new ArrayList<>(attributeNames);
     }
     
+    @JsonProperty(PropertyNameConstants.NLP_PARALLELISM)
+    public Integer getParallelism() {
+        return parallelism;
+    }
+    
+    @JsonProperty(PropertyNameConstants.NLP_USE_ANNOTATION_CACHE)
+    public Boolean isUseAnnotationCache() {
+        return useAnnotationCache;
+    }
+    
 }
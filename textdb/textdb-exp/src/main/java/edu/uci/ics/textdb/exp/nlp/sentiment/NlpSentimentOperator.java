@@ -2,12 +2,10 @@ package edu.uci.ics.textdb.exp.nlp.sentiment;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Properties;
 
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.neural.rnn.RNNCoreAnnotations;
 import edu.stanford.nlp.pipeline.Annotation;
-import edu.stanford.nlp.pipeline.StanfordCoreNLP;
 import edu.stanford.nlp.sentiment.SentimentCoreAnnotations;
 import edu.stanford.nlp.trees.Tree;
 import edu.stanford.nlp.util.CoreMap;
@@ -22,6 +20,9 @@ import edu.uci.ics.textdb.api.schema.AttributeType;
 import edu.uci.ics.textdb.api.schema.Schema;
 import edu.uci.ics.textdb.api.tuple.Tuple;
 import edu.uci.ics.textdb.api.utils.Utils;
+import edu.uci.ics.textdb.exp.nlp.NlpAnnotationCache;
+import edu.uci.ics.textdb.exp.nlp.NlpPipelineRegistry;
+import edu.uci.ics.textdb.exp.nlp.NlpPipelineRegistry.PooledPipeline;
 
 /**
  * This Operator performs sentiment analysis using Stanford NLP's sentiment analysis module.
@@ -35,6 +36,10 @@ import edu.uci.ics.textdb.api.utils.Utils;
  * 
  * The result will be put into an attribute with resultAttributeName specified in predicate, and type Integer.
  * 
+ * The sentiment pipeline is shared by all the operators through NlpPipelineRegistry,
+ * so the parser and sentiment models are only loaded once. If the annotation cache is used,
+ * the sentiment score of a text is looked up in NlpAnnotationCache before computing it.
+ * 
  * @author Zuozhi Wang
  *
  */
@@ -45,8 +50,6 @@ public class NlpSentimentOperator implements IOperator {
     private Schema outputSchema;
     private int cursor = CLOSED;
     
-    StanfordCoreNLP sentimentPipeline;
-    
     public NlpSentimentOperator(NlpSentimentPredicate predicate) {
         this.predicate = predicate;
     }
@@ -106,12 +109,10 @@ public class NlpSentimentOperator implements IOperator {
         // generate output schema by transforming the input schema
         outputSchema = transformSchema(inputOperator.getOutputSchema());
         
-        cursor = OPENED;
+        // load the shared NLP sentiment analysis pipeline before any tuple is processed
+        NlpPipelineRegistry.getNlpPipelineRegistry().warmUp(NlpPipelineRegistry.SENTIMENT_ANNOTATORS);
         
-        // setup NLP sentiment analysis pipeline
-        Properties props = new Properties();
-        props.setProperty("annotators", "tokenize, ssplit, parse, sentiment");
-        sentimentPipeline = new StanfordCoreNLP(props);
+        cursor = OPENED;
     }
 
     @Override
@@ -132,10 +133,22 @@ public class NlpSentimentOperator implements IOperator {
     }
     
     
-    private Integer computeSentimentScore(Tuple inputTuple) {
+    private Integer computeSentimentScore(Tuple inputTuple) throws TextDBException {
         String inputText = inputTuple.<IField>getField(predicate.getInputAttributeName()).getValue().toString();
+        String cacheConfig = NlpSentimentOperator.class.getSimpleName() + ":"
+                + NlpPipelineRegistry.getPipelineConfig(NlpPipelineRegistry.SENTIMENT_ANNOTATORS);
+        if (predicate.isUseAnnotationCache()) {
+            String cachedSentiment = NlpAnnotationCache.getInstance().get(cacheConfig, inputText);
+            if (cachedSentiment != null) {
+                return Integer.valueOf(cachedSentiment);
+            }
+        }
+        
         Annotation documentAnnotation = new Annotation(inputText);
-        sentimentPipeline.annotate(documentAnnotation);
+        try (PooledPipeline sentimentPipeline = 
+                NlpPipelineRegistry.getNlpPipelineRegistry().checkout(NlpPipelineRegistry.SENTIMENT_ANNOTATORS)) {
+            sentimentPipeline.annotate(documentAnnotation);
+        }
         
         // mainSentiment is calculated by the sentiment class of the longest sentence
         Integer mainSentiment = 0;
@@ -149,6 +162,9 @@ public class NlpSentimentOperator implements IOperator {
             }
         }
         
+        if (predicate.isUseAnnotationCache()) {
+            NlpAnnotationCache.getInstance().put(cacheConfig, inputText, mainSentiment.toString());
+        }
         return mainSentiment;
     }
 
@@ -160,6 +176,9 @@ public class NlpSentimentOperator implements IOperator {
         if (inputOperator != null) {
             inputOperator.close();
         }
+        if (predicate.isUseAnnotationCache()) {
+            NlpAnnotationCache.getInstance().flush();
+        }
         cursor = CLOSED;
     }
 
@@ -1,5 +1,6 @@
 package edu.uci.ics.textdb.exp.nlp.sentiment;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import edu.uci.ics.textdb.exp.common.PredicateBase;
@@ -9,15 +10,40 @@ public class NlpSentimentPredicate extends PredicateBase {
     
     private final String inputAttributeName;
     private final String resultAttributeName;
+    private final Boolean useAnnotationCache;
     
+    /*
+     * This constructor is for internal use. It's not a JSON entry point.
+     */
+    public NlpSentimentPredicate(
+            String inputAttributeName,
+            String resultAttributeName) {
+        this(inputAttributeName, resultAttributeName, null);
+    }
+    
+    /**
+     * NlpSentimentPredicate is used to create a NlpSentimentOperator.
+     * 
+     * @param inputAttributeName, the name of the attribute to compute the sentiment of
+     * @param resultAttributeName, the name of the result attribute
+     * @param useAnnotationCache, optional, look up and store the sentiment scores in NlpAnnotationCache, default false
+     */
+    @JsonCreator
     public NlpSentimentPredicate(
             @JsonProperty(value = PropertyNameConstants.ATTRIBUTE_NAME, required = true)
             String inputAttributeName,
             @JsonProperty(value = PropertyNameConstants.RESULT_ATTRIBUTE_NAME, required = true)
-            String resultAttributeName
+            String resultAttributeName,
+            @JsonProperty(value = PropertyNameConstants.NLP_USE_ANNOTATION_CACHE, required = false)
+            Boolean useAnnotationCache
             ) {
         this.inputAttributeName = inputAttributeName;
         this.resultAttributeName = resultAttributeName;
+        if (useAnnotationCache == null) {
+            this.useAnnotationCache = false;
+        } else {
+            this.useAnnotationCache = useAnnotationCache;
+        }
     }
     
     @JsonProperty(PropertyNameConstants.ATTRIBUTE_NAME)
@@ -29,5 +55,10 @@ public class NlpSentimentPredicate extends PredicateBase {
     public String getResultAttributeName() {
         return this.resultAttributeName;
     }
+    
+    @JsonProperty(PropertyNameConstants.NLP_USE_ANNOTATION_CACHE)
+    public Boolean isUseAnnotationCache() {
+        return this.useAnnotationCache;
+    }
 
 }
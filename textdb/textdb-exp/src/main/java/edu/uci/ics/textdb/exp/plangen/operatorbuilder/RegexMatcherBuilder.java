@@ -0,0 +1,63 @@
+package edu.uci.ics.textdb.exp.plangen.operatorbuilder;
+
+import java.util.List;
+import java.util.Map;
+
+import edu.uci.ics.textdb.api.exception.PlanGenException;
+import edu.uci.ics.textdb.exp.regexmatcher.RegexMatcher;
+import edu.uci.ics.textdb.exp.regexmatcher.RegexPredicate;
+import edu.uci.ics.textdb.plangen.PlanGenUtils;
+
+/**
+ * RegexMatcherBuilder provides a static function that builds a RegexMatcher.
+ *
+ * Besides some commonly used properties (properties for attribute list, limit, offset),
+ * RegexMatcherBuilder currently needs the following properties:
+ *
+ *   regex (required)
+ *   ignoreCase (optional, default false)
+ *
+ */
+public class RegexMatcherBuilder {
+
+    public static final String REGEX = "regex";
+    public static final String IGNORE_CASE = "ignoreCase";
+
+    /**
+     * Builds a RegexMatcher according to operatorProperties.
+     */
+    public static RegexMatcher buildRegexMatcher(Map<String, String> operatorProperties) throws PlanGenException {
+        String regex = OperatorBuilderUtils.getRequiredProperty(REGEX, operatorProperties);
+
+        // check if regex is empty
+        PlanGenUtils.planGenAssert(!regex.trim().isEmpty(), "regex is empty");
+
+        // generate attribute names
+        List<String> attributeNames = OperatorBuilderUtils.constructAttributeNames(operatorProperties);
+
+        // build RegexMatcher
+        RegexPredicate regexPredicate = new RegexPredicate(regex, attributeNames, findIgnoreCase(operatorProperties));
+        RegexMatcher regexMatcher = new RegexMatcher(regexPredicate);
+
+        // set limit and offset
+        Integer limitInt = OperatorBuilderUtils.findLimit(operatorProperties);
+        if (limitInt != null) {
+            regexMatcher.setLimit(limitInt);
+        }
+        Integer offsetInt = OperatorBuilderUtils.findOffset(operatorProperties);
+        if (offsetInt != null) {
+            regexMatcher.setOffset(offsetInt);
+        }
+
+        return regexMatcher;
+    }
+
+    /**
+     * Finds the "ignoreCase" value in the operator's properties, false if it's not found.
+     */
+    public static boolean findIgnoreCase(Map<String, String> operatorProperties) {
+        String ignoreCaseStr = OperatorBuilderUtils.getOptionalProperty(IGNORE_CASE, operatorProperties);
+        return ignoreCaseStr != null && Boolean.parseBoolean(ignoreCaseStr.trim());
+    }
+
+}
@@ -0,0 +1,90 @@
+package edu.uci.ics.textdb.exp.plangen.operatorbuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.uci.ics.textdb.api.exception.PlanGenException;
+import edu.uci.ics.textdb.exp.regexmatcher.RegexSetMatcher;
+import edu.uci.ics.textdb.exp.regexmatcher.RegexSetPredicate;
+import edu.uci.ics.textdb.plangen.PlanGenUtils;
+
+/**
+ * RegexSetMatcherBuilder provides a static function that builds a RegexSetMatcher.
+ *
+ * Besides some commonly used properties (properties for attribute list, limit, offset),
+ * RegexSetMatcherBuilder currently needs the following properties:
+ *
+ *   regexes (required), a JSON array of the regexes, since a regex can contain commas
+ *   ignoreCase (optional, default false)
+ *   matchAll (optional, default false)
+ *
+ */
+public class RegexSetMatcherBuilder {
+
+    public static final String REGEXES = "regexes";
+    public static final String IGNORE_CASE = RegexMatcherBuilder.IGNORE_CASE;
+    public static final String MATCH_ALL = "matchAll";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Builds a RegexSetMatcher according to operatorProperties.
+     */
+    public static RegexSetMatcher buildRegexSetMatcher(Map<String, String> operatorProperties) throws PlanGenException {
+        List<String> regexes = parseRegexes(OperatorBuilderUtils.getRequiredProperty(REGEXES, operatorProperties));
+
+        // check if any regex is empty
+        PlanGenUtils.planGenAssert(!regexes.isEmpty(), "regexes is empty");
+        PlanGenUtils.planGenAssert(regexes.stream().noneMatch(regex -> regex.trim().isEmpty()), "regex is empty");
+
+        // generate attribute names
+        List<String> attributeNames = OperatorBuilderUtils.constructAttributeNames(operatorProperties);
+
+        // build RegexSetMatcher
+        String matchAllStr = OperatorBuilderUtils.getOptionalProperty(MATCH_ALL, operatorProperties);
+        RegexSetPredicate regexSetPredicate = new RegexSetPredicate(regexes, attributeNames,
+                RegexMatcherBuilder.findIgnoreCase(operatorProperties),
+                matchAllStr != null && Boolean.parseBoolean(matchAllStr.trim()));
+        RegexSetMatcher regexSetMatcher = new RegexSetMatcher(regexSetPredicate);
+
+        // set limit and offset
+        Integer limitInt = OperatorBuilderUtils.findLimit(operatorProperties);
+        if (limitInt != null) {
+            regexSetMatcher.setLimit(limitInt);
+        }
+        Integer offsetInt = OperatorBuilderUtils.findOffset(operatorProperties);
+        if (offsetInt != null) {
+            regexSetMatcher.setOffset(offsetInt);
+        }
+
+        return regexSetMatcher;
+    }
+
+    /**
+     * Parses the "regexes" property, a JSON array of strings.
+     */
+    public static List<String> parseRegexes(String regexesStr) throws PlanGenException {
+        try {
+            return objectMapper.readValue(regexesStr, new TypeReference<List<String>>() {});
+        } catch (IOException e) {
+            throw new PlanGenException("regexes must be a JSON array of strings: " + regexesStr, e);
+        }
+    }
+
+    /**
+     * Converts a list of regexes to the "regexes" property.
+     */
+    public static String toRegexesProperty(List<String> regexes) throws PlanGenException {
+        try {
+            return objectMapper.writeValueAsString(regexes);
+        } catch (JsonProcessingException e) {
+            throw new PlanGenException(e.getMessage(), e);
+        }
+    }
+
+}
@@ -10,7 +10,14 @@ import edu.uci.ics.textdb.api.schema.Attribute;
 import edu.uci.ics.textdb.api.schema.Schema;
 import edu.uci.ics.textdb.api.tuple.Tuple;
 import edu.uci.ics.textdb.exp.common.AbstractSingleInputOperator;
+import edu.uci.ics.textdb.exp.source.scan.ScanBasedSourceOperator;
 
+/**
+ * ProjectionOperator keeps the projected attributes of the input tuples.
+ * 
+ * If its input operator is a scan source, the projection is pushed down to the scan when the operator is opened,
+ *   so that the attributes that are not projected are not read from the index.
+ */
 public class ProjectionOperator extends AbstractSingleInputOperator {
     
     ProjectionPredicate predicate;
@@ -21,6 +28,14 @@ public class ProjectionOperator extends AbstractSingleInputOperator {
         this.predicate = predicate;
     }
 
+    @Override
+    public void open() throws TextDBException {
+        if (cursor == CLOSED && inputOperator instanceof ScanBasedSourceOperator) {
+            ((ScanBasedSourceOperator) inputOperator).pushDownProjection(predicate.getProjectionFields());
+        }
+        super.open();
+    }
+
     @Override
     protected void setUp() throws TextDBException {
         inputSchema = inputOperator.getOutputSchema();
@@ -0,0 +1,110 @@
+package edu.uci.ics.textdb.exp.regexmatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.uci.ics.textdb.api.exception.DataFlowException;
+import edu.uci.ics.textdb.api.span.Span;
+
+/**
+ * CompiledRegex is a regex compiled by one of the two available regex engines, shared by RegexMatcher and RegexSetMatcher.
+ * Java Regex is tried first, and RE2J is used if Java Regex can't compile the regex.
+ *
+ * It also keeps the literal prefilter of the regex (see RegexLiteralPrefilter), null if the regex doesn't have one.
+ *
+ */
+class CompiledRegex {
+
+    // two available regex engines
+    private enum RegexEngine {
+        JavaRegex, RE2J
+    }
+
+    private final String regex;
+    private final RegexEngine regexEngine;
+    private final java.util.regex.Pattern javaPattern;
+    private final com.google.re2j.Pattern re2jPattern;
+    private final RegexLiteralPrefilter literalPrefilter;
+
+    private CompiledRegex(String regex, java.util.regex.Pattern javaPattern, com.google.re2j.Pattern re2jPattern,
+            boolean ignoreCase) {
+        this.regex = regex;
+        this.regexEngine = javaPattern != null ? RegexEngine.JavaRegex : RegexEngine.RE2J;
+        this.javaPattern = javaPattern;
+        this.re2jPattern = re2jPattern;
+        this.literalPrefilter = RegexLiteralPrefilter.create(regex, ignoreCase);
+    }
+
+    /**
+     * Compiles a regex, tries Java Regex first, then RE2J.
+     *
+     * @param regex
+     * @param ignoreCase
+     * @return the compiled regex
+     * @throws DataFlowException, if neither of the engines can compile the regex
+     */
+    static CompiledRegex compile(String regex, boolean ignoreCase) throws DataFlowException {
+        // try Java Regex first
+        try {
+            java.util.regex.Pattern javaPattern = ignoreCase
+                    ? java.util.regex.Pattern.compile(regex, java.util.regex.Pattern.CASE_INSENSITIVE)
+                    : java.util.regex.Pattern.compile(regex);
+            return new CompiledRegex(regex, javaPattern, null, ignoreCase);
+
+            // if Java Regex fails, try RE2J
+        } catch (java.util.regex.PatternSyntaxException javaException) {
+            try {
+                com.google.re2j.Pattern re2jPattern = ignoreCase
+                        ? com.google.re2j.Pattern.compile(regex, com.google.re2j.Pattern.CASE_INSENSITIVE)
+                        : com.google.re2j.Pattern.compile(regex);
+                return new CompiledRegex(regex, null, re2jPattern, ignoreCase);
+
+                // if RE2J also fails, throw exception
+            } catch (com.google.re2j.PatternSyntaxException re2jException) {
+                throw new DataFlowException(javaException.getMessage(), javaException);
+            }
+        }
+    }
+
+    String getRegex() {
+        return regex;
+    }
+
+    /**
+     * Returns the literal prefilter of the regex, null if the regex doesn't have a required literal.
+     */
+    RegexLiteralPrefilter getLiteralPrefilter() {
+        return literalPrefilter;
+    }
+
+    /**
+     * Finds the matches of the regex in a field, the key of each span is the regex.
+     *
+     * @param fieldValue
+     * @param attributeName
+     * @return the spans of the matches
+     */
+    List<Span> match(String fieldValue, String attributeName) {
+        List<Span> matchingResults = new ArrayList<>();
+        switch (regexEngine) {
+        case JavaRegex:
+            java.util.regex.Matcher javaMatcher = this.javaPattern.matcher(fieldValue);
+            while (javaMatcher.find()) {
+                int start = javaMatcher.start();
+                int end = javaMatcher.end();
+                matchingResults.add(new Span(attributeName, start, end, regex, fieldValue.substring(start, end)));
+            }
+            break;
+        case RE2J:
+            com.google.re2j.Matcher re2jMatcher = this.re2jPattern.matcher(fieldValue);
+            while (re2jMatcher.find()) {
+                int start = re2jMatcher.start();
+                int end = re2jMatcher.end();
+                matchingResults.add(new Span(attributeName, start, end, regex, fieldValue.substring(start, end)));
+            }
+            break;
+        }
+        return matchingResults;
+    }
+
+}
@@ -219,6 +219,9 @@ public class GramBooleanQuery {
      * <br>
      * The result is NOT simplified. Must call simplifyDNF() to obtain the
      * optimal tree. <br>
+     * <br>
+     * The size of the DNF is bounded by TranslatorUtils.MAX_DNF_SIZE, a DNF
+     * which would be larger is replaced by a weaker one. <br>
      * 
      * @param query
      * @return DNFQuery
@@ -231,12 +234,25 @@ public class GramBooleanQuery {
         }
         if (query.operator == QueryOp.AND) {
             for (GramBooleanQuery subQuery : query.subQuerySet) {
-                result = dnfConjunction(result, toDNF(subQuery));
+                GramBooleanQuery subQueryDNF = toDNF(subQuery);
+                // (a AND b) is weakened to a or b, keep the one with fewer conjunctions
+                if (result.subQuerySet.size() * subQueryDNF.subQuerySet.size() > TranslatorUtils.MAX_DNF_SIZE) {
+                    if (subQueryDNF.subQuerySet.size() < result.subQuerySet.size()) {
+                        result = subQueryDNF;
+                    }
+                    continue;
+                }
+                result = dnfConjunction(result, subQueryDNF);
             }
         }
         if (query.operator == QueryOp.OR) {
             for (GramBooleanQuery subQuery : query.subQuerySet) {
-                result.subQuerySet.addAll(toDNF(subQuery).subQuerySet);
+                GramBooleanQuery subQueryDNF = toDNF(subQuery);
+                // a too big OR is weakened to ANY, which is represented by an empty DNF
+                if (result.subQuerySet.size() + subQueryDNF.subQuerySet.size() > TranslatorUtils.MAX_DNF_SIZE) {
+                    return new GramBooleanQuery(QueryOp.OR);
+                }
+                result.subQuerySet.addAll(subQueryDNF.subQuerySet);
             }
         }
         if (query.operator == QueryOp.LEAF) {
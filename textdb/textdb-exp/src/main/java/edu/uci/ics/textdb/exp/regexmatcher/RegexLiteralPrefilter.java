@@ -0,0 +1,214 @@
+package edu.uci.ics.textdb.exp.regexmatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.re2j.PublicParser;
+import com.google.re2j.PublicRE2;
+import com.google.re2j.PublicRegexp;
+
+import edu.uci.ics.textdb.exp.utils.LiteralSubstringSearcher;
+
+/**
+ * RegexLiteralPrefilter checks if a text could contain a match of a regex, by looking for the literal factors
+ *   that every match of the regex must contain.
+ * For example, every match of "\d+ mg of aspirin" contains " mg of aspirin",
+ *   and every match of "(cat|dog)s?" contains either "cat" or "dog".
+ *
+ * The required literals are extracted from the RE2J parse tree of the regex, the same tree walked by
+ *   RegexToGramQueryTranslator. A text not containing any of the required literals can't match the regex,
+ *   so the regex engine doesn't need to run on it.
+ * The literals are searched ignoring the case, which is only a looser check if the regex is case sensitive.
+ *
+ * The regex is usually run by Java Regex (see CompiledRegex), whose syntax is not the same as RE2J's,
+ *   so a prefilter is only created for a regex using the constructs that both engines parse the same way
+ *   (see isParsedAlike()), otherwise the prefilter could reject a text matched by Java Regex.
+ *
+ * A RegexLiteralPrefilter is immutable, it can be shared by multiple threads.
+ *
+ */
+class RegexLiteralPrefilter {
+
+    // the maximum number of alternative literals of a required factor
+    private static final int MAX_ALTERNATIVES = 8;
+
+    private final List<LiteralSubstringSearcher> searchers;
+
+    private RegexLiteralPrefilter(List<String> literals) {
+        this.searchers = new ArrayList<>();
+        for (String literal : literals) {
+            searchers.add(new LiteralSubstringSearcher(literal));
+        }
+    }
+
+    /**
+     * Creates a prefilter for a regex.
+     *
+     * @param regex, the regex, in the Java regex syntax
+     * @param ignoreCase
+     * @return the prefilter, or null if the regex doesn't have a required literal
+     *   or can't be analyzed (for example, it uses a Java regex feature not supported by RE2J)
+     */
+    static RegexLiteralPrefilter create(String regex, boolean ignoreCase) {
+        if (!isParsedAlike(regex)) {
+            return null;
+        }
+        PublicRegexp re;
+        try {
+            re = PublicParser.parse(regex, ignoreCase ? PublicRE2.PERL | PublicRE2.FOLD_CASE : PublicRE2.PERL);
+        } catch (com.google.re2j.PatternSyntaxException e) {
+            return null;
+        }
+        List<String> literals = getRequiredLiterals(re);
+        if (literals == null) {
+            return null;
+        }
+        return new RegexLiteralPrefilter(literals);
+    }
+
+    /**
+     * Checks if the text may contain a match of the regex.
+     *
+     * @param text
+     * @return false if the text can't contain a match
+     */
+    boolean mayMatch(CharSequence text) {
+        for (LiteralSubstringSearcher searcher : searchers) {
+            if (searcher.isFoundIn(text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    List<String> getLiterals() {
+        List<String> literals = new ArrayList<>();
+        for (LiteralSubstringSearcher searcher : searchers) {
+            literals.add(searcher.getLiteral());
+        }
+        return literals;
+    }
+
+    /*
+     * Checks if the regex only uses the constructs parsed the same way by Java Regex and RE2J:
+     *   a backslash can only escape a punctuation character, or be one of \d \D \w \W \s \S \t \n \r \f,
+     *   or \b \B outside of a character class (this excludes octal escapes such as \0101, \v, \Q, \p{...}),
+     *   a character class can't contain another class (a Java union such as [[a]b]) or an intersection (&&),
+     *   and can't start with ']'.
+     * The constructs RE2J can't parse at all (for example lookaheads) are excluded by the RE2J parser.
+     */
+    private static boolean isParsedAlike(String regex) {
+        boolean inClass = false;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 == regex.length()) {
+                    return false;
+                }
+                char escaped = regex.charAt(++i);
+                boolean isPunctuation = escaped < 128 && !Character.isLetterOrDigit(escaped);
+                if (!isPunctuation && "dDwWsStnrf".indexOf(escaped) < 0
+                        && (inClass || "bB".indexOf(escaped) < 0)) {
+                    return false;
+                }
+            } else if (inClass) {
+                if (c == '[' || (c == '&' && i + 1 < regex.length() && regex.charAt(i + 1) == '&')) {
+                    return false;
+                }
+                if (c == ']') {
+                    inClass = false;
+                }
+            } else if (c == '[') {
+                inClass = true;
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == '^') {
+                    i++;
+                }
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Returns the literals at least one of which is contained in every match of the regex,
+     *   or null if there's no such (non-empty) literal.
+     */
+    private static List<String> getRequiredLiterals(PublicRegexp re) {
+        switch (re.getOp()) {
+        case LITERAL: {
+            if (re.getRunes().length == 0) {
+                return null;
+            }
+            StringBuilder literal = new StringBuilder();
+            for (int rune : re.getRunes()) {
+                literal.appendCodePoint(rune);
+            }
+            List<String> literals = new ArrayList<>();
+            literals.add(literal.toString());
+            return literals;
+        }
+        // a character class of a single character, such as [a]
+        case CHAR_CLASS: {
+            int[] runes = re.getRunes();
+            if (runes.length != 2 || runes[0] != runes[1]) {
+                return null;
+            }
+            List<String> literals = new ArrayList<>();
+            literals.add(new StringBuilder().appendCodePoint(runes[0]).toString());
+            return literals;
+        }
+        case CAPTURE:
+        case PLUS:
+            return getRequiredLiterals(re.getSubs()[0]);
+        case REPEAT:
+            return re.getMin() > 0 ? getRequiredLiterals(re.getSubs()[0]) : null;
+        // the best required factor of the sub-expressions
+        case CONCAT: {
+            List<String> bestLiterals = null;
+            for (PublicRegexp sub : re.getSubs()) {
+                List<String> literals = getRequiredLiterals(sub);
+                if (literals != null && (bestLiterals == null || isBetter(literals, bestLiterals))) {
+                    bestLiterals = literals;
+                }
+            }
+            return bestLiterals;
+        }
+        // every branch must have a required factor
+        case ALTERNATE: {
+            List<String> allLiterals = new ArrayList<>();
+            for (PublicRegexp sub : re.getSubs()) {
+                List<String> literals = getRequiredLiterals(sub);
+                if (literals == null) {
+                    return null;
+                }
+                for (String literal : literals) {
+                    if (!allLiterals.contains(literal)) {
+                        allLiterals.add(literal);
+                    }
+                }
+                if (allLiterals.size() > MAX_ALTERNATIVES) {
+                    return null;
+                }
+            }
+            return allLiterals.isEmpty() ? null : allLiterals;
+        }
+        default:
+            return null;
+        }
+    }
+
+    /*
+     * A factor is better if its shortest literal is longer (it's more selective), or if it has fewer literals.
+     */
+    private static boolean isBetter(List<String> literals, List<String> otherLiterals) {
+        int minLength = TranslatorUtils.minLenOfString(literals);
+        int otherMinLength = TranslatorUtils.minLenOfString(otherLiterals);
+        if (minLength != otherMinLength) {
+            return minLength > otherMinLength;
+        }
+        return literals.size() < otherLiterals.size();
+    }
+
+}
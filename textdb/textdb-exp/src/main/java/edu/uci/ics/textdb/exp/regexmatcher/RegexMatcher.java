@@ -11,6 +11,7 @@ import edu.uci.ics.textdb.api.schema.AttributeType;
 import edu.uci.ics.textdb.api.schema.Schema;
 import edu.uci.ics.textdb.api.span.Span;
 import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.api.tuple.TupleBatch;
 import edu.uci.ics.textdb.api.utils.Utils;
 import edu.uci.ics.textdb.exp.common.AbstractSingleInputOperator;
 import edu.uci.ics.textdb.exp.utils.DataflowUtils;
@@ -25,14 +26,8 @@ public class RegexMatcher extends AbstractSingleInputOperator {
     
     private final RegexPredicate predicate;
 
-    // two available regex engines, RegexMatcher will try RE2J first
-    private enum RegexEngine {
-        JavaRegex, RE2J
-    }
-
-    private RegexEngine regexEngine;
-    private com.google.re2j.Pattern re2jPattern;
-    private java.util.regex.Pattern javaPattern;
+    // the regex compiled by Java Regex or RE2J, with its literal prefilter
+    private CompiledRegex compiledRegex;
     
     private Schema inputSchema;
 
@@ -49,34 +44,7 @@ public class RegexMatcher extends AbstractSingleInputOperator {
             outputSchema = Utils.createSpanSchema(inputSchema);
         }
         
-        // try Java Regex first
-        try {
-            if (this.predicate.isIgnoreCase()) {
-                this.javaPattern = java.util.regex.Pattern.compile(predicate.getRegex(), 
-                        java.util.regex.Pattern.CASE_INSENSITIVE);
-                this.regexEngine = RegexEngine.JavaRegex; 
-            } else {
-                this.javaPattern = java.util.regex.Pattern.compile(predicate.getRegex());
-                this.regexEngine = RegexEngine.JavaRegex; 
-            }
-
-            // if Java Regex fails, try RE2J
-        } catch (java.util.regex.PatternSyntaxException javaException) {
-            try {
-                if (this.predicate.isIgnoreCase()) {
-                    this.re2jPattern = com.google.re2j.Pattern.compile(predicate.getRegex(), 
-                            com.google.re2j.Pattern.CASE_INSENSITIVE);
-                    this.regexEngine = RegexEngine.RE2J;
-                } else {
-                    this.re2jPattern = com.google.re2j.Pattern.compile(predicate.getRegex());
-                    this.regexEngine = RegexEngine.RE2J;                    
-                }
-
-                // if RE2J also fails, throw exception
-            } catch (com.google.re2j.PatternSyntaxException re2jException) {
-                throw new DataFlowException(javaException.getMessage(), javaException);
-            }
-        }
+        this.compiledRegex = CompiledRegex.compile(predicate.getRegex(), predicate.isIgnoreCase());
     }
     
     @Override
@@ -85,9 +53,6 @@ public class RegexMatcher extends AbstractSingleInputOperator {
         Tuple resultTuple = null;
         
         while ((inputTuple = inputOperator.getNextTuple()) != null) {
-            if (!inputSchema.containsField(SchemaConstants.SPAN_LIST)) {
-                inputTuple = DataflowUtils.getSpanTuple(inputTuple.getFields(), new ArrayList<Span>(), outputSchema);
-            }            
             resultTuple = processOneInputTuple(inputTuple);
             if (resultTuple != null) {
                 break;
@@ -96,6 +61,11 @@ public class RegexMatcher extends AbstractSingleInputOperator {
         
         return resultTuple;
     }
+    
+    @Override
+    public TupleBatch getNextBatch(int maxTuples) throws TextDBException {
+        return computeNextMatchingBatch(maxTuples);
+    }
 
     /**
      * This function returns a list of spans in the given tuple that match the
@@ -115,6 +85,9 @@ public class RegexMatcher extends AbstractSingleInputOperator {
         if (inputTuple == null) {
             return null;
         }
+        if (!inputTuple.getSchema().containsField(SchemaConstants.SPAN_LIST)) {
+            inputTuple = DataflowUtils.getSpanTuple(inputTuple.getFields(), new ArrayList<Span>(), outputSchema);
+        }
 
         List<Span> matchingResults = new ArrayList<>();
 
@@ -126,15 +99,14 @@ public class RegexMatcher extends AbstractSingleInputOperator {
             if (attributeType != AttributeType.STRING && attributeType != AttributeType.TEXT) {
                 throw new DataFlowException("KeywordMatcher: Fields other than STRING and TEXT are not supported yet");
             }
-
-            switch (regexEngine) {
-            case JavaRegex:
-                matchingResults.addAll(javaRegexMatch(fieldValue, attributeName));
-                break;
-            case RE2J:
-                matchingResults.addAll(re2jRegexMatch(fieldValue, attributeName));
-                break;
+            
+            // the field can't match if it doesn't contain a required literal of the regex
+            RegexLiteralPrefilter literalPrefilter = compiledRegex.getLiteralPrefilter();
+            if (literalPrefilter != null && !literalPrefilter.mayMatch(fieldValue)) {
+                continue;
             }
+
+            matchingResults.addAll(compiledRegex.match(fieldValue, attributeName));
         }
 
         if (matchingResults.isEmpty()) {
@@ -148,30 +120,6 @@ public class RegexMatcher extends AbstractSingleInputOperator {
         return inputTuple;
     }
 
-    private List<Span> javaRegexMatch(String fieldValue, String attributeName) {
-        List<Span> matchingResults = new ArrayList<>();
-        java.util.regex.Matcher javaMatcher = this.javaPattern.matcher(fieldValue);
-        while (javaMatcher.find()) {
-            int start = javaMatcher.start();
-            int end = javaMatcher.end();
-            matchingResults.add(
-                    new Span(attributeName, start, end, this.predicate.getRegex(), fieldValue.substring(start, end)));
-        }
-        return matchingResults;
-    }
-
-    private List<Span> re2jRegexMatch(String fieldValue, String attributeName) {
-        List<Span> matchingResults = new ArrayList<>();
-        com.google.re2j.Matcher re2jMatcher = this.re2jPattern.matcher(fieldValue);
-        while (re2jMatcher.find()) {
-            int start = re2jMatcher.start();
-            int end = re2jMatcher.end();
-            matchingResults.add(
-                    new Span(attributeName, start, end, this.predicate.getRegex(), fieldValue.substring(start, end)));
-        }
-        return matchingResults;
-    }
-
     @Override
     protected void cleanUp() throws DataFlowException {        
     }
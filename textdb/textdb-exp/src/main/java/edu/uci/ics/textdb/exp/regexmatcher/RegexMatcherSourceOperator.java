@@ -1,19 +1,24 @@
 package edu.uci.ics.textdb.exp.regexmatcher;
 
-import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
-import org.apache.lucene.queryparser.classic.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
 
-import edu.uci.ics.textdb.api.constants.DataConstants;
 import edu.uci.ics.textdb.api.dataflow.ISourceOperator;
 import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.exception.StorageException;
 import edu.uci.ics.textdb.api.exception.TextDBException;
+import edu.uci.ics.textdb.api.field.IDField;
 import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.api.tuple.TupleBatch;
 import edu.uci.ics.textdb.exp.common.AbstractSingleInputOperator;
 import edu.uci.ics.textdb.storage.DataReader;
 import edu.uci.ics.textdb.storage.RelationManager;
+import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
+import edu.uci.ics.textdb.storage.utils.MultiAnalyzer;
 
 public class RegexMatcherSourceOperator extends AbstractSingleInputOperator implements ISourceOperator {
     
@@ -49,6 +54,11 @@ public class RegexMatcherSourceOperator extends AbstractSingleInputOperator impl
         return this.regexMatcher.getNextTuple();
     }
 
+    @Override
+    public TupleBatch getNextBatch(int maxTuples) throws TextDBException {
+        return forwardNextBatch(maxTuples);
+    }
+
     @Override
     public Tuple processOneInputTuple(Tuple inputTuple) throws TextDBException {
         return this.regexMatcher.processOneInputTuple(inputTuple);
@@ -57,29 +67,93 @@ public class RegexMatcherSourceOperator extends AbstractSingleInputOperator impl
     @Override
     protected void cleanUp() throws TextDBException {
     }
+
+    /**
+     * Reads only one partition of the table, see {@link DataReader#setPartition(int, int)}.
+     */
+    public void setPartition(int partitionIndex, int partitionCount) throws DataFlowException {
+        try {
+            this.dataReader.setPartition(partitionIndex, partitionCount);
+        } catch (StorageException e) {
+            throw new DataFlowException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Starts reading after a tuple of a previous read, see {@link DataReader#setSearchAfter(IDField)}.
+     */
+    public void setSearchAfter(IDField idField) throws DataFlowException {
+        try {
+            this.dataReader.setSearchAfter(idField);
+        } catch (StorageException e) {
+            throw new DataFlowException(e.getMessage(), e);
+        }
+    }
     
     public static Query createLuceneQuery(RegexSourcePredicate predicate) throws StorageException {
-        Query luceneQuery;
-        String queryString;
+        return createLuceneQuery(predicate.getRegex(), predicate.getAttributeNames(), predicate.getTableName());
+    }
+    
+    /**
+     * Creates the gram-based index query of a regex on the attributes of a table,
+     *   a scan query is used if the regex can't be translated.
+     * 
+     * The queries are built directly and cached by RegexToGramQueryTranslator,
+     *   so the same regex on the same table is translated only once.
+     * 
+     * If the table has a MultiAnalyzer which indexes all the attributes into n-gram sub-fields of the same length,
+     *   the query targets the sub-fields, with the gram length of their analyzer.
+     * 
+     * @param regex
+     * @param attributeNames
+     * @param tableName
+     * @return the index query
+     * @throws StorageException
+     */
+    public static Query createLuceneQuery(String regex, List<String> attributeNames, String tableName) 
+            throws StorageException {
+        RelationManager relationManager = RelationManager.getRelationManager();
+        String luceneAnalyzerString = relationManager.getTableAnalyzerString(tableName);
+        Analyzer luceneAnalyzer = relationManager.getTableAnalyzer(tableName);
+        List<String> fieldNames = attributeNames;
+        int gramLength = TranslatorUtils.DEFAULT_GRAM_LENGTH;
+        
+        if (luceneAnalyzer instanceof MultiAnalyzer) {
+            List<String> gramFieldNames = getGramFieldNames((MultiAnalyzer) luceneAnalyzer, attributeNames);
+            if (gramFieldNames != null) {
+                fieldNames = gramFieldNames;
+                gramLength = LuceneAnalyzerConstants.getNGramLength(
+                        ((MultiAnalyzer) luceneAnalyzer).getNGramAnalyzerString(attributeNames.get(0)));
+            }
+        }
         
         // Try to apply translator. If it fails, use scan query.
         try {
-            queryString = RegexToGramQueryTranslator.translate(predicate.getRegex()).getLuceneQueryString();
+            return RegexToGramQueryTranslator.translateToLuceneQuery(regex, gramLength,
+                    fieldNames, luceneAnalyzerString, luceneAnalyzer);
         } catch (com.google.re2j.PatternSyntaxException e) {
-            queryString = DataConstants.SCAN_QUERY;
+            return new MatchAllDocsQuery();
         }
-
-        // Try to parse the query string. It if fails, raise an exception.
-        try {
-            luceneQuery = new MultiFieldQueryParser(
-                    predicate.getAttributeNames().stream().toArray(String[]::new), 
-                    RelationManager.getRelationManager().getTableAnalyzer(predicate.getTableName()))
-                    .parse(queryString);
-        } catch (ParseException e) {
-            throw new StorageException (e);
+    }
+    
+    /*
+     * Gets the n-gram sub-fields of the attributes, null if an attribute doesn't have one,
+     *   or if their gram lengths are different.
+     */
+    private static List<String> getGramFieldNames(MultiAnalyzer luceneAnalyzer, List<String> attributeNames) {
+        if (attributeNames.isEmpty()) {
+            return null;
         }
-        
-        return luceneQuery;
+        String gramAnalyzerString = luceneAnalyzer.getNGramAnalyzerString(attributeNames.get(0));
+        List<String> gramFieldNames = new ArrayList<>();
+        for (String attributeName : attributeNames) {
+            if (gramAnalyzerString == null 
+                    || ! gramAnalyzerString.equals(luceneAnalyzer.getNGramAnalyzerString(attributeName))) {
+                return null;
+            }
+            gramFieldNames.add(luceneAnalyzer.getIndexFieldName(attributeName, gramAnalyzerString));
+        }
+        return gramFieldNames;
     }
 
 }
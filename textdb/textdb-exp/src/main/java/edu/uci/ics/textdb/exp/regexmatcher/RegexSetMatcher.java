@@ -0,0 +1,171 @@
+package edu.uci.ics.textdb.exp.regexmatcher;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import edu.uci.ics.textdb.api.constants.SchemaConstants;
+import edu.uci.ics.textdb.api.exception.DataFlowException;
+import edu.uci.ics.textdb.api.exception.TextDBException;
+import edu.uci.ics.textdb.api.field.ListField;
+import edu.uci.ics.textdb.api.schema.AttributeType;
+import edu.uci.ics.textdb.api.schema.Schema;
+import edu.uci.ics.textdb.api.span.Span;
+import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.api.tuple.TupleBatch;
+import edu.uci.ics.textdb.api.utils.Utils;
+import edu.uci.ics.textdb.exp.common.AbstractSingleInputOperator;
+import edu.uci.ics.textdb.exp.utils.DataflowUtils;
+import edu.uci.ics.textdb.exp.utils.MultiLiteralSearcher;
+
+/**
+ * RegexSetMatcher matches a set of regexes on the same attributes, in one operator.
+ * The spans of each regex have the regex as their key, the same as the spans of a RegexMatcher.
+ *
+ * Each field is read once for all the regexes: the required literals of all the regexes (see RegexLiteralPrefilter)
+ *   are searched together in one scan of the field, and only the regexes whose literals are found,
+ *   or which don't have a required literal, are run on the field.
+ *
+ * If the predicate's matchAll is true, a tuple is returned only if every regex matches it,
+ *   and the result is the same as a chain of RegexMatchers of the regexes, in the same order.
+ * Otherwise, a tuple is returned if any of the regexes matches it.
+ *
+ */
+public class RegexSetMatcher extends AbstractSingleInputOperator {
+
+    private final RegexSetPredicate predicate;
+
+    private List<CompiledRegex> compiledRegexes;
+    // searches the required literals of all the regexes, null if none of the regexes has one
+    private MultiLiteralSearcher literalSearcher;
+    // the index of the regex of each literal in the literal searcher
+    private int[] literalRegexIndexes;
+    // the regexes without a required literal, they are run on every field
+    private BitSet unfilteredRegexes;
+
+    private Schema inputSchema;
+
+    public RegexSetMatcher(RegexSetPredicate predicate) {
+        this.predicate = predicate;
+    }
+
+    @Override
+    protected void setUp() throws DataFlowException {
+        inputSchema = inputOperator.getOutputSchema();
+        outputSchema = inputSchema;
+
+        if (!this.inputSchema.containsField(SchemaConstants.SPAN_LIST)) {
+            outputSchema = Utils.createSpanSchema(inputSchema);
+        }
+
+        compiledRegexes = new ArrayList<>();
+        unfilteredRegexes = new BitSet();
+        List<String> literals = new ArrayList<>();
+        List<Integer> regexIndexes = new ArrayList<>();
+        for (String regex : predicate.getRegexes()) {
+            CompiledRegex compiledRegex = CompiledRegex.compile(regex, predicate.isIgnoreCase());
+            RegexLiteralPrefilter literalPrefilter = compiledRegex.getLiteralPrefilter();
+            if (literalPrefilter == null) {
+                unfilteredRegexes.set(compiledRegexes.size());
+            } else {
+                for (String literal : literalPrefilter.getLiterals()) {
+                    literals.add(literal);
+                    regexIndexes.add(compiledRegexes.size());
+                }
+            }
+            compiledRegexes.add(compiledRegex);
+        }
+
+        if (literals.isEmpty()) {
+            literalSearcher = null;
+        } else {
+            literalSearcher = new MultiLiteralSearcher(literals);
+            literalRegexIndexes = regexIndexes.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    @Override
+    protected Tuple computeNextMatchingTuple() throws TextDBException {
+        Tuple inputTuple = null;
+        Tuple resultTuple = null;
+
+        while ((inputTuple = inputOperator.getNextTuple()) != null) {
+            resultTuple = processOneInputTuple(inputTuple);
+            if (resultTuple != null) {
+                break;
+            }
+        }
+
+        return resultTuple;
+    }
+
+    @Override
+    public TupleBatch getNextBatch(int maxTuples) throws TextDBException {
+        return computeNextMatchingBatch(maxTuples);
+    }
+
+    @Override
+    public Tuple processOneInputTuple(Tuple inputTuple) throws DataFlowException {
+        if (inputTuple == null) {
+            return null;
+        }
+        if (!inputTuple.getSchema().containsField(SchemaConstants.SPAN_LIST)) {
+            inputTuple = DataflowUtils.getSpanTuple(inputTuple.getFields(), new ArrayList<Span>(), outputSchema);
+        }
+
+        // the spans of each regex
+        List<List<Span>> regexResults = new ArrayList<>();
+        for (int i = 0; i < compiledRegexes.size(); i++) {
+            regexResults.add(new ArrayList<>());
+        }
+
+        for (String attributeName : predicate.getAttributeNames()) {
+            AttributeType attributeType = inputSchema.getAttribute(attributeName).getAttributeType();
+            String fieldValue = inputTuple.getField(attributeName).getValue().toString();
+
+            // types other than TEXT and STRING: throw Exception for now
+            if (attributeType != AttributeType.STRING && attributeType != AttributeType.TEXT) {
+                throw new DataFlowException("RegexSetMatcher: Fields other than STRING and TEXT are not supported yet");
+            }
+
+            BitSet candidateRegexes = (BitSet) unfilteredRegexes.clone();
+            if (literalSearcher != null) {
+                BitSet foundLiterals = literalSearcher.findLiterals(fieldValue);
+                for (int i = foundLiterals.nextSetBit(0); i >= 0; i = foundLiterals.nextSetBit(i + 1)) {
+                    candidateRegexes.set(literalRegexIndexes[i]);
+                }
+            }
+
+            for (int i = candidateRegexes.nextSetBit(0); i >= 0; i = candidateRegexes.nextSetBit(i + 1)) {
+                regexResults.get(i).addAll(compiledRegexes.get(i).match(fieldValue, attributeName));
+            }
+        }
+
+        List<Span> matchingResults = new ArrayList<>();
+        for (List<Span> spans : regexResults) {
+            if (spans.isEmpty() && predicate.isMatchAll()) {
+                return null;
+            }
+            matchingResults.addAll(spans);
+        }
+
+        if (matchingResults.isEmpty()) {
+            return null;
+        }
+
+        ListField<Span> spanListField = inputTuple.getField(SchemaConstants.SPAN_LIST);
+        List<Span> spanList = spanListField.getValue();
+        spanList.addAll(matchingResults);
+
+        return inputTuple;
+    }
+
+    @Override
+    protected void cleanUp() throws DataFlowException {
+    }
+
+    public RegexSetPredicate getPredicate() {
+        return this.predicate;
+    }
+
+}
@@ -0,0 +1,111 @@
+package edu.uci.ics.textdb.exp.regexmatcher;
+
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+
+import edu.uci.ics.textdb.api.dataflow.ISourceOperator;
+import edu.uci.ics.textdb.api.exception.DataFlowException;
+import edu.uci.ics.textdb.api.exception.StorageException;
+import edu.uci.ics.textdb.api.exception.TextDBException;
+import edu.uci.ics.textdb.api.field.IDField;
+import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.api.tuple.TupleBatch;
+import edu.uci.ics.textdb.exp.common.AbstractSingleInputOperator;
+import edu.uci.ics.textdb.storage.DataReader;
+import edu.uci.ics.textdb.storage.RelationManager;
+
+/**
+ * RegexSetMatcherSourceOperator reads the tuples of a table that may match the regexes, and matches them by a RegexSetMatcher.
+ *
+ * The gram-based index queries of the regexes (see RegexToGramQueryTranslator) are combined into one query:
+ *   a disjunction if a tuple matching any of the regexes is returned, a conjunction if it must match all the regexes.
+ *
+ */
+public class RegexSetMatcherSourceOperator extends AbstractSingleInputOperator implements ISourceOperator {
+
+    private final RegexSetSourcePredicate predicate;
+
+    private final DataReader dataReader;
+    private final RegexSetMatcher regexSetMatcher;
+
+    public RegexSetMatcherSourceOperator(RegexSetSourcePredicate predicate) throws StorageException, DataFlowException {
+        this.predicate = predicate;
+
+        if (this.predicate.isUseIndex()) {
+            this.dataReader = RelationManager.getRelationManager().getTableDataReader(this.predicate.getTableName(),
+                    createLuceneQuery(this.predicate));
+        } else {
+            this.dataReader = RelationManager.getRelationManager().getTableDataReader(this.predicate.getTableName(),
+                    new MatchAllDocsQuery());
+        }
+
+        regexSetMatcher = new RegexSetMatcher(this.predicate);
+        regexSetMatcher.setInputOperator(dataReader);
+
+        this.inputOperator = this.regexSetMatcher;
+    }
+
+    @Override
+    protected void setUp() throws TextDBException {
+        this.outputSchema = regexSetMatcher.getOutputSchema();
+    }
+
+    @Override
+    protected Tuple computeNextMatchingTuple() throws TextDBException {
+        return this.regexSetMatcher.getNextTuple();
+    }
+
+    @Override
+    public TupleBatch getNextBatch(int maxTuples) throws TextDBException {
+        return forwardNextBatch(maxTuples);
+    }
+
+    @Override
+    public Tuple processOneInputTuple(Tuple inputTuple) throws TextDBException {
+        return this.regexSetMatcher.processOneInputTuple(inputTuple);
+    }
+
+    @Override
+    protected void cleanUp() throws TextDBException {
+    }
+
+    /**
+     * Reads only one partition of the table, see {@link DataReader#setPartition(int, int)}.
+     */
+    public void setPartition(int partitionIndex, int partitionCount) throws DataFlowException {
+        try {
+            this.dataReader.setPartition(partitionIndex, partitionCount);
+        } catch (StorageException e) {
+            throw new DataFlowException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Starts reading after a tuple of a previous read, see {@link DataReader#setSearchAfter(IDField)}.
+     */
+    public void setSearchAfter(IDField idField) throws DataFlowException {
+        try {
+            this.dataReader.setSearchAfter(idField);
+        } catch (StorageException e) {
+            throw new DataFlowException(e.getMessage(), e);
+        }
+    }
+
+    public static Query createLuceneQuery(RegexSetSourcePredicate predicate) throws StorageException {
+        BooleanClause.Occur occur = predicate.isMatchAll() ? BooleanClause.Occur.MUST : BooleanClause.Occur.SHOULD;
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (String regex : predicate.getRegexes()) {
+            Query regexQuery = RegexMatcherSourceOperator.createLuceneQuery(
+                    regex, predicate.getAttributeNames(), predicate.getTableName());
+            // a regex that can't use the index makes the disjunction a scan
+            if (regexQuery instanceof MatchAllDocsQuery && occur == BooleanClause.Occur.SHOULD) {
+                return new MatchAllDocsQuery();
+            }
+            builder.add(regexQuery, occur);
+        }
+        return builder.build();
+    }
+
+}
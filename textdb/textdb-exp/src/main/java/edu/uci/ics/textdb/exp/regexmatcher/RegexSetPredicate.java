@@ -0,0 +1,83 @@
+package edu.uci.ics.textdb.exp.regexmatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import edu.uci.ics.textdb.exp.common.PredicateBase;
+import edu.uci.ics.textdb.exp.common.PropertyNameConstants;
+
+/**
+ * This class is the predicate for RegexSetMatcher.
+ *
+ */
+public class RegexSetPredicate extends PredicateBase {
+
+    private final List<String> regexes;
+    private final List<String> attributeNames;
+    private final Boolean ignoreCase;
+    private final Boolean matchAll;
+
+    /*
+     * This constructor is only for internal use.
+     */
+    public RegexSetPredicate(List<String> regexes, List<String> attributeNames) {
+        this(regexes, attributeNames, null, null);
+    }
+
+    /**
+     * RegexSetPredicate is used to create a RegexSetMatcher.
+     *
+     * @param regexes, the regexes to be used
+     * @param attributeNames, a list of attribute names to match the regexes on
+     * @param ignoreCase, optional, ignores regex case, default false
+     * @param matchAll, optional, a tuple is returned only if every regex matches it
+     *   (the same as a chain of RegexMatchers), default false (a tuple is returned if any regex matches it)
+     */
+    @JsonCreator
+    public RegexSetPredicate(
+            @JsonProperty(value = PropertyNameConstants.REGEXES, required = true)
+            List<String> regexes,
+            @JsonProperty(value = PropertyNameConstants.ATTRIBUTE_NAMES, required = true)
+            List<String> attributeNames,
+            @JsonProperty(value = PropertyNameConstants.REGEX_IGNORE_CASE, required = false)
+            Boolean ignoreCase,
+            @JsonProperty(value = PropertyNameConstants.REGEX_MATCH_ALL, required = false)
+            Boolean matchAll) {
+        this.regexes = regexes;
+        this.attributeNames = attributeNames;
+        if (ignoreCase == null) {
+            this.ignoreCase = false;
+        } else {
+            this.ignoreCase = ignoreCase;
+        }
+        if (matchAll == null) {
+            this.matchAll = false;
+        } else {
+            this.matchAll = matchAll;
+        }
+    }
+
+    @JsonProperty(PropertyNameConstants.REGEXES)
+    public List<String> getRegexes() {
+        return new ArrayList<>(this.regexes);
+    }
+
+    @JsonProperty(PropertyNameConstants.ATTRIBUTE_NAMES)
+    public List<String> getAttributeNames() {
+        return new ArrayList<>(this.attributeNames);
+    }
+
+    @JsonProperty(PropertyNameConstants.REGEX_IGNORE_CASE)
+    public Boolean isIgnoreCase() {
+        return this.ignoreCase;
+    }
+
+    @JsonProperty(PropertyNameConstants.REGEX_MATCH_ALL)
+    public Boolean isMatchAll() {
+        return this.matchAll;
+    }
+
+}
@@ -0,0 +1,68 @@
+package edu.uci.ics.textdb.exp.regexmatcher;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import edu.uci.ics.textdb.exp.common.PropertyNameConstants;
+
+public class RegexSetSourcePredicate extends RegexSetPredicate {
+
+    private final String tableName;
+    private final Boolean useIndex;
+
+    /*
+     * This constructor is for internal use. It's not a JSON entry point.
+     */
+    public RegexSetSourcePredicate(
+            List<String> regexes,
+            List<String> attributeNames,
+            String tableName) {
+        this(regexes, attributeNames, null, null, tableName, null);
+    }
+
+    /**
+     * RegexSetSourcePredicate is used to create a RegexSetMatcherSourceOperator.
+     *
+     * @param regexes, the regexes to be used
+     * @param attributeNames, a list of attribute names to match the regexes on
+     * @param ignoreCase, optional, ignores regex case, default false
+     * @param matchAll, optional, a tuple is returned only if every regex matches it, default false
+     * @param tableName, the name of the source table
+     * @param useIndex, optional, use the gram-based regex index query, default true
+     */
+    @JsonCreator
+    public RegexSetSourcePredicate(
+            @JsonProperty(value = PropertyNameConstants.REGEXES, required = true)
+            List<String> regexes,
+            @JsonProperty(value = PropertyNameConstants.ATTRIBUTE_NAMES, required = true)
+            List<String> attributeNames,
+            @JsonProperty(value = PropertyNameConstants.REGEX_IGNORE_CASE, required = false)
+            Boolean ignoreCase,
+            @JsonProperty(value = PropertyNameConstants.REGEX_MATCH_ALL, required = false)
+            Boolean matchAll,
+            @JsonProperty(value = PropertyNameConstants.TABLE_NAME, required = true)
+            String tableName,
+            @JsonProperty(value = PropertyNameConstants.REGEX_USE_INDEX, required = false)
+            Boolean useIndex) {
+        super(regexes, attributeNames, ignoreCase, matchAll);
+        this.tableName = tableName;
+        if (useIndex == null) {
+            this.useIndex = true;
+        } else {
+            this.useIndex = useIndex;
+        }
+    }
+
+    @JsonProperty(PropertyNameConstants.TABLE_NAME)
+    public String getTableName() {
+        return this.tableName;
+    }
+
+    @JsonProperty(PropertyNameConstants.REGEX_USE_INDEX)
+    public Boolean isUseIndex() {
+        return this.useIndex;
+    }
+
+}
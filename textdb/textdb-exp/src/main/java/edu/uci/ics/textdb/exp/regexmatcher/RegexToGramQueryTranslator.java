@@ -1,10 +1,26 @@
 package edu.uci.ics.textdb.exp.regexmatcher;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.util.QueryBuilder;
+
 import com.google.re2j.PublicParser;
 import com.google.re2j.PublicRE2;
 import com.google.re2j.PublicRegexp;
 import com.google.re2j.PublicSimplify;
 
+import edu.uci.ics.textdb.exp.regexmatcher.GramBooleanQuery.QueryOp;
+
 /**
  * This class translates a regex to a boolean query of n-grams, according to the
  * <a href='https://swtch.com/~rsc/regexp/regexp4.html'>algorithm</a> described
@@ -15,6 +31,20 @@ import com.google.re2j.PublicSimplify;
  * 
  */
 public class RegexToGramQueryTranslator {
+
+    static final int LUCENE_QUERY_CACHE_SIZE = 1000;
+
+    // the Lucene queries translated by translateToLuceneQuery, in the least recently used order
+    private static final Map<List<Object>, Query> luceneQueryCache = Collections.synchronizedMap(
+            new LinkedHashMap<List<Object>, Query>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<Object>, Query> eldest) {
+                    return size() > LUCENE_QUERY_CACHE_SIZE;
+                }
+            });
+
     /**
      * This method translates a regular expression to a boolean expression of
      * n-grams. (default is TranslatorUtils.DEFAULT_GRAM_LENGTH, which is 3)
@@ -43,23 +73,141 @@ public class RegexToGramQueryTranslator {
     public static GramBooleanQuery translate(String regex, int gramLength)
             throws com.google.re2j.PatternSyntaxException {
 
+        GramBooleanQuery match = translateToGrams(regex, gramLength);
+        TranslatorUtils.escapeSpecialCharacters(match);
+
+        return match;
+    }
+
+    /**
+     * This method translates a regular expression to a Lucene query of the
+     * n-grams on the given fields, building the Lucene query directly instead
+     * of parsing a query string. <br>
+     * Each gram is analyzed by the analyzer of the table, in the same way as
+     * the query parser does. An AND with more clauses than
+     * BooleanQuery.getMaxClauseCount() keeps only the first ones, and an OR
+     * which is too big becomes a scan, so the query is never rejected by
+     * Lucene. <br>
+     * The queries are cached by (regex, gram length, fields, analyzer), the
+     * same regex on the same table is translated only once. The returned
+     * query is shared, it must not be modified. <br>
+     * 
+     * @param regex,
+     *            the regex string to be translated.
+     * @param gramLength
+     * @param fields,
+     *            the names of the attributes to query.
+     * @param luceneAnalyzerString,
+     *            the string of the analyzer of the table, the key of the cache.
+     * @param luceneAnalyzer,
+     *            the analyzer of the table.
+     * @return a Lucene query, a MatchAllDocsQuery if the regex can't use the
+     *         index.
+     */
+    public static Query translateToLuceneQuery(String regex, int gramLength, List<String> fields,
+            String luceneAnalyzerString, Analyzer luceneAnalyzer) throws com.google.re2j.PatternSyntaxException {
+        List<Object> cacheKey = Arrays.asList(regex, gramLength, new ArrayList<>(fields), luceneAnalyzerString);
+        Query luceneQuery = luceneQueryCache.get(cacheKey);
+        if (luceneQuery == null) {
+            luceneQuery = toLuceneQuery(translateToGrams(regex, gramLength), fields,
+                    new QueryBuilder(luceneAnalyzer));
+            if (luceneQuery == null) {
+                luceneQuery = new MatchAllDocsQuery();
+            }
+            luceneQueryCache.put(cacheKey, luceneQuery);
+        }
+        return luceneQuery;
+    }
+
+    /*
+     * Translates a regex to a query tree of unescaped grams.
+     * 
+     * It's synchronized because the gram length is passed to the analysis by
+     * the static TranslatorUtils.GRAM_LENGTH.
+     */
+    private static synchronized GramBooleanQuery translateToGrams(String regex, int gramLength)
+            throws com.google.re2j.PatternSyntaxException {
+
         TranslatorUtils.GRAM_LENGTH = gramLength;
+        try {
+            // Since the inverted index relies on lower-case grams, we need to
+            // convert the characters to lower case.
+            regex = regex.toLowerCase();
 
-        // Since the inverted index relies on lower-case grams, we need to
-        // convert the characters to lower case.
-        regex = regex.toLowerCase();
-        
-        PublicRegexp re = PublicParser.parse(regex, PublicRE2.PERL);
-        re = PublicSimplify.simplify(re);
+            PublicRegexp re = PublicParser.parse(regex, PublicRE2.PERL);
+            re = PublicSimplify.simplify(re);
 
-        RegexInfo regexInfo = analyze(re);
-        regexInfo.simplify(true);
+            RegexInfo regexInfo = analyze(re);
+            regexInfo.simplify(true);
 
-        TranslatorUtils.GRAM_LENGTH = TranslatorUtils.DEFAULT_GRAM_LENGTH;
+            return regexInfo.match;
+        } finally {
+            TranslatorUtils.GRAM_LENGTH = TranslatorUtils.DEFAULT_GRAM_LENGTH;
+        }
+    }
 
-        TranslatorUtils.escapeSpecialCharacters(regexInfo.match);
+    /*
+     * Builds the Lucene query of a query tree, null stands for a query
+     * matching any document.
+     */
+    private static Query toLuceneQuery(GramBooleanQuery query, List<String> fields, QueryBuilder queryBuilder) {
+        if (query.operator == QueryOp.LEAF) {
+            return toLuceneQuery(query.leaf, fields, queryBuilder);
+        }
+        if (query.operator != QueryOp.AND && query.operator != QueryOp.OR) {
+            return null;
+        }
 
-        return regexInfo.match;
+        BooleanClause.Occur occur = query.operator == QueryOp.AND ? BooleanClause.Occur.MUST
+                : BooleanClause.Occur.SHOULD;
+        BooleanQuery.Builder booleanQueryBuilder = new BooleanQuery.Builder();
+        int clauseCount = 0;
+        for (GramBooleanQuery subQuery : query.subQuerySet) {
+            Query subLuceneQuery = toLuceneQuery(subQuery, fields, queryBuilder);
+            if (subLuceneQuery == null) {
+                if (occur == BooleanClause.Occur.SHOULD) {
+                    return null;
+                }
+                continue;
+            }
+            if (clauseCount == BooleanQuery.getMaxClauseCount()) {
+                if (occur == BooleanClause.Occur.SHOULD) {
+                    return null;
+                }
+                break;
+            }
+            booleanQueryBuilder.add(subLuceneQuery, occur);
+            clauseCount++;
+        }
+        if (clauseCount == 0) {
+            return null;
+        }
+        return booleanQueryBuilder.build();
+    }
+
+    /*
+     * Builds the query of a gram on all the fields, the same as
+     * MultiFieldQueryParser does for a term.
+     */
+    private static Query toLuceneQuery(String gram, List<String> fields, QueryBuilder queryBuilder) {
+        BooleanQuery.Builder booleanQueryBuilder = new BooleanQuery.Builder();
+        booleanQueryBuilder.setDisableCoord(true);
+        int clauseCount = 0;
+        Query fieldQuery = null;
+        for (String field : fields) {
+            fieldQuery = queryBuilder.createBooleanQuery(field, gram);
+            if (fieldQuery != null) {
+                booleanQueryBuilder.add(fieldQuery, BooleanClause.Occur.SHOULD);
+                clauseCount++;
+            }
+        }
+        if (clauseCount == 0) {
+            return null;
+        }
+        if (clauseCount == 1 && fields.size() == 1) {
+            return fieldQuery;
+        }
+        return booleanQueryBuilder.build();
     }
 
     /**
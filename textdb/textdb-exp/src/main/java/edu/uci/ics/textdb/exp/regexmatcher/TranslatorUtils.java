@@ -28,6 +28,16 @@ public class TranslatorUtils {
      */
     static final int MAX_SET_SIZE = 20;
 
+    /**
+     * The DNF of a query tree is limited to MAX_DNF_SIZE conjunctions. An AND
+     * of DNFs is a cross product of their conjunctions, which grows
+     * exponentially with large alternations. If it gets too big, "toDNF" keeps
+     * only the operand with fewer conjunctions, and an OR which is too big
+     * becomes ANY. Both give a weaker query, which still matches every string
+     * the regex matches.
+     */
+    static final int MAX_DNF_SIZE = 256;
+
     static final int DEFAULT_GRAM_LENGTH = 3;
     static int GRAM_LENGTH = DEFAULT_GRAM_LENGTH;
 
@@ -5,6 +5,7 @@ import edu.uci.ics.textdb.api.dataflow.ISink;
 import edu.uci.ics.textdb.api.exception.TextDBException;
 import edu.uci.ics.textdb.api.schema.Schema;
 import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.api.tuple.TupleBatch;
 
 /**
  * Created by chenli on 5/11/16.
@@ -36,10 +37,12 @@ public abstract class AbstractSink implements ISink {
 
     @Override
     public void processTuples() throws TextDBException {
-        Tuple nextTuple;
+        TupleBatch nextBatch;
 
-        while ((nextTuple = inputOperator.getNextTuple()) != null) {
-            processOneTuple(nextTuple);
+        while ((nextBatch = inputOperator.getNextBatch(TupleBatch.DEFAULT_BATCH_SIZE)) != null) {
+            for (Tuple nextTuple : nextBatch) {
+                processOneTuple(nextTuple);
+            }
         }
     }
 
@@ -10,6 +10,7 @@ import edu.uci.ics.textdb.api.dataflow.ISink;
 import edu.uci.ics.textdb.api.exception.TextDBException;
 import edu.uci.ics.textdb.api.schema.Schema;
 import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.api.tuple.TupleBatch;
 import edu.uci.ics.textdb.api.utils.Utils;
 
 /**
@@ -107,9 +108,11 @@ public class TupleSink implements ISink {
      */
     public List<Tuple> collectAllTuples() throws TextDBException {
         ArrayList<Tuple> results = new ArrayList<>();
-        Tuple tuple;
-        while ((tuple = inputOperator.getNextTuple()) != null) {
-            results.add(Utils.removeFields(tuple, SchemaConstants._ID, SchemaConstants.PAYLOAD));
+        TupleBatch batch;
+        while ((batch = inputOperator.getNextBatch(TupleBatch.DEFAULT_BATCH_SIZE)) != null) {
+            for (Tuple tuple : batch) {
+                results.add(Utils.removeFields(tuple, SchemaConstants._ID, SchemaConstants.PAYLOAD));
+            }
         }
         return results;
     }
@@ -1,14 +1,20 @@
 package edu.uci.ics.textdb.exp.source.scan;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.exception.StorageException;
 import edu.uci.ics.textdb.api.exception.TextDBException;
+import edu.uci.ics.textdb.api.field.IDField;
 import edu.uci.ics.textdb.api.schema.Schema;
 import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.api.tuple.TupleBatch;
 
 import org.apache.lucene.search.MatchAllDocsQuery;
 
 import edu.uci.ics.textdb.api.constants.ErrorMessages;
+import edu.uci.ics.textdb.api.constants.SchemaConstants;
 import edu.uci.ics.textdb.api.dataflow.ISourceOperator;
 import edu.uci.ics.textdb.storage.DataReader;
 import edu.uci.ics.textdb.storage.RelationManager;
@@ -20,9 +26,12 @@ public class ScanBasedSourceOperator implements ISourceOperator {
 
     private DataReader dataReader;
     
+    private final String tableName;
+    
     private boolean isOpen = false;
 
     public ScanBasedSourceOperator(ScanSourcePredicate predicate) throws DataFlowException {
+        this.tableName = predicate.getTableName();
         try {
             this.dataReader = RelationManager.getRelationManager().getTableDataReader(
                     predicate.getTableName(), new MatchAllDocsQuery());
@@ -33,6 +42,78 @@ public class ScanBasedSourceOperator implements ISourceOperator {
         }
     }
 
+    /**
+     * Reads only one partition of the table, see {@link DataReader#setPartition(int, int)}.
+     */
+    public void setPartition(int partitionIndex, int partitionCount) throws DataFlowException {
+        try {
+            this.dataReader.setPartition(partitionIndex, partitionCount);
+        } catch (StorageException e) {
+            throw new DataFlowException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Starts reading after a tuple of a previous read, see {@link DataReader#setSearchAfter(IDField)}.
+     */
+    public void setSearchAfter(IDField idField) throws DataFlowException {
+        try {
+            this.dataReader.setSearchAfter(idField);
+        } catch (StorageException e) {
+            throw new DataFlowException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Pushes a projection down to the DataReader, so that only the projected attributes are read from the index.
+     * The payload is only added if it's one of the projected attributes.
+     * 
+     * The projection is not pushed down if the operator is already opened, 
+     *   or if one of the attributes is not in the table.
+     * 
+     * @param attributeNames, the names of the projected attributes
+     * @return true if the projection is pushed down
+     * @throws DataFlowException
+     */
+    public boolean pushDownProjection(List<String> attributeNames) throws DataFlowException {
+        if (isOpen) {
+            return false;
+        }
+        try {
+            Schema tableSchema = RelationManager.getRelationManager().getTableSchema(tableName);
+            List<String> projectedAttributeNames = new ArrayList<>();
+            boolean payloadProjected = false;
+            for (String attributeName : attributeNames) {
+                if (attributeName.equalsIgnoreCase(SchemaConstants.PAYLOAD)) {
+                    payloadProjected = true;
+                } else if (tableSchema.containsField(attributeName)) {
+                    projectedAttributeNames.add(attributeName);
+                } else {
+                    return false;
+                }
+            }
+            this.dataReader.setProjectedAttributes(projectedAttributeNames);
+            this.dataReader.setPayloadAdded(payloadProjected);
+            return true;
+        } catch (StorageException e) {
+            throw new DataFlowException(e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Sets whether the TEXT fields are loaded lazily, see DataReader.setLateMaterialization().
+     * 
+     * @param lateMaterialization
+     * @throws DataFlowException
+     */
+    public void setLateMaterialization(boolean lateMaterialization) throws DataFlowException {
+        try {
+            this.dataReader.setLateMaterialization(lateMaterialization);
+        } catch (StorageException e) {
+            throw new DataFlowException(e.getMessage(), e);
+        }
+    }
+
     @Override
     public void open() throws TextDBException {
         if (isOpen) {
@@ -59,6 +140,18 @@ public class ScanBasedSourceOperator implements ISourceOperator {
         }
     }
 
+    @Override
+    public TupleBatch getNextBatch(int maxTuples) throws TextDBException {
+        if (! isOpen) {
+            throw new DataFlowException(ErrorMessages.OPERATOR_NOT_OPENED);
+        }
+        try {
+            return dataReader.getNextBatch(maxTuples);
+        } catch (Exception e) {
+            throw new DataFlowException(e.getMessage(), e);
+        }
+    }
+
     @Override
     public void close() throws TextDBException {
         if (! isOpen) {
@@ -3,14 +3,12 @@ package edu.uci.ics.textdb.exp.utils;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
-import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
-import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 import org.apache.lucene.analysis.util.CharArraySet;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.json.JSONArray;
@@ -31,10 +29,19 @@ import edu.uci.ics.textdb.api.schema.AttributeType;
 import edu.uci.ics.textdb.api.schema.Schema;
 import edu.uci.ics.textdb.api.span.Span;
 import edu.uci.ics.textdb.api.tuple.*;
-import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
+import edu.uci.ics.textdb.storage.CompactPayload;
+import edu.uci.ics.textdb.storage.PayloadCache;
+import edu.uci.ics.textdb.storage.PayloadGenerator;
+import edu.uci.ics.textdb.storage.utils.AnalyzerRegistry;
 
 public class DataflowUtils {
     
+    // the standard analyzer without stop words, used to tokenize the queries keeping their stop words
+    private static final Analyzer standardAnalyzerWithStopwords = new StandardAnalyzer(new CharArraySet(1, true));
+    
+    // a PayloadGenerator reuses its buffers, so each thread keeps its own one
+    private static final ThreadLocal<PayloadGenerator> payloadGenerator = ThreadLocal.withInitial(PayloadGenerator::new);
+    
     /**
      * Returns the AttributeType of a field object.
      * 
@@ -63,9 +70,11 @@ public class DataflowUtils {
 
     /**
      * @about Creating a new span tuple from span schema, field list
+     * A CompactPayload is read-only, so it's kept as it is, and its spans are still created only when accessed.
      */
     public static Tuple getSpanTuple(List<IField> fieldList, List<Span> spanList, Schema spanSchema) {
-        IField spanListField = new ListField<Span>(new ArrayList<>(spanList));
+        IField spanListField = new ListField<Span>(
+                spanList instanceof CompactPayload ? spanList : new ArrayList<>(spanList));
         List<IField> fieldListDuplicate = new ArrayList<>(fieldList);
         fieldListDuplicate.add(spanListField);
 
@@ -75,7 +84,7 @@ public class DataflowUtils {
     
     public static ArrayList<String> tokenizeQuery(String luceneAnalyzerStr, String query) {
         try {
-            return tokenizeQuery(LuceneAnalyzerConstants.getLuceneAnalyzer(luceneAnalyzerStr), query);
+            return tokenizeQuery(AnalyzerRegistry.getAnalyzer(luceneAnalyzerStr), query);
         } catch (DataFlowException e) {
             // TODO: discuss RuntimeException vs. Checked Exception
             throw new RuntimeException(e);
@@ -91,15 +100,15 @@ public class DataflowUtils {
      */
     public static ArrayList<String> tokenizeQuery(Analyzer luceneAnalyzer, String query) {
         ArrayList<String> result = new ArrayList<String>();
-        TokenStream tokenStream = luceneAnalyzer.tokenStream(null, new StringReader(query));
-        CharTermAttribute term = tokenStream.addAttribute(CharTermAttribute.class);
 
-        try {
+        // the TokenStream is always closed, since the analyzer may be shared and reuse it
+        try (TokenStream tokenStream = luceneAnalyzer.tokenStream(null, new StringReader(query))) {
+            CharTermAttribute term = tokenStream.addAttribute(CharTermAttribute.class);
             tokenStream.reset();
             while (tokenStream.incrementToken()) {
                 result.add(term.toString());
             }
-            tokenStream.close();
+            tokenStream.end();
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -109,12 +118,9 @@ public class DataflowUtils {
 
     public static ArrayList<String> tokenizeQueryWithStopwords(String query) {
         ArrayList<String> result = new ArrayList<String>();
-        CharArraySet emptyStopwords = new CharArraySet(1, true);
-        Analyzer luceneAnalyzer = new StandardAnalyzer(emptyStopwords);
-        TokenStream tokenStream = luceneAnalyzer.tokenStream(null, new StringReader(query));
-        CharTermAttribute term = tokenStream.addAttribute(CharTermAttribute.class);
 
-        try {
+        try (TokenStream tokenStream = standardAnalyzerWithStopwords.tokenStream(null, new StringReader(query))) {
+            CharTermAttribute term = tokenStream.addAttribute(CharTermAttribute.class);
             tokenStream.reset();
             while (tokenStream.incrementToken()) {
                 String token = term.toString();
@@ -124,13 +130,11 @@ public class DataflowUtils {
                 String actualQueryToken = query.substring(tokenIndex, tokenIndex + token.length());
                 result.add(actualQueryToken);
             }
-            tokenStream.close();
+            tokenStream.end();
         } catch (Exception e) {
             e.printStackTrace();
         }
 
-        luceneAnalyzer.close();
-
         return result;
     }
     
@@ -260,51 +264,71 @@ public class DataflowUtils {
         return sb.toString();
     }
     
+    /**
+     * Generates the payload of the TEXT fields of a tuple, using the shared analyzer of the analyzer string.
+     * 
+     * @param tuple
+     * @param luceneAnalyzer, the analyzer string
+     * @return the payload, see generatePayloadFromTuple(Tuple, Analyzer)
+     * @throws DataFlowException, if the analyzer string is invalid
+     */
     public static List<Span> generatePayloadFromTuple(Tuple tuple, String luceneAnalyzer) throws DataFlowException {
-        return generatePayloadFromTuple(tuple, LuceneAnalyzerConstants.getLuceneAnalyzer(luceneAnalyzer));
+        return generatePayloadFromTuple(tuple, AnalyzerRegistry.getAnalyzer(luceneAnalyzer));
     }
 
-    public static List<Span> generatePayloadFromTuple(Tuple tuple, Analyzer luceneAnalyzer) {
-        List<Span> tuplePayload = tuple.getSchema().getAttributes().stream()
-                .filter(attr -> (attr.getAttributeType() == AttributeType.TEXT)) // generate payload only for TEXT field
-                .map(attr -> attr.getAttributeName())
-                .map(attributeName -> generatePayload(attributeName, tuple.getField(attributeName).getValue().toString(),
-                        luceneAnalyzer))
-                .flatMap(payload -> payload.stream()) // flatten a list of lists to a list
-                .collect(Collectors.toList());
+    /**
+     * Generates the payload of the TEXT fields of a tuple, or gets it from the payload cache of the plan.
+     * 
+     * @param tuple
+     * @param luceneAnalyzer
+     * @param payloadCache, the payload cache shared by the operators of the plan, 
+     *   null if the payload is always generated
+     * @return the payload, see generatePayloadFromTuple(Tuple, Analyzer)
+     * @throws DataFlowException, if the analyzer string is invalid
+     */
+    public static List<Span> generatePayloadFromTuple(Tuple tuple, String luceneAnalyzer, 
+            PayloadCache payloadCache) throws DataFlowException {
+        if (payloadCache == null) {
+            return generatePayloadFromTuple(tuple, luceneAnalyzer);
+        }
+        return payloadCache.getPayload(tuple, luceneAnalyzer);
+    }
 
-        return tuplePayload;
+    /**
+     * Generates the payload of the TEXT fields of a tuple.
+     * 
+     * The payload is a CompactPayload, which keeps the tokens in int arrays 
+     *   and only creates the span of a token when it's accessed.
+     * 
+     * @param tuple
+     * @param luceneAnalyzer
+     * @return the payload, an empty list if the fields can't be analyzed
+     */
+    public static List<Span> generatePayloadFromTuple(Tuple tuple, Analyzer luceneAnalyzer) {
+        List<String> textAttributeNames = new ArrayList<>();
+        List<IField> textFields = new ArrayList<>();
+        for (Attribute attribute : tuple.getSchema().getAttributes()) {
+            // generate payload only for TEXT field
+            if (attribute.getAttributeType() == AttributeType.TEXT) {
+                textAttributeNames.add(attribute.getAttributeName());
+                textFields.add(tuple.getField(attribute.getAttributeName()));
+            }
+        }
+        return generatePayload(textAttributeNames, textFields, luceneAnalyzer);
     }
 
     public static List<Span> generatePayload(String attributeName, String fieldValue, Analyzer luceneAnalyzer) {
-        List<Span> payload = new ArrayList<>();
-        
-        try {
-            TokenStream tokenStream = luceneAnalyzer.tokenStream(null, new StringReader(fieldValue));
-            OffsetAttribute offsetAttribute = tokenStream.addAttribute(OffsetAttribute.class);
-            CharTermAttribute charTermAttribute = tokenStream.addAttribute(CharTermAttribute.class);
-            PositionIncrementAttribute positionIncrementAttribute = 
-                    tokenStream.addAttribute(PositionIncrementAttribute.class);
-            
-            int tokenPositionCounter = -1;
-            tokenStream.reset();
-            while (tokenStream.incrementToken()) {
-                tokenPositionCounter += positionIncrementAttribute.getPositionIncrement();
-                
-                int tokenPosition = tokenPositionCounter;
-                int charStart = offsetAttribute.startOffset();
-                int charEnd = offsetAttribute.endOffset();
-                String analyzedTermStr = charTermAttribute.toString();
-                String originalTermStr = fieldValue.substring(charStart, charEnd);
+        // a mutable list, the callers may sort it
+        return new ArrayList<>(generatePayload(Collections.singletonList(attributeName), 
+                Collections.singletonList(new TextField(fieldValue)), luceneAnalyzer));
+    }
 
-                payload.add(new Span(attributeName, charStart, charEnd, analyzedTermStr, originalTermStr, tokenPosition));
-            }
-            tokenStream.close();
+    private static List<Span> generatePayload(List<String> attributeNames, List<IField> fields, Analyzer luceneAnalyzer) {
+        try {
+            return payloadGenerator.get().generate(luceneAnalyzer, attributeNames, fields);
         } catch (IOException e) {
-            payload.clear(); // return empty payload
+            return new ArrayList<>(); // return empty payload
         }
-
-        return payload;
     }
 
 }
\ No newline at end of file
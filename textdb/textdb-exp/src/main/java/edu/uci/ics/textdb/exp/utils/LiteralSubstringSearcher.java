@@ -0,0 +1,101 @@
+package edu.uci.ics.textdb.exp.utils;
+
+/**
+ * LiteralSubstringSearcher finds the occurrences of a literal string in texts, ignoring the case,
+ *   using the Boyer-Moore-Horspool algorithm.
+ *
+ * The pattern is compiled once, and the texts are scanned without being copied or converted to lower case,
+ *   so the offsets of the occurrences are the offsets in the original text.
+ *
+ * Two characters are considered equal ignoring the case in the same way as String.equalsIgnoreCase().
+ *
+ * A LiteralSubstringSearcher is immutable, it can be shared by multiple threads.
+ *
+ */
+public class LiteralSubstringSearcher {
+
+    // the shift table is indexed by the lowest 8 bits of a (case folded) character,
+    //   characters sharing the same lowest 8 bits use the smallest shift among them, which is always safe
+    private static final int SHIFT_TABLE_SIZE = 256;
+
+    private final String literal;
+    private final char[] foldedPattern;
+    private final int[] shiftTable;
+
+    public LiteralSubstringSearcher(String literal) {
+        this.literal = literal;
+        this.foldedPattern = new char[literal.length()];
+        for (int i = 0; i < literal.length(); i++) {
+            foldedPattern[i] = foldCase(literal.charAt(i));
+        }
+
+        int patternLength = foldedPattern.length;
+        this.shiftTable = new int[SHIFT_TABLE_SIZE];
+        for (int i = 0; i < SHIFT_TABLE_SIZE; i++) {
+            shiftTable[i] = Math.max(patternLength, 1);
+        }
+        // the last character of the pattern is not included
+        for (int i = 0; i < patternLength - 1; i++) {
+            shiftTable[foldedPattern[i] & (SHIFT_TABLE_SIZE - 1)] = patternLength - 1 - i;
+        }
+    }
+
+    public String getLiteral() {
+        return literal;
+    }
+
+    public int length() {
+        return foldedPattern.length;
+    }
+
+    /**
+     * Finds the first occurrence of the literal in the text, starting from fromIndex.
+     *
+     * @param text
+     * @param fromIndex
+     * @return the start offset of the occurrence, or -1 if there's no occurrence.
+     */
+    public int indexOf(CharSequence text, int fromIndex) {
+        int patternLength = foldedPattern.length;
+        if (patternLength == 0) {
+            return fromIndex <= text.length() ? Math.max(fromIndex, 0) : -1;
+        }
+        int last = patternLength - 1;
+        int textLength = text.length();
+
+        int position = Math.max(fromIndex, 0);
+        while (position + patternLength <= textLength) {
+            char lastChar = foldCase(text.charAt(position + last));
+            if (lastChar == foldedPattern[last]) {
+                int i = last - 1;
+                while (i >= 0 && foldCase(text.charAt(position + i)) == foldedPattern[i]) {
+                    i--;
+                }
+                if (i < 0) {
+                    return position;
+                }
+            }
+            position += shiftTable[lastChar & (SHIFT_TABLE_SIZE - 1)];
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if the text contains the literal.
+     */
+    public boolean isFoundIn(CharSequence text) {
+        return indexOf(text, 0) >= 0;
+    }
+
+    /*
+     * Maps the upper case and lower case forms of a character to the same character,
+     *   the same as the comparison in String.regionMatches(ignoreCase = true, ...).
+     */
+    static char foldCase(char c) {
+        if (c < 128) {
+            return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+}
@@ -0,0 +1,108 @@
+package edu.uci.ics.textdb.exp.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * MultiLiteralSearcher finds which of a set of literal strings occur in a text, ignoring the case,
+ *   using the Aho-Corasick algorithm, so the text is scanned only once no matter how many literals there are.
+ *
+ * Two characters are considered equal ignoring the case in the same way as LiteralSubstringSearcher.
+ *
+ * A MultiLiteralSearcher is immutable, it can be shared by multiple threads.
+ *
+ */
+public class MultiLiteralSearcher {
+
+    private final List<String> literals;
+
+    // the trie of the case folded literals, node 0 is the root
+    private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+    private final List<Integer> failureLinks = new ArrayList<>();
+    // the indexes of the literals ending at each node, including the ones reached by the failure links
+    private final List<BitSet> outputs = new ArrayList<>();
+
+    public MultiLiteralSearcher(List<String> literals) {
+        this.literals = new ArrayList<>(literals);
+        addNode();
+        for (int i = 0; i < literals.size(); i++) {
+            int node = 0;
+            String literal = literals.get(i);
+            for (int j = 0; j < literal.length(); j++) {
+                char c = LiteralSubstringSearcher.foldCase(literal.charAt(j));
+                Integer next = transitions.get(node).get(c);
+                if (next == null) {
+                    next = addNode();
+                    transitions.get(node).put(c, next);
+                }
+                node = next;
+            }
+            outputs.get(node).set(i);
+        }
+        buildFailureLinks();
+    }
+
+    private int addNode() {
+        transitions.add(new HashMap<>());
+        failureLinks.add(0);
+        outputs.add(new BitSet());
+        return transitions.size() - 1;
+    }
+
+    /*
+     * Computes the failure links in breadth-first order, so the link of a node's parent is always computed first.
+     */
+    private void buildFailureLinks() {
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int child : transitions.get(0).values()) {
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (Map.Entry<Character, Integer> transition : transitions.get(node).entrySet()) {
+                int child = transition.getValue();
+                int failure = failureLinks.get(node);
+                while (failure != 0 && !transitions.get(failure).containsKey(transition.getKey())) {
+                    failure = failureLinks.get(failure);
+                }
+                Integer failureChild = transitions.get(failure).get(transition.getKey());
+                failureLinks.set(child, failureChild == null ? 0 : failureChild);
+                outputs.get(child).or(outputs.get(failureLinks.get(child)));
+                queue.add(child);
+            }
+        }
+    }
+
+    public List<String> getLiterals() {
+        return new ArrayList<>(literals);
+    }
+
+    /**
+     * Finds the literals occurring in the text.
+     *
+     * @param text
+     * @return the indexes (in the list of literals) of the literals occurring in the text
+     */
+    public BitSet findLiterals(CharSequence text) {
+        BitSet found = new BitSet(literals.size());
+        found.or(outputs.get(0));
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = LiteralSubstringSearcher.foldCase(text.charAt(i));
+            Integer next = transitions.get(node).get(c);
+            while (next == null && node != 0) {
+                node = failureLinks.get(node);
+                next = transitions.get(node).get(c);
+            }
+            node = next == null ? 0 : next;
+            found.or(outputs.get(node));
+        }
+        return found;
+    }
+
+}
@@ -0,0 +1,245 @@
+package edu.uci.ics.textdb.exp.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import edu.uci.ics.textdb.api.field.DateField;
+import edu.uci.ics.textdb.api.field.DoubleField;
+import edu.uci.ics.textdb.api.field.IDField;
+import edu.uci.ics.textdb.api.field.IField;
+import edu.uci.ics.textdb.api.field.IntegerField;
+import edu.uci.ics.textdb.api.field.ListField;
+import edu.uci.ics.textdb.api.field.StringField;
+import edu.uci.ics.textdb.api.field.TextField;
+import edu.uci.ics.textdb.api.schema.Attribute;
+import edu.uci.ics.textdb.api.schema.Schema;
+import edu.uci.ics.textdb.api.span.Span;
+import edu.uci.ics.textdb.api.tuple.Tuple;
+
+/**
+ * TupleSpillFile is a temporary file that holds tuples of the same schema,
+ *   which is used by the operators whose buffered tuples don't fit in memory
+ *   (the hash join, and the broadcast connector).
+ *
+ * The tuples are first written to the file, then read back in the same order.
+ * The file can be read by multiple independent readers, each reader reads the tuples from the beginning.
+ * Only the values of the fields are written, the schema is kept in memory.
+ * LIST fields are expected to contain spans (span list and payload).
+ *
+ */
+public class TupleSpillFile {
+
+    private final Schema schema;
+    private final Path path;
+
+    private DataOutputStream output;
+    // the reader used by startReading() and readTuple()
+    private Reader defaultReader;
+
+    private int tupleCount = 0;
+
+    public TupleSpillFile(Schema schema) throws IOException {
+        this.schema = schema;
+        this.path = Files.createTempFile("textdb-join-", ".spill");
+        this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+    }
+
+    public void writeTuple(Tuple tuple) throws IOException {
+        List<Attribute> attributes = schema.getAttributes();
+        for (int i = 0; i < attributes.size(); i++) {
+            writeField(attributes.get(i), tuple.getField(i));
+        }
+        tupleCount++;
+    }
+
+    public int getTupleCount() {
+        return tupleCount;
+    }
+
+    /**
+     * Finishes writing, no more tuples can be written after that.
+     */
+    public void finishWriting() throws IOException {
+        if (output != null) {
+            output.close();
+            output = null;
+        }
+    }
+
+    /**
+     * Finishes writing and opens a new reader, which reads the tuples from the beginning of the file.
+     * The reader must be closed by the caller.
+     */
+    public Reader newReader() throws IOException {
+        finishWriting();
+        return new Reader();
+    }
+
+    /**
+     * Finishes writing and starts reading the tuples from the beginning of the file.
+     */
+    public void startReading() throws IOException {
+        if (defaultReader != null) {
+            defaultReader.close();
+        }
+        defaultReader = newReader();
+    }
+
+    /**
+     * Reads the next tuple after startReading(), returns null if all the tuples are read.
+     */
+    public Tuple readTuple() throws IOException {
+        return defaultReader.readTuple();
+    }
+
+    /**
+     * Closes and deletes the file.
+     */
+    public void delete() throws IOException {
+        finishWriting();
+        if (defaultReader != null) {
+            defaultReader.close();
+            defaultReader = null;
+        }
+        Files.deleteIfExists(path);
+    }
+
+    private void writeField(Attribute attribute, IField field) throws IOException {
+        switch (attribute.getAttributeType()) {
+        case _ID_TYPE:
+        case STRING:
+        case TEXT:
+            writeString((String) field.getValue());
+            break;
+        case INTEGER:
+            output.writeInt((Integer) field.getValue());
+            break;
+        case DOUBLE:
+            output.writeDouble((Double) field.getValue());
+            break;
+        case DATE:
+            output.writeLong(((Date) field.getValue()).getTime());
+            break;
+        case LIST:
+            @SuppressWarnings("unchecked")
+            List<Span> spanList = ((ListField<Span>) field).getValue();
+            output.writeInt(spanList.size());
+            for (Span span : spanList) {
+                writeString(span.getAttributeName());
+                output.writeInt(span.getStart());
+                output.writeInt(span.getEnd());
+                writeString(span.getKey());
+                writeString(span.getValue());
+                output.writeInt(span.getTokenOffset());
+            }
+            break;
+        default:
+            throw new IOException("unsupported attribute type " + attribute.getAttributeType());
+        }
+    }
+
+    /**
+     * A Reader reads the tuples in the file from the beginning.
+     */
+    public class Reader implements Closeable {
+
+        private final DataInputStream input;
+
+        private Reader() throws IOException {
+            this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+        }
+
+        /**
+         * Reads the next tuple, returns null if all the tuples are read.
+         */
+        public Tuple readTuple() throws IOException {
+            List<Attribute> attributes = schema.getAttributes();
+            IField[] fields = new IField[attributes.size()];
+            for (int i = 0; i < attributes.size(); i++) {
+                try {
+                    fields[i] = readField(input, attributes.get(i));
+                } catch (EOFException e) {
+                    if (i == 0) {
+                        return null;
+                    }
+                    throw e;
+                }
+            }
+            return new Tuple(schema, fields);
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+
+    }
+
+    private static IField readField(DataInputStream input, Attribute attribute) throws IOException {
+        switch (attribute.getAttributeType()) {
+        case _ID_TYPE:
+            return new IDField(readString(input));
+        case STRING:
+            return new StringField(readString(input));
+        case TEXT:
+            return new TextField(readString(input));
+        case INTEGER:
+            return new IntegerField(input.readInt());
+        case DOUBLE:
+            return new DoubleField(input.readDouble());
+        case DATE:
+            return new DateField(new Date(input.readLong()));
+        case LIST:
+            int size = input.readInt();
+            List<Span> spanList = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                String attributeName = readString(input);
+                int start = input.readInt();
+                int end = input.readInt();
+                String key = readString(input);
+                String value = readString(input);
+                int tokenOffset = input.readInt();
+                spanList.add(new Span(attributeName, start, end, key, value, tokenOffset));
+            }
+            return new ListField<Span>(spanList);
+        default:
+            throw new IOException("unsupported attribute type " + attribute.getAttributeType());
+        }
+    }
+
+    /*
+     * DataOutputStream.writeUTF only supports strings shorter than 64KB,
+     *   so the length and the UTF-8 bytes are written instead.
+     */
+    private void writeString(String str) throws IOException {
+        if (str == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -2,8 +2,11 @@ package edu.uci.ics.textdb.plangen;
 
 import java.io.Serializable;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 
 import edu.uci.ics.textdb.api.dataflow.IOperator;
@@ -11,7 +14,15 @@ import edu.uci.ics.textdb.api.dataflow.ISink;
 import edu.uci.ics.textdb.api.engine.Plan;
 import edu.uci.ics.textdb.api.exception.PlanGenException;
 import edu.uci.ics.textdb.exp.connector.OneToNBroadcastConnector;
+import edu.uci.ics.textdb.exp.dictionarymatcher.DictionaryMatcher;
+import edu.uci.ics.textdb.exp.fuzzytokenmatcher.FuzzyTokenMatcher;
 import edu.uci.ics.textdb.exp.join.Join;
+import edu.uci.ics.textdb.exp.keywordmatcher.KeywordMatcher;
+import edu.uci.ics.textdb.exp.keywordmatcher.KeywordMatchingType;
+import edu.uci.ics.textdb.exp.plangen.operatorbuilder.OperatorBuilderUtils;
+import edu.uci.ics.textdb.exp.plangen.operatorbuilder.RegexMatcherBuilder;
+import edu.uci.ics.textdb.exp.plangen.operatorbuilder.RegexSetMatcherBuilder;
+import edu.uci.ics.textdb.storage.PayloadCache;
 
 /**
  * A graph of operators representing a query plan.
@@ -22,6 +33,9 @@ public class LogicalPlan implements Serializable {
     
     private static final long serialVersionUID = -4473743060478893198L;
     
+    private static final String REGEX_MATCHER = "RegexMatcher";
+    private static final String REGEX_SET_MATCHER = "RegexSetMatcher";
+    
     // a map of an operator ID to the operator's type
     HashMap<String, String> operatorTypeMap;
     // a map of an operator ID to the operator's properties
@@ -100,15 +114,169 @@ public class LogicalPlan implements Serializable {
      * @throws PlanGenException, if the operator graph is invalid.
      */
     public Plan buildQueryPlan() throws PlanGenException {
-        HashMap<String, IOperator> operatorObjectMap = buildOperators();
-        validateOperatorGraph();
-        connectOperators(operatorObjectMap);
-        ISink sink = findSinkOperator(operatorObjectMap);
+        // the regex matchers are fused in a copy of the operator graph, this graph is not changed
+        LogicalPlan fusedPlan = fuseRegexMatchers();
+        
+        HashMap<String, IOperator> operatorObjectMap = fusedPlan.buildOperators();
+        fusedPlan.validateOperatorGraph();
+        fusedPlan.connectOperators(operatorObjectMap);
+        sharePayloadCache(operatorObjectMap);
+        ISink sink = fusedPlan.findSinkOperator(operatorObjectMap);
         
         Plan queryPlan = new Plan(sink);
         return queryPlan;
     }
     
+    /*
+     * Returns a copy of the operator graph, where each chain of RegexMatchers over the same attributes
+     *   is replaced by one RegexSetMatcher, so that each field is scanned once for all the regexes of the chain.
+     * 
+     * A RegexMatcher only returns the tuples it matches, and adds its spans to the span list,
+     *   so a chain of RegexMatchers is the same as a RegexSetMatcher with matchAll set to true,
+     *   whose regexes are in the same order as the chain.
+     * Two operators are fused only if the first one's only output is the second one, the second one has no other input,
+     *   they have the same attributes and ignoreCase, and the first one has no limit or offset.
+     */
+    LogicalPlan fuseRegexMatchers() throws PlanGenException {
+        LogicalPlan fusedPlan = new LogicalPlan();
+        fusedPlan.operatorTypeMap.putAll(operatorTypeMap);
+        for (String operatorID : operatorPropertyMap.keySet()) {
+            fusedPlan.operatorPropertyMap.put(operatorID, new HashMap<>(operatorPropertyMap.get(operatorID)));
+        }
+        for (String operatorID : adjacencyList.keySet()) {
+            fusedPlan.adjacencyList.put(operatorID, new HashSet<>(adjacencyList.get(operatorID)));
+        }
+        
+        boolean isFused = true;
+        while (isFused) {
+            isFused = false;
+            for (String operatorID : fusedPlan.adjacencyList.keySet()) {
+                if (fusedPlan.fuseWithOutputOperator(operatorID)) {
+                    isFused = true;
+                    break;
+                }
+            }
+        }
+        return fusedPlan;
+    }
+    
+    /*
+     * Fuses a regex operator with its output operator if possible, returns true if they are fused.
+     */
+    private boolean fuseWithOutputOperator(String operatorID) throws PlanGenException {
+        if (! isFusableRegexOperator(operatorID) || adjacencyList.get(operatorID).size() != 1) {
+            return false;
+        }
+        String outputID = adjacencyList.get(operatorID).iterator().next();
+        if (! isFusableRegexOperator(outputID)) {
+            return false;
+        }
+        long outputInputArity = adjacencyList.values().stream().filter(outputs -> outputs.contains(outputID)).count();
+        
+        Map<String, String> properties = operatorPropertyMap.get(operatorID);
+        Map<String, String> outputProperties = operatorPropertyMap.get(outputID);
+        List<String> attributeNames = findAttributeNames(properties);
+        if (outputInputArity != 1 || attributeNames == null 
+                || ! attributeNames.equals(findAttributeNames(outputProperties))
+                || RegexMatcherBuilder.findIgnoreCase(properties) != RegexMatcherBuilder.findIgnoreCase(outputProperties)
+                || properties.containsKey(OperatorBuilderUtils.LIMIT) 
+                || properties.containsKey(OperatorBuilderUtils.OFFSET)) {
+            return false;
+        }
+        
+        List<String> regexes = new ArrayList<>(findRegexes(operatorID));
+        regexes.addAll(findRegexes(outputID));
+        
+        Map<String, String> fusedProperties = new HashMap<>();
+        fusedProperties.put(OperatorBuilderUtils.ATTRIBUTE_NAMES, properties.get(OperatorBuilderUtils.ATTRIBUTE_NAMES));
+        fusedProperties.put(RegexSetMatcherBuilder.REGEXES, RegexSetMatcherBuilder.toRegexesProperty(regexes));
+        fusedProperties.put(RegexSetMatcherBuilder.IGNORE_CASE, 
+                Boolean.toString(RegexMatcherBuilder.findIgnoreCase(properties)));
+        fusedProperties.put(RegexSetMatcherBuilder.MATCH_ALL, Boolean.toString(true));
+        for (String key : Arrays.asList(OperatorBuilderUtils.LIMIT, OperatorBuilderUtils.OFFSET)) {
+            if (outputProperties.containsKey(key)) {
+                fusedProperties.put(key, outputProperties.get(key));
+            }
+        }
+        
+        // the fused operator keeps the ID of the first operator, and takes the outputs of the second one
+        operatorTypeMap.put(operatorID, REGEX_SET_MATCHER);
+        operatorPropertyMap.put(operatorID, fusedProperties);
+        adjacencyList.put(operatorID, adjacencyList.get(outputID));
+        operatorTypeMap.remove(outputID);
+        operatorPropertyMap.remove(outputID);
+        adjacencyList.remove(outputID);
+        return true;
+    }
+    
+    /*
+     * Checks if an operator is a RegexMatcher, or a RegexSetMatcher returning only the tuples matching all its regexes.
+     */
+    private boolean isFusableRegexOperator(String operatorID) {
+        String operatorType = operatorTypeMap.get(operatorID);
+        Map<String, String> properties = operatorPropertyMap.get(operatorID);
+        if (operatorType.equalsIgnoreCase(REGEX_MATCHER)) {
+            return properties.containsKey(RegexMatcherBuilder.REGEX);
+        }
+        if (operatorType.equalsIgnoreCase(REGEX_SET_MATCHER)) {
+            return properties.containsKey(RegexSetMatcherBuilder.REGEXES)
+                    && Boolean.parseBoolean(properties.get(RegexSetMatcherBuilder.MATCH_ALL));
+        }
+        return false;
+    }
+    
+    private List<String> findRegexes(String operatorID) throws PlanGenException {
+        Map<String, String> properties = operatorPropertyMap.get(operatorID);
+        if (operatorTypeMap.get(operatorID).equalsIgnoreCase(REGEX_MATCHER)) {
+            return Arrays.asList(properties.get(RegexMatcherBuilder.REGEX));
+        }
+        return RegexSetMatcherBuilder.parseRegexes(properties.get(RegexSetMatcherBuilder.REGEXES));
+    }
+    
+    private static List<String> findAttributeNames(Map<String, String> properties) {
+        String attributeNamesStr = properties.get(OperatorBuilderUtils.ATTRIBUTE_NAMES);
+        return attributeNamesStr == null ? null : OperatorBuilderUtils.splitStringByComma(attributeNamesStr);
+    }
+    
+    /**
+     * Shares one PayloadCache between the operators of the plan that generate the payload of their input tuples
+     *   (keyword, fuzzy token, and dictionary matchers, except substring matching of the dictionary matcher),
+     *   so that the payload of a tuple is generated at most once for each analyzer in the plan,
+     *   even if it's dropped (for example by a Join or a Projection) before the next matcher.
+     * 
+     * The cache is created for this plan only, and only if there are at least two such operators,
+     *   a single operator generates the payload of each tuple only once anyway.
+     * 
+     * @param operatorObjectMap
+     * @return the cache of the plan, null if the cache is not needed
+     */
+    static PayloadCache sharePayloadCache(Map<String, IOperator> operatorObjectMap) {
+        List<IOperator> payloadOperators = new ArrayList<>();
+        for (IOperator operator : operatorObjectMap.values()) {
+            if (operator instanceof KeywordMatcher || operator instanceof FuzzyTokenMatcher) {
+                payloadOperators.add(operator);
+            } else if (operator instanceof DictionaryMatcher && ((DictionaryMatcher) operator).getPredicate()
+                    .getKeywordMatchingType() != KeywordMatchingType.SUBSTRING_SCANBASED) {
+                payloadOperators.add(operator);
+            }
+        }
+        if (payloadOperators.size() < 2) {
+            return null;
+        }
+        
+        PayloadCache payloadCache = new PayloadCache();
+        for (IOperator operator : payloadOperators) {
+            if (operator instanceof KeywordMatcher) {
+                ((KeywordMatcher) operator).setPayloadCache(payloadCache);
+            } else if (operator instanceof FuzzyTokenMatcher) {
+                ((FuzzyTokenMatcher) operator).setPayloadCache(payloadCache);
+            } else {
+                ((DictionaryMatcher) operator).setPayloadCache(payloadCache);
+            }
+        }
+        return payloadCache;
+    }
+    
     /*
      * Build the operator objects from operator properties.
      */
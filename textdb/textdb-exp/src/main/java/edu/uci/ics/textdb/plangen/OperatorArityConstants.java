@@ -25,6 +25,7 @@ public class OperatorArityConstants {
         put("KeywordMatcher".toLowerCase(), 1);
         put("DictionaryMatcher".toLowerCase(), 1);
         put("RegexMatcher".toLowerCase(), 1);
+        put("RegexSetMatcher".toLowerCase(), 1);
         put("NlpExtractor".toLowerCase(), 1);
         put("FuzzyTokenMatcher".toLowerCase(), 1);
         
@@ -49,6 +50,7 @@ public class OperatorArityConstants {
         put("KeywordMatcher".toLowerCase(), 1);
         put("DictionaryMatcher".toLowerCase(), 1);
         put("RegexMatcher".toLowerCase(), 1);
+        put("RegexSetMatcher".toLowerCase(), 1);
         put("NlpExtractor".toLowerCase(), 1);
         put("FuzzyTokenMatcher".toLowerCase(), 1);
         
@@ -7,6 +7,8 @@ import java.util.stream.Stream;
 import edu.uci.ics.textdb.api.dataflow.IOperator;
 import edu.uci.ics.textdb.api.exception.PlanGenException;
 import edu.uci.ics.textdb.api.schema.AttributeType;
+import edu.uci.ics.textdb.exp.plangen.operatorbuilder.RegexMatcherBuilder;
+import edu.uci.ics.textdb.exp.plangen.operatorbuilder.RegexSetMatcherBuilder;
 
 /**
  * This class provides a set of helper functions that are commonly used in plan generation.
@@ -22,6 +24,8 @@ public class PlanGenUtils {
     
     public static Map<String, OperatorBuilder> operatorBuilderMap = new HashMap<>();
     static {
+        operatorBuilderMap.put("RegexMatcher".toLowerCase(), RegexMatcherBuilder::buildRegexMatcher);
+        operatorBuilderMap.put("RegexSetMatcher".toLowerCase(), RegexSetMatcherBuilder::buildRegexSetMatcher);
     }
     
     public static IOperator buildOperator(String operatorType, Map<String, String> operatorProperties) throws PlanGenException {
@@ -23,6 +23,8 @@ import edu.uci.ics.textdb.exp.nlp.entity.NlpEntityType;
 import edu.uci.ics.textdb.exp.nlp.sentiment.NlpSentimentPredicate;
 import edu.uci.ics.textdb.exp.projection.ProjectionPredicate;
 import edu.uci.ics.textdb.exp.regexmatcher.RegexPredicate;
+import edu.uci.ics.textdb.exp.regexmatcher.RegexSetPredicate;
+import edu.uci.ics.textdb.exp.regexmatcher.RegexSetSourcePredicate;
 import edu.uci.ics.textdb.exp.regexmatcher.RegexSourcePredicate;
 import edu.uci.ics.textdb.exp.regexsplit.RegexSplitPredicate;
 import edu.uci.ics.textdb.exp.regexsplit.RegexSplitPredicate.SplitType;
@@ -130,6 +132,8 @@ public class PredicateBaseTest {
                 NlpEntityType.LOCATION,
                 attributeNames);
         testPredicate(nlpEntityPredicate);
+        // the annotation cache is opt-in
+        Assert.assertFalse(nlpEntityPredicate.isUseAnnotationCache());
     }
     
     @Test
@@ -138,6 +142,8 @@ public class PredicateBaseTest {
                 "inputAttr",
                 "resultAttr");
         testPredicate(nlpSentimentPredicate);
+        // the annotation cache is opt-in
+        Assert.assertFalse(nlpSentimentPredicate.isUseAnnotationCache());
     }
     
     @Test
@@ -160,6 +166,22 @@ public class PredicateBaseTest {
         testPredicate(regexSourcePredicate);
     }
     
+    @Test
+    public void testRegexSetMatcher() throws Exception {
+        RegexSetPredicate regexSetPredicate = new RegexSetPredicate(
+                Arrays.asList("regex1", "regex2"),
+                attributeNames,
+                true,
+                true);
+        testPredicate(regexSetPredicate);
+        
+        RegexSetSourcePredicate regexSetSourcePredicate = new RegexSetSourcePredicate(
+                Arrays.asList("regex1", "regex2"),
+                attributeNames,
+                "tableName");
+        testPredicate(regexSetSourcePredicate);
+    }
+    
     @Test
     public void testRegexSplit() throws Exception {
         RegexSplitPredicate regexSplitPredicate = new RegexSplitPredicate(
@@ -0,0 +1,185 @@
+package edu.uci.ics.textdb.exp.connector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.uci.ics.textdb.api.constants.TestConstants;
+import edu.uci.ics.textdb.api.dataflow.IOperator;
+import edu.uci.ics.textdb.api.exception.DataFlowException;
+import edu.uci.ics.textdb.api.exception.TextDBException;
+import edu.uci.ics.textdb.api.schema.Schema;
+import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.api.tuple.TupleBatch;
+import edu.uci.ics.textdb.api.utils.TestUtils;
+import edu.uci.ics.textdb.exp.regexmatcher.RegexMatcher;
+import edu.uci.ics.textdb.exp.regexmatcher.RegexPredicate;
+import edu.uci.ics.textdb.exp.source.scan.ScanBasedSourceOperator;
+import edu.uci.ics.textdb.exp.source.scan.ScanSourcePredicate;
+import edu.uci.ics.textdb.storage.DataWriter;
+import edu.uci.ics.textdb.storage.RelationManager;
+import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
+
+public class ExchangeOperatorTest {
+
+    public static final String PEOPLE_TABLE = "exchange_operator_test_people";
+
+    public static final String REGEX = "[a-z]+";
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        RelationManager relationManager = RelationManager.getRelationManager();
+
+        // create the people table and write tuples, each commit creates a new segment
+        relationManager.createTable(PEOPLE_TABLE, "../index/test_tables/" + PEOPLE_TABLE,
+                TestConstants.SCHEMA_PEOPLE, LuceneAnalyzerConstants.standardAnalyzerString());
+
+        DataWriter peopleDataWriter = relationManager.getTableDataWriter(PEOPLE_TABLE);
+        for (int i = 0; i < 4; i++) {
+            peopleDataWriter.open();
+            for (Tuple tuple : TestConstants.getSamplePeopleTuples()) {
+                peopleDataWriter.insertTuple(tuple);
+            }
+            peopleDataWriter.close();
+        }
+    }
+
+    @AfterClass
+    public static void cleanUp() throws Exception {
+        RelationManager relationManager = RelationManager.getRelationManager();
+        relationManager.deleteTable(PEOPLE_TABLE);
+    }
+
+    /*
+     * Builds a scan source followed by a regex matcher, on one partition of the people table.
+     */
+    public static IOperator buildRegexPlan(int partitionIndex, int partitionCount) throws TextDBException {
+        ScanBasedSourceOperator scanSource = new ScanBasedSourceOperator(new ScanSourcePredicate(PEOPLE_TABLE));
+        scanSource.setPartition(partitionIndex, partitionCount);
+        RegexMatcher regexMatcher = new RegexMatcher(
+                new RegexPredicate(REGEX, Arrays.asList(TestConstants.FIRST_NAME, TestConstants.DESCRIPTION)));
+        regexMatcher.setInputOperator(scanSource);
+        return regexMatcher;
+    }
+
+    public static List<Tuple> collectAllTuples(IOperator operator) throws TextDBException {
+        List<Tuple> results = new ArrayList<>();
+        operator.open();
+        Tuple tuple;
+        while ((tuple = operator.getNextTuple()) != null) {
+            results.add(tuple);
+        }
+        operator.close();
+        return results;
+    }
+
+    @Test
+    public void testParallelScan() throws TextDBException {
+        List<Tuple> expectedResults = collectAllTuples(buildRegexPlan(0, 1));
+
+        ExchangeOperator exchange = ExchangeOperator.createPartitionedPlan(4, ExchangeOperatorTest::buildRegexPlan);
+        exchange.setDegreeOfParallelism(2);
+        List<Tuple> results = collectAllTuples(exchange);
+
+        Assert.assertEquals(TestConstants.getSamplePeopleTuples().size() * 4, results.size());
+        Assert.assertTrue(TestUtils.equals(expectedResults, results));
+    }
+
+    @Test
+    public void testOrderPreservingMerge() throws TextDBException {
+        List<Tuple> expectedResults = collectAllTuples(buildRegexPlan(0, 1));
+
+        ExchangeOperator exchange = ExchangeOperator.createPartitionedPlan(3, ExchangeOperatorTest::buildRegexPlan);
+        exchange.setOrderPreserving(true);
+        List<Tuple> results = collectAllTuples(exchange);
+
+        Assert.assertEquals(expectedResults, results);
+    }
+
+    /*
+     * Tests an order preserving merge with more partitions than threads and queues that are always full.
+     */
+    @Test
+    public void testOrderPreservingMergeWithSmallQueues() throws TextDBException {
+        List<Tuple> expectedResults = collectAllTuples(buildRegexPlan(0, 1));
+
+        // more partitions than documents, some partitions are empty
+        ExchangeOperator exchange = ExchangeOperator.createPartitionedPlan(
+                expectedResults.size() + 5, ExchangeOperatorTest::buildRegexPlan);
+        exchange.setOrderPreserving(true);
+        exchange.setDegreeOfParallelism(2);
+        exchange.setQueueCapacity(1);
+        exchange.setBatchSize(1);
+
+        List<Tuple> results = new ArrayList<>();
+        exchange.open();
+        while (true) {
+            TupleBatch batch = exchange.getNextBatch(3);
+            if (batch == null) {
+                break;
+            }
+            for (Tuple tuple : batch) {
+                results.add(tuple);
+            }
+        }
+        exchange.close();
+
+        Assert.assertEquals(expectedResults, results);
+    }
+
+    /*
+     * Tests that closing the exchange before all the results are consumed stops the workers.
+     */
+    @Test
+    public void testCloseBeforeFinished() throws TextDBException {
+        ExchangeOperator exchange = ExchangeOperator.createPartitionedPlan(4, ExchangeOperatorTest::buildRegexPlan);
+        exchange.setQueueCapacity(1);
+        exchange.setBatchSize(1);
+
+        exchange.open();
+        Assert.assertNotNull(exchange.getNextTuple());
+        exchange.close();
+
+        // the exchange can be opened again
+        Assert.assertEquals(TestConstants.getSamplePeopleTuples().size() * 4, collectAllTuples(exchange).size());
+    }
+
+    /*
+     * Tests that an exception in a partition is thrown by the exchange.
+     */
+    @Test(expected = DataFlowException.class)
+    public void testPartitionFailure() throws TextDBException {
+        ExchangeOperator exchange = ExchangeOperator.createPartitionedPlan(3, (partitionIndex, partitionCount) -> {
+            IOperator regexPlan = buildRegexPlan(partitionIndex, partitionCount);
+            if (partitionIndex != 1) {
+                return regexPlan;
+            }
+            return new IOperator() {
+                public void open() throws TextDBException {
+                    regexPlan.open();
+                }
+                public Tuple getNextTuple() throws TextDBException {
+                    throw new DataFlowException("partition failure");
+                }
+                public void close() throws TextDBException {
+                    regexPlan.close();
+                }
+                public Schema getOutputSchema() {
+                    return regexPlan.getOutputSchema();
+                }
+            };
+        });
+
+        try {
+            collectAllTuples(exchange);
+        } finally {
+            exchange.close();
+        }
+    }
+
+}
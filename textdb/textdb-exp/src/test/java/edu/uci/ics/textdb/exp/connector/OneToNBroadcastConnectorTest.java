@@ -4,11 +4,15 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import edu.uci.ics.textdb.api.constants.SchemaConstants;
 import edu.uci.ics.textdb.api.exception.TextDBException;
 import edu.uci.ics.textdb.api.field.IField;
+import edu.uci.ics.textdb.api.field.ListField;
 import edu.uci.ics.textdb.api.field.TextField;
 import edu.uci.ics.textdb.api.schema.Schema;
+import edu.uci.ics.textdb.api.span.Span;
 import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.api.utils.TestOperators.NumberSource;
 import edu.uci.ics.textdb.api.utils.TestUtils;
 
 import org.junit.AfterClass;
@@ -165,4 +169,101 @@ public class OneToNBroadcastConnectorTest {
     }
 
 
+    /*
+     * This test tests that the tuples read by all the outputs are released from the buffer.
+     */
+    @Test
+    public void testBufferReleased() throws Exception {
+        OneToNBroadcastConnector connector = new OneToNBroadcastConnector(2);
+        connector.setInputOperator(new NumberSource(1000));
+        IOperator output1 = connector.getOutputOperator(0);
+        IOperator output2 = connector.getOutputOperator(1);
+        output1.open();
+        output2.open();
+
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(i, (int) output1.getNextTuple().getField(0).getValue());
+            Assert.assertEquals(i, (int) output2.getNextTuple().getField(0).getValue());
+            Assert.assertTrue(connector.getBufferedTupleCount() <= 1);
+        }
+        Assert.assertNull(output1.getNextTuple());
+        Assert.assertNull(output2.getNextTuple());
+
+        output1.close();
+        output2.close();
+    }
+
+    /*
+     * This test tests that an output lagging behind reads the tuples spilled to disk.
+     */
+    @Test
+    public void testSpillToDisk() throws Exception {
+        int tupleCount = 1000;
+        OneToNBroadcastConnector connector = new OneToNBroadcastConnector(3);
+        connector.setBufferCapacity(50);
+        connector.setInputOperator(new NumberSource(tupleCount));
+        IOperator output1 = connector.getOutputOperator(0);
+        IOperator output2 = connector.getOutputOperator(1);
+        IOperator output3 = connector.getOutputOperator(2);
+        output1.open();
+        output2.open();
+        output3.open();
+
+        // output2 reads a part of the tuples, output1 reads all of them, then output3 and output2 read all of them
+        for (int i = 0; i < 300; i++) {
+            Assert.assertEquals(i, (int) output2.getNextTuple().getField(0).getValue());
+        }
+        for (int i = 0; i < tupleCount; i++) {
+            Assert.assertEquals(i, (int) output1.getNextTuple().getField(0).getValue());
+            Assert.assertTrue(connector.getBufferedTupleCount() <= 50);
+        }
+        Assert.assertNull(output1.getNextTuple());
+        Assert.assertEquals(tupleCount - connector.getBufferedTupleCount(), connector.getSpilledTupleCount());
+
+        for (int i = 0; i < tupleCount; i++) {
+            Assert.assertEquals(i, (int) output3.getNextTuple().getField(0).getValue());
+            if (i < 300) {
+                // interleaves output2 with output3, both of them read the spill files
+                Assert.assertEquals(i + 300, (int) output2.getNextTuple().getField(0).getValue());
+            }
+        }
+        Assert.assertNull(output3.getNextTuple());
+        for (int i = 600; i < tupleCount; i++) {
+            Assert.assertEquals(i, (int) output2.getNextTuple().getField(0).getValue());
+        }
+        Assert.assertNull(output2.getNextTuple());
+        Assert.assertEquals(0, connector.getSpilledTupleCount());
+        Assert.assertEquals(0, connector.getBufferedTupleCount());
+
+        output1.close();
+        output2.close();
+        output3.close();
+    }
+
+    /*
+     * This test tests that the spans added to a tuple by one output are not seen by the other outputs.
+     */
+    @Test
+    public void testSpanListNotShared() throws Exception {
+        OneToNBroadcastConnector connector = new OneToNBroadcastConnector(2);
+        connector.setInputOperator(new NumberSource(10));
+        IOperator output1 = connector.getOutputOperator(0);
+        IOperator output2 = connector.getOutputOperator(1);
+        output1.open();
+        output2.open();
+
+        Tuple tuple;
+        while ((tuple = output1.getNextTuple()) != null) {
+            ListField<Span> spanListField = tuple.getField(SchemaConstants.SPAN_LIST);
+            spanListField.getValue().add(new Span("number", 0, 1, "key", "value"));
+        }
+        while ((tuple = output2.getNextTuple()) != null) {
+            ListField<Span> spanListField = tuple.getField(SchemaConstants.SPAN_LIST);
+            Assert.assertTrue(spanListField.getValue().isEmpty());
+        }
+
+        output1.close();
+        output2.close();
+    }
+
 }
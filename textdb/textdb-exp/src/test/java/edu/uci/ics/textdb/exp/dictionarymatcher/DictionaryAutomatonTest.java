@@ -0,0 +1,65 @@
+package edu.uci.ics.textdb.exp.dictionarymatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DictionaryAutomatonTest {
+
+    /*
+     * Collects the occurrences as "entryIndex:start:end" strings.
+     */
+    private static List<String> match(List<String> entries, String text) {
+        List<String> results = new ArrayList<>();
+        new DictionaryAutomaton(entries).match(text,
+                (entryIndex, start, end) -> results.add(entryIndex + ":" + start + ":" + end));
+        return results;
+    }
+
+    @Test
+    public void testOverlappingEntries() {
+        List<String> entries = Arrays.asList("he", "she", "his", "hers");
+        List<String> results = match(entries, "ushers");
+
+        List<String> expected = Arrays.asList("1:1:4", "0:2:4", "3:2:6");
+        Assert.assertEquals(expected.size(), results.size());
+        Assert.assertTrue(results.containsAll(expected));
+    }
+
+    @Test
+    public void testCaseInsensitive() {
+        List<String> entries = Arrays.asList("Angry", "lin");
+        List<String> results = match(entries, "ANGRY Lin angry");
+
+        List<String> expected = Arrays.asList("0:0:5", "1:6:9", "0:10:15");
+        Assert.assertEquals(expected, results);
+    }
+
+    @Test
+    public void testRepeatedAndDuplicateEntries() {
+        List<String> entries = Arrays.asList("aa", "aa", "a");
+        List<String> results = match(entries, "aaa");
+
+        // "a" at 0, 1, 2; each "aa" at 0 and 1
+        Assert.assertEquals(7, results.size());
+        Assert.assertTrue(results.containsAll(Arrays.asList("0:0:2", "1:0:2", "0:1:3", "1:1:3", "2:2:3")));
+    }
+
+    @Test
+    public void testSpecialCharactersAreLiteral() {
+        List<String> entries = Arrays.asList("a.c", "(x)");
+        List<String> results = match(entries, "abc a.c (x) x");
+
+        Assert.assertEquals(Arrays.asList("0:4:7", "1:8:11"), results);
+    }
+
+    @Test
+    public void testNoMatch() {
+        Assert.assertTrue(match(Arrays.asList("textdb"), "text db").isEmpty());
+        Assert.assertTrue(match(Arrays.asList(""), "text").isEmpty());
+    }
+
+}
@@ -1074,4 +1074,63 @@ public class DictionaryMatcherTest {
         Assert.assertTrue(TestUtils.containsAll(expectedList, resultList));
     }
     
+    /**
+     * Scenario: verifies that every entry of a multi-entry dictionary is matched
+     * in every tuple using SCAN OPERATOR, one result tuple for each (tuple, entry) pair
+     */
+    @Test
+    public void testMultipleEntriesUsingScan() throws Exception {
+        ArrayList<String> words = new ArrayList<String>(Arrays.asList("short", "angry"));
+        Dictionary dictionary = new Dictionary(words);
+        List<String> attributeNames = Arrays.asList(TestConstants.DESCRIPTION);
+
+        List<Tuple> returnedResults = DictionaryMatcherTestHelper.getQueryResults(PEOPLE_TABLE, dictionary,
+                attributeNames, KeywordMatchingType.SUBSTRING_SCANBASED);
+
+        // "angry" is in 4 descriptions, "short" is in 3 descriptions
+        Assert.assertEquals(7, returnedResults.size());
+        for (Tuple tuple : returnedResults) {
+            ListField<Span> spanListField = tuple.getField(SchemaConstants.SPAN_LIST);
+            List<Span> spanList = spanListField.getValue();
+            Assert.assertFalse(spanList.isEmpty());
+            String key = spanList.get(0).getKey();
+            for (Span span : spanList) {
+                Assert.assertEquals(key, span.getKey());
+                Assert.assertEquals(key, span.getValue().toLowerCase());
+            }
+        }
+
+        // "lin clooney is ..." contains both entries, each appears once
+        long clooneyResults = returnedResults.stream()
+                .filter(tuple -> tuple.getField(TestConstants.DESCRIPTION).getValue().toString().startsWith("Lin Clooney"))
+                .count();
+        Assert.assertEquals(2, clooneyResults);
+    }
+    
+    /**
+     * Scenario: verifies that a dictionary with more entries than the maximum clause count
+     * of a Lucene BooleanQuery can be matched using the index-based source operator
+     */
+    @Test
+    public void testLargeDictionaryUsingIndex() throws Exception {
+        ArrayList<String> words = new ArrayList<String>();
+        for (int i = 0; i < 3000; i++) {
+            words.add("nonexistent" + i);
+        }
+        words.add("lin clooney");
+        words.add("angry");
+        Dictionary dictionary = new Dictionary(words);
+        List<String> attributeNames = Arrays.asList(TestConstants.FIRST_NAME, TestConstants.LAST_NAME,
+                TestConstants.DESCRIPTION);
+
+        // "lin clooney" matches 1 tuple, "angry" matches 4 tuples
+        List<Tuple> conjunctionResults = DictionaryMatcherTestHelper.getQueryResults(PEOPLE_TABLE, dictionary,
+                attributeNames, KeywordMatchingType.CONJUNCTION_INDEXBASED);
+        Assert.assertEquals(5, conjunctionResults.size());
+
+        List<Tuple> phraseResults = DictionaryMatcherTestHelper.getQueryResults(PEOPLE_TABLE, dictionary,
+                attributeNames, KeywordMatchingType.PHRASE_INDEXBASED);
+        Assert.assertEquals(5, phraseResults.size());
+    }
+    
 }
\ No newline at end of file
@@ -0,0 +1,100 @@
+package edu.uci.ics.textdb.exp.engine;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.uci.ics.textdb.api.engine.Engine;
+import edu.uci.ics.textdb.api.engine.Plan;
+import edu.uci.ics.textdb.api.schema.Schema;
+import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.api.utils.TestOperators.AddOneOperator;
+import edu.uci.ics.textdb.api.utils.TestOperators.CollectingSink;
+import edu.uci.ics.textdb.api.utils.TestOperators.NumberSource;
+import edu.uci.ics.textdb.exp.connector.OneToNBroadcastConnector;
+import edu.uci.ics.textdb.exp.join.IJoinPredicate;
+import edu.uci.ics.textdb.exp.join.Join;
+
+/**
+ * Tests the pipelined evaluation of the plans with the operators of textdb-exp.
+ */
+public class EngineTest {
+
+    /*
+     * Tests a plan with a connector broadcasting the tuples of a source to two branches, which are joined.
+     * The connector is decoupled from the source once, and the two branches read it on their own threads.
+     * The buffer of the connector is small, so the tuples are spilled while the join reads the inner branch.
+     */
+    @Test
+    public void testEvaluatePipelinedWithConnector() throws Exception {
+        Set<String> sourceThreadNames = ConcurrentHashMap.newKeySet();
+        Set<String> branchThreadNames = ConcurrentHashMap.newKeySet();
+        NumberSource source = new NumberSource(10000, -1, sourceThreadNames);
+        OneToNBroadcastConnector connector = new OneToNBroadcastConnector(2);
+        connector.setInputOperator(source);
+        connector.setBufferCapacity(100);
+
+        AddOneOperator innerAddOne = new AddOneOperator(branchThreadNames);
+        innerAddOne.setInputOperator(connector.getOutputOperator(0));
+        AddOneOperator outerAddOne = new AddOneOperator(branchThreadNames);
+        outerAddOne.setInputOperator(connector.getOutputOperator(1));
+
+        Join join = new Join(new NumberJoinPredicate());
+        join.setInnerInputOperator(innerAddOne);
+        join.setOuterInputOperator(outerAddOne);
+        CollectingSink sink = new CollectingSink();
+        sink.setInputOperator(join);
+
+        Engine.getEngine().evaluatePipelined(new Plan(sink), 2, 10);
+
+        Assert.assertEquals(10000, sink.getResults().size());
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertEquals(i + 1, (int) sink.getResults().get(i).getField(0).getValue());
+        }
+        // the source runs on one thread, and each branch on its own thread
+        Assert.assertEquals(1, sourceThreadNames.size());
+        Assert.assertEquals(2, branchThreadNames.size());
+        Assert.assertFalse(branchThreadNames.containsAll(sourceThreadNames));
+        Assert.assertFalse(branchThreadNames.contains(Thread.currentThread().getName()));
+        // the original links are restored
+        Assert.assertSame(source, connector.getInputOperator());
+        Assert.assertSame(connector.getOutputOperator(0), innerAddOne.getInputOperator());
+        Assert.assertSame(innerAddOne, join.getInnerInputOperator());
+        Assert.assertFalse(source.isOpen());
+        Assert.assertEquals(0, connector.getSpilledTupleCount());
+    }
+
+    /*
+     * Joins the tuples with the same number, and keeps the outer tuple.
+     */
+    private static class NumberJoinPredicate implements IJoinPredicate {
+
+        @Override
+        public Tuple joinTuples(Tuple innerTuple, Tuple outerTuple, Schema outputSchema) {
+            return innerTuple.getField(0).equals(outerTuple.getField(0)) ? outerTuple : null;
+        }
+
+        @Override
+        public Schema generateOutputSchema(Schema innerOperatorSchema, Schema outerOperatorSchema) {
+            return outerOperatorSchema;
+        }
+
+        @Override
+        public String getInnerAttributeName() {
+            return "number";
+        }
+
+        @Override
+        public String getOuterAttributeName() {
+            return "number";
+        }
+
+        @Override
+        public String getEquiJoinAttributeName() {
+            return "number";
+        }
+    }
+
+}
@@ -1,7 +1,10 @@
 package edu.uci.ics.textdb.exp.join;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 import java.util.stream.Collectors;
 
 import org.junit.After;
@@ -9,8 +12,10 @@ import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import edu.uci.ics.textdb.api.constants.SchemaConstants;
 import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.exception.TextDBException;
+import edu.uci.ics.textdb.api.field.IDField;
 import edu.uci.ics.textdb.api.field.IField;
 import edu.uci.ics.textdb.api.field.IntegerField;
 import edu.uci.ics.textdb.api.field.ListField;
@@ -892,4 +897,139 @@ public class JoinDistanceTest {
         }
     }
 
+    /*
+     * This case tests the hash join when the inner tuples don't fit in memory.
+     * 
+     * Test result: Join with the inner and outer tuples partitioned to the disk should return 
+     * the same results as the in-memory join.
+     */
+    @Test
+    public void testHashJoinSpillToDisk() throws Exception {
+        List<Tuple> tuples = new ArrayList<>();
+        tuples.addAll(JoinTestConstants.bookGroup1);
+        tuples.addAll(JoinTestConstants.bookGroup2);
+        JoinTestHelper.insertToTable(BOOK_TABLE, tuples);
+        
+        JoinDistancePredicate distancePredicate = new JoinDistancePredicate(JoinTestConstants.REVIEW, 90);
+
+        List<Tuple> inMemoryResults = JoinTestHelper.getJoinDistanceResults(
+                JoinTestHelper.getKeywordSource(BOOK_TABLE, "actually", conjunction), 
+                JoinTestHelper.getKeywordSource(BOOK_TABLE, "typical", conjunction), 
+                distancePredicate, Integer.MAX_VALUE, 0);
+        
+        Join join = new Join(distancePredicate);
+        join.setInnerInputOperator(JoinTestHelper.getKeywordSource(BOOK_TABLE, "actually", conjunction));
+        join.setOuterInputOperator(JoinTestHelper.getKeywordSource(BOOK_TABLE, "typical", conjunction));
+        join.setMaxInMemoryInnerTuples(1);
+        join.setSpillPartitionCount(3);
+        
+        Tuple tuple;
+        List<Tuple> spillResults = new ArrayList<>();
+        join.open();
+        while ((tuple = join.getNextTuple()) != null) {
+            spillResults.add(tuple);
+        }
+        join.close();
+        
+        Assert.assertFalse(inMemoryResults.isEmpty());
+        Assert.assertEquals(inMemoryResults.size(), spillResults.size());
+        Assert.assertTrue(TestUtils.equals(inMemoryResults, spillResults));
+    }
+
+    /*
+     * This case tests a join predicate which only implements the methods joining two tuples.
+     * 
+     * Test result: Join should fall back to the nested loop join, and return the same results as the hash join.
+     */
+    @Test
+    public void testNestedLoopJoinFallback() throws Exception {
+        List<Tuple> tuples = new ArrayList<>();
+        tuples.addAll(JoinTestConstants.bookGroup1);
+        tuples.addAll(JoinTestConstants.bookGroup2);
+        JoinTestHelper.insertToTable(BOOK_TABLE, tuples);
+        
+        JoinDistancePredicate distancePredicate = new JoinDistancePredicate(JoinTestConstants.REVIEW, 90);
+        IJoinPredicate nestedLoopPredicate = new IJoinPredicate() {
+            public Tuple joinTuples(Tuple innerTuple, Tuple outerTuple, Schema outputSchema) throws Exception {
+                return distancePredicate.joinTuples(innerTuple, outerTuple, outputSchema);
+            }
+            
+            public Schema generateOutputSchema(Schema innerOperatorSchema, Schema outerOperatorSchema) 
+                    throws DataFlowException {
+                return distancePredicate.generateOutputSchema(innerOperatorSchema, outerOperatorSchema);
+            }
+            
+            public String getInnerAttributeName() {
+                return distancePredicate.getInnerAttributeName();
+            }
+            
+            public String getOuterAttributeName() {
+                return distancePredicate.getOuterAttributeName();
+            }
+        };
+        
+        List<Tuple> hashJoinResults = JoinTestHelper.getJoinDistanceResults(
+                JoinTestHelper.getKeywordSource(BOOK_TABLE, "actually", conjunction), 
+                JoinTestHelper.getKeywordSource(BOOK_TABLE, "typical", conjunction), 
+                distancePredicate, Integer.MAX_VALUE, 0);
+        List<Tuple> nestedLoopResults = JoinTestHelper.getJoinDistanceResults(
+                JoinTestHelper.getKeywordSource(BOOK_TABLE, "actually", conjunction), 
+                JoinTestHelper.getKeywordSource(BOOK_TABLE, "typical", conjunction), 
+                nestedLoopPredicate, Integer.MAX_VALUE, 0);
+        
+        Assert.assertFalse(hashJoinResults.isEmpty());
+        Assert.assertTrue(TestUtils.equals(hashJoinResults, nestedLoopResults));
+    }
+
+    /*
+     * This case tests joinTuples on two tuples with many spans, some of them are far away from each other.
+     * 
+     * Test result: the joined spans should be the same as (and in the same order as) 
+     * comparing every pair of the outer span and the inner span.
+     */
+    @Test
+    public void testManySpansInOneTuple() throws Exception {
+        Random random = new Random(12345);
+        String text = String.join("", Collections.nCopies(1000, "abcdefghij"));
+        
+        List<Span> innerSpans = new ArrayList<>();
+        List<Span> outerSpans = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            for (List<Span> spans : Arrays.asList(innerSpans, outerSpans)) {
+                int start = random.nextInt(text.length() - 20);
+                int end = start + 1 + random.nextInt(20);
+                spans.add(new Span(JoinTestConstants.REVIEW, start, end, "key" + i, text.substring(start, end)));
+            }
+        }
+        // a span of another attribute shouldn't be joined
+        innerSpans.add(new Span(JoinTestConstants.AUTHOR, 0, 5, "author", "abcde"));
+        
+        Schema schema = new Schema(SchemaConstants._ID_ATTRIBUTE, 
+                new Attribute(JoinTestConstants.REVIEW, AttributeType.TEXT), SchemaConstants.SPAN_LIST_ATTRIBUTE);
+        Tuple innerTuple = new Tuple(schema, new IDField("id"), new TextField(text), new ListField<>(innerSpans));
+        Tuple outerTuple = new Tuple(schema, new IDField("id"), new TextField(text), new ListField<>(outerSpans));
+        
+        int threshold = 5;
+        List<Span> expectedSpans = new ArrayList<>();
+        for (Span outerSpan : outerSpans) {
+            for (Span innerSpan : innerSpans) {
+                if (innerSpan.getAttributeName().equals(JoinTestConstants.REVIEW)
+                        && Math.abs(outerSpan.getStart() - innerSpan.getStart()) <= threshold
+                        && Math.abs(outerSpan.getEnd() - innerSpan.getEnd()) <= threshold) {
+                    int start = Math.min(outerSpan.getStart(), innerSpan.getStart());
+                    int end = Math.max(outerSpan.getEnd(), innerSpan.getEnd());
+                    expectedSpans.add(new Span(JoinTestConstants.REVIEW, start, end, 
+                            outerSpan.getKey() + "_" + innerSpan.getKey(), text.substring(start, end)));
+                }
+            }
+        }
+        
+        JoinDistancePredicate distancePredicate = new JoinDistancePredicate(JoinTestConstants.REVIEW, threshold);
+        Tuple resultTuple = distancePredicate.joinTuples(innerTuple, outerTuple, schema);
+        ListField<Span> resultSpanField = resultTuple.getField(SchemaConstants.SPAN_LIST);
+        
+        Assert.assertFalse(expectedSpans.isEmpty());
+        Assert.assertEquals(expectedSpans, resultSpanField.getValue());
+    }
+
 }
\ No newline at end of file
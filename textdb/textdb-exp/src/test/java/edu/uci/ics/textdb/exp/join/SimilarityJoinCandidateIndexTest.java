@@ -0,0 +1,114 @@
+package edu.uci.ics.textdb.exp.join;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.uci.ics.textdb.api.constants.SchemaConstants;
+import edu.uci.ics.textdb.api.field.IDField;
+import edu.uci.ics.textdb.api.field.ListField;
+import edu.uci.ics.textdb.api.field.TextField;
+import edu.uci.ics.textdb.api.schema.Attribute;
+import edu.uci.ics.textdb.api.schema.AttributeType;
+import edu.uci.ics.textdb.api.schema.Schema;
+import edu.uci.ics.textdb.api.span.Span;
+import edu.uci.ics.textdb.api.tuple.Tuple;
+import info.debatty.java.stringsimilarity.NormalizedLevenshtein;
+
+/**
+ * Tests the candidate indexes used by the similarity join.
+ */
+public class SimilarityJoinCandidateIndexTest {
+    
+    public static final String CONTENT = "content";
+    public static final Schema SCHEMA = new Schema(SchemaConstants._ID_ATTRIBUTE, 
+            new Attribute(CONTENT, AttributeType.TEXT), SchemaConstants.SPAN_LIST_ATTRIBUTE);
+    
+    private static Tuple createTuple(String spanValue) {
+        Span span = new Span(CONTENT, 0, spanValue.length(), spanValue, spanValue);
+        return new Tuple(SCHEMA, new IDField(spanValue), new TextField(spanValue), new ListField<>(Arrays.asList(span)));
+    }
+    
+    /*
+     * Generates random strings from a small alphabet, and some small edits of them.
+     */
+    private static List<String> generateValues(Random random, int count) {
+        List<String> values = new ArrayList<>();
+        while (values.size() < count) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int i = 0; i < length; i++) {
+                sb.append((char) ('a' + random.nextInt(4)));
+            }
+            values.add(sb.toString());
+            if (sb.length() > 0) {
+                sb.setCharAt(random.nextInt(sb.length()), 'x');
+                values.add(sb.toString());
+            }
+        }
+        return values;
+    }
+    
+    /*
+     * The Levenshtein candidate index must not miss any similar pair.
+     */
+    @Test
+    public void testLevenshteinCandidatesIncludeAllSimilarPairs() {
+        Random random = new Random(2017);
+        List<String> innerValues = generateValues(random, 200);
+        List<String> outerValues = generateValues(random, 200);
+        NormalizedLevenshtein levenshtein = new NormalizedLevenshtein();
+        
+        for (double threshold : new double[] { 0.3, 0.5, 0.75, 0.8, 0.9, 1.0 }) {
+            LevenshteinCandidateIndex index = new LevenshteinCandidateIndex(CONTENT, CONTENT, threshold);
+            List<Tuple> innerTuples = new ArrayList<>();
+            for (String value : innerValues) {
+                Tuple tuple = createTuple(value);
+                innerTuples.add(tuple);
+                index.addInnerTuple(tuple);
+            }
+            
+            int candidateCount = 0;
+            for (String outerValue : outerValues) {
+                List<Tuple> candidates = index.getCandidateInnerTuples(createTuple(outerValue));
+                candidateCount += candidates.size();
+                for (Tuple innerTuple : innerTuples) {
+                    String innerValue = innerTuple.getField(CONTENT).getValue().toString();
+                    if (1.0 - levenshtein.distance(innerValue, outerValue) >= threshold) {
+                        Assert.assertTrue(innerValue + " and " + outerValue + " are similar at " + threshold, 
+                                candidates.contains(innerTuple));
+                    }
+                }
+            }
+            // a high threshold should filter out most of the pairs
+            if (threshold >= 0.8) {
+                Assert.assertTrue(candidateCount < innerValues.size() * outerValues.size() / 4);
+            }
+        }
+    }
+    
+    /*
+     * Identical values always share all the LSH bands, and dissimilar values rarely do.
+     */
+    @Test
+    public void testMinHashCandidates() {
+        MinHashCandidateIndex index = new MinHashCandidateIndex(CONTENT, CONTENT, 20, 4);
+        Tuple textdb = createTuple("textdb project");
+        Tuple other = createTuple("something completely different");
+        index.addInnerTuple(textdb);
+        index.addInnerTuple(other);
+        
+        List<Tuple> candidates = index.getCandidateInnerTuples(createTuple("textdb project"));
+        Assert.assertTrue(candidates.contains(textdb));
+        Assert.assertFalse(candidates.contains(other));
+        
+        Assert.assertEquals(1.0, MinHashCandidateIndex.jaccardSimilarity("textdb", "textdb"), 1e-9);
+        // q-grams: {te, ex, xt, td, db} and {te, es, st, td, db}
+        Assert.assertEquals(3.0 / 7, MinHashCandidateIndex.jaccardSimilarity("textdb", "testdb"), 1e-9);
+    }
+
+}
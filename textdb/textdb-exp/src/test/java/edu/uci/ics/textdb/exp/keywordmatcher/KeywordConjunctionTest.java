@@ -2,6 +2,7 @@ package edu.uci.ics.textdb.exp.keywordmatcher;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import edu.uci.ics.textdb.api.constants.SchemaConstants;
@@ -21,6 +22,9 @@ import edu.uci.ics.textdb.api.span.Span;
 import edu.uci.ics.textdb.api.tuple.Tuple;
 import edu.uci.ics.textdb.api.utils.TestUtils;
 import edu.uci.ics.textdb.api.utils.Utils;
+import edu.uci.ics.textdb.storage.DataWriter;
+import edu.uci.ics.textdb.storage.RelationManager;
+import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
 
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.junit.AfterClass;
@@ -514,4 +518,51 @@ public class KeywordConjunctionTest {
         Assert.assertTrue(contains);
     }
 
+    /**
+     * Verifies that the keyword source on a table whose TEXT fields are indexed by a 3-gram analyzer,
+     * with standard sub-fields, queries the standard sub-fields and returns the same results as on a standard table.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testMultiAnalyzerTable() throws Exception {
+        String multiTable = "keyword_test_people_multi";
+        RelationManager relationManager = RelationManager.getRelationManager();
+        relationManager.deleteTable(multiTable);
+        relationManager.createTable(multiTable, "../index/test_tables/" + multiTable, TestConstants.SCHEMA_PEOPLE, 
+                LuceneAnalyzerConstants.multiAnalyzerString(
+                        LuceneAnalyzerConstants.nGramAnalyzerString(3), LuceneAnalyzerConstants.standardAnalyzerString()));
+        DataWriter dataWriter = relationManager.getTableDataWriter(multiTable);
+        dataWriter.open();
+        for (Tuple tuple : TestConstants.getSamplePeopleTuples()) {
+            dataWriter.insertTuple(tuple);
+        }
+        dataWriter.close();
+
+        List<String> attributeNames = Arrays.asList(TestConstants.FIRST_NAME, TestConstants.LAST_NAME, 
+                TestConstants.DESCRIPTION);
+        int resultCount = 0;
+        for (String query : Arrays.asList("short", "TAll", "lin clooney", "short tall", "tall fair")) {
+            for (KeywordMatchingType matchingType : Arrays.asList(conjunction, KeywordMatchingType.PHRASE_INDEXBASED)) {
+                List<Tuple> expectedResults = KeywordTestHelper.getQueryResults(
+                        PEOPLE_TABLE, query, attributeNames, matchingType);
+                KeywordMatcherSourceOperator keywordSource = new KeywordMatcherSourceOperator(new KeywordSourcePredicate(
+                        query, attributeNames, LuceneAnalyzerConstants.standardAnalyzerString(), matchingType, 
+                        multiTable));
+                List<Tuple> results = new ArrayList<>();
+                Tuple tuple;
+                keywordSource.open();
+                while ((tuple = keywordSource.getNextTuple()) != null) {
+                    results.add(tuple);
+                }
+                keywordSource.close();
+                Assert.assertTrue(query, TestUtils.equals(expectedResults, results));
+                resultCount += results.size();
+            }
+        }
+        Assert.assertTrue(resultCount > 0);
+
+        relationManager.deleteTable(multiTable);
+    }
+
 }
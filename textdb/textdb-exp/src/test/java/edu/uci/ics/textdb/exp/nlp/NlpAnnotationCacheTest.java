@@ -0,0 +1,119 @@
+package edu.uci.ics.textdb.exp.nlp;
+
+import java.nio.file.Files;
+
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.uci.ics.textdb.api.exception.TextDBException;
+import edu.uci.ics.textdb.storage.DataReader;
+import edu.uci.ics.textdb.storage.RelationManager;
+
+public class NlpAnnotationCacheTest {
+
+    private static final String TEST_TABLE = "nlp_annotation_cache_test";
+    private static final String CONFIG = "test:tokenize, ssplit";
+    private static final String TEXT = "TextDB is a system. It runs queries.";
+
+    private String indexDirectory;
+    private NlpAnnotationCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        RelationManager.getRelationManager().deleteTable(TEST_TABLE);
+        indexDirectory = Files.createTempDirectory(TEST_TABLE).toString();
+        cache = new NlpAnnotationCache(TEST_TABLE, indexDirectory, 3);
+    }
+
+    @After
+    public void cleanUp() throws TextDBException {
+        RelationManager.getRelationManager().deleteTable(TEST_TABLE);
+    }
+
+    /*
+     * Tests that an annotation is found in the memory, and on the disk after it's flushed.
+     */
+    @Test
+    public void testGetAndPut() throws Exception {
+        Assert.assertNull(cache.get(CONFIG, TEXT));
+
+        long memoryHitCount = cache.getMemoryHitCount();
+        cache.put(CONFIG, TEXT, "[[0,6,\"Noun\",\"TextDB\"]]");
+        Assert.assertEquals("[[0,6,\"Noun\",\"TextDB\"]]", cache.get(CONFIG, TEXT));
+        Assert.assertEquals(memoryHitCount + 1, cache.getMemoryHitCount());
+
+        long diskHitCount = cache.getDiskHitCount();
+        cache.clearMemoryCache();
+        Assert.assertEquals("[[0,6,\"Noun\",\"TextDB\"]]", cache.get(CONFIG, TEXT));
+        Assert.assertEquals(diskHitCount + 1, cache.getDiskHitCount());
+
+        // the key depends on both the config and the text
+        Assert.assertNull(cache.get("test:tokenize", TEXT));
+        Assert.assertNull(cache.get(CONFIG, TEXT + " "));
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        cache.put(CONFIG, TEXT, "2");
+        cache.flush();
+        cache.clear();
+        Assert.assertNull(cache.get(CONFIG, TEXT));
+        Assert.assertEquals(0, getTableSize());
+    }
+
+    /*
+     * Tests that a key annotated by two caches (for example by two operators missing it at the same time)
+     *   only has one row in the table.
+     */
+    @Test
+    public void testOneRowPerKey() throws Exception {
+        NlpAnnotationCache otherCache = new NlpAnnotationCache(TEST_TABLE, indexDirectory, 3);
+        cache.put(CONFIG, TEXT, "1");
+        otherCache.put(CONFIG, TEXT, "2");
+        cache.flush();
+        otherCache.flush();
+        Assert.assertEquals(1, getTableSize());
+
+        cache.clearMemoryCache();
+        Assert.assertEquals("2", cache.get(CONFIG, TEXT));
+    }
+
+    /*
+     * Tests that the table is bounded, and a value longer than a Lucene term is only kept in the memory.
+     */
+    @Test
+    public void testBoundedTable() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            cache.put(CONFIG, TEXT + i, Integer.toString(i));
+            cache.flush();
+            Assert.assertTrue(getTableSize() <= 3);
+        }
+        cache.clearMemoryCache();
+        Assert.assertEquals("4", cache.get(CONFIG, TEXT + 4));
+
+        StringBuilder longValue = new StringBuilder();
+        while (longValue.length() <= NlpAnnotationCache.MAX_VALUE_LENGTH) {
+            longValue.append("[[0,6,\"Noun\",\"TextDB\"]]");
+        }
+        cache.put(CONFIG, TEXT, longValue.toString());
+        Assert.assertEquals(longValue.toString(), cache.get(CONFIG, TEXT));
+        cache.clearMemoryCache();
+        Assert.assertNull(cache.get(CONFIG, TEXT));
+    }
+
+    private int getTableSize() throws TextDBException {
+        DataReader dataReader = RelationManager.getRelationManager().getTableDataReader(TEST_TABLE,
+                new MatchAllDocsQuery());
+        dataReader.open();
+        int tableSize = 0;
+        while (dataReader.getNextTuple() != null) {
+            tableSize++;
+        }
+        dataReader.close();
+        return tableSize;
+    }
+
+}
@@ -0,0 +1,85 @@
+package edu.uci.ics.textdb.exp.nlp;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.util.CoreMap;
+import edu.uci.ics.textdb.api.exception.DataFlowException;
+import edu.uci.ics.textdb.exp.nlp.NlpPipelineRegistry.PooledPipeline;
+
+public class NlpPipelineRegistryTest {
+
+    private static final String TEST_ANNOTATORS = "tokenize, ssplit";
+
+    private final NlpPipelineRegistry registry = NlpPipelineRegistry.getNlpPipelineRegistry();
+
+    @After
+    public void cleanUp() {
+        registry.unload(TEST_ANNOTATORS);
+        registry.setMaxCheckouts(NlpPipelineRegistry.DEFAULT_MAX_CHECKOUTS);
+        registry.setCheckoutTimeoutSeconds(NlpPipelineRegistry.DEFAULT_CHECKOUT_TIMEOUT_SECONDS);
+    }
+
+    /*
+     * Tests that the annotators are normalized, and a pipeline is only loaded once.
+     */
+    @Test
+    public void testPipelineLoadedOnce() throws Exception {
+        int loadedPipelineCount = registry.getLoadedPipelineCount();
+
+        registry.warmUp(TEST_ANNOTATORS);
+        Assert.assertEquals(loadedPipelineCount + 1, registry.getLoadedPipelineCount());
+        Assert.assertTrue(registry.getLoadedAnnotators().contains(TEST_ANNOTATORS));
+
+        try (PooledPipeline pipeline = registry.checkout("tokenize,ssplit")) {
+            Assert.assertEquals(TEST_ANNOTATORS, pipeline.getAnnotators());
+            Annotation annotation = new Annotation("TextDB is a system. It runs queries.");
+            pipeline.annotate(annotation);
+            List<CoreMap> sentences = annotation.get(CoreAnnotations.SentencesAnnotation.class);
+            Assert.assertEquals(2, sentences.size());
+        }
+        Assert.assertEquals(loadedPipelineCount + 1, registry.getLoadedPipelineCount());
+
+        registry.unload(TEST_ANNOTATORS);
+        Assert.assertEquals(loadedPipelineCount, registry.getLoadedPipelineCount());
+        Assert.assertFalse(registry.getLoadedAnnotators().contains(TEST_ANNOTATORS));
+    }
+
+    /*
+     * Tests that the number of concurrent checkouts is bounded.
+     */
+    @Test
+    public void testBoundedCheckouts() throws Exception {
+        registry.setMaxCheckouts(1);
+        registry.setCheckoutTimeoutSeconds(0);
+        int activeCheckoutCount = registry.getActiveCheckoutCount();
+
+        PooledPipeline pipeline = registry.checkout(TEST_ANNOTATORS);
+        Assert.assertEquals(activeCheckoutCount + 1, registry.getActiveCheckoutCount());
+        try {
+            registry.checkout(TEST_ANNOTATORS);
+            Assert.fail("the second checkout should time out");
+        } catch (DataFlowException e) {
+        }
+
+        pipeline.close();
+        pipeline.close();
+        Assert.assertEquals(activeCheckoutCount, registry.getActiveCheckoutCount());
+        registry.checkout(TEST_ANNOTATORS).close();
+    }
+
+    /*
+     * Tests that the pipeline config includes the CoreNLP version and the normalized annotators.
+     */
+    @Test
+    public void testPipelineConfig() throws Exception {
+        Assert.assertEquals("3.6.0", NlpPipelineRegistry.CORENLP_VERSION);
+        Assert.assertEquals("corenlp-3.6.0:tokenize, ssplit", NlpPipelineRegistry.getPipelineConfig("tokenize,ssplit"));
+    }
+
+}
@@ -15,6 +15,7 @@ import edu.uci.ics.textdb.api.exception.TextDBException;
 import edu.uci.ics.textdb.api.tuple.Tuple;
 import edu.uci.ics.textdb.api.utils.TestUtils;
 import edu.uci.ics.textdb.api.utils.Utils;
+import edu.uci.ics.textdb.exp.nlp.NlpAnnotationCache;
 import edu.uci.ics.textdb.exp.source.scan.ScanBasedSourceOperator;
 import edu.uci.ics.textdb.exp.source.scan.ScanSourcePredicate;
 import edu.uci.ics.textdb.storage.DataWriter;
@@ -78,12 +79,20 @@ public class NlpEntityTest {
     
     public List<Tuple> getQueryResults(String tableName, List<String> attributeNames,
             NlpEntityType nlpEntityType, int limit, int offset) throws Exception {
+        return getQueryResults(tableName, attributeNames, nlpEntityType, limit, offset, 1);
+    }
+
+    public List<Tuple> getQueryResults(String tableName, List<String> attributeNames,
+            NlpEntityType nlpEntityType, int limit, int offset, int parallelism) throws Exception {
         
         ScanBasedSourceOperator scanSource = new ScanBasedSourceOperator(new ScanSourcePredicate(tableName));
 
-        NlpEntityPredicate nlpEntityPredicate = new NlpEntityPredicate(nlpEntityType, attributeNames);
+        NlpEntityPredicate nlpEntityPredicate = new NlpEntityPredicate(nlpEntityType, attributeNames, parallelism, false);
         NlpEntityOperator nlpEntityOperator = new NlpEntityOperator(nlpEntityPredicate);
         nlpEntityOperator.setInputOperator(scanSource);
+        if (parallelism > 1) {
+            nlpEntityOperator.setWindowSize(2);
+        }
 
         nlpEntityOperator.setLimit(limit);
         nlpEntityOperator.setOffset(offset);
@@ -453,4 +462,82 @@ public class NlpEntityTest {
         Assert.assertTrue(TestUtils.containsAll(expectedResults, returnedResults));
     }
 
+    /**
+     * Test that the parallel annotation returns the same results, in the same order,
+     * as the sequential annotation, with and without a limit.
+     */
+    @Test
+    public void getNextTupleTestParallel() throws Exception {
+        List<Tuple> data = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            data.addAll(NlpEntityTestConstants.getOneSentenceTestTuple());
+        }
+
+        DataWriter oneSentenceDataWriter = RelationManager.getRelationManager().getTableDataWriter(ONE_SENTENCE_TABLE);
+        oneSentenceDataWriter.open();
+        for (Tuple tuple : data) {
+            oneSentenceDataWriter.insertTuple(tuple);
+        }
+        oneSentenceDataWriter.close();
+
+        List<String> attributeNames = Arrays.asList(NlpEntityTestConstants.SENTENCE_ONE);
+
+        List<Tuple> sequentialResults = getQueryResults(ONE_SENTENCE_TABLE, attributeNames,
+                NlpEntityType.NOUN, Integer.MAX_VALUE, 0, 1);
+        List<Tuple> parallelResults = getQueryResults(ONE_SENTENCE_TABLE, attributeNames,
+                NlpEntityType.NOUN, Integer.MAX_VALUE, 0, 3);
+        Assert.assertFalse(sequentialResults.isEmpty());
+        Assert.assertEquals(sequentialResults, parallelResults);
+
+        List<Tuple> limitedResults = getQueryResults(ONE_SENTENCE_TABLE, attributeNames,
+                NlpEntityType.NOUN, 2, 1, 3);
+        Assert.assertEquals(sequentialResults.subList(1, 3), limitedResults);
+    }
+
+    /**
+     * Test that the results using the annotation cache are the same as the ones without it,
+     * and that running the operator again uses the cached annotations.
+     */
+    @Test
+    public void getNextTupleTestAnnotationCache() throws Exception {
+        List<Tuple> data = NlpEntityTestConstants.getOneSentenceTestTuple();
+
+        DataWriter oneSentenceDataWriter = RelationManager.getRelationManager().getTableDataWriter(ONE_SENTENCE_TABLE);
+        oneSentenceDataWriter.open();
+        for (Tuple tuple : data) {
+            oneSentenceDataWriter.insertTuple(tuple);
+        }
+        oneSentenceDataWriter.close();
+
+        List<String> attributeNames = Arrays.asList(NlpEntityTestConstants.SENTENCE_ONE);
+        List<Tuple> expectedResults = getQueryResults(ONE_SENTENCE_TABLE, attributeNames, NlpEntityType.VERB);
+
+        NlpAnnotationCache cache = NlpAnnotationCache.getInstance();
+        cache.clear();
+        boolean firstRun = true;
+        for (NlpEntityType nlpEntityType : Arrays.asList(NlpEntityType.VERB, NlpEntityType.VERB, NlpEntityType.NOUN)) {
+            long missCount = cache.getMissCount();
+            List<Tuple> results = new ArrayList<>();
+            NlpEntityOperator nlpEntityOperator = new NlpEntityOperator(
+                    new NlpEntityPredicate(nlpEntityType, attributeNames, null, true));
+            nlpEntityOperator.setInputOperator(new ScanBasedSourceOperator(new ScanSourcePredicate(ONE_SENTENCE_TABLE)));
+            nlpEntityOperator.open();
+            Tuple tuple;
+            while ((tuple = nlpEntityOperator.getNextTuple()) != null) {
+                results.add(tuple);
+            }
+            nlpEntityOperator.close();
+
+            if (nlpEntityType == NlpEntityType.VERB) {
+                Assert.assertEquals(expectedResults, results);
+            } else {
+                Assert.assertEquals(getQueryResults(ONE_SENTENCE_TABLE, attributeNames, NlpEntityType.NOUN), results);
+            }
+            // only the first run annotates the texts, the cached tokens are shared by all the POS types
+            Assert.assertEquals(firstRun, cache.getMissCount() > missCount);
+            firstRun = false;
+        }
+        cache.clear();
+    }
+
 }
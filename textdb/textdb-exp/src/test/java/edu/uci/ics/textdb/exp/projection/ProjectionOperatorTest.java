@@ -121,4 +121,32 @@ public class ProjectionOperatorTest {
         Assert.assertTrue(TestUtils.equals(expectedResults, returnedResults));
     }
 
+    /*
+     * Tests that the projection is pushed down to the scan source,
+     *   which then only reads the projected attributes, without the payload.
+     */
+    @Test
+    public void testProjectionPushDown() throws Exception {
+        ScanBasedSourceOperator scanSource = new ScanBasedSourceOperator(new ScanSourcePredicate(PEOPLE_TABLE));
+        ProjectionOperator projection = new ProjectionOperator(
+                new ProjectionPredicate(Arrays.asList(TestConstants.DESCRIPTION, TestConstants.FIRST_NAME)));
+        projection.setInputOperator(scanSource);
+        
+        projection.open();
+        Assert.assertEquals(new Schema(TestConstants.FIRST_NAME_ATTR, TestConstants.DESCRIPTION_ATTR), 
+                scanSource.getOutputSchema());
+        List<Tuple> returnedResults = new ArrayList<>();
+        Tuple nextTuple;
+        while ((nextTuple = projection.getNextTuple()) != null) {
+            returnedResults.add(nextTuple);
+        }
+        projection.close();
+        
+        List<Tuple> expectedResults = getProjectionResults(
+                new ScanBasedSourceOperator(new ScanSourcePredicate(PEOPLE_TABLE)), 
+                Arrays.asList(TestConstants.FIRST_NAME, TestConstants.DESCRIPTION));
+        Assert.assertEquals(TestConstants.getSamplePeopleTuples().size(), returnedResults.size());
+        Assert.assertTrue(TestUtils.equals(expectedResults, returnedResults));
+    }
+
 }
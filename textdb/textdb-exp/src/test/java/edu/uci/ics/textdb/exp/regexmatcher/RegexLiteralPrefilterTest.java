@@ -0,0 +1,88 @@
+package edu.uci.ics.textdb.exp.regexmatcher;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RegexLiteralPrefilterTest {
+
+    @Test
+    public void testRequiredLiteral() {
+        RegexLiteralPrefilter prefilter = RegexLiteralPrefilter.create("\\d+ mg of aspirin", false);
+        Assert.assertEquals(Arrays.asList(" mg of aspirin"), prefilter.getLiterals());
+        Assert.assertTrue(prefilter.mayMatch("take 20 mg of aspirin daily"));
+        Assert.assertFalse(prefilter.mayMatch("take 20 mg of ibuprofen daily"));
+    }
+
+    @Test
+    public void testAlternativeLiterals() {
+        RegexLiteralPrefilter prefilter = RegexLiteralPrefilter.create("(lion|tiger)s? and bears", false);
+        Assert.assertEquals(Arrays.asList(" and bears"), prefilter.getLiterals());
+
+        prefilter = RegexLiteralPrefilter.create("(lion|tiger)s?", false);
+        Assert.assertEquals(Arrays.asList("lion", "tiger"), prefilter.getLiterals());
+        Assert.assertTrue(prefilter.mayMatch("a tiger"));
+        Assert.assertFalse(prefilter.mayMatch("a bear"));
+    }
+
+    @Test
+    public void testNoRequiredLiteral() {
+        Assert.assertNull(RegexLiteralPrefilter.create("[a-z]+", false));
+        Assert.assertNull(RegexLiteralPrefilter.create("(abc)*", false));
+        Assert.assertNull(RegexLiteralPrefilter.create("abc|[0-9]", false));
+        Assert.assertNull(RegexLiteralPrefilter.create("(abc)?", false));
+        // Java regex features not supported by RE2J
+        Assert.assertNull(RegexLiteralPrefilter.create("abc(?=def)", false));
+        Assert.assertNull(RegexLiteralPrefilter.create("[a-z&&[^b]]x", false));
+        // Java regex constructs parsed differently by RE2J
+        Assert.assertNull(RegexLiteralPrefilter.create("[[a]b]x", false));
+        Assert.assertNull(RegexLiteralPrefilter.create("[a[b]]c", false));
+        Assert.assertNull(RegexLiteralPrefilter.create("\\0101", false));
+        Assert.assertNull(RegexLiteralPrefilter.create("a\\vb", false));
+    }
+
+    @Test
+    public void testIgnoreCase() {
+        RegexLiteralPrefilter prefilter = RegexLiteralPrefilter.create("TextDB", true);
+        Assert.assertTrue(prefilter.mayMatch("this is textdb"));
+        Assert.assertFalse(prefilter.mayMatch("this is text db"));
+    }
+
+    /*
+     * Tests that the prefilter never rejects a text matched by the regex, on random texts.
+     */
+    @Test
+    public void testNoFalseNegatives() {
+        List<String> regexes = Arrays.asList("ab+c", "a(b|cd)e", "(ab){2,3}", "x[y]z", "(?i)ABC", "a.b",
+                "(ca|cb)d?", "\\bab", "a\\.b");
+        Random random = new Random(0);
+        for (String regex : regexes) {
+            RegexLiteralPrefilter prefilter = RegexLiteralPrefilter.create(regex, false);
+            Assert.assertNotNull(regex, prefilter);
+            java.util.regex.Pattern pattern = java.util.regex.Pattern.compile(regex);
+            for (int i = 0; i < 2000; i++) {
+                StringBuilder text = new StringBuilder();
+                int length = random.nextInt(12);
+                for (int j = 0; j < length; j++) {
+                    text.append("abcdexyzAB. ".charAt(random.nextInt(12)));
+                }
+                if (pattern.matcher(text).find()) {
+                    Assert.assertTrue(regex + " " + text, prefilter.mayMatch(text));
+                }
+            }
+        }
+
+        // the regexes parsed differently by Java Regex and RE2J, with a text matched by Java Regex
+        List<String[]> regexTexts = Arrays.asList(new String[] { "[[a]b]x", "ax" },
+                new String[] { "[a[b]]c", "bc" }, new String[] { "\\0101", "A" }, new String[] { "x\\vy", "x\u000By" });
+        for (String[] regexText : regexTexts) {
+            Assert.assertTrue(regexText[0], java.util.regex.Pattern.compile(regexText[0]).matcher(regexText[1]).find());
+            RegexLiteralPrefilter prefilter = RegexLiteralPrefilter.create(regexText[0], false);
+            Assert.assertTrue(regexText[0], prefilter == null || prefilter.mayMatch(regexText[1]));
+        }
+    }
+
+}
@@ -11,14 +11,23 @@ import org.junit.Test;
 
 import edu.uci.ics.textdb.api.constants.SchemaConstants;
 import edu.uci.ics.textdb.api.constants.TestConstants;
+import edu.uci.ics.textdb.api.dataflow.IOperator;
 import edu.uci.ics.textdb.api.exception.TextDBException;
+import edu.uci.ics.textdb.api.field.IDField;
 import edu.uci.ics.textdb.api.field.IField;
 import edu.uci.ics.textdb.api.field.ListField;
 import edu.uci.ics.textdb.api.schema.Schema;
 import edu.uci.ics.textdb.api.span.Span;
 import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.api.tuple.TupleBatch;
 import edu.uci.ics.textdb.api.utils.TestUtils;
 import edu.uci.ics.textdb.api.utils.Utils;
+import edu.uci.ics.textdb.exp.source.scan.ScanBasedSourceOperator;
+import edu.uci.ics.textdb.exp.source.scan.ScanSourcePredicate;
+import edu.uci.ics.textdb.storage.DataWriter;
+import edu.uci.ics.textdb.storage.RelationManager;
+import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
+import edu.uci.ics.textdb.storage.utils.MultiAnalyzer;
 
 /**
  * Unit tests for RegexMatcher. Integration tests with RegexToGramTranslator.
@@ -73,6 +82,171 @@ public class RegexMatcherTest {
         Assert.assertTrue(TestUtils.equals(expectedResults, exactResults));
     }
 
+    /*
+     * Tests that getNextBatch() returns the same results as getNextTuple(), with or without limit and offset.
+     */
+    @Test
+    public void testGetNextBatch() throws Exception {
+        String query = "[a-z]+";
+        List<String> attributeNames = Arrays.asList(TestConstants.FIRST_NAME, TestConstants.DESCRIPTION);
+        
+        for (int batchSize : Arrays.asList(1, 2, 1024)) {
+            List<Tuple> tupleResults = RegexMatcherTestHelper.getScanSourceResults(
+                    PEOPLE_TABLE, query, attributeNames, Integer.MAX_VALUE, 0);
+            List<Tuple> batchResults = RegexMatcherTestHelper.getBatchResults(
+                    new ScanBasedSourceOperator(new ScanSourcePredicate(PEOPLE_TABLE)), query, attributeNames, 
+                    Integer.MAX_VALUE, 0, batchSize);
+            Assert.assertEquals(tupleResults, batchResults);
+            
+            tupleResults = RegexMatcherTestHelper.getScanSourceResults(PEOPLE_TABLE, query, attributeNames, 3, 2);
+            batchResults = RegexMatcherTestHelper.getBatchResults(
+                    new ScanBasedSourceOperator(new ScanSourcePredicate(PEOPLE_TABLE)), query, attributeNames, 
+                    3, 2, batchSize);
+            Assert.assertEquals(3, batchResults.size());
+            Assert.assertEquals(tupleResults, batchResults);
+        }
+    }
+    
+    /*
+     * Tests getNextBatch() on top of an operator that only implements getNextTuple().
+     */
+    @Test
+    public void testGetNextBatchMixedPlan() throws Exception {
+        String query = "g[^\\s]*";
+        List<String> attributeNames = Arrays.asList(TestConstants.FIRST_NAME);
+        
+        ScanBasedSourceOperator scanSource = new ScanBasedSourceOperator(new ScanSourcePredicate(PEOPLE_TABLE));
+        IOperator tupleAtATimeOperator = new IOperator() {
+            public void open() throws TextDBException {
+                scanSource.open();
+            }
+            public Tuple getNextTuple() throws TextDBException {
+                return scanSource.getNextTuple();
+            }
+            public void close() throws TextDBException {
+                scanSource.close();
+            }
+            public Schema getOutputSchema() {
+                return scanSource.getOutputSchema();
+            }
+        };
+        
+        List<Tuple> tupleResults = RegexMatcherTestHelper.getScanSourceResults(
+                PEOPLE_TABLE, query, attributeNames, Integer.MAX_VALUE, 0);
+        List<Tuple> batchResults = RegexMatcherTestHelper.getBatchResults(
+                tupleAtATimeOperator, query, attributeNames, Integer.MAX_VALUE, 0, 2);
+        Assert.assertEquals(2, batchResults.size());
+        Assert.assertEquals(tupleResults, batchResults);
+    }
+
+    /*
+     * Tests that the batches pulled from the input operator are bounded by the limit and offset,
+     *   so that the input doesn't read more tuples than needed.
+     */
+    @Test
+    public void testGetNextBatchBoundedByLimit() throws Exception {
+        String query = "[a-z]+";
+        List<String> attributeNames = Arrays.asList(TestConstants.FIRST_NAME);
+
+        ScanBasedSourceOperator scanSource = new ScanBasedSourceOperator(new ScanSourcePredicate(PEOPLE_TABLE));
+        List<Integer> requestedBatchSizes = new ArrayList<>();
+        IOperator recordingOperator = new IOperator() {
+            public void open() throws TextDBException {
+                scanSource.open();
+            }
+            public Tuple getNextTuple() throws TextDBException {
+                return scanSource.getNextTuple();
+            }
+            public TupleBatch getNextBatch(int maxTuples) throws TextDBException {
+                requestedBatchSizes.add(maxTuples);
+                return scanSource.getNextBatch(maxTuples);
+            }
+            public void close() throws TextDBException {
+                scanSource.close();
+            }
+            public Schema getOutputSchema() {
+                return scanSource.getOutputSchema();
+            }
+        };
+
+        List<Tuple> batchResults = RegexMatcherTestHelper.getBatchResults(
+                recordingOperator, query, attributeNames, 2, 1, 1024);
+        Assert.assertEquals(2, batchResults.size());
+        Assert.assertFalse(requestedBatchSizes.isEmpty());
+        // every tuple of the table matches, so the input is asked for exactly limit + offset tuples
+        Assert.assertEquals(Arrays.asList(3), requestedBatchSizes);
+    }
+
+    /*
+     * Tests paging through the results of a regex source by the ID of the last tuple of the previous page.
+     */
+    @Test
+    public void testRegexSourceSearchAfter() throws Exception {
+        String query = "[a-z]+";
+        List<String> attributeNames = Arrays.asList(TestConstants.DESCRIPTION);
+        int pageSize = 2;
+
+        List<Tuple> allResults = RegexMatcherTestHelper.getRegexSourceResults(
+                PEOPLE_TABLE, query, attributeNames, Integer.MAX_VALUE, 0);
+
+        List<Tuple> pagedResults = new ArrayList<>();
+        IDField lastID = null;
+        while (true) {
+            RegexMatcherSourceOperator regexSource = new RegexMatcherSourceOperator(
+                    new RegexSourcePredicate(query, attributeNames, PEOPLE_TABLE));
+            regexSource.setLimit(pageSize);
+            regexSource.setSearchAfter(lastID);
+
+            List<Tuple> page = new ArrayList<>();
+            Tuple tuple;
+            regexSource.open();
+            while ((tuple = regexSource.getNextTuple()) != null) {
+                page.add(tuple);
+            }
+            regexSource.close();
+
+            pagedResults.addAll(page);
+            if (page.size() < pageSize) {
+                break;
+            }
+            lastID = (IDField) page.get(page.size() - 1).getField(SchemaConstants._ID);
+        }
+
+        Assert.assertEquals(allResults, pagedResults);
+    }
+
+    /*
+     * Tests that the regex source on a table with a standard field and a 3-gram sub-field
+     *   uses the sub-field, and returns the same results as on a 3-gram table.
+     */
+    @Test
+    public void testRegexSourceMultiAnalyzerTable() throws Exception {
+        String multiTable = "regex_test_people_multi";
+        RelationManager relationManager = RelationManager.getRelationManager();
+        relationManager.deleteTable(multiTable);
+        relationManager.createTable(multiTable, "../index/test_tables/" + multiTable, TestConstants.SCHEMA_PEOPLE, 
+                LuceneAnalyzerConstants.multiAnalyzerString(
+                        LuceneAnalyzerConstants.standardAnalyzerString(), LuceneAnalyzerConstants.nGramAnalyzerString(3)));
+        DataWriter dataWriter = relationManager.getTableDataWriter(multiTable);
+        dataWriter.open();
+        for (Tuple tuple : TestConstants.getSamplePeopleTuples()) {
+            dataWriter.insertTuple(tuple);
+        }
+        dataWriter.close();
+
+        List<String> attributeNames = Arrays.asList(TestConstants.DESCRIPTION);
+        Assert.assertTrue(RegexMatcherSourceOperator.createLuceneQuery("clooney", attributeNames, multiTable)
+                .toString().contains(MultiAnalyzer.getSubFieldName(TestConstants.DESCRIPTION, "3-gram") + ":loo"));
+        for (String regex : Arrays.asList("lin", "[Ss]hort", "(tall|fair)", "[a-z]+ is", "clooney")) {
+            List<Tuple> expectedResults = RegexMatcherTestHelper.getQueryResults(PEOPLE_TABLE, regex, attributeNames);
+            List<Tuple> multiResults = RegexMatcherTestHelper.getRegexSourceResults(
+                    multiTable, regex, attributeNames, Integer.MAX_VALUE, 0);
+            Assert.assertTrue(regex, TestUtils.equals(expectedResults, multiResults));
+        }
+
+        relationManager.deleteTable(multiTable);
+    }
+
     @Test
     public void testGetNextTupleCorpURL() throws Exception {
         String query = "^(https?:\\/\\/)?([\\da-z\\.-]+)\\.([a-z\\.]{2,6})([\\/\\w \\.-]*)*\\/?$";
@@ -4,9 +4,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 import edu.uci.ics.textdb.api.constants.TestConstants;
+import edu.uci.ics.textdb.api.dataflow.IOperator;
 import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.exception.TextDBException;
 import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.api.tuple.TupleBatch;
 import edu.uci.ics.textdb.api.utils.TestUtils;
 import edu.uci.ics.textdb.exp.source.scan.ScanBasedSourceOperator;
 import edu.uci.ics.textdb.exp.source.scan.ScanSourcePredicate;
@@ -152,6 +154,36 @@ public class RegexMatcherTestHelper {
         return results;
     }
     
+    /*
+     * Gets the results of a regex matcher on top of the given input operator by getNextBatch().
+     */
+    public static List<Tuple> getBatchResults(IOperator inputOperator, String regex, List<String> attributeNames,
+            int limit, int offset, int batchSize) throws TextDBException {
+        RegexPredicate regexPredicate = new RegexPredicate(regex, attributeNames);
+        RegexMatcher regexMatcher = new RegexMatcher(regexPredicate);
+        
+        regexMatcher.setLimit(limit);
+        regexMatcher.setOffset(offset);
+        
+        regexMatcher.setInputOperator(inputOperator);
+        
+        TupleBatch batch;
+        List<Tuple> results = new ArrayList<>();
+        
+        regexMatcher.open();
+        while ((batch = regexMatcher.getNextBatch(batchSize)) != null) {
+            if (batch.isEmpty() || batch.size() > batchSize) {
+                throw new DataFlowException("invalid batch size: " + batch.size());
+            }
+            for (Tuple tuple : batch) {
+                results.add(tuple);
+            }
+        }
+        regexMatcher.close();
+        
+        return results;
+    }
+    
     public static List<Tuple> getRegexSourceResults(String tableName, String regex, List<String> attributeNames,
             int limit, int offset) throws TextDBException {
         RegexSourcePredicate regexSourcePredicate = new RegexSourcePredicate(regex, attributeNames, tableName);
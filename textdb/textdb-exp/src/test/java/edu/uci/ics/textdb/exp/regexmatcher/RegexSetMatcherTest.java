@@ -0,0 +1,145 @@
+package edu.uci.ics.textdb.exp.regexmatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.uci.ics.textdb.api.constants.SchemaConstants;
+import edu.uci.ics.textdb.api.constants.TestConstants;
+import edu.uci.ics.textdb.api.dataflow.IOperator;
+import edu.uci.ics.textdb.api.exception.TextDBException;
+import edu.uci.ics.textdb.api.field.ListField;
+import edu.uci.ics.textdb.api.span.Span;
+import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.api.utils.TestUtils;
+import edu.uci.ics.textdb.exp.source.scan.ScanBasedSourceOperator;
+import edu.uci.ics.textdb.exp.source.scan.ScanSourcePredicate;
+
+public class RegexSetMatcherTest {
+
+    public static final String PEOPLE_TABLE = RegexMatcherTestHelper.PEOPLE_TABLE;
+
+    private static final List<String> attributeNames = Arrays.asList(TestConstants.LAST_NAME, TestConstants.DESCRIPTION);
+    private static final List<String> regexes = Arrays.asList("[Ss]hort", "lin", "an[a-z]+", "\\d+ mg");
+
+    @BeforeClass
+    public static void setUp() throws TextDBException {
+        RegexMatcherTestHelper.writeTestTables();
+    }
+
+    @AfterClass
+    public static void cleanUp() throws TextDBException {
+        RegexMatcherTestHelper.deleteTestTables();
+    }
+
+    /*
+     * Tests that a RegexSetMatcher returning the tuples matching all the regexes
+     *   returns the same results as a chain of RegexMatchers, including the order of the spans.
+     */
+    @Test
+    public void testMatchAllSameAsChain() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            List<String> chainRegexes = regexes.subList(0, i);
+            List<Tuple> chainResults = getChainResults(chainRegexes);
+            List<Tuple> setResults = getResults(new RegexSetMatcher(
+                    new RegexSetPredicate(chainRegexes, attributeNames, false, true)));
+            Assert.assertEquals(chainResults, setResults);
+        }
+        Assert.assertFalse(getChainResults(regexes.subList(0, 2)).isEmpty());
+    }
+
+    /*
+     * Tests that a RegexSetMatcher returns the tuples matching any of the regexes, with the spans of all the regexes.
+     */
+    @Test
+    public void testMatchAny() throws Exception {
+        List<Tuple> setResults = getResults(new RegexSetMatcher(new RegexSetPredicate(regexes, attributeNames)));
+
+        List<Tuple> expectedResults = new ArrayList<>();
+        for (Tuple tuple : getResults(new ScanBasedSourceOperator(new ScanSourcePredicate(PEOPLE_TABLE)))) {
+            List<Span> spans = new ArrayList<>();
+            for (String regex : regexes) {
+                List<Tuple> regexResults = getChainResults(Arrays.asList(regex));
+                for (Tuple result : regexResults) {
+                    if (result.getField(SchemaConstants._ID).equals(tuple.getField(SchemaConstants._ID))) {
+                        spans.addAll(getSpans(result));
+                    }
+                }
+            }
+            if (!spans.isEmpty()) {
+                expectedResults.add(tuple);
+                Assert.assertTrue(setResults.stream().anyMatch(result ->
+                        result.getField(SchemaConstants._ID).equals(tuple.getField(SchemaConstants._ID))
+                        && getSpans(result).equals(spans)));
+            }
+        }
+        Assert.assertEquals(expectedResults.size(), setResults.size());
+    }
+
+    /*
+     * Tests that the source operator using the combined index query returns the same results as a scan.
+     */
+    @Test
+    public void testSourceOperator() throws Exception {
+        for (boolean matchAll : Arrays.asList(false, true)) {
+            List<String> sourceRegexes = matchAll ? regexes.subList(0, 2) : regexes;
+            List<Tuple> scanResults = getResults(new RegexSetMatcher(
+                    new RegexSetPredicate(sourceRegexes, attributeNames, false, matchAll)));
+            List<Tuple> sourceResults = getResults(new RegexSetMatcherSourceOperator(
+                    new RegexSetSourcePredicate(sourceRegexes, attributeNames, false, matchAll, PEOPLE_TABLE, true)));
+            Assert.assertFalse(scanResults.isEmpty());
+            Assert.assertTrue(TestUtils.equals(scanResults, sourceResults));
+        }
+    }
+
+    /*
+     * Tests that the regexes parsed differently by Java Regex and RE2J (a class union and an octal escape)
+     *   are not skipped by the literal prefilter, the results are the same as a chain of RegexMatchers.
+     */
+    @Test
+    public void testJavaOnlySyntax() throws Exception {
+        List<String> javaRegexes = Arrays.asList("[[S]x]hort", "\\0154in");
+        for (int i = 1; i <= 2; i++) {
+            List<String> chainRegexes = javaRegexes.subList(0, i);
+            List<Tuple> chainResults = getChainResults(chainRegexes);
+            Assert.assertFalse(chainResults.isEmpty());
+            Assert.assertEquals(chainResults, getResults(new RegexSetMatcher(
+                    new RegexSetPredicate(chainRegexes, attributeNames, false, true))));
+        }
+    }
+
+    private static List<Tuple> getChainResults(List<String> chainRegexes) throws TextDBException {
+        IOperator operator = new ScanBasedSourceOperator(new ScanSourcePredicate(PEOPLE_TABLE));
+        for (String regex : chainRegexes) {
+            RegexMatcher regexMatcher = new RegexMatcher(new RegexPredicate(regex, attributeNames));
+            regexMatcher.setInputOperator(operator);
+            operator = regexMatcher;
+        }
+        return getResults(operator);
+    }
+
+    private static List<Tuple> getResults(IOperator operator) throws TextDBException {
+        if (operator instanceof RegexSetMatcher) {
+            ((RegexSetMatcher) operator).setInputOperator(new ScanBasedSourceOperator(new ScanSourcePredicate(PEOPLE_TABLE)));
+        }
+        List<Tuple> results = new ArrayList<>();
+        Tuple tuple;
+        operator.open();
+        while ((tuple = operator.getNextTuple()) != null) {
+            results.add(tuple);
+        }
+        operator.close();
+        return results;
+    }
+
+    private static List<Span> getSpans(Tuple tuple) {
+        ListField<Span> spanListField = tuple.getField(SchemaConstants.SPAN_LIST);
+        return spanListField.getValue();
+    }
+
+}
@@ -4,9 +4,16 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
 import org.junit.Assert;
 import org.junit.Test;
 
+import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
+
 /**
  * @author Shuying Lai
  * @author Zuozhi Wang
@@ -333,4 +340,82 @@ public class RegexToGramQueryTranslatorTest {
         Assert.assertEquals(exactQuery, expectedQuery);
     }
 
-}
\ No newline at end of file
+    /*
+     * A concatenation of large alternations has a DNF of 12^4 conjunctions,
+     * it's weakened to a smaller query which still matches the strings of the regex.
+     */
+    @Test
+    public void testLargeAlternationIsBounded() {
+        List<String> words = Arrays.asList("alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel",
+                "india", "juliet", "kilo", "lima");
+        String group = "(" + String.join("|", words) + ")";
+        String regex = group + " " + group + " " + group + " " + group;
+
+        GramBooleanQuery exactQuery = RegexToGramQueryTranslator.translate(regex);
+        GramBooleanQuery dnf = GramBooleanQuery.toDNF(exactQuery);
+
+        Assert.assertFalse(dnf.subQuerySet.isEmpty());
+        Assert.assertTrue(dnf.subQuerySet.size() <= TranslatorUtils.MAX_DNF_SIZE);
+        for (int i = 0; i < words.size(); i++) {
+            String text = "xx " + words.get(i) + " " + words.get((i + 1) % words.size()) + " "
+                    + words.get((i + 5) % words.size()) + " " + words.get((i + 7) % words.size()) + " yy";
+            Assert.assertTrue(text, isSatisfiedBy(exactQuery, text));
+        }
+    }
+
+    @Test
+    public void testTranslateToLuceneQuery() throws Exception {
+        List<String> fields = Arrays.asList("field1", "field2");
+        String analyzerString = LuceneAnalyzerConstants.nGramAnalyzerString(3);
+        Analyzer analyzer = LuceneAnalyzerConstants.getLuceneAnalyzer(analyzerString);
+
+        Query luceneQuery = RegexToGramQueryTranslator.translateToLuceneQuery("ab[c]",
+                TranslatorUtils.DEFAULT_GRAM_LENGTH, fields, analyzerString, analyzer);
+        Query parsedQuery = new MultiFieldQueryParser(fields.stream().toArray(String[]::new), analyzer)
+                .parse(RegexToGramQueryTranslator.translate("ab[c]").getLuceneQueryString());
+        Assert.assertEquals(parsedQuery, luceneQuery);
+
+        // the query is cached
+        Assert.assertSame(luceneQuery, RegexToGramQueryTranslator.translateToLuceneQuery("ab[c]",
+                TranslatorUtils.DEFAULT_GRAM_LENGTH, fields, analyzerString, analyzer));
+
+        Assert.assertEquals(new MatchAllDocsQuery(), RegexToGramQueryTranslator.translateToLuceneQuery("ab",
+                TranslatorUtils.DEFAULT_GRAM_LENGTH, fields, analyzerString, analyzer));
+    }
+
+    /*
+     * Tests that an AND of more grams than the max clause count of Lucene is cut to a valid query.
+     */
+    @Test
+    public void testTranslateLongLiteralToLuceneQuery() throws Exception {
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < BooleanQuery.getMaxClauseCount(); i++) {
+            literal.append(Integer.toString(i, 36));
+        }
+        List<String> fields = Arrays.asList("field1");
+        String analyzerString = LuceneAnalyzerConstants.nGramAnalyzerString(3);
+
+        Query luceneQuery = RegexToGramQueryTranslator.translateToLuceneQuery(literal.toString(),
+                TranslatorUtils.DEFAULT_GRAM_LENGTH, fields, analyzerString,
+                LuceneAnalyzerConstants.getLuceneAnalyzer(analyzerString));
+
+        Assert.assertTrue(luceneQuery instanceof BooleanQuery);
+        Assert.assertEquals(BooleanQuery.getMaxClauseCount(), ((BooleanQuery) luceneQuery).clauses().size());
+    }
+
+    // Helper function to check if a text contains the grams required by a query tree
+    private static boolean isSatisfiedBy(GramBooleanQuery query, String text) {
+        switch (query.operator) {
+        case LEAF:
+            return text.contains(query.leaf);
+        case AND:
+            return query.subQuerySet.stream().allMatch(subQuery -> isSatisfiedBy(subQuery, text));
+        case OR:
+            return query.subQuerySet.isEmpty()
+                    || query.subQuerySet.stream().anyMatch(subQuery -> isSatisfiedBy(subQuery, text));
+        default:
+            return true;
+        }
+    }
+
+}
@@ -6,6 +6,7 @@ import org.mockito.Mockito;
 
 import edu.uci.ics.textdb.api.dataflow.IOperator;
 import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.api.tuple.TupleBatch;
 
 public class AbstractSinkTest {
 
@@ -42,10 +43,12 @@ public class AbstractSinkTest {
     public void testProcessTuples() throws Exception {
         Tuple sampleTuple = Mockito.mock(Tuple.class);
         // Set the behavior for childOperator,
-        // first it returns some non-null tuple and second time it returns null
-        Mockito.when(childOperator.getNextTuple()).thenReturn(sampleTuple).thenReturn(null);
+        // first it returns a batch with some non-null tuple and second time it returns null
+        TupleBatch sampleBatch = new TupleBatch();
+        sampleBatch.add(sampleTuple);
+        Mockito.when(childOperator.getNextBatch(Mockito.anyInt())).thenReturn(sampleBatch).thenReturn(null);
         sink.processTuples();
-        // Verify that childOperator.getNextTuple() is called twice
-        Mockito.verify(childOperator, Mockito.times(2)).getNextTuple();
+        // Verify that childOperator.getNextBatch() is called twice
+        Mockito.verify(childOperator, Mockito.times(2)).getNextBatch(Mockito.anyInt());
     }
 }
@@ -0,0 +1,147 @@
+package edu.uci.ics.textdb.exp.utils;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.uci.ics.textdb.api.constants.SchemaConstants;
+import edu.uci.ics.textdb.api.field.IDField;
+import edu.uci.ics.textdb.api.field.ListField;
+import edu.uci.ics.textdb.api.field.StringField;
+import edu.uci.ics.textdb.api.field.TextField;
+import edu.uci.ics.textdb.api.schema.Attribute;
+import edu.uci.ics.textdb.api.schema.AttributeType;
+import edu.uci.ics.textdb.api.schema.Schema;
+import edu.uci.ics.textdb.api.span.Span;
+import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.exp.keywordmatcher.KeywordMatcher;
+import edu.uci.ics.textdb.exp.keywordmatcher.KeywordMatchingType;
+import edu.uci.ics.textdb.exp.keywordmatcher.KeywordPredicate;
+import edu.uci.ics.textdb.exp.source.tuple.TupleSourceOperator;
+import edu.uci.ics.textdb.storage.CompactPayload;
+import edu.uci.ics.textdb.storage.PayloadCache;
+import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
+import edu.uci.ics.textdb.storage.utils.AnalyzerRegistry;
+
+public class DataflowUtilsTest {
+
+    private static final Schema SCHEMA = new Schema(new Attribute("name", AttributeType.STRING),
+            new Attribute("title", AttributeType.TEXT), new Attribute("content", AttributeType.TEXT));
+
+    /*
+     * Tests that the generated payload has the same spans as analyzing the fields one token at a time,
+     *   for analyzers with and without position gaps and repeated terms.
+     */
+    @Test
+    public void testGeneratePayloadFromTuple() throws Exception {
+        List<Tuple> tuples = Arrays.asList(
+                new Tuple(SCHEMA, new StringField("first"), new TextField("The Quick brown fox"),
+                        new TextField("the fox jumps over the lazy dog, and the dog sleeps")),
+                new Tuple(SCHEMA, new StringField("second"), new TextField(""), new TextField("Short text")),
+                new Tuple(SCHEMA, new StringField("third"), new TextField("a b c"), new TextField("")));
+
+        for (String analyzerString : Arrays.asList(LuceneAnalyzerConstants.standardAnalyzerString(),
+                LuceneAnalyzerConstants.nGramAnalyzerString(3))) {
+            Analyzer analyzer = AnalyzerRegistry.getAnalyzer(analyzerString);
+            // the generator and the analyzer are reused by the tuples
+            for (Tuple tuple : tuples) {
+                List<Span> payload = DataflowUtils.generatePayloadFromTuple(tuple, analyzerString);
+                Assert.assertTrue(payload instanceof CompactPayload);
+                Assert.assertEquals(analyzeTuple(tuple, analyzer), new ArrayList<>(payload));
+            }
+        }
+    }
+
+    /*
+     * Tests that the payload generated by a keyword matcher is attached to the output tuple as a CompactPayload.
+     */
+    @Test
+    public void testKeywordMatcherKeepsCompactPayload() throws Exception {
+        List<Tuple> tuples = Arrays.asList(
+                new Tuple(SCHEMA, new StringField("first"), new TextField("The Quick brown fox"),
+                        new TextField("the fox jumps over the lazy dog")));
+        KeywordMatcher keywordMatcher = new KeywordMatcher(new KeywordPredicate("fox", Arrays.asList("content"),
+                LuceneAnalyzerConstants.standardAnalyzerString(), KeywordMatchingType.CONJUNCTION_INDEXBASED));
+        keywordMatcher.setInputOperator(new TupleSourceOperator(tuples, SCHEMA));
+        keywordMatcher.open();
+        Tuple resultTuple = keywordMatcher.getNextTuple();
+        keywordMatcher.close();
+
+        ListField<Span> payloadField = resultTuple.getField(SchemaConstants.PAYLOAD);
+        Assert.assertTrue(payloadField.getValue() instanceof CompactPayload);
+        Assert.assertEquals(analyzeTuple(tuples.get(0), AnalyzerRegistry.getAnalyzer("standard")),
+                new ArrayList<>(payloadField.getValue()));
+    }
+
+    /*
+     * Tests that two keyword matchers sharing a payload cache generate the payload of each input tuple once.
+     */
+    @Test
+    public void testKeywordMatchersSharePayloadCache() throws Exception {
+        Schema schema = new Schema(SchemaConstants._ID_ATTRIBUTE, new Attribute("content", AttributeType.TEXT));
+        List<Tuple> tuples = Arrays.asList(
+                new Tuple(schema, new IDField("id1"), new TextField("the quick brown fox jumps over the lazy dog")),
+                new Tuple(schema, new IDField("id2"), new TextField("a fox sleeps")));
+        PayloadCache payloadCache = new PayloadCache();
+
+        List<Integer> resultCounts = new ArrayList<>();
+        for (String query : Arrays.asList("fox", "lazy dog")) {
+            KeywordMatcher keywordMatcher = new KeywordMatcher(new KeywordPredicate(query, Arrays.asList("content"),
+                    LuceneAnalyzerConstants.standardAnalyzerString(), KeywordMatchingType.CONJUNCTION_INDEXBASED));
+            keywordMatcher.setPayloadCache(payloadCache);
+            keywordMatcher.setInputOperator(new TupleSourceOperator(tuples, schema));
+            keywordMatcher.open();
+            int resultCount = 0;
+            while (keywordMatcher.getNextTuple() != null) {
+                resultCount++;
+            }
+            keywordMatcher.close();
+            resultCounts.add(resultCount);
+        }
+        Assert.assertEquals(Arrays.asList(2, 1), resultCounts);
+        Assert.assertEquals(2, payloadCache.getMissCount());
+        Assert.assertEquals(2, payloadCache.getHitCount());
+    }
+
+    @Test
+    public void testAnalyzerRegistry() throws Exception {
+        Assert.assertSame(AnalyzerRegistry.getAnalyzer("standard"), AnalyzerRegistry.getAnalyzer("standard"));
+        Assert.assertNotSame(AnalyzerRegistry.getAnalyzer("standard"), AnalyzerRegistry.getAnalyzer("3-gram"));
+        Assert.assertEquals(Arrays.asList("quick", "fox"), DataflowUtils.tokenizeQuery("standard", "the quick fox"));
+        Assert.assertEquals(Arrays.asList("the", "Quick", "fox"), DataflowUtils.tokenizeQueryWithStopwords("the Quick fox"));
+    }
+
+    private static List<Span> analyzeTuple(Tuple tuple, Analyzer analyzer) throws Exception {
+        List<Span> spans = new ArrayList<>();
+        for (String attributeName : Arrays.asList("title", "content")) {
+            String fieldValue = tuple.getField(attributeName).getValue().toString();
+            try (TokenStream tokenStream = analyzer.tokenStream(attributeName, new StringReader(fieldValue))) {
+                CharTermAttribute termAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+                OffsetAttribute offsetAttribute = tokenStream.addAttribute(OffsetAttribute.class);
+                PositionIncrementAttribute positionIncrementAttribute =
+                        tokenStream.addAttribute(PositionIncrementAttribute.class);
+                tokenStream.reset();
+                int position = -1;
+                while (tokenStream.incrementToken()) {
+                    position += positionIncrementAttribute.getPositionIncrement();
+                    int start = offsetAttribute.startOffset();
+                    int end = offsetAttribute.endOffset();
+                    spans.add(new Span(attributeName, start, end, termAttribute.toString(),
+                            fieldValue.substring(start, end), position));
+                }
+                tokenStream.end();
+            }
+        }
+        return spans;
+    }
+
+}
@@ -0,0 +1,68 @@
+package edu.uci.ics.textdb.exp.utils;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LiteralSubstringSearcherTest {
+
+    @Test
+    public void testIgnoreCase() {
+        LiteralSubstringSearcher searcher = new LiteralSubstringSearcher("TextDB");
+        String text = "textdb, TEXTDB and TextDb";
+        Assert.assertEquals(0, searcher.indexOf(text, 0));
+        Assert.assertEquals(8, searcher.indexOf(text, 1));
+        Assert.assertEquals(19, searcher.indexOf(text, 9));
+        Assert.assertEquals(-1, searcher.indexOf(text, 20));
+    }
+
+    @Test
+    public void testSpecialCharactersAreLiteral() {
+        LiteralSubstringSearcher searcher = new LiteralSubstringSearcher("a.c(");
+        Assert.assertEquals(-1, searcher.indexOf("abc(", 0));
+        Assert.assertEquals(4, searcher.indexOf("abc(a.c(", 0));
+    }
+
+    @Test
+    public void testNonAsciiCharacters() {
+        LiteralSubstringSearcher searcher = new LiteralSubstringSearcher("ÉCOLE");
+        Assert.assertEquals(4, searcher.indexOf("une école", 0));
+        Assert.assertEquals(2, new LiteralSubstringSearcher("北京").indexOf("我在北京大学", 0));
+        // the offsets are not changed by the case conversion, unlike String.toLowerCase()
+        Assert.assertEquals(1, new LiteralSubstringSearcher("x").indexOf("İx", 0));
+    }
+
+    /*
+     * Compares with a naive search using String.regionMatches on random texts.
+     */
+    @Test
+    public void testSameAsNaiveSearch() {
+        Random random = new Random(2017);
+        String alphabet = "abABĀāȀ";
+        for (int round = 0; round < 500; round++) {
+            String text = randomString(random, alphabet, random.nextInt(40));
+            String literal = randomString(random, alphabet, 1 + random.nextInt(4));
+            LiteralSubstringSearcher searcher = new LiteralSubstringSearcher(literal);
+            for (int from = 0; from <= text.length(); from++) {
+                int expected = -1;
+                for (int i = from; i + literal.length() <= text.length(); i++) {
+                    if (text.regionMatches(true, i, literal, 0, literal.length())) {
+                        expected = i;
+                        break;
+                    }
+                }
+                Assert.assertEquals(text + " / " + literal, expected, searcher.indexOf(text, from));
+            }
+        }
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,64 @@
+package edu.uci.ics.textdb.exp.utils;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MultiLiteralSearcherTest {
+
+    @Test
+    public void testFindLiterals() {
+        MultiLiteralSearcher searcher = new MultiLiteralSearcher(Arrays.asList("he", "she", "his", "hers", "TextDB"));
+        Assert.assertEquals(bitSet(0, 1, 3), searcher.findLiterals("ushers"));
+        Assert.assertEquals(bitSet(2, 4), searcher.findLiterals("this is textdb"));
+        Assert.assertEquals(new BitSet(), searcher.findLiterals("nothing"));
+    }
+
+    /*
+     * Compares with LiteralSubstringSearcher on random texts.
+     */
+    @Test
+    public void testSameAsSingleLiteralSearch() {
+        Random random = new Random(0);
+        String alphabet = "abAB";
+        for (int round = 0; round < 200; round++) {
+            String[] literals = new String[1 + random.nextInt(5)];
+            for (int i = 0; i < literals.length; i++) {
+                literals[i] = randomString(random, alphabet, 1 + random.nextInt(4));
+            }
+            List<String> literalList = Arrays.asList(literals);
+            MultiLiteralSearcher searcher = new MultiLiteralSearcher(literalList);
+            for (int i = 0; i < 20; i++) {
+                String text = randomString(random, alphabet, random.nextInt(20));
+                BitSet expected = new BitSet();
+                for (int j = 0; j < literals.length; j++) {
+                    if (new LiteralSubstringSearcher(literals[j]).isFoundIn(text)) {
+                        expected.set(j);
+                    }
+                }
+                Assert.assertEquals(literalList + " " + text, expected, searcher.findLiterals(text));
+            }
+        }
+    }
+
+    private static BitSet bitSet(int... indexes) {
+        BitSet bitSet = new BitSet();
+        for (int index : indexes) {
+            bitSet.set(index);
+        }
+        return bitSet;
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+}
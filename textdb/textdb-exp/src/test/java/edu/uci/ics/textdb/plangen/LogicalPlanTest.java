@@ -0,0 +1,122 @@
+package edu.uci.ics.textdb.plangen;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.uci.ics.textdb.api.dataflow.IOperator;
+import edu.uci.ics.textdb.exp.dictionarymatcher.Dictionary;
+import edu.uci.ics.textdb.exp.dictionarymatcher.DictionaryMatcher;
+import edu.uci.ics.textdb.exp.dictionarymatcher.DictionaryPredicate;
+import edu.uci.ics.textdb.exp.keywordmatcher.KeywordMatcher;
+import edu.uci.ics.textdb.exp.keywordmatcher.KeywordMatchingType;
+import edu.uci.ics.textdb.exp.keywordmatcher.KeywordPredicate;
+import edu.uci.ics.textdb.exp.regexmatcher.RegexSetMatcher;
+import edu.uci.ics.textdb.exp.plangen.operatorbuilder.OperatorBuilderUtils;
+import edu.uci.ics.textdb.exp.plangen.operatorbuilder.RegexMatcherBuilder;
+import edu.uci.ics.textdb.exp.plangen.operatorbuilder.RegexSetMatcherBuilder;
+import edu.uci.ics.textdb.storage.PayloadCache;
+import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
+
+public class LogicalPlanTest {
+
+    private static Map<String, String> regexMatcherProperties(String regex, String attributeNames) {
+        Map<String, String> properties = new HashMap<>();
+        properties.put(RegexMatcherBuilder.REGEX, regex);
+        properties.put(OperatorBuilderUtils.ATTRIBUTE_NAMES, attributeNames);
+        return properties;
+    }
+
+    /*
+     * Tests that a chain of RegexMatchers over the same attributes is fused into one RegexSetMatcher,
+     *   which keeps the regexes in the order of the chain, and the limit of the last RegexMatcher.
+     */
+    @Test
+    public void testFuseRegexMatcherChain() throws Exception {
+        LogicalPlan logicalPlan = new LogicalPlan();
+        logicalPlan.addOperator("regex1", "RegexMatcher", regexMatcherProperties("a{1,3}b", "content, city"));
+        logicalPlan.addOperator("regex2", "RegexMatcher", regexMatcherProperties("c+", "content,city"));
+        Map<String, String> lastProperties = regexMatcherProperties("d", "content, city");
+        lastProperties.put(OperatorBuilderUtils.LIMIT, "10");
+        logicalPlan.addOperator("regex3", "RegexMatcher", lastProperties);
+        logicalPlan.addOperator("regex4", "RegexMatcher", regexMatcherProperties("e", "content"));
+        logicalPlan.addLink("regex2", "regex3");
+        logicalPlan.addLink("regex1", "regex2");
+        logicalPlan.addLink("regex3", "regex4");
+
+        LogicalPlan fusedPlan = logicalPlan.fuseRegexMatchers();
+
+        Assert.assertEquals(new HashSet<>(Arrays.asList("regex1", "regex4")), fusedPlan.adjacencyList.keySet());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("regex4")), fusedPlan.adjacencyList.get("regex1"));
+        Assert.assertEquals("RegexSetMatcher", fusedPlan.operatorTypeMap.get("regex1"));
+        Assert.assertEquals("RegexMatcher", fusedPlan.operatorTypeMap.get("regex4"));
+
+        Map<String, String> fusedProperties = fusedPlan.operatorPropertyMap.get("regex1");
+        Assert.assertEquals(Arrays.asList("a{1,3}b", "c+", "d"),
+                RegexSetMatcherBuilder.parseRegexes(fusedProperties.get(RegexSetMatcherBuilder.REGEXES)));
+        Assert.assertEquals("10", fusedProperties.get(OperatorBuilderUtils.LIMIT));
+
+        IOperator operator = PlanGenUtils.buildOperator("RegexSetMatcher", fusedProperties);
+        Assert.assertTrue(operator instanceof RegexSetMatcher);
+        RegexSetMatcher regexSetMatcher = (RegexSetMatcher) operator;
+        Assert.assertTrue(regexSetMatcher.getPredicate().isMatchAll());
+        Assert.assertEquals(Arrays.asList("content", "city"), regexSetMatcher.getPredicate().getAttributeNames());
+        Assert.assertEquals(10, regexSetMatcher.getLimit());
+
+        // the original operator graph is not changed
+        Assert.assertEquals(4, logicalPlan.adjacencyList.size());
+        Assert.assertEquals("RegexMatcher", logicalPlan.operatorTypeMap.get("regex1"));
+    }
+
+    /*
+     * Tests that RegexMatchers are not fused if the first one has a limit, or has more than one output.
+     */
+    @Test
+    public void testRegexMatchersNotFused() throws Exception {
+        LogicalPlan logicalPlan = new LogicalPlan();
+        Map<String, String> limitProperties = regexMatcherProperties("a", "content");
+        limitProperties.put(OperatorBuilderUtils.LIMIT, "1");
+        logicalPlan.addOperator("regex1", "RegexMatcher", limitProperties);
+        logicalPlan.addOperator("regex2", "RegexMatcher", regexMatcherProperties("b", "content"));
+        logicalPlan.addOperator("regex3", "RegexMatcher", regexMatcherProperties("c", "content"));
+        logicalPlan.addOperator("regex4", "RegexMatcher", regexMatcherProperties("d", "content"));
+        logicalPlan.addLink("regex1", "regex2");
+        logicalPlan.addLink("regex2", "regex3");
+        logicalPlan.addLink("regex2", "regex4");
+
+        Assert.assertEquals(logicalPlan, logicalPlan.fuseRegexMatchers());
+    }
+
+    /*
+     * Tests that the matchers generating the payload share one PayloadCache,
+     *   and the cache is not added if only one operator generates the payload.
+     */
+    @Test
+    public void testSharePayloadCache() throws Exception {
+        KeywordMatcher keywordMatcher1 = new KeywordMatcher(new KeywordPredicate("fox", Arrays.asList("content"),
+                LuceneAnalyzerConstants.standardAnalyzerString(), KeywordMatchingType.CONJUNCTION_INDEXBASED));
+        KeywordMatcher keywordMatcher2 = new KeywordMatcher(new KeywordPredicate("dog", Arrays.asList("content"),
+                LuceneAnalyzerConstants.standardAnalyzerString(), KeywordMatchingType.PHRASE_INDEXBASED));
+        DictionaryMatcher substringMatcher = new DictionaryMatcher(new DictionaryPredicate(
+                new Dictionary(Arrays.asList("cat")), Arrays.asList("content"),
+                LuceneAnalyzerConstants.standardAnalyzerString(), KeywordMatchingType.SUBSTRING_SCANBASED));
+
+        Map<String, IOperator> operatorObjectMap = new HashMap<>();
+        operatorObjectMap.put("keyword1", keywordMatcher1);
+        operatorObjectMap.put("dictionary", substringMatcher);
+        Assert.assertNull(LogicalPlan.sharePayloadCache(operatorObjectMap));
+        Assert.assertNull(keywordMatcher1.getPayloadCache());
+
+        operatorObjectMap.put("keyword2", keywordMatcher2);
+        PayloadCache payloadCache = LogicalPlan.sharePayloadCache(operatorObjectMap);
+        Assert.assertNotNull(payloadCache);
+        Assert.assertSame(payloadCache, keywordMatcher1.getPayloadCache());
+        Assert.assertSame(payloadCache, keywordMatcher2.getPayloadCache());
+        Assert.assertNull(substringMatcher.getPayloadCache());
+    }
+
+}
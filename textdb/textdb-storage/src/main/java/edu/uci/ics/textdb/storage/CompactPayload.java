@@ -0,0 +1,214 @@
+package edu.uci.ics.textdb.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.List;
+
+import org.apache.lucene.store.ByteArrayDataInput;
+
+import edu.uci.ics.textdb.api.field.IField;
+import edu.uci.ics.textdb.api.span.Span;
+
+/**
+ * CompactPayload is the payload of a tuple decoded from the payload encoded at index time (see PayloadCodec),
+ *   or generated by analyzing the fields of a tuple (see PayloadGenerator).
+ *
+ * It's a read-only list of spans, the same as the payload built from the term vectors,
+ *   but the tokens are kept in int arrays, and a Span object is only created when the token is accessed by get().
+ * The encoded bytes are decoded the first time a token is accessed, and the terms are decoded when they are used.
+ * The values of the fields are only read when the spans are created, so a field loaded lazily 
+ *   (see DataReader.setLateMaterialization()) is not loaded by getAttributeName() and getKey().
+ *
+ * The operators that only need the spans of some tokens can check the attribute name and the term of a token
+ *   by getAttributeName() and getKey() without creating the spans of the other tokens.
+ *
+ * A CompactPayload is not thread-safe, a payload read by several threads must be copied for each thread (see copy()).
+ *
+ */
+public class CompactPayload extends AbstractList<Span> {
+
+    private final byte[] encodedBytes;
+    // the names and fields of the TEXT attributes, in the schema order
+    private final List<String> attributeNames;
+    private final List<IField> fields;
+    private final int size;
+
+    // the offsets and lengths of the UTF-8 terms in the encoded bytes
+    private int[] termOffsets;
+    private int[] termLengths;
+    private String[] terms;
+
+    // the tokens, by index in the payload
+    private int[] tokenAttributes;
+    private int[] tokenTerms;
+    private int[] tokenPositions;
+    private int[] tokenStarts;
+    private int[] tokenEnds;
+    private Span[] spans;
+
+    CompactPayload(byte[] encodedBytes, List<String> attributeNames, List<IField> fields) {
+        this.encodedBytes = encodedBytes;
+        this.attributeNames = attributeNames;
+        this.fields = fields;
+
+        ByteArrayDataInput input = new ByteArrayDataInput(encodedBytes);
+        byte formatVersion = input.readByte();
+        if (formatVersion != PayloadCodec.FORMAT_VERSION) {
+            throw new IllegalArgumentException("unknown payload format version " + formatVersion);
+        }
+        this.size = input.readVInt();
+    }
+
+    /*
+     * Creates a CompactPayload from the tokens produced by the analyzer, see PayloadGenerator.
+     * The terms are the UTF-8 bytes in termBytes, at termOffsets, with termLengths.
+     */
+    CompactPayload(byte[] termBytes, int[] termOffsets, int[] termLengths,
+            int[] tokenAttributes, int[] tokenTerms, int[] tokenPositions, int[] tokenStarts, int[] tokenEnds,
+            List<String> attributeNames, List<IField> fields) {
+        this.encodedBytes = termBytes;
+        this.attributeNames = attributeNames;
+        this.fields = fields;
+        this.size = tokenAttributes.length;
+        this.termOffsets = termOffsets;
+        this.termLengths = termLengths;
+        this.terms = new String[termOffsets.length];
+        this.tokenAttributes = tokenAttributes;
+        this.tokenTerms = tokenTerms;
+        this.tokenPositions = tokenPositions;
+        this.tokenStarts = tokenStarts;
+        this.tokenEnds = tokenEnds;
+        this.spans = new Span[size];
+    }
+
+    /*
+     * Creates a copy of a payload, sharing its tokens and terms, see copy().
+     */
+    private CompactPayload(CompactPayload payload) {
+        this.encodedBytes = payload.encodedBytes;
+        this.attributeNames = payload.attributeNames;
+        this.fields = payload.fields;
+        this.size = payload.size;
+        this.termOffsets = payload.termOffsets;
+        this.termLengths = payload.termLengths;
+        this.terms = new String[payload.termOffsets.length];
+        this.tokenAttributes = payload.tokenAttributes;
+        this.tokenTerms = payload.tokenTerms;
+        this.tokenPositions = payload.tokenPositions;
+        this.tokenStarts = payload.tokenStarts;
+        this.tokenEnds = payload.tokenEnds;
+        this.spans = new Span[size];
+    }
+
+    /**
+     * Creates a copy of the payload, which has its own spans and term strings,
+     *   and shares the arrays of the tokens, which are never changed once they are created.
+     * A payload that is not decoded yet is decoded again by the copy.
+     *
+     * So a payload can be read by several threads by giving a copy to each thread,
+     *   as long as the payload itself is not read while it's copied.
+     *
+     * @return the copy
+     */
+    public CompactPayload copy() {
+        if (spans == null) {
+            return new CompactPayload(encodedBytes, attributeNames, fields);
+        }
+        return new CompactPayload(this);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Span get(int index) {
+        checkIndex(index);
+        if (spans[index] == null) {
+            int attributeIndex = tokenAttributes[index];
+            spans[index] = new Span(attributeNames.get(attributeIndex), tokenStarts[index], tokenEnds[index],
+                    getKey(index), fields.get(attributeIndex).getValue().toString().substring(tokenStarts[index], tokenEnds[index]),
+                    tokenPositions[index]);
+        }
+        return spans[index];
+    }
+
+    /**
+     * Gets the attribute name of a token, without creating its span.
+     */
+    public String getAttributeName(int index) {
+        checkIndex(index);
+        return attributeNames.get(tokenAttributes[index]);
+    }
+
+    /**
+     * Gets the analyzed term of a token (the key of its span), without creating its span.
+     */
+    public String getKey(int index) {
+        checkIndex(index);
+        int termOrdinal = tokenTerms[index];
+        if (terms[termOrdinal] == null) {
+            terms[termOrdinal] = new String(encodedBytes, termOffsets[termOrdinal], termLengths[termOrdinal],
+                    StandardCharsets.UTF_8);
+        }
+        return terms[termOrdinal];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+        if (spans == null) {
+            decode();
+        }
+    }
+
+    private void decode() {
+        ByteArrayDataInput input = new ByteArrayDataInput(encodedBytes);
+        // the format version and the size are already read
+        input.readByte();
+        input.readVInt();
+
+        int termCount = input.readVInt();
+        termOffsets = new int[termCount];
+        termLengths = new int[termCount];
+        terms = new String[termCount];
+        for (int i = 0; i < termCount; i++) {
+            termLengths[i] = input.readVInt();
+            termOffsets[i] = input.getPosition();
+            input.skipBytes(termLengths[i]);
+        }
+
+        tokenAttributes = new int[size];
+        tokenTerms = new int[size];
+        tokenPositions = new int[size];
+        tokenStarts = new int[size];
+        tokenEnds = new int[size];
+        int index = 0;
+        for (int attributeIndex = 0; attributeIndex < attributeNames.size(); attributeIndex++) {
+            int attributeTokenCount = input.readVInt();
+            int termOrdinal = 0;
+            int position = 0;
+            int start = 0;
+            for (int i = 0; i < attributeTokenCount; i++, index++) {
+                int termOrdinalDelta = input.readVInt();
+                if (termOrdinalDelta != 0) {
+                    position = 0;
+                    start = 0;
+                }
+                termOrdinal += termOrdinalDelta;
+                position += input.readVInt();
+                start += input.readVInt();
+
+                tokenAttributes[index] = attributeIndex;
+                tokenTerms[index] = termOrdinal;
+                tokenPositions[index] = position;
+                tokenStarts[index] = start;
+                tokenEnds[index] = start + input.readVInt();
+            }
+        }
+        spans = new Span[size];
+    }
+
+}
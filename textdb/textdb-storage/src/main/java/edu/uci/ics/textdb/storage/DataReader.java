@@ -4,28 +4,47 @@ import java.io.IOException;
 import java.nio.file.Paths;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DocumentStoredFieldVisitor;
+import org.apache.lucene.index.BinaryDocValues;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.store.Directory;
+import org.apache.lucene.search.Weight;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
 
 import edu.uci.ics.textdb.api.constants.ErrorMessages;
 import edu.uci.ics.textdb.api.constants.SchemaConstants;
 import edu.uci.ics.textdb.api.dataflow.IOperator;
 import edu.uci.ics.textdb.api.exception.StorageException;
+import edu.uci.ics.textdb.api.exception.StorageRuntimeException;
+import edu.uci.ics.textdb.api.field.IDField;
 import edu.uci.ics.textdb.api.field.IField;
 import edu.uci.ics.textdb.api.field.ListField;
+import edu.uci.ics.textdb.api.field.TextField;
 import edu.uci.ics.textdb.api.schema.Attribute;
 import edu.uci.ics.textdb.api.schema.AttributeType;
 import edu.uci.ics.textdb.api.schema.Schema;
@@ -47,6 +66,34 @@ import edu.uci.ics.textdb.storage.utils.StorageUtils;
  * 
  * The purpose of the "payload" field is to make subsequent keyword match, fuzzy token match, and dictionary match faster,
  * because they don't need to tokenize the tuple every time.
+ * If the payload of a document is precomputed when the document is written (see RelationManager.createTable()),
+ *   it's decoded into a CompactPayload, otherwise it's built from the term vectors of the TEXT fields.
+ * 
+ * DataReader doesn't open the index by itself, it acquires a shared IndexSearcher from the SearcherManagerPool
+ *   when it's opened, and releases it when it's closed.
+ * 
+ * DataReader streams the matching documents segment by segment: it creates a Lucene Weight for the query,
+ *   and walks the matching documents of each segment (leaf) with a DocIdSetIterator.
+ * Matching documents are never collected into one big array, so the memory usage doesn't grow with the result size,
+ *   and the first tuple is available without scoring the whole index.
+ * The tuples are returned in the index order (docID order), not in the relevance order.
+ * 
+ * A DataReader can be restricted to one partition of the index by setPartition(), so that a table can be
+ *   read by multiple DataReaders in parallel. The docIDs of the index are split into contiguous ranges of the same size,
+ *   a small segment is read by only one partition, while a large segment can be split across multiple partitions.
+ * The partitions are computed from the index snapshot each DataReader acquires when it's opened,
+ *   the DataReaders of the same table should be opened together so that they see the same snapshot.
+ * 
+ * A DataReader can resume a previous read after a tuple (setSearchAfter()), which is used to read the results page by page:
+ *   the next page starts after the last tuple of the previous page, the tuples of the previous pages are not read again.
+ * 
+ * A DataReader can read only some attributes of the table (setProjectedAttributes()),
+ *   the stored fields of the other attributes are not loaded, and the payload only contains the projected TEXT attributes.
+ * 
+ * In the late materialization mode (setLateMaterialization()), the values of the TEXT fields are not loaded
+ *   when a tuple is constructed, they are loaded from the index when they are read for the first time.
+ * The value is loaded from the index snapshot of the DataReader, or from the latest snapshot by the tuple's _id
+ *   if that snapshot is already closed (after the DataReader is closed and the index is changed).
  *   
  * 
  * DataReader for a specific table is only accessible from RelationManager.
@@ -62,15 +109,49 @@ public class DataReader implements IOperator {
     
     private Schema inputSchema;
     private Schema outputSchema;
+    // the attributes of the table that are read
+    private Schema projectedSchema;
+    // the names of the projected TEXT attributes, which have the payload
+    private List<String> textAttributeNames;
+    // true if all the TEXT attributes of the table are projected
+    private boolean allTextAttributesProjected;
+    // the stored fields loaded when a tuple is constructed
+    private Set<String> loadedFieldNames;
+    
+    // the names of the attributes to read (in lower case), null if all the attributes are read
+    private Set<String> projectedAttributeNames;
+    private boolean lateMaterialization = false;
 
     private IndexReader luceneIndexReader;
     private IndexSearcher luceneIndexSearcher;
-    private ScoreDoc[] scoreDocs;
+    
+    // the weight of the query, used to create a scorer for each segment
+    private Weight luceneQueryWeight;
+    private List<LeafReaderContext> leafContexts;
+    // index of the segment that is currently being read
+    private int leafCursor;
+    // iterator of the matching documents in the current segment, null if the segment is not started yet
+    private DocIdSetIterator leafDocIterator;
+    // deleted documents of the current segment, null if there are no deletions
+    private Bits leafLiveDocs;
+    
+    // the partition of the index to read, by default the whole index is one partition
+    private int partitionIndex = 0;
+    private int partitionCount = 1;
+    // the range of the top-level docIDs of the partition, start inclusive, end exclusive
+    private int partitionStartDocID;
+    private int partitionEndDocID;
+    
+    // the _id of the tuple after which the reader starts, null if the reader starts from the beginning
+    private IDField searchAfterID;
 
     private int cursor = CLOSED;
 
     private boolean payloadAdded;
 
+    // reused by getNextBatch()
+    private TupleBatch resultBatch;
+
     /*
      * The package-only level constructor is only accessible inside the storage package.
      * Only the RelationManager is allowed to constructor a DataWriter object, 
@@ -92,22 +173,56 @@ public class DataReader implements IOperator {
             return;
         }
         try {
-            String indexDirectoryStr = this.dataStore.getDataDirectory();
-            Directory indexDirectory = FSDirectory.open(Paths.get(indexDirectoryStr));
-            luceneIndexReader = DirectoryReader.open(indexDirectory);
-            luceneIndexSearcher = new IndexSearcher(luceneIndexReader);
-
-            TopDocs topDocs = luceneIndexSearcher.search(query, Integer.MAX_VALUE);
-            scoreDocs = topDocs.scoreDocs;
+            // the searcher is shared with other readers of the same table
+            luceneIndexSearcher = SearcherManagerPool.getSearcherManagerPool().acquire(
+                    this.dataStore.getDataDirectory());
+            luceneIndexReader = luceneIndexSearcher.getIndexReader();
+
+            // scores are not needed, the documents are returned in index order
+            luceneQueryWeight = luceneIndexSearcher.createNormalizedWeight(query, false);
+            leafContexts = luceneIndexReader.leaves();
+            leafCursor = 0;
+            leafDocIterator = null;
+            leafLiveDocs = null;
+            
+            int maxDoc = luceneIndexReader.maxDoc();
+            partitionStartDocID = getPartitionBoundary(maxDoc, partitionIndex, partitionCount);
+            partitionEndDocID = getPartitionBoundary(maxDoc, partitionIndex + 1, partitionCount);
+            if (searchAfterID != null) {
+                partitionStartDocID = Math.max(partitionStartDocID, findDocID(searchAfterID) + 1);
+            }
 
             inputSchema = this.dataStore.getSchema();
+            projectedSchema = getProjectedSchema();
+            textAttributeNames = new ArrayList<>();
+            loadedFieldNames = new HashSet<>();
+            for (Attribute attr : projectedSchema.getAttributes()) {
+                if (attr.getAttributeType() == AttributeType.TEXT) {
+                    textAttributeNames.add(attr.getAttributeName());
+                }
+                if (attr.getAttributeType() != AttributeType.TEXT || ! lateMaterialization) {
+                    loadedFieldNames.add(attr.getAttributeName());
+                }
+            }
+            if (lateMaterialization) {
+                // the _id is used to find the document if the index snapshot is closed when a field is loaded
+                loadedFieldNames.add(SchemaConstants._ID);
+            }
+            allTextAttributesProjected = inputSchema.getAttributes().stream()
+                    .filter(attr -> attr.getAttributeType() == AttributeType.TEXT).count() == textAttributeNames.size();
+            
             if (payloadAdded) {
-                outputSchema = Utils.addAttributeToSchema(inputSchema, SchemaConstants.PAYLOAD_ATTRIBUTE);
+                outputSchema = Utils.addAttributeToSchema(projectedSchema, SchemaConstants.PAYLOAD_ATTRIBUTE);
             } else {
-                outputSchema = inputSchema;
+                outputSchema = projectedSchema;
             }
 
-        } catch (IOException e) {
+        } catch (IOException | StorageException e) {
+            // releases the searcher
+            close();
+            if (e instanceof StorageException) {
+                throw (StorageException) e;
+            }
             throw new StorageException(e.getMessage(), e);
         }
 
@@ -122,10 +237,10 @@ public class DataReader implements IOperator {
 
         Tuple resultTuple;
         try {
-            if (cursor >= scoreDocs.length) {
+            int docID = nextMatchingDocID();
+            if (docID == DocIdSetIterator.NO_MORE_DOCS) {
                 return null;
             }
-            int docID = scoreDocs[cursor].doc;
             resultTuple = constructTuple(docID);
 
         } catch (IOException | ParseException e) {
@@ -136,25 +251,149 @@ public class DataReader implements IOperator {
         return resultTuple;
     }
 
+    /**
+     * Gets the next batch of tuples, the batch is reused and only valid until the next call.
+     * 
+     * The documents are read in docID order within a segment, the same order as getNextTuple().
+     */
+    @Override
+    public TupleBatch getNextBatch(int maxTuples) throws StorageException {
+        if (cursor == CLOSED) {
+            throw new StorageException(ErrorMessages.OPERATOR_NOT_OPENED);
+        }
+        if (resultBatch == null) {
+            resultBatch = new TupleBatch(maxTuples);
+        }
+        resultBatch.clear();
+        try {
+            while (resultBatch.size() < maxTuples) {
+                int docID = nextMatchingDocID();
+                if (docID == DocIdSetIterator.NO_MORE_DOCS) {
+                    break;
+                }
+                resultBatch.add(constructTuple(docID));
+            }
+        } catch (IOException | ParseException e) {
+            throw new StorageException(e.getMessage(), e);
+        }
+
+        cursor += resultBatch.size();
+        return resultBatch.isEmpty() ? null : resultBatch;
+    }
+
+    /*
+     * Advances to the next document that matches the query in the partition,
+     *   moving to the next segment when the current one is exhausted.
+     * 
+     * Returns the top-level docID of the document, or NO_MORE_DOCS if all segments are exhausted.
+     */
+    private int nextMatchingDocID() throws IOException {
+        while (leafCursor < leafContexts.size()) {
+            LeafReaderContext leafContext = leafContexts.get(leafCursor);
+            // the range of the partition inside this segment
+            int leafStartDocID = Math.max(partitionStartDocID - leafContext.docBase, 0);
+            int leafEndDocID = Math.min(partitionEndDocID - leafContext.docBase, leafContext.reader().maxDoc());
+            if (leafStartDocID >= leafEndDocID) {
+                // the segment is outside of the partition
+                if (leafContext.docBase >= partitionEndDocID) {
+                    break;
+                }
+                leafCursor++;
+                continue;
+            }
+            
+            if (leafDocIterator == null) {
+                Scorer leafScorer = luceneQueryWeight.scorer(leafContext);
+                // a null scorer means no documents in this segment match the query
+                if (leafScorer == null) {
+                    leafCursor++;
+                    continue;
+                }
+                leafDocIterator = leafScorer.iterator();
+                leafLiveDocs = leafContext.reader().getLiveDocs();
+            }
+
+            int leafDocID;
+            while (true) {
+                if (leafDocIterator.docID() + 1 < leafStartDocID) {
+                    leafDocID = leafDocIterator.advance(leafStartDocID);
+                } else {
+                    leafDocID = leafDocIterator.nextDoc();
+                }
+                // NO_MORE_DOCS is larger than any docID
+                if (leafDocID >= leafEndDocID) {
+                    break;
+                }
+                // skip the documents that are deleted but not merged away yet
+                if (leafLiveDocs == null || leafLiveDocs.get(leafDocID)) {
+                    return leafContext.docBase + leafDocID;
+                }
+            }
+
+            leafDocIterator = null;
+            leafLiveDocs = null;
+            leafCursor++;
+        }
+        return DocIdSetIterator.NO_MORE_DOCS;
+    }
+
     @Override
     public void close() throws StorageException {
         cursor = CLOSED;
-        if (luceneIndexReader != null) {
-            try {
-                luceneIndexReader.close();
-                luceneIndexReader = null;
-            } catch (IOException e) {
-                throw new StorageException(e.getMessage(), e);
-            }
+        luceneQueryWeight = null;
+        leafContexts = null;
+        leafDocIterator = null;
+        leafLiveDocs = null;
+        resultBatch = null;
+        if (luceneIndexSearcher != null) {
+            IndexSearcher releasedSearcher = luceneIndexSearcher;
+            luceneIndexSearcher = null;
+            luceneIndexReader = null;
+            SearcherManagerPool.getSearcherManagerPool().release(releasedSearcher);
         }
     }
 
+    /*
+     * Finds the docID of a tuple by its _id in the index snapshot of the reader.
+     */
+    private int findDocID(IDField idField) throws IOException, StorageException {
+        TopDocs topDocs = luceneIndexSearcher.search(
+                new TermQuery(new Term(SchemaConstants._ID, idField.getValue().toString())), 1);
+        if (topDocs.totalHits == 0) {
+            throw new StorageException(String.format("the tuple %s to search after is not found", idField.getValue()));
+        }
+        return topDocs.scoreDocs[0].doc;
+    }
+
+    /*
+     * Gets the schema of the projected attributes, in the same order as the table schema.
+     */
+    private Schema getProjectedSchema() throws StorageException {
+        if (projectedAttributeNames == null) {
+            return inputSchema;
+        }
+        List<Attribute> projectedAttributes = inputSchema.getAttributes().stream()
+                .filter(attr -> projectedAttributeNames.contains(attr.getAttributeName().toLowerCase()))
+                .collect(Collectors.toList());
+        if (projectedAttributes.size() != projectedAttributeNames.size()) {
+            throw new StorageException(String.format("the schema %s doesn't contain one of the attributes %s",
+                    inputSchema, projectedAttributeNames));
+        }
+        return new Schema(projectedAttributes.stream().toArray(Attribute[]::new));
+    }
+
     private Tuple constructTuple(int docID) throws IOException, ParseException {
-        Document luceneDocument = luceneIndexSearcher.doc(docID);
-        ArrayList<IField> docFields = documentToFields(luceneDocument);
+        // only loads the stored fields that are needed
+        DocumentStoredFieldVisitor fieldVisitor = new DocumentStoredFieldVisitor(loadedFieldNames);
+        luceneIndexSearcher.doc(docID, fieldVisitor);
+        Document luceneDocument = fieldVisitor.getDocument();
+        ArrayList<IField> docFields = documentToFields(luceneDocument, docID);
 
         if (payloadAdded) {
-            ArrayList<Span> payloadSpanList = buildPayloadFromTermVector(docFields, docID);
+            List<Span> payloadSpanList = readPrecomputedPayload(docFields, docID);
+            if (payloadSpanList == null) {
+                payloadSpanList = buildPayloadFromTermVector(docFields, docID);
+            }
             ListField<Span> payloadField = new ListField<Span>(payloadSpanList);
             docFields.add(payloadField);
         }
@@ -163,30 +402,137 @@ public class DataReader implements IOperator {
         return resultTuple;
     }
 
-    private ArrayList<IField> documentToFields(Document luceneDocument) throws ParseException {
+    private ArrayList<IField> documentToFields(Document luceneDocument, int docID) throws ParseException {
         ArrayList<IField> fields = new ArrayList<>();
-        for (Attribute attr : inputSchema.getAttributes()) {
+        for (Attribute attr : projectedSchema.getAttributes()) {
             AttributeType attributeType = attr.getAttributeType();
+            if (attributeType == AttributeType.TEXT && lateMaterialization) {
+                fields.add(new TextField(new StoredFieldLoader(dataStore.getDataDirectory(), luceneIndexReader, docID,
+                        luceneDocument.get(SchemaConstants._ID), attr.getAttributeName())));
+                continue;
+            }
             String fieldValue = luceneDocument.get(attr.getAttributeName());
             fields.add(StorageUtils.getField(attributeType, fieldValue));
         }
         return fields;
     }
-
-    private ArrayList<Span> buildPayloadFromTermVector(List<IField> fields, int docID) throws IOException {
-        ArrayList<Span> payloadSpanList = new ArrayList<>();
-
-        for (Attribute attr : inputSchema.getAttributes()) {
-            String attributeName = attr.getAttributeName();
-            AttributeType attributeType = attr.getAttributeType();
-
-            // We only store positional information for TEXT fields into
-            // payload.
-            if (attributeType != AttributeType.TEXT) {
-                continue;
+    
+    /*
+     * Loads the value of a stored field of a document, used by the TEXT fields in the late materialization mode.
+     */
+    private static class StoredFieldLoader implements Supplier<String> {
+        private final String indexDirectory;
+        private final IndexReader indexReader;
+        private final int docID;
+        private final String idValue;
+        private final String fieldName;
+        
+        private StoredFieldLoader(String indexDirectory, IndexReader indexReader, int docID, String idValue,
+                String fieldName) {
+            this.indexDirectory = indexDirectory;
+            this.indexReader = indexReader;
+            this.docID = docID;
+            this.idValue = idValue;
+            this.fieldName = fieldName;
+        }
+        
+        @Override
+        public String get() {
+            try {
+                // the snapshot can't be closed while it's being read
+                if (indexReader.tryIncRef()) {
+                    try {
+                        return loadField(indexReader, docID);
+                    } finally {
+                        indexReader.decRef();
+                    }
+                }
+                // the snapshot is already closed
+                return loadFieldByID();
+            } catch (IOException e) {
+                throw new StorageRuntimeException(new StorageException(String.format(
+                        "failed to load the field %s of tuple %s: %s", fieldName, idValue, e.getMessage()), e));
+            } catch (StorageException e) {
+                throw new StorageRuntimeException(e);
+            }
+        }
+        
+        private String loadField(IndexReader indexReader, int docID) throws IOException {
+            DocumentStoredFieldVisitor fieldVisitor = new DocumentStoredFieldVisitor(fieldName);
+            indexReader.document(docID, fieldVisitor);
+            return fieldVisitor.getDocument().get(fieldName);
+        }
+        
+        /*
+         * Finds the document by its _id in the latest index snapshot, the docID might be changed by merges.
+         */
+        private String loadFieldByID() throws IOException, StorageException {
+            SearcherManagerPool searcherManagerPool = SearcherManagerPool.getSearcherManagerPool();
+            IndexSearcher indexSearcher = searcherManagerPool.acquire(indexDirectory);
+            try {
+                TopDocs topDocs = indexSearcher.search(new TermQuery(new Term(SchemaConstants._ID, idValue)), 1);
+                if (topDocs.totalHits == 0) {
+                    throw new StorageException(String.format("tuple %s is deleted before its field %s is loaded",
+                            idValue, fieldName));
+                }
+                return loadField(indexSearcher.getIndexReader(), topDocs.scoreDocs[0].doc);
+            } finally {
+                searcherManagerPool.release(indexSearcher);
             }
+        }
+    }
 
-            String fieldValue = fields.get(inputSchema.getIndex(attributeName)).getValue().toString();
+    /*
+     * Reads the payload encoded when the document is written,
+     *   returns null if the payload of the document is not precomputed.
+     */
+    private List<Span> readPrecomputedPayload(List<IField> fields, int docID) throws IOException {
+        // the precomputed payload contains all the TEXT attributes
+        if (! allTextAttributesProjected) {
+            return null;
+        }
+        LeafReaderContext leafContext = leafContexts.get(ReaderUtil.subIndex(docID, leafContexts));
+        BinaryDocValues payloadValues = leafContext.reader().getBinaryDocValues(PayloadCodec.PAYLOAD_FIELD);
+        if (payloadValues == null) {
+            return null;
+        }
+        // a document without the value (written before the option is enabled) has an empty value
+        BytesRef payloadBytes = payloadValues.get(docID - leafContext.docBase);
+        if (payloadBytes.length == 0) {
+            return null;
+        }
+        
+        List<IField> textFields = new ArrayList<>(textAttributeNames.size());
+        for (String attributeName : textAttributeNames) {
+            textFields.add(fields.get(projectedSchema.getIndex(attributeName)));
+        }
+        // the bytes returned by the doc values are reused, they need to be copied
+        byte[] encodedBytes = Arrays.copyOfRange(payloadBytes.bytes, payloadBytes.offset, 
+                payloadBytes.offset + payloadBytes.length);
+        return new CompactPayload(encodedBytes, textAttributeNames, textFields);
+    }
+
+    /*
+     * Builds the payload from the term vectors of the projected TEXT attributes, the tokens are ordered by attribute and term.
+     * The payload is a CompactPayload, which only reads the values of the fields when the spans are created,
+     *   so a field loaded lazily is not loaded by building the payload.
+     */
+    private List<Span> buildPayloadFromTermVector(List<IField> fields, int docID) throws IOException {
+        List<IField> textFields = new ArrayList<>(textAttributeNames.size());
+        BytesRefBuilder termBytes = new BytesRefBuilder();
+        int termCount = 0;
+        int[] termOffsets = new int[0];
+        int[] termLengths = new int[0];
+        int tokenCount = 0;
+        int[] tokenAttributes = new int[0];
+        int[] tokenTerms = new int[0];
+        int[] tokenPositions = new int[0];
+        int[] tokenStarts = new int[0];
+        int[] tokenEnds = new int[0];
+
+        for (int attributeIndex = 0; attributeIndex < textAttributeNames.size(); attributeIndex++) {
+            String attributeName = textAttributeNames.get(attributeIndex);
+            textFields.add(fields.get(projectedSchema.getIndex(attributeName)));
 
             Terms termVector = luceneIndexReader.getTermVector(docID, attributeName);
             if (termVector == null) {
@@ -195,28 +541,143 @@ public class DataReader implements IOperator {
 
             TermsEnum termsEnum = termVector.iterator();
             PostingsEnum termPostings = null;
+            BytesRef term;
             // go through document terms
-            while ((termsEnum.next()) != null) {
+            while ((term = termsEnum.next()) != null) {
                 termPostings = termsEnum.postings(termPostings, PostingsEnum.ALL);
                 if (termPostings.nextDoc() == DocIdSetIterator.NO_MORE_DOCS) {
                     continue;
                 }
+                termOffsets = ArrayUtil.grow(termOffsets, termCount + 1);
+                termLengths = ArrayUtil.grow(termLengths, termCount + 1);
+                termOffsets[termCount] = termBytes.length();
+                termLengths[termCount] = term.length;
+                termBytes.append(term);
+
                 // for each term, go through its postings
-                for (int i = 0; i < termPostings.freq(); i++) {
-                    int tokenPosition = termPostings.nextPosition(); // nextPosition needs to be called first
-                    int charStart = termPostings.startOffset();
-                    int charEnd = termPostings.endOffset();
-                    String analyzedTermStr = termsEnum.term().utf8ToString();
-                    String originalTermStr = fieldValue.substring(charStart, charEnd);
-
-                    Span span = new Span(attributeName, charStart, charEnd, analyzedTermStr, originalTermStr,
-                            tokenPosition);
-                    payloadSpanList.add(span);
+                int freq = termPostings.freq();
+                tokenAttributes = ArrayUtil.grow(tokenAttributes, tokenCount + freq);
+                tokenTerms = ArrayUtil.grow(tokenTerms, tokenCount + freq);
+                tokenPositions = ArrayUtil.grow(tokenPositions, tokenCount + freq);
+                tokenStarts = ArrayUtil.grow(tokenStarts, tokenCount + freq);
+                tokenEnds = ArrayUtil.grow(tokenEnds, tokenCount + freq);
+                for (int i = 0; i < freq; i++) {
+                    tokenAttributes[tokenCount] = attributeIndex;
+                    tokenTerms[tokenCount] = termCount;
+                    tokenPositions[tokenCount] = termPostings.nextPosition(); // nextPosition needs to be called first
+                    tokenStarts[tokenCount] = termPostings.startOffset();
+                    tokenEnds[tokenCount] = termPostings.endOffset();
+                    tokenCount++;
                 }
+                termCount++;
             }
         }
 
-        return payloadSpanList;
+        return new CompactPayload(Arrays.copyOf(termBytes.bytes(), termBytes.length()),
+                Arrays.copyOf(termOffsets, termCount), Arrays.copyOf(termLengths, termCount),
+                Arrays.copyOf(tokenAttributes, tokenCount), Arrays.copyOf(tokenTerms, tokenCount),
+                Arrays.copyOf(tokenPositions, tokenCount), Arrays.copyOf(tokenStarts, tokenCount),
+                Arrays.copyOf(tokenEnds, tokenCount), textAttributeNames, textFields);
+    }
+    
+    /*
+     * Gets the first docID of a partition, which is also the end docID (exclusive) of the previous partition.
+     */
+    private static int getPartitionBoundary(int maxDoc, int partitionIndex, int partitionCount) {
+        return (int) ((long) maxDoc * partitionIndex / partitionCount);
+    }
+    
+    /**
+     * Restricts this DataReader to read only one partition of the index.
+     * It must be called before the DataReader is opened.
+     * 
+     * @param partitionIndex, the index of the partition to read, from 0 to partitionCount - 1
+     * @param partitionCount, the total number of partitions
+     * @throws StorageException
+     */
+    public void setPartition(int partitionIndex, int partitionCount) throws StorageException {
+        if (cursor != CLOSED) {
+            throw new StorageException("the partition can't be changed after the DataReader is opened");
+        }
+        if (partitionCount < 1 || partitionIndex < 0 || partitionIndex >= partitionCount) {
+            throw new StorageException(String.format("invalid partition %d of %d", partitionIndex, partitionCount));
+        }
+        this.partitionIndex = partitionIndex;
+        this.partitionCount = partitionCount;
+    }
+    
+    public int getPartitionIndex() {
+        return this.partitionIndex;
+    }
+    
+    public int getPartitionCount() {
+        return this.partitionCount;
+    }
+    
+    /**
+     * Restricts this DataReader to read only some attributes of the table, the attribute names are case insensitive.
+     * The output schema only contains these attributes (and the payload if it's added), in the order of the table schema.
+     * It must be called before the DataReader is opened.
+     * 
+     * @param attributeNames, the attributes to read, null to read all the attributes
+     * @throws StorageException
+     */
+    public void setProjectedAttributes(Collection<String> attributeNames) throws StorageException {
+        if (cursor != CLOSED) {
+            throw new StorageException("the projected attributes can't be changed after the DataReader is opened");
+        }
+        if (attributeNames == null) {
+            this.projectedAttributeNames = null;
+        } else {
+            this.projectedAttributeNames = attributeNames.stream().map(name -> name.toLowerCase())
+                    .collect(Collectors.toSet());
+        }
+    }
+    
+    /**
+     * Gets the names of the projected attributes in lower case, null if all the attributes are read.
+     */
+    public Set<String> getProjectedAttributes() {
+        return this.projectedAttributeNames;
+    }
+    
+    /**
+     * Sets whether the values of the TEXT fields are loaded lazily, when they are read for the first time.
+     * It must be called before the DataReader is opened.
+     * 
+     * @param lateMaterialization
+     * @throws StorageException
+     */
+    public void setLateMaterialization(boolean lateMaterialization) throws StorageException {
+        if (cursor != CLOSED) {
+            throw new StorageException("the late materialization can't be changed after the DataReader is opened");
+        }
+        this.lateMaterialization = lateMaterialization;
+    }
+    
+    public boolean isLateMaterialization() {
+        return this.lateMaterialization;
+    }
+    
+    /**
+     * Starts reading after a tuple returned by a previous read of the same query, 
+     *   the tuples are returned in index order, so the tuples before it (and itself) are skipped without being read.
+     * It's the cursor to get the next page of the results, instead of skipping the tuples of the previous pages by an offset.
+     * As Lucene's searchAfter, the order is only stable if the index is not changed between the reads.
+     * It must be called before the DataReader is opened.
+     * 
+     * @param idField, the _id of the last tuple of the previous page, null to start from the beginning
+     * @throws StorageException
+     */
+    public void setSearchAfter(IDField idField) throws StorageException {
+        if (cursor != CLOSED) {
+            throw new StorageException("the search after cursor can't be changed after the DataReader is opened");
+        }
+        this.searchAfterID = idField;
+    }
+    
+    public IDField getSearchAfter() {
+        return this.searchAfterID;
     }
     
     public boolean isPayloadAdded() {
@@ -3,11 +3,15 @@ package edu.uci.ics.textdb.storage;
 import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.Term;
@@ -25,6 +29,7 @@ import edu.uci.ics.textdb.api.schema.AttributeType;
 import edu.uci.ics.textdb.api.schema.Schema;
 import edu.uci.ics.textdb.api.tuple.Tuple;
 import edu.uci.ics.textdb.api.utils.Utils;
+import edu.uci.ics.textdb.storage.utils.MultiAnalyzer;
 import edu.uci.ics.textdb.storage.utils.StorageUtils;
 
 /**
@@ -44,6 +49,16 @@ import edu.uci.ics.textdb.storage.utils.StorageUtils;
  * Update Operations:
  *   DataWriter can update the tuple, with the tuple's _id remaining the same.
  *   
+ * Precomputed Payload:
+ *   If the table is created with the precomputed payload option, DataWriter also encodes the payload
+ *   (the tokens of the TEXT fields) of every tuple it writes into a binary doc values field,
+ *   so that DataReader doesn't need to rebuild the payload from the term vectors.
+ *   The option is recorded in the commit data of the index, the later DataWriters of the table read it from the index.
+ *   
+ * Multiple Analyzers:
+ *   If the table is created with a multi-analyzer string (see MultiAnalyzer), every TEXT field is also indexed
+ *   into its sub-fields by the other analyzers. The sub-fields are not stored, the value is only stored once.
+ *   
  *   
  * DataWriter for a specific table is only accessible from RelationManager.
  * 
@@ -61,6 +76,8 @@ public class DataWriter {
     private IndexWriter luceneIndexWriter;
     
     private boolean isOpen = false;
+    
+    private boolean payloadPrecomputed;
 
     /*
      * The package-only level constructor is only accessible inside the storage package.
@@ -68,6 +85,13 @@ public class DataWriter {
      *  while upper-level operators can't.
      */
     DataWriter(DataStore dataStore, Analyzer analyzer) {
+        this(dataStore, analyzer, false);
+    }
+    
+    /*
+     * If payloadPrecomputed is false, the payload is still precomputed if the index is created with this option.
+     */
+    DataWriter(DataStore dataStore, Analyzer analyzer, boolean payloadPrecomputed) {
         this.indexDirectory = dataStore.getDataDirectory();
         // change the schema to a schema with _ID field
         this.schema = dataStore.getSchema();
@@ -76,6 +100,7 @@ public class DataWriter {
         }
         this.dataStore = new DataStore(indexDirectory, schema);
         this.analyzer = analyzer;
+        this.payloadPrecomputed = payloadPrecomputed;
     }
     
     public DataStore getDataStore() {
@@ -88,6 +113,15 @@ public class DataWriter {
                 Directory directory = FSDirectory.open(Paths.get(this.indexDirectory));
                 IndexWriterConfig conf = new IndexWriterConfig(analyzer);
                 this.luceneIndexWriter = new IndexWriter(directory, conf);
+                if (! this.payloadPrecomputed) {
+                    this.payloadPrecomputed = Boolean.parseBoolean(
+                            this.luceneIndexWriter.getCommitData().get(PayloadCodec.PRECOMPUTED_PAYLOAD_COMMIT_KEY));
+                }
+                if (this.payloadPrecomputed) {
+                    // the commit data is set again by every writer, so that it's kept by all the commits
+                    this.luceneIndexWriter.setCommitData(Collections.singletonMap(
+                            PayloadCodec.PRECOMPUTED_PAYLOAD_COMMIT_KEY, Boolean.toString(true)));
+                }
                 this.isOpen = true;
             } catch (IOException e) {
                 throw new StorageException(e.getMessage(), e);
@@ -103,6 +137,8 @@ public class DataWriter {
             } catch (IOException e) {
                 throw new StorageException(e.getMessage(), e);
             }
+            // make the committed changes visible to the readers opened after this
+            SearcherManagerPool.getSearcherManagerPool().refresh(this.indexDirectory);
         }
     }
 
@@ -211,18 +247,51 @@ public class DataWriter {
         }
     }
 
+    /**
+     * Gets the number of tuples in the table, including the tuples inserted by this writer which are not committed yet.
+     * The tuples deleted by this writer may still be counted until they are flushed by Lucene.
+     * 
+     * @return the number of tuples
+     * @throws StorageException
+     */
+    public int getNumDocuments() throws StorageException {
+        if (! isOpen) {
+            throw new StorageException(ErrorMessages.OPERATOR_NOT_OPENED);
+        }
+        return this.luceneIndexWriter.numDocs();
+    }
+
+    public boolean isPayloadPrecomputed() {
+        return this.payloadPrecomputed;
+    }
+
     /*
      * Converts a TextDB tuple to a Lucene document
      */
-    private static Document getLuceneDocument(Tuple tuple) {
+    private Document getLuceneDocument(Tuple tuple) throws IOException {
         List<IField> fields = tuple.getFields();
         List<Attribute> attributes = tuple.getSchema().getAttributes();
         Document doc = new Document();
+        List<String> textAttributeNames = new ArrayList<>();
+        List<String> textFieldValues = new ArrayList<>();
         for (int count = 0; count < fields.size(); count++) {
             IField field = fields.get(count);
             Attribute attr = attributes.get(count);
             AttributeType attributeType = attr.getAttributeType();
             doc.add(StorageUtils.getLuceneField(attributeType, attr.getAttributeName(), field.getValue()));
+            if (attributeType == AttributeType.TEXT) {
+                textAttributeNames.add(attr.getAttributeName());
+                textFieldValues.add((String) field.getValue());
+                if (analyzer instanceof MultiAnalyzer) {
+                    for (String subFieldName : ((MultiAnalyzer) analyzer).getSubFieldNames(attr.getAttributeName())) {
+                        doc.add(new TextField(subFieldName, (String) field.getValue(), Store.NO));
+                    }
+                }
+            }
+        }
+        if (payloadPrecomputed) {
+            doc.add(new BinaryDocValuesField(PayloadCodec.PAYLOAD_FIELD, 
+                    PayloadCodec.encode(analyzer, textAttributeNames, textFieldValues)));
         }
         return doc;
     }
@@ -0,0 +1,155 @@
+package edu.uci.ics.textdb.storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.uci.ics.textdb.api.constants.SchemaConstants;
+import edu.uci.ics.textdb.api.exception.DataFlowException;
+import edu.uci.ics.textdb.api.field.IField;
+import edu.uci.ics.textdb.api.schema.Attribute;
+import edu.uci.ics.textdb.api.schema.AttributeType;
+import edu.uci.ics.textdb.api.span.Span;
+import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.storage.utils.AnalyzerRegistry;
+
+/**
+ * PayloadCache keeps the payloads generated for the tuples of one query plan,
+ *   so that the operators which generate the payload of the same tuple with the same analyzer
+ *   (for example two matchers after a Join or a Projection, which drops the payload) only tokenize it once.
+ * A cache is created by the LogicalPlan for the operators of a plan which need it, it's not shared by plans.
+ *
+ * A payload is keyed by the _ID of the tuple and the analyzer string (see LuceneAnalyzerConstants),
+ *   which determines the configuration of the analyzer, and the payload is generated by the shared analyzer
+ *   of the analyzer string (see AnalyzerRegistry).
+ *   A cached payload is only returned if the TEXT attributes and fields of the tuple are the same as the cached ones,
+ *   so a tuple whose fields are changed by an operator (but keeps its _ID) is tokenized again.
+ *   The payload of a tuple without _ID is not cached.
+ *
+ * The cached payloads are never read, each call gets its own copy of the payload (see CompactPayload.copy()),
+ *   so the operators of a plan can use the cache from different threads.
+ *
+ * The cache is bounded by the number of payloads, the least recently used payloads are removed first.
+ *
+ */
+public class PayloadCache {
+
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    // a PayloadGenerator is not thread-safe, each thread generates the payloads with its own generator
+    private static final ThreadLocal<PayloadGenerator> payloadGenerator = ThreadLocal.withInitial(PayloadGenerator::new);
+
+    private final int maxSize;
+
+    // the payloads recently used, by the _ID of the tuple and the analyzer string, in the access order
+    private final LinkedHashMap<String, CachedPayload> payloadMap;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    public PayloadCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public PayloadCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.payloadMap = new LinkedHashMap<String, CachedPayload>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedPayload> eldest) {
+                return size() > PayloadCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Gets the payload of the TEXT fields of a tuple, generates it if it's not cached.
+     *
+     * @param tuple
+     * @param luceneAnalyzerString
+     * @return the payload, a CompactPayload owned by the caller, an empty list if the fields can't be analyzed
+     * @throws DataFlowException, if the analyzer string is invalid
+     */
+    public List<Span> getPayload(Tuple tuple, String luceneAnalyzerString) throws DataFlowException {
+        List<String> textAttributeNames = new ArrayList<>();
+        List<IField> textFields = new ArrayList<>();
+        for (Attribute attribute : tuple.getSchema().getAttributes()) {
+            if (attribute.getAttributeType() == AttributeType.TEXT) {
+                textAttributeNames.add(attribute.getAttributeName());
+                textFields.add(tuple.getField(attribute.getAttributeName()));
+            }
+        }
+
+        if (!tuple.getSchema().containsField(SchemaConstants._ID)) {
+            missCount.incrementAndGet();
+            return generatePayload(textAttributeNames, textFields, luceneAnalyzerString);
+        }
+
+        String key = tuple.getField(SchemaConstants._ID).getValue().toString() + "|" + luceneAnalyzerString;
+        synchronized (this) {
+            CachedPayload cachedPayload = payloadMap.get(key);
+            if (cachedPayload != null && cachedPayload.attributeNames.equals(textAttributeNames)
+                    && cachedPayload.fields.equals(textFields)) {
+                hitCount.incrementAndGet();
+                return cachedPayload.payload.copy();
+            }
+        }
+
+        missCount.incrementAndGet();
+        List<Span> payload = generatePayload(textAttributeNames, textFields, luceneAnalyzerString);
+        if (payload instanceof CompactPayload) {
+            CompactPayload compactPayload = (CompactPayload) payload;
+            synchronized (this) {
+                payloadMap.put(key, new CachedPayload(textAttributeNames, textFields, compactPayload.copy()));
+            }
+        }
+        return payload;
+    }
+
+    private static List<Span> generatePayload(List<String> attributeNames, List<IField> fields,
+            String luceneAnalyzerString) throws DataFlowException {
+        try {
+            return payloadGenerator.get().generate(AnalyzerRegistry.getAnalyzer(luceneAnalyzerString),
+                    attributeNames, fields);
+        } catch (IOException e) {
+            return new ArrayList<>(); // return empty payload
+        }
+    }
+
+    public synchronized void clear() {
+        payloadMap.clear();
+    }
+
+    public synchronized int size() {
+        return payloadMap.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    private static class CachedPayload {
+        private final List<String> attributeNames;
+        private final List<IField> fields;
+        private final CompactPayload payload;
+
+        private CachedPayload(List<String> attributeNames, List<IField> fields, CompactPayload payload) {
+            this.attributeNames = attributeNames;
+            this.fields = fields;
+            this.payload = payload;
+        }
+    }
+
+}
@@ -0,0 +1,162 @@
+package edu.uci.ics.textdb.storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.store.ByteArrayDataOutput;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * PayloadCodec encodes the payload of a document when the document is written,
+ *   so that the DataReader doesn't need to rebuild the payload from the term vectors every time the document is read.
+ *
+ * The encoded payload is stored in a binary doc values field of the document, and decoded by CompactPayload.
+ * The tokens of each TEXT attribute are in the same order as the term vector of the attribute
+ *   (sorted by term, then by position), so the decoded payload is the same as the one built from the term vectors.
+ *
+ * The format of the encoded payload is:
+ *   format version (byte), total number of tokens (vint),
+ *   number of distinct terms (vint), followed by the terms in UTF-8 byte order (vint length, bytes),
+ *   then for each TEXT attribute in the schema order, the number of tokens of the attribute (vint), followed by the tokens.
+ * Each token is encoded as 4 vints:
+ *   term ordinal (delta to the previous token of the attribute),
+ *   position and start offset (delta to the previous token if it has the same term, otherwise the absolute value),
+ *   length (end offset - start offset).
+ *
+ */
+class PayloadCodec {
+
+    // the binary doc values field storing the encoded payload
+    static final String PAYLOAD_FIELD = "_payload";
+
+    // the key in the commit data of an index, indicating that the payload is encoded when the documents are written
+    static final String PRECOMPUTED_PAYLOAD_COMMIT_KEY = "textdb.precomputedPayload";
+
+    static final byte FORMAT_VERSION = 1;
+
+    // the maximum length of a vint
+    private static final int MAX_VINT_LENGTH = 5;
+
+    private PayloadCodec() {
+    }
+
+    /*
+     * A token of a TEXT attribute produced by the analyzer.
+     */
+    private static class Token {
+        private final BytesRef term;
+        private final int position;
+        private final int start;
+        private final int end;
+
+        private Token(BytesRef term, int position, int start, int end) {
+            this.term = term;
+            this.position = position;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Encodes the payload of the TEXT attributes of a document.
+     *
+     * @param analyzer, the analyzer of the table, the same one used to index the attributes
+     * @param attributeNames, the names of the TEXT attributes, in the schema order
+     * @param fieldValues, the values of the TEXT attributes
+     * @return the encoded payload
+     * @throws IOException
+     */
+    static BytesRef encode(Analyzer analyzer, List<String> attributeNames, List<String> fieldValues) throws IOException {
+        List<List<Token>> attributeTokens = new ArrayList<>();
+        TreeSet<BytesRef> termSet = new TreeSet<>();
+        int tokenCount = 0;
+        int termBytesLength = 0;
+
+        for (int i = 0; i < attributeNames.size(); i++) {
+            List<Token> tokens = analyze(analyzer, attributeNames.get(i), fieldValues.get(i));
+            for (Token token : tokens) {
+                if (termSet.add(token.term)) {
+                    termBytesLength += token.term.length;
+                }
+            }
+            // the same order as the term vector, the sort is stable for the tokens at the same position
+            tokens.sort((token1, token2) -> {
+                int termComparison = token1.term.compareTo(token2.term);
+                return termComparison != 0 ? termComparison : Integer.compare(token1.position, token2.position);
+            });
+            attributeTokens.add(tokens);
+            tokenCount += tokens.size();
+        }
+
+        Map<BytesRef, Integer> termOrdinals = new HashMap<>();
+        int maxLength = 1 + MAX_VINT_LENGTH * 2 + termSet.size() * MAX_VINT_LENGTH + termBytesLength
+                + attributeNames.size() * MAX_VINT_LENGTH + tokenCount * MAX_VINT_LENGTH * 4;
+        byte[] bytes = new byte[maxLength];
+        ByteArrayDataOutput output = new ByteArrayDataOutput(bytes);
+
+        output.writeByte(FORMAT_VERSION);
+        output.writeVInt(tokenCount);
+        output.writeVInt(termSet.size());
+        for (BytesRef term : termSet) {
+            termOrdinals.put(term, termOrdinals.size());
+            output.writeVInt(term.length);
+            output.writeBytes(term.bytes, term.offset, term.length);
+        }
+
+        for (List<Token> tokens : attributeTokens) {
+            output.writeVInt(tokens.size());
+            int previousOrdinal = 0;
+            int previousPosition = 0;
+            int previousStart = 0;
+            for (Token token : tokens) {
+                int ordinal = termOrdinals.get(token.term);
+                if (ordinal != previousOrdinal) {
+                    previousPosition = 0;
+                    previousStart = 0;
+                }
+                output.writeVInt(ordinal - previousOrdinal);
+                output.writeVInt(token.position - previousPosition);
+                output.writeVInt(token.start - previousStart);
+                output.writeVInt(token.end - token.start);
+                previousOrdinal = ordinal;
+                previousPosition = token.position;
+                previousStart = token.start;
+            }
+        }
+
+        return new BytesRef(bytes, 0, output.getPosition());
+    }
+
+    /*
+     * Analyzes a field value in the same way as IndexWriter does,
+     *   the positions start from 0 and are increased by the position increments of the tokens.
+     */
+    private static List<Token> analyze(Analyzer analyzer, String attributeName, String fieldValue) throws IOException {
+        List<Token> tokens = new ArrayList<>();
+        try (TokenStream tokenStream = analyzer.tokenStream(attributeName, fieldValue)) {
+            CharTermAttribute termAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+            OffsetAttribute offsetAttribute = tokenStream.addAttribute(OffsetAttribute.class);
+            PositionIncrementAttribute positionIncrementAttribute = tokenStream.addAttribute(PositionIncrementAttribute.class);
+
+            tokenStream.reset();
+            int position = -1;
+            while (tokenStream.incrementToken()) {
+                position += positionIncrementAttribute.getPositionIncrement();
+                tokens.add(new Token(new BytesRef(termAttribute), position,
+                        offsetAttribute.startOffset(), offsetAttribute.endOffset()));
+            }
+            tokenStream.end();
+        }
+        return tokens;
+    }
+
+}
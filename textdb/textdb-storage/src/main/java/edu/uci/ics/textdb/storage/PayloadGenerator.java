@@ -0,0 +1,132 @@
+package edu.uci.ics.textdb.storage;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TermToBytesRefAttribute;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefHash;
+
+import edu.uci.ics.textdb.api.field.IField;
+
+/**
+ * PayloadGenerator generates the payload of a tuple by analyzing its TEXT fields,
+ *   for the operators whose input doesn't have the payload.
+ *
+ * The payload is a CompactPayload: the tokens are kept in int arrays (attribute, term, position, offsets),
+ *   and the distinct terms in a dictionary of UTF-8 bytes, a Span object and a term string
+ *   are only created when a token is accessed. The tokens are in the order produced by the analyzer.
+ *
+ * The generator reuses its buffers and its term dictionary for every tuple,
+ *   and the analyzer reuses its TokenStream and the attribute buffers of the TokenStream,
+ *   so analyzing a token doesn't allocate any object, only the arrays of the result are allocated for each tuple.
+ *
+ * A PayloadGenerator is not thread-safe, each thread must use its own generator.
+ *
+ */
+public class PayloadGenerator {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final BytesRefHash termDictionary = new BytesRefHash();
+    private final BytesRef term = new BytesRef();
+
+    private int tokenCount;
+    private int[] tokenAttributes = new int[INITIAL_CAPACITY];
+    private int[] tokenTerms = new int[INITIAL_CAPACITY];
+    private int[] tokenPositions = new int[INITIAL_CAPACITY];
+    private int[] tokenStarts = new int[INITIAL_CAPACITY];
+    private int[] tokenEnds = new int[INITIAL_CAPACITY];
+
+    /**
+     * Generates the payload of the fields.
+     *
+     * @param analyzer, the analyzer used to tokenize the fields
+     * @param attributeNames, the names of the TEXT attributes
+     * @param fields, the fields of the TEXT attributes
+     * @return the payload, a list of spans
+     * @throws IOException
+     */
+    public CompactPayload generate(Analyzer analyzer, List<String> attributeNames, List<IField> fields) throws IOException {
+        tokenCount = 0;
+        if (termDictionary.size() > 0) {
+            termDictionary.clear();
+            termDictionary.reinit();
+        }
+
+        for (int attributeIndex = 0; attributeIndex < attributeNames.size(); attributeIndex++) {
+            analyze(analyzer, attributeIndex, attributeNames.get(attributeIndex),
+                    fields.get(attributeIndex).getValue().toString());
+        }
+
+        // the dictionary of the terms, in the order of their ordinals
+        int termCount = termDictionary.size();
+        int[] termOffsets = new int[termCount];
+        int[] termLengths = new int[termCount];
+        int termBytesLength = 0;
+        for (int i = 0; i < termCount; i++) {
+            termDictionary.get(i, term);
+            termOffsets[i] = termBytesLength;
+            termLengths[i] = term.length;
+            termBytesLength += term.length;
+        }
+        byte[] termBytes = new byte[termBytesLength];
+        for (int i = 0; i < termCount; i++) {
+            termDictionary.get(i, term);
+            System.arraycopy(term.bytes, term.offset, termBytes, termOffsets[i], term.length);
+        }
+
+        return new CompactPayload(termBytes, termOffsets, termLengths,
+                Arrays.copyOf(tokenAttributes, tokenCount), Arrays.copyOf(tokenTerms, tokenCount),
+                Arrays.copyOf(tokenPositions, tokenCount), Arrays.copyOf(tokenStarts, tokenCount),
+                Arrays.copyOf(tokenEnds, tokenCount), attributeNames, fields);
+    }
+
+    /*
+     * Analyzes a field value, the positions start from 0 and are increased by the position increments of the tokens.
+     */
+    private void analyze(Analyzer analyzer, int attributeIndex, String attributeName, String fieldValue) throws IOException {
+        try (TokenStream tokenStream = analyzer.tokenStream(attributeName, fieldValue)) {
+            TermToBytesRefAttribute termAttribute = tokenStream.addAttribute(TermToBytesRefAttribute.class);
+            OffsetAttribute offsetAttribute = tokenStream.addAttribute(OffsetAttribute.class);
+            PositionIncrementAttribute positionIncrementAttribute = tokenStream.addAttribute(PositionIncrementAttribute.class);
+
+            tokenStream.reset();
+            int position = -1;
+            while (tokenStream.incrementToken()) {
+                position += positionIncrementAttribute.getPositionIncrement();
+                int termOrdinal = termDictionary.add(termAttribute.getBytesRef());
+                if (termOrdinal < 0) {
+                    // the term is already in the dictionary
+                    termOrdinal = -termOrdinal - 1;
+                }
+                addToken(attributeIndex, termOrdinal, position, offsetAttribute.startOffset(), offsetAttribute.endOffset());
+            }
+            tokenStream.end();
+        }
+    }
+
+    private void addToken(int attributeIndex, int termOrdinal, int position, int start, int end) {
+        if (tokenCount == tokenAttributes.length) {
+            int newCapacity = ArrayUtil.oversize(tokenCount + 1, Integer.BYTES);
+            tokenAttributes = Arrays.copyOf(tokenAttributes, newCapacity);
+            tokenTerms = Arrays.copyOf(tokenTerms, newCapacity);
+            tokenPositions = Arrays.copyOf(tokenPositions, newCapacity);
+            tokenStarts = Arrays.copyOf(tokenStarts, newCapacity);
+            tokenEnds = Arrays.copyOf(tokenEnds, newCapacity);
+        }
+        tokenAttributes[tokenCount] = attributeIndex;
+        tokenTerms[tokenCount] = termOrdinal;
+        tokenPositions[tokenCount] = position;
+        tokenStarts[tokenCount] = start;
+        tokenEnds[tokenCount] = end;
+        tokenCount++;
+    }
+
+}
@@ -4,6 +4,8 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -16,19 +18,24 @@ import edu.uci.ics.textdb.api.constants.SchemaConstants;
 import edu.uci.ics.textdb.api.exception.DataFlowException;
 import edu.uci.ics.textdb.api.exception.StorageException;
 import edu.uci.ics.textdb.api.field.IDField;
-import edu.uci.ics.textdb.api.field.IField;
 import edu.uci.ics.textdb.api.schema.Attribute;
 import edu.uci.ics.textdb.api.schema.AttributeType;
 import edu.uci.ics.textdb.api.schema.Schema;
 import edu.uci.ics.textdb.api.tuple.Tuple;
 import edu.uci.ics.textdb.api.utils.Utils;
 import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
+import edu.uci.ics.textdb.storage.utils.MultiAnalyzer;
 import edu.uci.ics.textdb.storage.utils.StorageUtils;
 
 public class RelationManager {
     
     private static volatile RelationManager singletonRelationManager = null;
     
+    // in-memory cache of the catalog information of the tables, the key is the table name in lower case
+    private final ConcurrentHashMap<String, TableCatalogEntry> tableCatalogCache = new ConcurrentHashMap<>();
+    // the version of the catalog, it's increased every time a table is created or deleted
+    private final AtomicLong catalogVersion = new AtomicLong();
+    
     private RelationManager() throws StorageException {
         if (! checkCatalogExistence()) {
             initializeCatalog();
@@ -54,7 +61,7 @@ public class RelationManager {
      */
     public boolean checkTableExistence(String tableName) {
         try {
-            return getTableCatalogTuple(tableName) != null;
+            return getTableCatalogEntry(tableName) != null;
         } catch (StorageException e) {
             // TODO: change it to textdb runtime exception
             throw new RuntimeException(e);
@@ -65,6 +72,10 @@ public class RelationManager {
      * Creates a new table. 
      *   Table name must be unique (case insensitive).
      *   LuceneAnalyzer must be a valid analyzer string.
+     *   
+     * A multi-analyzer string, such as "standard+3-gram", indexes every TEXT attribute with several analyzers
+     *   from the same stored value (see MultiAnalyzer), so that one table serves both
+     *   the keyword queries and the gram-based regex queries.
      * 
      * The "_id" attribute will be added to the table schema.
      * System automatically generates a unique ID for each tuple inserted to a table,
@@ -78,6 +89,25 @@ public class RelationManager {
      */
     public void createTable(String tableName, String indexDirectory, Schema schema, String luceneAnalyzerString)
             throws StorageException {
+        createTable(tableName, indexDirectory, schema, luceneAnalyzerString, false);
+    }
+    
+    /**
+     * Creates a new table, with the option to precompute the payload.
+     * 
+     * If the payload is precomputed, the tokens of the TEXT fields of a tuple are encoded when the tuple is written, 
+     *   and the DataReaders decode them instead of rebuilding the payload from the term vectors.
+     * It makes reading the tuples with the payload (such as a scan) faster, at the cost of a slower write and a larger index.
+     * 
+     * @param tableName, the name of the table, must be unique, case is not sensitive
+     * @param indexDirectory, the directory to store the index and data, must not duplicate with other tables' directories
+     * @param schema, the schema of the table
+     * @param luceneAnalyzerString, the string representing the lucene analyzer used
+     * @param payloadPrecomputed, whether to precompute the payload when the tuples are written
+     * @throws StorageException
+     */
+    public void createTable(String tableName, String indexDirectory, Schema schema, String luceneAnalyzerString,
+            boolean payloadPrecomputed) throws StorageException {
         // table should not exist
         if (checkTableExistence(tableName)) {
             throw new StorageException(String.format("Table %s already exists.", tableName));
@@ -116,17 +146,27 @@ public class RelationManager {
         } catch (DataFlowException e) {
             throw new StorageException("Lucene Analyzer String is not valid.");
         }
+        if (luceneAnalyzer instanceof MultiAnalyzer) {
+            for (String attributeName : ((MultiAnalyzer) luceneAnalyzer).getSpecifiedAttributeNames()) {
+                if (! schema.containsField(attributeName) 
+                        || schema.getAttribute(attributeName).getAttributeType() != AttributeType.TEXT) {
+                    throw new StorageException(String.format(
+                            "Lucene Analyzer String is not valid, %s is not a TEXT attribute.", attributeName));
+                }
+            }
+        }
         
         // create the directory and clear all data in the index directory
         Schema tableSchema = Utils.getSchemaWithID(schema);
         DataStore tableDataStore = new DataStore(indexDirectory, tableSchema);
-        DataWriter dataWriter = new DataWriter(tableDataStore, luceneAnalyzer);
+        DataWriter dataWriter = new DataWriter(tableDataStore, luceneAnalyzer, payloadPrecomputed);
         dataWriter.open();
         dataWriter.clearData();
         dataWriter.close();
         
         // write table info to catalog
         writeTableInfoToCatalog(tableName, indexDirectory, schema, luceneAnalyzerString);
+        invalidateCatalogCache(tableName);
 
     }
 
@@ -153,7 +193,9 @@ public class RelationManager {
         dataWriter.open();
         dataWriter.clearData();
         dataWriter.close();
-        StorageUtils.deleteDirectory(getTableDirectory(tableName));
+        String tableDirectory = getTableDirectory(tableName);
+        SearcherManagerPool.getSearcherManagerPool().remove(tableDirectory);
+        StorageUtils.deleteDirectory(tableDirectory);
 
         // generate a query for the table name
         Query catalogTableNameQuery = new TermQuery(new Term(CatalogConstants.TABLE_NAME, tableName));
@@ -172,6 +214,7 @@ public class RelationManager {
         schemaCatalogWriter.deleteTuple(catalogTableNameQuery);
         schemaCatalogWriter.close();
         
+        invalidateCatalogCache(tableName);
     }
     
     /**
@@ -248,17 +291,14 @@ public class RelationManager {
      * @throws StorageException
      */
     public String getTableDirectory(String tableName) throws StorageException {
-        // get the tuples with tableName from the table catalog
-        Tuple tableCatalogTuple = getTableCatalogTuple(tableName);
+        TableCatalogEntry tableCatalogEntry = getTableCatalogEntry(tableName);
         
-        // if the tuple is not found, then the table name is not found
-        if (tableCatalogTuple == null) {
+        // if the entry is not found, then the table name is not found
+        if (tableCatalogEntry == null) {
             throw new StorageException(String.format("The directory for table %s is not found.", tableName));
         }
 
-        // get the directory field
-        IField directoryField = tableCatalogTuple.getField(CatalogConstants.TABLE_DIRECTORY);
-        return directoryField.getValue().toString();
+        return tableCatalogEntry.directory;
     }
 
     /**
@@ -269,25 +309,14 @@ public class RelationManager {
      * @throws StorageException
      */
     public Schema getTableSchema(String tableName) throws StorageException {
-        // get the tuples with tableName from the schema catalog
-        List<Tuple> tableAttributeTuples = getSchemaCatalogTuples(tableName);
+        TableCatalogEntry tableCatalogEntry = getTableCatalogEntry(tableName);
 
-        // if the list is empty, then the schema is not found
-        if (tableAttributeTuples.isEmpty()) {
+        // if the entry or the schema is not found, then the schema is not found
+        if (tableCatalogEntry == null || tableCatalogEntry.schema == null) {
             throw new StorageException(String.format("The schema of table %s is not found.", tableName));
         }
         
-        // convert the unordered list of tuples to an order list of attributes
-        List<Attribute> tableSchemaData = tableAttributeTuples.stream()
-                // sort the tuples based on the attributePosition field.
-                .sorted((tuple1, tuple2) -> Integer.compare((int) tuple1.getField(CatalogConstants.ATTR_POSITION).getValue(), 
-                        (int) tuple2.getField(CatalogConstants.ATTR_POSITION).getValue()))
-                // map one tuple to one attribute
-                .map(tuple -> new Attribute(tuple.getField(CatalogConstants.ATTR_NAME).getValue().toString(),
-                        convertAttributeType(tuple.getField(CatalogConstants.ATTR_TYPE).getValue().toString())))
-                .collect(Collectors.toList());
-        
-        return new Schema(tableSchemaData.stream().toArray(Attribute[]::new));
+        return tableCatalogEntry.schema;
     }
     
     /**
@@ -298,40 +327,45 @@ public class RelationManager {
      * @throws StorageException
      */
     public String getTableAnalyzerString(String tableName) throws StorageException {
-        // get the tuples with tableName from the table catalog
-        Tuple tableCatalogTuple = getTableCatalogTuple(tableName);
+        TableCatalogEntry tableCatalogEntry = getTableCatalogEntry(tableName);
         
-        // if the tuple is not found, then the table name is not found
-        if (tableCatalogTuple == null) {
+        // if the entry is not found, then the table name is not found
+        if (tableCatalogEntry == null) {
             throw new StorageException(String.format("The analyzer for table %s is not found.", tableName));
         }
         
-        // get the lucene analyzer string
-        IField analyzerField = tableCatalogTuple.getField(CatalogConstants.TABLE_LUCENE_ANALYZER);
-        String analyzerString = analyzerField.getValue().toString();
-        
-        return analyzerString;
+        return tableCatalogEntry.analyzerString;
     }
 
     /**
      * Gets the Lucene analyzer of a table.
+     * 
+     * The analyzer is created once and shared by all the callers (Lucene analyzers are thread-safe),
+     *   so it must not be closed by the caller.
      *   
      * @param tableName, the name of the table, case insensitive
      * @return
      * @throws StorageException
      */
     public Analyzer getTableAnalyzer(String tableName) throws StorageException {
-        String analyzerString = getTableAnalyzerString(tableName);
+        TableCatalogEntry tableCatalogEntry = getTableCatalogEntry(tableName);
         
-        // convert a lucene analyzer string to an analyzer object
-        Analyzer luceneAnalyzer = null;
-        try {
-            luceneAnalyzer = LuceneAnalyzerConstants.getLuceneAnalyzer(analyzerString);
-        } catch (DataFlowException e) {
-            throw new StorageException(e);
+        // if the entry is not found, then the table name is not found
+        if (tableCatalogEntry == null) {
+            throw new StorageException(String.format("The analyzer for table %s is not found.", tableName));
         }
         
-        return luceneAnalyzer;
+        return tableCatalogEntry.getAnalyzer();
+    }
+    
+    /**
+     * Gets the pool of the shared index searchers used by the DataReaders,
+     *   which also provides the metrics of the pool.
+     * 
+     * @return
+     */
+    public SearcherManagerPool getSearcherManagerPool() {
+        return SearcherManagerPool.getSearcherManagerPool();
     }
     
     /*
@@ -361,6 +395,99 @@ public class RelationManager {
         dataWriter.close();
     }
     
+    /*
+     * Gets the catalog information of a table from the cache,
+     *   it reads the table catalog and schema catalog if the table is not in the cache yet.
+     * Returns null if the table doesn't exist.
+     */
+    private TableCatalogEntry getTableCatalogEntry(String tableName) throws StorageException {
+        tableName = tableName.toLowerCase();
+        
+        TableCatalogEntry tableCatalogEntry = tableCatalogCache.get(tableName);
+        if (tableCatalogEntry != null) {
+            return tableCatalogEntry;
+        }
+        
+        long version = catalogVersion.get();
+        
+        Tuple tableCatalogTuple = getTableCatalogTuple(tableName);
+        if (tableCatalogTuple == null) {
+            return null;
+        }
+        String tableDirectory = tableCatalogTuple.getField(CatalogConstants.TABLE_DIRECTORY).getValue().toString();
+        String analyzerString = tableCatalogTuple.getField(CatalogConstants.TABLE_LUCENE_ANALYZER).getValue().toString();
+        
+        // convert the unordered list of tuples to an order list of attributes
+        List<Tuple> tableAttributeTuples = getSchemaCatalogTuples(tableName);
+        Schema tableSchema = null;
+        if (! tableAttributeTuples.isEmpty()) {
+            List<Attribute> tableSchemaData = tableAttributeTuples.stream()
+                    // sort the tuples based on the attributePosition field.
+                    .sorted((tuple1, tuple2) -> Integer.compare((int) tuple1.getField(CatalogConstants.ATTR_POSITION).getValue(), 
+                            (int) tuple2.getField(CatalogConstants.ATTR_POSITION).getValue()))
+                    // map one tuple to one attribute
+                    .map(tuple -> new Attribute(tuple.getField(CatalogConstants.ATTR_NAME).getValue().toString(),
+                            convertAttributeType(tuple.getField(CatalogConstants.ATTR_TYPE).getValue().toString())))
+                    .collect(Collectors.toList());
+            tableSchema = new Schema(tableSchemaData.stream().toArray(Attribute[]::new));
+        }
+        
+        tableCatalogEntry = new TableCatalogEntry(tableDirectory, tableSchema, analyzerString);
+        TableCatalogEntry existingEntry = tableCatalogCache.putIfAbsent(tableName, tableCatalogEntry);
+        if (existingEntry != null) {
+            return existingEntry;
+        }
+        // if the catalog is changed while the entry is being read, the entry might be stale,
+        //   remove it from the cache (but it's still returned, as if the read happened before the change)
+        if (catalogVersion.get() != version) {
+            tableCatalogCache.remove(tableName, tableCatalogEntry);
+        }
+        return tableCatalogEntry;
+    }
+    
+    /*
+     * Removes a table from the catalog cache.
+     * It must be called after the table catalog and schema catalog are changed.
+     */
+    private void invalidateCatalogCache(String tableName) {
+        catalogVersion.incrementAndGet();
+        tableCatalogCache.remove(tableName.toLowerCase());
+    }
+    
+    /*
+     * The cached catalog information of a table.
+     */
+    private static class TableCatalogEntry {
+        private final String directory;
+        // null if the schema is not found in the schema catalog
+        private final Schema schema;
+        private final String analyzerString;
+        // the analyzer is created when it's used for the first time
+        private volatile Analyzer analyzer;
+        
+        private TableCatalogEntry(String directory, Schema schema, String analyzerString) {
+            this.directory = directory;
+            this.schema = schema;
+            this.analyzerString = analyzerString;
+        }
+        
+        private Analyzer getAnalyzer() throws StorageException {
+            if (analyzer == null) {
+                synchronized (this) {
+                    if (analyzer == null) {
+                        // convert a lucene analyzer string to an analyzer object
+                        try {
+                            analyzer = LuceneAnalyzerConstants.getLuceneAnalyzer(analyzerString);
+                        } catch (DataFlowException e) {
+                            throw new StorageException(e);
+                        }
+                    }
+                }
+            }
+            return analyzer;
+        }
+    }
+    
     /*
      * Gets the a tuple of a table from table catalog.
      */
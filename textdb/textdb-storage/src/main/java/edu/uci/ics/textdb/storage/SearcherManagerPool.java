@@ -0,0 +1,215 @@
+package edu.uci.ics.textdb.storage;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.FSDirectory;
+
+import edu.uci.ics.textdb.api.exception.StorageException;
+
+/**
+ * SearcherManagerPool keeps one Lucene SearcherManager for each index directory,
+ *   so that the DataReaders of the same table share one IndexReader
+ *   instead of opening the index from the disk every time.
+ *
+ * A DataReader acquires an IndexSearcher from the pool when it's opened,
+ *   and releases it when it's closed. The IndexReader is reference counted,
+ *   it's only closed after the last searcher using it is released.
+ *
+ * A DataWriter refreshes the SearcherManager of its directory after it commits (closes),
+ *   so that the readers opened after that can see the changes.
+ *
+ * RelationManager removes the SearcherManager of a table when the table is deleted.
+ *
+ * The pool also keeps some metrics: number of open SearcherManagers, number of acquired searchers,
+ *   hit rate (acquires that reused an open SearcherManager), and the latency of the refreshes.
+ *
+ */
+public class SearcherManagerPool {
+
+    private static volatile SearcherManagerPool singletonSearcherManagerPool = null;
+
+    // key: normalized absolute path of an index directory
+    private final ConcurrentHashMap<String, SearcherManager> searcherManagerMap = new ConcurrentHashMap<>();
+
+    private final AtomicLong acquireCount = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicInteger acquiredSearcherCount = new AtomicInteger();
+    private final AtomicLong refreshCount = new AtomicLong();
+    private final AtomicLong refreshTimeNanos = new AtomicLong();
+
+    private SearcherManagerPool() {
+    }
+
+    public static SearcherManagerPool getSearcherManagerPool() {
+        if (singletonSearcherManagerPool == null) {
+            synchronized (SearcherManagerPool.class) {
+                if (singletonSearcherManagerPool == null) {
+                    singletonSearcherManagerPool = new SearcherManagerPool();
+                }
+            }
+        }
+        return singletonSearcherManagerPool;
+    }
+
+    /**
+     * Acquires an IndexSearcher of the index directory.
+     * The searcher must be released by calling release().
+     *
+     * @param indexDirectory
+     * @return
+     * @throws StorageException
+     */
+    IndexSearcher acquire(String indexDirectory) throws StorageException {
+        String key = getKey(indexDirectory);
+        acquireCount.incrementAndGet();
+        try {
+            SearcherManager searcherManager = searcherManagerMap.get(key);
+            if (searcherManager != null) {
+                hitCount.incrementAndGet();
+            }
+            while (true) {
+                if (searcherManager == null) {
+                    searcherManager = openSearcherManager(key);
+                }
+                try {
+                    IndexSearcher indexSearcher = searcherManager.acquire();
+                    acquiredSearcherCount.incrementAndGet();
+                    return indexSearcher;
+                } catch (AlreadyClosedException e) {
+                    // the SearcherManager is removed by another thread, open a new one
+                    searcherManager = null;
+                }
+            }
+        } catch (IOException e) {
+            throw new StorageException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Releases an IndexSearcher acquired from this pool.
+     *
+     * @param indexSearcher
+     * @throws StorageException
+     */
+    void release(IndexSearcher indexSearcher) throws StorageException {
+        try {
+            // this is what SearcherManager.release() does,
+            //   it also works if the SearcherManager is already removed from the pool
+            indexSearcher.getIndexReader().decRef();
+            acquiredSearcherCount.decrementAndGet();
+        } catch (IOException e) {
+            throw new StorageException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Refreshes the SearcherManager of the index directory (if it's open),
+     *   so that the searchers acquired afterwards can see the latest commit.
+     *
+     * @param indexDirectory
+     * @throws StorageException
+     */
+    void refresh(String indexDirectory) throws StorageException {
+        SearcherManager searcherManager = searcherManagerMap.get(getKey(indexDirectory));
+        if (searcherManager == null) {
+            return;
+        }
+        long startTime = System.nanoTime();
+        try {
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            throw new StorageException(e.getMessage(), e);
+        }
+        refreshTimeNanos.addAndGet(System.nanoTime() - startTime);
+        refreshCount.incrementAndGet();
+    }
+
+    /**
+     * Closes and removes the SearcherManager of the index directory.
+     * The searchers that are still acquired stay valid until they are released.
+     *
+     * @param indexDirectory
+     * @throws StorageException
+     */
+    void remove(String indexDirectory) throws StorageException {
+        SearcherManager searcherManager = searcherManagerMap.remove(getKey(indexDirectory));
+        if (searcherManager == null) {
+            return;
+        }
+        try {
+            searcherManager.close();
+        } catch (IOException e) {
+            throw new StorageException(e.getMessage(), e);
+        }
+    }
+
+    /*
+     * Opens a SearcherManager for the directory, or gets the one opened by another thread.
+     */
+    private synchronized SearcherManager openSearcherManager(String key) throws IOException {
+        SearcherManager searcherManager = searcherManagerMap.get(key);
+        if (searcherManager == null) {
+            searcherManager = new SearcherManager(FSDirectory.open(Paths.get(key)), null);
+            searcherManagerMap.put(key, searcherManager);
+        }
+        return searcherManager;
+    }
+
+    /*
+     * Two paths pointing to the same directory should share the same SearcherManager.
+     */
+    private static String getKey(String indexDirectory) {
+        return Paths.get(indexDirectory).toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Gets the number of open SearcherManagers (one for each index directory).
+     */
+    public int getOpenSearcherManagerCount() {
+        return searcherManagerMap.size();
+    }
+
+    /**
+     * Gets the number of searchers that are acquired but not released yet.
+     */
+    public int getAcquiredSearcherCount() {
+        return acquiredSearcherCount.get();
+    }
+
+    public long getAcquireCount() {
+        return acquireCount.get();
+    }
+
+    /**
+     * Gets the number of acquires that reused an open SearcherManager.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public double getHitRate() {
+        long acquires = acquireCount.get();
+        return acquires == 0 ? 0.0 : (double) hitCount.get() / acquires;
+    }
+
+    public long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    public long getTotalRefreshTimeMillis() {
+        return refreshTimeNanos.get() / 1_000_000;
+    }
+
+    public double getAverageRefreshTimeMillis() {
+        long refreshes = refreshCount.get();
+        return refreshes == 0 ? 0.0 : refreshTimeNanos.get() / 1_000_000.0 / refreshes;
+    }
+
+}
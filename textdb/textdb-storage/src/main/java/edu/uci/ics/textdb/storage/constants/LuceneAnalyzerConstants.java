@@ -10,6 +10,7 @@ import org.apache.lucene.analysis.ngram.NGramTokenizerFactory;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 
 import edu.uci.ics.textdb.api.exception.DataFlowException;
+import edu.uci.ics.textdb.storage.utils.MultiAnalyzer;
 
 /**
  * LuceneAnalyzerConstants contains helper functions specifically
@@ -33,18 +34,50 @@ public class LuceneAnalyzerConstants {
         return "smartchinese";
     }
     
+    /**
+     * Gets the string of an analyzer that indexes every TEXT attribute with all the analyzers,
+     *   the first one in the attribute's field, the others in its sub-fields, see MultiAnalyzer.
+     *   For example, multiAnalyzerString(standardAnalyzerString(), nGramAnalyzerString(3)) is "standard+3-gram".
+     * 
+     * @param analyzerStrings
+     * @return
+     */
+    public static String multiAnalyzerString(String... analyzerStrings) {
+        return String.join(MultiAnalyzer.ANALYZER_SEPARATOR, analyzerStrings);
+    }
+    
+    /**
+     * @param luceneAnalyzerString
+     * @return the gram length of a n-gram analyzer string, 0 if it's not a n-gram analyzer string
+     */
+    public static int getNGramLength(String luceneAnalyzerString) {
+        if (luceneAnalyzerString.endsWith("-gram") && ! MultiAnalyzer.isMultiAnalyzerString(luceneAnalyzerString)) {
+            try {
+                return Integer.parseInt(luceneAnalyzerString.substring(0, luceneAnalyzerString.indexOf('-')));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+    
     /**
      * Gets the lucene analyzer based on the string, currently analyzers supported are:
      *   "standard", same as calling standardAnalyzerString().
      *   
      *   "n-gram", n represents the number of grams, for example, "3-gram",
      *     same as calling nGramAnalyzerString(3).
+     *   
+     *   a multi-analyzer string, for example, "standard+3-gram", see MultiAnalyzer.
      * 
      * @param luceneAnalyzerString
      * @return
      * @throws DataFlowException, if the luceneAnalyzerString is invalid
      */
     public static Analyzer getLuceneAnalyzer(String luceneAnalyzerString) throws DataFlowException {
+        if (MultiAnalyzer.isMultiAnalyzerString(luceneAnalyzerString)) {
+            return new MultiAnalyzer(luceneAnalyzerString);
+        }
         if (luceneAnalyzerString.equals("standard")) {
             return LuceneAnalyzerConstants.getStandardAnalyzer();
         }
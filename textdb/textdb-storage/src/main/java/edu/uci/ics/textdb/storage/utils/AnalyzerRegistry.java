@@ -0,0 +1,51 @@
+package edu.uci.ics.textdb.storage.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.lucene.analysis.Analyzer;
+
+import edu.uci.ics.textdb.api.exception.DataFlowException;
+import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
+
+/**
+ * AnalyzerRegistry keeps one Lucene analyzer for each analyzer string,
+ *   so that the operators analyzing the tuples (for example generating their payload)
+ *   don't create a new analyzer, and load its resources such as a dictionary, for every tuple.
+ *
+ * A Lucene analyzer is thread-safe, it keeps the TokenStream it creates for each thread,
+ *   and reuses the TokenStream (and its attribute buffers) for the next call of the same thread.
+ * So a TokenStream of a shared analyzer must always be closed before the next one is created.
+ *
+ * The analyzers of the registry are shared, they must never be closed by the callers.
+ *
+ */
+public class AnalyzerRegistry {
+
+    private static final ConcurrentHashMap<String, Analyzer> analyzerMap = new ConcurrentHashMap<>();
+
+    private AnalyzerRegistry() {
+    }
+
+    /**
+     * Gets the shared analyzer of an analyzer string, see LuceneAnalyzerConstants.getLuceneAnalyzer().
+     *
+     * @param luceneAnalyzerString
+     * @return
+     * @throws DataFlowException, if the luceneAnalyzerString is invalid
+     */
+    public static Analyzer getAnalyzer(String luceneAnalyzerString) throws DataFlowException {
+        Analyzer analyzer = analyzerMap.get(luceneAnalyzerString);
+        if (analyzer != null) {
+            return analyzer;
+        }
+        analyzer = LuceneAnalyzerConstants.getLuceneAnalyzer(luceneAnalyzerString);
+        Analyzer existingAnalyzer = analyzerMap.putIfAbsent(luceneAnalyzerString, analyzer);
+        if (existingAnalyzer != null) {
+            // another thread created it first
+            analyzer.close();
+            return existingAnalyzer;
+        }
+        return analyzer;
+    }
+
+}
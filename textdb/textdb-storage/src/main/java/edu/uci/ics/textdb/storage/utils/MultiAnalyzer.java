@@ -0,0 +1,186 @@
+package edu.uci.ics.textdb.storage.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.DelegatingAnalyzerWrapper;
+
+import edu.uci.ics.textdb.api.exception.DataFlowException;
+import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
+
+/**
+ * MultiAnalyzer indexes a TEXT attribute with more than one analyzer,
+ *   so that one table can serve both the token-based and the gram-based index queries.
+ *
+ * The first analyzer of an attribute indexes the attribute's field itself,
+ *   which is the only field stored and used to build the payload.
+ * Every other analyzer indexes a sub-field named "attributeName.analyzerString", for example "content.3-gram",
+ *   the sub-fields are built from the same value and are not stored.
+ *
+ * A multi-analyzer string is a list of analyzer strings separated by "+",
+ *   followed by optional per-attribute lists, separated by ";", for example:
+ *   "standard+3-gram", both analyzers for all the TEXT attributes;
+ *   "standard;content=standard+3-gram", the standard analyzer for all the TEXT attributes,
+ *     and a 3-gram sub-field for the attribute "content".
+ *
+ */
+public class MultiAnalyzer extends DelegatingAnalyzerWrapper {
+
+    public static final String ANALYZER_SEPARATOR = "+";
+    public static final String ATTRIBUTE_SEPARATOR = ";";
+    public static final String ATTRIBUTE_ASSIGNMENT = "=";
+    public static final String SUB_FIELD_SEPARATOR = ".";
+
+    private final String multiAnalyzerString;
+    private final List<String> defaultAnalyzerStrings;
+    private final Map<String, List<String>> attributeAnalyzerStrings = new HashMap<>();
+    // the analyzers by their analyzer strings
+    private final Map<String, Analyzer> analyzers = new LinkedHashMap<>();
+
+    /**
+     * Creates a MultiAnalyzer from a multi-analyzer string.
+     *
+     * @param multiAnalyzerString
+     * @throws DataFlowException, if the string or one of its analyzer strings is invalid
+     */
+    public MultiAnalyzer(String multiAnalyzerString) throws DataFlowException {
+        super(PER_FIELD_REUSE_STRATEGY);
+        this.multiAnalyzerString = multiAnalyzerString;
+
+        String[] specs = multiAnalyzerString.split(ATTRIBUTE_SEPARATOR, -1);
+        this.defaultAnalyzerStrings = parseAnalyzerStrings(specs[0]);
+        for (int i = 1; i < specs.length; i++) {
+            int assignmentIndex = specs[i].indexOf(ATTRIBUTE_ASSIGNMENT);
+            if (assignmentIndex <= 0) {
+                throw new DataFlowException(multiAnalyzerString + " is not a valid lucene analyzer");
+            }
+            attributeAnalyzerStrings.put(specs[i].substring(0, assignmentIndex).trim(),
+                    parseAnalyzerStrings(specs[i].substring(assignmentIndex + 1)));
+        }
+    }
+
+    private List<String> parseAnalyzerStrings(String analyzerStrings) throws DataFlowException {
+        List<String> analyzerStringList = new ArrayList<>();
+        for (String analyzerString : analyzerStrings.split("\\" + ANALYZER_SEPARATOR, -1)) {
+            analyzerString = analyzerString.trim();
+            if (analyzerStringList.contains(analyzerString) || isMultiAnalyzerString(analyzerString)) {
+                throw new DataFlowException(multiAnalyzerString + " is not a valid lucene analyzer");
+            }
+            if (! analyzers.containsKey(analyzerString)) {
+                analyzers.put(analyzerString, LuceneAnalyzerConstants.getLuceneAnalyzer(analyzerString));
+            }
+            analyzerStringList.add(analyzerString);
+        }
+        return Collections.unmodifiableList(analyzerStringList);
+    }
+
+    /**
+     * @param analyzerString
+     * @return true if the string is a multi-analyzer string (and not a single analyzer string)
+     */
+    public static boolean isMultiAnalyzerString(String analyzerString) {
+        return analyzerString.contains(ANALYZER_SEPARATOR) || analyzerString.contains(ATTRIBUTE_SEPARATOR);
+    }
+
+    /**
+     * Gets the name of the sub-field of an attribute indexed by an analyzer.
+     *
+     * @param attributeName
+     * @param analyzerString
+     * @return
+     */
+    public static String getSubFieldName(String attributeName, String analyzerString) {
+        return attributeName + SUB_FIELD_SEPARATOR + analyzerString;
+    }
+
+    /**
+     * @return the names of the attributes which have their own list of analyzers
+     */
+    public Set<String> getSpecifiedAttributeNames() {
+        return Collections.unmodifiableSet(attributeAnalyzerStrings.keySet());
+    }
+
+    /**
+     * @param attributeName
+     * @return the analyzer strings of the attribute, the first one is the analyzer of the attribute's field
+     */
+    public List<String> getAnalyzerStrings(String attributeName) {
+        return attributeAnalyzerStrings.getOrDefault(attributeName, defaultAnalyzerStrings);
+    }
+
+    /**
+     * @param attributeName
+     * @return the names of the sub-fields of the attribute, in the order of their analyzers
+     */
+    public List<String> getSubFieldNames(String attributeName) {
+        List<String> analyzerStrings = getAnalyzerStrings(attributeName);
+        List<String> subFieldNames = new ArrayList<>();
+        for (String analyzerString : analyzerStrings.subList(1, analyzerStrings.size())) {
+            subFieldNames.add(getSubFieldName(attributeName, analyzerString));
+        }
+        return subFieldNames;
+    }
+
+    /**
+     * Gets the name of the field in which an attribute is indexed by an analyzer,
+     *   the attribute's field itself for its first analyzer, a sub-field for the others.
+     *
+     * @param attributeName
+     * @param analyzerString
+     * @return the field name, null if the attribute is not indexed by the analyzer
+     */
+    public String getIndexFieldName(String attributeName, String analyzerString) {
+        List<String> analyzerStrings = getAnalyzerStrings(attributeName);
+        int analyzerIndex = analyzerStrings.indexOf(analyzerString);
+        if (analyzerIndex < 0) {
+            return null;
+        }
+        return analyzerIndex == 0 ? attributeName : getSubFieldName(attributeName, analyzerString);
+    }
+
+    /**
+     * @param attributeName
+     * @return the first n-gram analyzer string of the attribute, null if the attribute has no n-gram index
+     */
+    public String getNGramAnalyzerString(String attributeName) {
+        for (String analyzerString : getAnalyzerStrings(attributeName)) {
+            if (LuceneAnalyzerConstants.getNGramLength(analyzerString) > 0) {
+                return analyzerString;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    protected Analyzer getWrappedAnalyzer(String fieldName) {
+        int separatorIndex = fieldName.lastIndexOf(SUB_FIELD_SEPARATOR);
+        if (separatorIndex > 0) {
+            String attributeName = fieldName.substring(0, separatorIndex);
+            String analyzerString = fieldName.substring(separatorIndex + 1);
+            if (getAnalyzerStrings(attributeName).indexOf(analyzerString) > 0) {
+                return analyzers.get(analyzerString);
+            }
+        }
+        return analyzers.get(getAnalyzerStrings(fieldName).get(0));
+    }
+
+    @Override
+    public void close() {
+        for (Analyzer analyzer : analyzers.values()) {
+            analyzer.close();
+        }
+        super.close();
+    }
+
+    @Override
+    public String toString() {
+        return multiAnalyzerString;
+    }
+
+}
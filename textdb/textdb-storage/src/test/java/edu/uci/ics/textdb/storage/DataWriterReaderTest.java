@@ -1,7 +1,9 @@
 package edu.uci.ics.textdb.storage;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.junit.AfterClass;
@@ -11,7 +13,14 @@ import org.junit.Test;
 
 import edu.uci.ics.textdb.api.constants.SchemaConstants;
 import edu.uci.ics.textdb.api.constants.TestConstants;
+import edu.uci.ics.textdb.api.exception.StorageException;
+import edu.uci.ics.textdb.api.exception.StorageRuntimeException;
 import edu.uci.ics.textdb.api.exception.TextDBException;
+import edu.uci.ics.textdb.api.field.IDField;
+import edu.uci.ics.textdb.api.field.ListField;
+import edu.uci.ics.textdb.api.field.TextField;
+import edu.uci.ics.textdb.api.schema.Schema;
+import edu.uci.ics.textdb.api.span.Span;
 import edu.uci.ics.textdb.api.tuple.Tuple;
 import edu.uci.ics.textdb.api.utils.Utils;
 import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
@@ -60,6 +69,350 @@ public class DataWriterReaderTest {
         Assert.assertTrue(equals);
     }
 
+    /*
+     * Test that the tuples deleted from a segment are not returned by the reader.
+     */
+    @Test
+    public void testReadAfterDelete() throws Exception {
+        String tableName = "data_writer_reader_test_delete";
+        RelationManager relationManager = RelationManager.getRelationManager();
+        relationManager.deleteTable(tableName);
+        relationManager.createTable(tableName, "../index/test_tables/" + tableName, 
+                TestConstants.SCHEMA_PEOPLE, LuceneAnalyzerConstants.standardAnalyzerString());
+        
+        List<Tuple> sampleTuples = TestConstants.getSamplePeopleTuples();
+        List<IDField> idFields = new ArrayList<>();
+        DataWriter dataWriter = relationManager.getTableDataWriter(tableName);
+        dataWriter.open();
+        for (Tuple tuple : sampleTuples) {
+            idFields.add(dataWriter.insertTuple(tuple));
+        }
+        dataWriter.close();
+        
+        dataWriter.open();
+        dataWriter.deleteTupleByID(idFields.get(0));
+        dataWriter.close();
+        
+        DataReader dataReader = relationManager.getTableDataReader(tableName, new MatchAllDocsQuery());
+        Tuple nextTuple = null;
+        List<Tuple> returnedTuples = new ArrayList<Tuple>();
+        dataReader.open();
+        while ((nextTuple = dataReader.getNextTuple()) != null) {
+            returnedTuples.add(nextTuple);
+        }
+        dataReader.close();
+        
+        relationManager.deleteTable(tableName);
+        
+        boolean equals = containsAllResults(sampleTuples.subList(1, sampleTuples.size()), returnedTuples);
+        Assert.assertTrue(equals);
+    }
+
+    /*
+     * Test that the partitions of a table (with multiple segments) together return every tuple exactly once,
+     *   in the same order as reading the whole table.
+     */
+    @Test
+    public void testReadPartitions() throws Exception {
+        String tableName = "data_writer_reader_test_partition";
+        RelationManager relationManager = RelationManager.getRelationManager();
+        relationManager.deleteTable(tableName);
+        relationManager.createTable(tableName, "../index/test_tables/" + tableName, 
+                TestConstants.SCHEMA_PEOPLE, LuceneAnalyzerConstants.standardAnalyzerString());
+        
+        // each commit creates a new segment
+        DataWriter dataWriter = relationManager.getTableDataWriter(tableName);
+        for (int i = 0; i < 3; i++) {
+            dataWriter.open();
+            for (Tuple tuple : TestConstants.getSamplePeopleTuples()) {
+                dataWriter.insertTuple(tuple);
+            }
+            dataWriter.close();
+        }
+        
+        List<Tuple> allTuples = new ArrayList<>();
+        DataReader dataReader = relationManager.getTableDataReader(tableName, new MatchAllDocsQuery());
+        dataReader.open();
+        Tuple nextTuple = null;
+        while ((nextTuple = dataReader.getNextTuple()) != null) {
+            allTuples.add(nextTuple);
+        }
+        dataReader.close();
+        
+        for (int partitionCount = 1; partitionCount <= allTuples.size() + 2; partitionCount++) {
+            List<Tuple> partitionTuples = new ArrayList<>();
+            for (int partitionIndex = 0; partitionIndex < partitionCount; partitionIndex++) {
+                DataReader partitionReader = relationManager.getTableDataReader(tableName, new MatchAllDocsQuery());
+                partitionReader.setPartition(partitionIndex, partitionCount);
+                partitionReader.open();
+                while ((nextTuple = partitionReader.getNextTuple()) != null) {
+                    partitionTuples.add(nextTuple);
+                }
+                partitionReader.close();
+            }
+            Assert.assertEquals(allTuples, partitionTuples);
+        }
+        
+        relationManager.deleteTable(tableName);
+        Assert.assertEquals(TestConstants.getSamplePeopleTuples().size() * 3, allTuples.size());
+    }
+
+    /*
+     * Test that a reader with searchAfter set to the _id of a tuple returns the tuples after it,
+     *   in the same order as reading the whole table.
+     */
+    @Test
+    public void testSearchAfter() throws Exception {
+        RelationManager relationManager = RelationManager.getRelationManager();
+        
+        List<Tuple> allTuples = new ArrayList<>();
+        DataReader dataReader = relationManager.getTableDataReader(PEOPLE_TABLE, new MatchAllDocsQuery());
+        dataReader.open();
+        Tuple nextTuple = null;
+        while ((nextTuple = dataReader.getNextTuple()) != null) {
+            allTuples.add(nextTuple);
+        }
+        dataReader.close();
+        
+        for (int i = 0; i < allTuples.size(); i++) {
+            List<Tuple> tuplesAfter = new ArrayList<>();
+            DataReader searchAfterReader = relationManager.getTableDataReader(PEOPLE_TABLE, new MatchAllDocsQuery());
+            searchAfterReader.setSearchAfter((IDField) allTuples.get(i).getField(SchemaConstants._ID));
+            searchAfterReader.open();
+            while ((nextTuple = searchAfterReader.getNextTuple()) != null) {
+                tuplesAfter.add(nextTuple);
+            }
+            searchAfterReader.close();
+            Assert.assertEquals(allTuples.subList(i + 1, allTuples.size()), tuplesAfter);
+        }
+    }
+    
+    @Test(expected = StorageException.class)
+    public void testSearchAfterUnknownID() throws Exception {
+        RelationManager relationManager = RelationManager.getRelationManager();
+        DataReader dataReader = relationManager.getTableDataReader(PEOPLE_TABLE, new MatchAllDocsQuery());
+        dataReader.setSearchAfter(new IDField("not-an-existing-id"));
+        dataReader.open();
+    }
+
+    /*
+     * Test that the payload precomputed when the tuples are written is the same as the payload
+     *   built from the term vectors, including the tuples written by a later DataWriter of the table.
+     */
+    @Test
+    public void testPrecomputedPayload() throws Exception {
+        String tableName = "data_writer_reader_test_precomputed_payload";
+        RelationManager relationManager = RelationManager.getRelationManager();
+        relationManager.deleteTable(tableName);
+        relationManager.createTable(tableName, "../index/test_tables/" + tableName, 
+                TestConstants.SCHEMA_PEOPLE, LuceneAnalyzerConstants.standardAnalyzerString(), true);
+        
+        List<Tuple> sampleTuples = TestConstants.getSamplePeopleTuples();
+        int half = sampleTuples.size() / 2;
+        DataWriter dataWriter = relationManager.getTableDataWriter(tableName);
+        dataWriter.open();
+        Assert.assertTrue(dataWriter.isPayloadPrecomputed());
+        for (Tuple tuple : sampleTuples.subList(0, half)) {
+            dataWriter.insertTuple(tuple);
+        }
+        dataWriter.close();
+        // a new DataWriter reads the option from the index
+        dataWriter = relationManager.getTableDataWriter(tableName);
+        dataWriter.open();
+        Assert.assertTrue(dataWriter.isPayloadPrecomputed());
+        for (Tuple tuple : sampleTuples.subList(half, sampleTuples.size())) {
+            dataWriter.insertTuple(tuple);
+        }
+        dataWriter.close();
+        
+        List<Tuple> expectedTuples = readTuplesWithPayload(PEOPLE_TABLE);
+        List<Tuple> precomputedTuples = readTuplesWithPayload(tableName);
+        relationManager.deleteTable(tableName);
+        
+        Assert.assertEquals(expectedTuples.size(), precomputedTuples.size());
+        for (int i = 0; i < expectedTuples.size(); i++) {
+            ListField<Span> expectedPayload = expectedTuples.get(i).getField(SchemaConstants.PAYLOAD);
+            ListField<Span> precomputedPayload = precomputedTuples.get(i).getField(SchemaConstants.PAYLOAD);
+            Assert.assertTrue(precomputedPayload.getValue() instanceof CompactPayload);
+            Assert.assertEquals(spansToStrings(expectedPayload.getValue()), spansToStrings(precomputedPayload.getValue()));
+        }
+        // the people table is not created with the option
+        DataWriter peopleDataWriter = relationManager.getTableDataWriter(PEOPLE_TABLE);
+        peopleDataWriter.open();
+        peopleDataWriter.close();
+        Assert.assertFalse(peopleDataWriter.isPayloadPrecomputed());
+    }
+    
+    /*
+     * Test that a DataReader with projected attributes only returns these attributes.
+     */
+    @Test
+    public void testReadProjectedAttributes() throws Exception {
+        DataReader dataReader = RelationManager.getRelationManager().getTableDataReader(
+                PEOPLE_TABLE, new MatchAllDocsQuery());
+        // the attribute names are case insensitive, the order follows the table schema
+        dataReader.setProjectedAttributes(Arrays.asList(TestConstants.DESCRIPTION, TestConstants.AGE.toUpperCase()));
+        dataReader.setPayloadAdded(true);
+        
+        List<Tuple> returnedTuples = new ArrayList<>();
+        dataReader.open();
+        Tuple nextTuple;
+        while ((nextTuple = dataReader.getNextTuple()) != null) {
+            returnedTuples.add(nextTuple);
+        }
+        dataReader.close();
+        
+        Schema projectedSchema = new Schema(TestConstants.AGE_ATTR, TestConstants.DESCRIPTION_ATTR);
+        Assert.assertEquals(Utils.addAttributeToSchema(projectedSchema, SchemaConstants.PAYLOAD_ATTRIBUTE), 
+                dataReader.getOutputSchema());
+        
+        List<Tuple> expectedTuples = new ArrayList<>();
+        for (Tuple tuple : TestConstants.getSamplePeopleTuples()) {
+            expectedTuples.add(new Tuple(projectedSchema, 
+                    tuple.getField(TestConstants.AGE), tuple.getField(TestConstants.DESCRIPTION)));
+        }
+        Assert.assertTrue(containsAllResults(expectedTuples, returnedTuples));
+        
+        // the payload only contains the spans of the projected TEXT attribute
+        for (Tuple tuple : returnedTuples) {
+            ListField<Span> payload = tuple.getField(SchemaConstants.PAYLOAD);
+            Assert.assertFalse(payload.getValue().isEmpty());
+            Assert.assertTrue(payload.getValue().stream()
+                    .allMatch(span -> span.getAttributeName().equals(TestConstants.DESCRIPTION)));
+        }
+    }
+
+    /*
+     * Test that the TEXT fields are loaded when they are read in the late materialization mode,
+     *   even after the DataReader is closed and the index is changed.
+     */
+    @Test
+    public void testLateMaterialization() throws Exception {
+        String tableName = "data_writer_reader_test_late_materialization";
+        RelationManager relationManager = RelationManager.getRelationManager();
+        relationManager.deleteTable(tableName);
+        relationManager.createTable(tableName, "../index/test_tables/" + tableName, 
+                TestConstants.SCHEMA_PEOPLE, LuceneAnalyzerConstants.standardAnalyzerString());
+        DataWriter dataWriter = relationManager.getTableDataWriter(tableName);
+        dataWriter.open();
+        for (Tuple tuple : TestConstants.getSamplePeopleTuples()) {
+            dataWriter.insertTuple(tuple);
+        }
+        dataWriter.close();
+        
+        DataReader dataReader = relationManager.getTableDataReader(tableName, new MatchAllDocsQuery());
+        dataReader.setLateMaterialization(true);
+        List<Tuple> returnedTuples = new ArrayList<>();
+        dataReader.open();
+        Tuple nextTuple;
+        while ((nextTuple = dataReader.getNextTuple()) != null) {
+            returnedTuples.add(nextTuple);
+        }
+        dataReader.close();
+        
+        TextField firstDescription = returnedTuples.get(0).getField(TestConstants.DESCRIPTION);
+        Assert.assertFalse(firstDescription.isValueLoaded());
+        Assert.assertNotNull(firstDescription.getValue());
+        Assert.assertTrue(firstDescription.isValueLoaded());
+        
+        // the snapshot read by the DataReader is closed after the index is changed and refreshed
+        dataWriter.open();
+        dataWriter.insertTuple(TestConstants.getSamplePeopleTuples().get(0));
+        dataWriter.close();
+        
+        boolean equals = containsAllResults(TestConstants.getSamplePeopleTuples(), returnedTuples);
+        relationManager.deleteTable(tableName);
+        Assert.assertTrue(equals);
+    }
+    
+    /*
+     * Test that the payload built from the term vectors doesn't load the TEXT fields in the late materialization mode,
+     *   the fields are only loaded when the spans are created.
+     */
+    @Test
+    public void testLateMaterializationWithPayload() throws Exception {
+        DataReader dataReader = RelationManager.getRelationManager().getTableDataReader(
+                PEOPLE_TABLE, new MatchAllDocsQuery());
+        dataReader.setLateMaterialization(true);
+        dataReader.setPayloadAdded(true);
+        dataReader.open();
+        Tuple lazyTuple = dataReader.getNextTuple();
+        dataReader.close();
+        
+        TextField description = lazyTuple.getField(TestConstants.DESCRIPTION);
+        List<Span> payload = lazyTuple.<ListField<Span>>getField(SchemaConstants.PAYLOAD).getValue();
+        Assert.assertTrue(payload instanceof CompactPayload);
+        Assert.assertFalse(payload.isEmpty());
+        Assert.assertEquals(TestConstants.DESCRIPTION, ((CompactPayload) payload).getAttributeName(0));
+        Assert.assertNotNull(((CompactPayload) payload).getKey(0));
+        Assert.assertFalse(description.isValueLoaded());
+        
+        List<Tuple> expectedTuples = readTuplesWithPayload(PEOPLE_TABLE);
+        Assert.assertEquals(spansToStrings(expectedTuples.get(0).<ListField<Span>>getField(SchemaConstants.PAYLOAD).getValue()), 
+                spansToStrings(payload));
+        Assert.assertTrue(description.isValueLoaded());
+    }
+    
+    /*
+     * Test that a TEXT field loaded lazily throws a StorageRuntimeException if its tuple is deleted before it's loaded.
+     */
+    @Test
+    public void testLateMaterializationDeletedTuple() throws Exception {
+        String tableName = "data_writer_reader_test_late_materialization_deleted";
+        RelationManager relationManager = RelationManager.getRelationManager();
+        relationManager.deleteTable(tableName);
+        relationManager.createTable(tableName, "../index/test_tables/" + tableName, 
+                TestConstants.SCHEMA_PEOPLE, LuceneAnalyzerConstants.standardAnalyzerString());
+        DataWriter dataWriter = relationManager.getTableDataWriter(tableName);
+        dataWriter.open();
+        dataWriter.insertTuple(TestConstants.getSamplePeopleTuples().get(0));
+        dataWriter.close();
+        
+        DataReader dataReader = relationManager.getTableDataReader(tableName, new MatchAllDocsQuery());
+        dataReader.setLateMaterialization(true);
+        dataReader.open();
+        Tuple lazyTuple = dataReader.getNextTuple();
+        dataReader.close();
+        
+        dataWriter.open();
+        dataWriter.clearData();
+        dataWriter.close();
+        
+        try {
+            lazyTuple.getField(TestConstants.DESCRIPTION).getValue();
+            Assert.fail("the field of a deleted tuple can't be loaded");
+        } catch (StorageRuntimeException e) {
+            Assert.assertTrue(e.getCause() instanceof StorageException);
+        } finally {
+            relationManager.deleteTable(tableName);
+        }
+    }
+    
+    private static List<Tuple> readTuplesWithPayload(String tableName) throws TextDBException {
+        DataReader dataReader = RelationManager.getRelationManager().getTableDataReader(
+                tableName, new MatchAllDocsQuery());
+        dataReader.setPayloadAdded(true);
+        List<Tuple> tuples = new ArrayList<>();
+        dataReader.open();
+        Tuple nextTuple;
+        while ((nextTuple = dataReader.getNextTuple()) != null) {
+            tuples.add(nextTuple);
+        }
+        dataReader.close();
+        return tuples;
+    }
+    
+    /*
+     * Converts the spans to strings including the token offsets, which are not compared by Span.equals().
+     */
+    private static List<String> spansToStrings(List<Span> spans) {
+        return spans.stream()
+                .map(span -> String.join(",", span.getAttributeName(), span.getKey(), span.getValue(), 
+                        Integer.toString(span.getStart()), Integer.toString(span.getEnd()), 
+                        Integer.toString(span.getTokenOffset())))
+                .collect(Collectors.toList());
+    }
+
     public static boolean containsAllResults(List<Tuple> expectedResults, List<Tuple> exactResults) {
         expectedResults = Utils.removeFields(expectedResults, SchemaConstants._ID, SchemaConstants.PAYLOAD);
         exactResults = Utils.removeFields(exactResults, SchemaConstants._ID, SchemaConstants.PAYLOAD);
@@ -0,0 +1,130 @@
+package edu.uci.ics.textdb.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.uci.ics.textdb.api.constants.SchemaConstants;
+import edu.uci.ics.textdb.api.field.IDField;
+import edu.uci.ics.textdb.api.field.IField;
+import edu.uci.ics.textdb.api.field.StringField;
+import edu.uci.ics.textdb.api.field.TextField;
+import edu.uci.ics.textdb.api.schema.Attribute;
+import edu.uci.ics.textdb.api.schema.AttributeType;
+import edu.uci.ics.textdb.api.schema.Schema;
+import edu.uci.ics.textdb.api.span.Span;
+import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
+
+public class PayloadCacheTest {
+
+    private static final Schema SCHEMA = new Schema(SchemaConstants._ID_ATTRIBUTE,
+            new Attribute("name", AttributeType.STRING), new Attribute("content", AttributeType.TEXT));
+
+    private static Tuple newTuple(String id, String name, String content) {
+        return new Tuple(SCHEMA, new IDField(id), new StringField(name), new TextField(content));
+    }
+
+    /*
+     * Tests that the payload of a tuple is generated once for each analyzer string,
+     *   and generated again if the TEXT fields of the tuple are changed.
+     */
+    @Test
+    public void testPayloadGeneratedOnce() throws Exception {
+        PayloadCache payloadCache = new PayloadCache();
+        String standard = LuceneAnalyzerConstants.standardAnalyzerString();
+        Tuple tuple = newTuple("id1", "first", "the quick brown fox");
+
+        List<Span> payload = payloadCache.getPayload(tuple, standard);
+        List<Span> expectedPayload = new PayloadGenerator().generate(LuceneAnalyzerConstants.getStandardAnalyzer(),
+                Arrays.asList("content"), Arrays.asList((IField) new TextField("the quick brown fox")));
+        Assert.assertEquals(new ArrayList<>(expectedPayload), new ArrayList<>(payload));
+        Assert.assertEquals(1, payloadCache.getMissCount());
+
+        // the STRING fields are not in the payload, a tuple with the same TEXT fields gets the cached payload
+        List<Span> cachedPayload = payloadCache.getPayload(newTuple("id1", "changed", "the quick brown fox"), standard);
+        Assert.assertEquals(new ArrayList<>(payload), new ArrayList<>(cachedPayload));
+        Assert.assertEquals(1, payloadCache.getHitCount());
+
+        // the payloads are cached by the analyzer string, not by the class of the analyzer
+        String nGram = LuceneAnalyzerConstants.nGramAnalyzerString(3);
+        Assert.assertFalse(new ArrayList<>(payload).equals(new ArrayList<>(payloadCache.getPayload(tuple, nGram))));
+        Assert.assertEquals(2, payloadCache.getMissCount());
+
+        List<Span> changedPayload = payloadCache.getPayload(newTuple("id1", "first", "a lazy dog"), standard);
+        Assert.assertEquals(3, payloadCache.getMissCount());
+        Assert.assertEquals("dog", changedPayload.get(1).getKey());
+        Assert.assertEquals(2, payloadCache.size());
+    }
+
+    /*
+     * Tests that the least recently used payloads are removed, and the payload of a tuple without _ID is not cached.
+     */
+    @Test
+    public void testBoundedCache() throws Exception {
+        PayloadCache payloadCache = new PayloadCache(2);
+        String standard = LuceneAnalyzerConstants.standardAnalyzerString();
+
+        payloadCache.getPayload(newTuple("id1", "first", "one"), standard);
+        payloadCache.getPayload(newTuple("id2", "second", "two"), standard);
+        payloadCache.getPayload(newTuple("id1", "first", "one"), standard);
+        payloadCache.getPayload(newTuple("id3", "third", "three"), standard);
+        Assert.assertEquals(2, payloadCache.size());
+        Assert.assertEquals(1, payloadCache.getHitCount());
+
+        // id2 is removed, id1 is still cached
+        payloadCache.getPayload(newTuple("id1", "first", "one"), standard);
+        Assert.assertEquals(2, payloadCache.getHitCount());
+        payloadCache.getPayload(newTuple("id2", "second", "two"), standard);
+        Assert.assertEquals(2, payloadCache.getHitCount());
+
+        Schema schemaWithoutID = new Schema(new Attribute("content", AttributeType.TEXT));
+        Tuple tupleWithoutID = new Tuple(schemaWithoutID, new TextField("no id"));
+        payloadCache.clear();
+        payloadCache.getPayload(tupleWithoutID, standard);
+        payloadCache.getPayload(tupleWithoutID, standard);
+        Assert.assertEquals(0, payloadCache.size());
+        Assert.assertEquals(2, payloadCache.getHitCount());
+    }
+
+    /*
+     * Tests that each reader gets its own copy of a cached payload,
+     *   so that the payload of a tuple can be read by several threads at the same time.
+     */
+    @Test
+    public void testPayloadCopiedForEachReader() throws Exception {
+        PayloadCache payloadCache = new PayloadCache();
+        String standard = LuceneAnalyzerConstants.standardAnalyzerString();
+        Tuple tuple = newTuple("id1", "first", "the quick brown fox jumps over the lazy dog");
+        List<Span> expectedPayload = new ArrayList<>(payloadCache.getPayload(tuple, standard));
+
+        List<Span> payload1 = payloadCache.getPayload(tuple, standard);
+        List<Span> payload2 = payloadCache.getPayload(tuple, standard);
+        Assert.assertTrue(payload1 instanceof CompactPayload);
+        Assert.assertNotSame(payload1, payload2);
+        Assert.assertNotSame(payload1.get(0), payload2.get(0));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Callable<List<Span>>> readers = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                readers.add(() -> new ArrayList<>(payloadCache.getPayload(tuple, standard)));
+            }
+            for (Future<List<Span>> result : executor.invokeAll(readers)) {
+                Assert.assertEquals(expectedPayload, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(1, payloadCache.getMissCount());
+        Assert.assertEquals(102, payloadCache.getHitCount());
+    }
+
+}
@@ -1,6 +1,7 @@
 package edu.uci.ics.textdb.storage;
 
 import java.io.File;
+import java.util.Arrays;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
@@ -15,12 +16,14 @@ import edu.uci.ics.textdb.api.exception.StorageException;
 import edu.uci.ics.textdb.api.exception.TextDBException;
 import edu.uci.ics.textdb.api.field.IDField;
 import edu.uci.ics.textdb.api.field.StringField;
+import edu.uci.ics.textdb.api.field.TextField;
 import edu.uci.ics.textdb.api.schema.Attribute;
 import edu.uci.ics.textdb.api.schema.AttributeType;
 import edu.uci.ics.textdb.api.schema.Schema;
 import edu.uci.ics.textdb.api.tuple.Tuple;
 import edu.uci.ics.textdb.api.utils.Utils;
 import edu.uci.ics.textdb.storage.constants.LuceneAnalyzerConstants;
+import edu.uci.ics.textdb.storage.utils.MultiAnalyzer;
 
 public class RelationManagerTest {
     
@@ -374,5 +377,136 @@ public class RelationManagerTest {
         relationManager.deleteTable(tableName1);  
     }
     
+    /*
+     * Test that the DataReaders of a table share the searcher from the pool,
+     *   and the searcher is refreshed after a DataWriter commits.
+     */
+    @Test
+    public void test16() throws Exception {
+        String tableName = "relation_manager_test_table_16";
+        String tableDirectory = "./index/test_table/relation_manager_test_table_16";
+        Schema tableSchema = new Schema(
+                new Attribute("content", AttributeType.STRING));
+        
+        relationManager.deleteTable(tableName);
+        relationManager.createTable(
+                tableName, tableDirectory, tableSchema, LuceneAnalyzerConstants.standardAnalyzerString());
+        
+        DataWriter dataWriter = relationManager.getTableDataWriter(tableName);
+        dataWriter.open();
+        IDField idField1 = dataWriter.insertTuple(new Tuple(tableSchema, new StringField("test1")));
+        dataWriter.close();
+        
+        SearcherManagerPool searcherManagerPool = relationManager.getSearcherManagerPool();
+        
+        // the first lookup opens the table, the lookups after that reuse the open searchers
+        Assert.assertNotNull(relationManager.getTupleByID(tableName, idField1));
+        long acquireCount = searcherManagerPool.getAcquireCount();
+        long hitCount = searcherManagerPool.getHitCount();
+        Assert.assertNotNull(relationManager.getTupleByID(tableName, idField1));
+        Assert.assertTrue(searcherManagerPool.getAcquireCount() > acquireCount);
+        Assert.assertEquals(searcherManagerPool.getAcquireCount() - acquireCount, 
+                searcherManagerPool.getHitCount() - hitCount);
+        
+        // a tuple inserted after the searcher is opened should be visible after the writer closes
+        dataWriter.open();
+        IDField idField2 = dataWriter.insertTuple(new Tuple(tableSchema, new StringField("test2")));
+        dataWriter.close();
+        
+        Tuple returnedTuple = relationManager.getTupleByID(tableName, idField2);
+        Assert.assertEquals("test2", returnedTuple.getField("content").getValue().toString());
+        
+        relationManager.deleteTable(tableName);
+        Assert.assertEquals(0, searcherManagerPool.getAcquiredSearcherCount());
+    }
+    
+    /*
+     * Test that the cached table information is updated after the table is deleted and created again.
+     */
+    @Test
+    public void test17() throws Exception {
+        String tableName = "relation_manager_test_table_17";
+        String tableDirectory = "./index/test_table/relation_manager_test_table_17";
+        Schema schema1 = new Schema(new Attribute("content", AttributeType.STRING));
+        Schema schema2 = new Schema(new Attribute("content", AttributeType.TEXT));
+        
+        relationManager.deleteTable(tableName);
+        relationManager.createTable(tableName, tableDirectory, schema1, 
+                LuceneAnalyzerConstants.standardAnalyzerString());
+        
+        Assert.assertEquals(Utils.getSchemaWithID(schema1), relationManager.getTableSchema(tableName));
+        // the analyzer instance is cached
+        Analyzer analyzer = relationManager.getTableAnalyzer(tableName);
+        Assert.assertSame(analyzer, relationManager.getTableAnalyzer(tableName));
+        
+        relationManager.deleteTable(tableName);
+        Assert.assertFalse(relationManager.checkTableExistence(tableName));
+        
+        relationManager.createTable(tableName, tableDirectory, schema2, 
+                LuceneAnalyzerConstants.nGramAnalyzerString(3));
+        
+        Assert.assertEquals(Utils.getSchemaWithID(schema2), relationManager.getTableSchema(tableName));
+        Assert.assertEquals(LuceneAnalyzerConstants.nGramAnalyzerString(3), 
+                relationManager.getTableAnalyzerString(tableName));
+        Assert.assertNotSame(analyzer, relationManager.getTableAnalyzer(tableName));
+        
+        relationManager.deleteTable(tableName);
+    }
+    
+    /*
+     * Test that a table with a multi-analyzer indexes a TEXT attribute both in its field and its gram sub-field,
+     *   while the tuples read from the table are the same.
+     */
+    @Test
+    public void test18() throws Exception {
+        String tableName = "relation_manager_test_table_18";
+        String tableDirectory = "./index/test_table/relation_manager_test_table_18";
+        Schema schema = new Schema(new Attribute("city", AttributeType.STRING), 
+                new Attribute("content", AttributeType.TEXT));
+        String analyzerString = LuceneAnalyzerConstants.multiAnalyzerString(
+                LuceneAnalyzerConstants.standardAnalyzerString(), LuceneAnalyzerConstants.nGramAnalyzerString(3));
+        
+        relationManager.deleteTable(tableName);
+        relationManager.createTable(tableName, tableDirectory, schema, analyzerString);
+        Assert.assertTrue(relationManager.getTableAnalyzer(tableName) instanceof MultiAnalyzer);
+        
+        DataWriter dataWriter = relationManager.getTableDataWriter(tableName);
+        dataWriter.open();
+        Tuple insertedTuple = new Tuple(schema, new StringField("irvine"), new TextField("Lin Clooney is Short"));
+        dataWriter.insertTuple(insertedTuple);
+        dataWriter.close();
+        
+        // the standard analyzer indexes the field itself, the 3-gram analyzer indexes the sub-field
+        for (Query query : Arrays.asList(new TermQuery(new Term("content", "clooney")), 
+                new TermQuery(new Term(MultiAnalyzer.getSubFieldName("content", "3-gram"), "loo")))) {
+            DataReader dataReader = relationManager.getTableDataReader(tableName, query);
+            dataReader.open();
+            Tuple returnedTuple = dataReader.getNextTuple();
+            Assert.assertNull(dataReader.getNextTuple());
+            dataReader.close();
+            Assert.assertEquals(Utils.getSchemaWithID(schema), returnedTuple.getSchema());
+            Assert.assertEquals(insertedTuple.getField("content"), returnedTuple.getField("content"));
+        }
+        DataReader dataReader = relationManager.getTableDataReader(tableName, new TermQuery(new Term("content", "loo")));
+        dataReader.open();
+        Assert.assertNull(dataReader.getNextTuple());
+        dataReader.close();
+        
+        relationManager.deleteTable(tableName);
+    }
+    
+    /*
+     * Test that the attributes with their own analyzers in a multi-analyzer string must be TEXT attributes.
+     */
+    @Test(expected = StorageException.class)
+    public void test19() throws Exception {
+        String tableName = "relation_manager_test_table_19";
+        String tableDirectory = "./index/test_table/relation_manager_test_table_19";
+        Schema schema = new Schema(new Attribute("city", AttributeType.STRING), 
+                new Attribute("content", AttributeType.TEXT));
+        
+        relationManager.deleteTable(tableName);
+        relationManager.createTable(tableName, tableDirectory, schema, "standard;city=standard+3-gram");
+    }
     
 }
@@ -6,6 +6,7 @@ import com.fasterxml.jackson.databind.MapperFeature;
 import edu.uci.ics.textdb.api.engine.Plan;
 import edu.uci.ics.textdb.api.exception.TextDBException;
 import edu.uci.ics.textdb.api.tuple.Tuple;
+import edu.uci.ics.textdb.dataflow.nlpextrator.NlpPipelineRegistry;
 import edu.uci.ics.textdb.dataflow.sink.TupleStreamSink;
 import edu.uci.ics.textdb.perftest.sample.SampleExtraction;
 import edu.uci.ics.textdb.plangen.LogicalPlan;
@@ -100,12 +101,23 @@ public class TextdbWebApplication extends Application<TextdbWebConfiguration> {
         sink.close();
     }
 
+    /*
+     * Loads the shared pipelines used by the NlpExtractors, so that the first queries don't pay for loading the models.
+     */
+    private static void warmUpNlpPipelines() throws TextDBException {
+        NlpPipelineRegistry nlpPipelineRegistry = NlpPipelineRegistry.getNlpPipelineRegistry();
+        nlpPipelineRegistry.warmUp(NlpPipelineRegistry.POS_ANNOTATORS, NlpPipelineRegistry.NER_ANNOTATORS);
+        System.out.println(String.format("Loaded NLP pipelines %s in %d ms",
+                nlpPipelineRegistry.getLoadedAnnotators(), nlpPipelineRegistry.getTotalLoadTimeMillis()));
+    }
+
     public static void main(String args[]) throws Exception {
         System.out.println("Writing Sample Index");
         SampleExtraction.writeSampleIndex();
         System.out.println("Completed Writing Sample Index");
         System.out.println("Started Loading Stanford NLP");
         loadStanfordNLP();
+        warmUpNlpPipelines();
         System.out.println("Finished Loading Stanford NLP");
         new TextdbWebApplication().run(args);
     }